@@ -0,0 +1,46 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+val grpcVersion = "1.66.0"
+val jmhCoreVersion = "1.37"
+
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+group = "com.jamf.regatta"
+
+version = "1.4.1-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    }
+}
+
+dependencies {
+    jmh(project(":regatta-java-core"))
+    jmh(project(":regatta-java-test"))
+    jmh("io.grpc:grpc-inprocess:${grpcVersion}")
+}
+
+jmh {
+    jmhVersion.set(jmhCoreVersion)
+    // allocation rate and GC pressure of every benchmark
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // a subset of the suites, e.g. -Pbench.includes=EndToEnd
+    providers.gradleProperty("bench.includes").orNull?.let { includes.add(it) }
+    // the key and value sizes, e.g. -Pbench.valueSize=64,65536
+    listOf("keySize", "valueSize").forEach { name ->
+        providers.gradleProperty("bench.$name").orNull?.let { values ->
+            benchmarkParameters.put(name, objects.listProperty(String::class.java).value(values.split(",")))
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.bench;
+
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.ResponseOp;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+
+import io.grpc.stub.StreamObserver;
+
+/**
+ * KV service answering every call with prepared responses, so that the benchmarks measure the client and the transport
+ * rather than the server.
+ */
+public final class CannedKVService extends KVGrpc.KVImplBase {
+
+    private final RangeResponse range;
+    private final int chunks;
+    private final TxnResponse txn;
+
+    /**
+     * @param range  response of every {@code Range} call and every chunk of an {@code IterateRange} stream.
+     * @param chunks number of chunks of an {@code IterateRange} stream.
+     */
+    public CannedKVService(RangeResponse range, int chunks) {
+        this.range = range;
+        this.chunks = chunks;
+        this.txn = TxnResponse.newBuilder()
+                .setSucceeded(true)
+                .addResponses(ResponseOp.newBuilder().setResponsePut(ResponseOp.Put.getDefaultInstance()))
+                .addResponses(ResponseOp.newBuilder().setResponseRange(ResponseOp.Range.newBuilder()
+                        .addAllKvs(range.getKvsList())
+                        .setCount(range.getCount())))
+                .build();
+    }
+
+    @Override
+    public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+        responseObserver.onNext(range);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void iterateRange(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+        for (int i = 0; i < chunks; i++) {
+            responseObserver.onNext(range);
+        }
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+        responseObserver.onNext(PutResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void txn(TxnRequest request, StreamObserver<TxnResponse> responseObserver) {
+        responseObserver.onNext(txn);
+        responseObserver.onCompleted();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.encoding.PooledSnappyCodec;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.proto.PutRequest;
+
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import io.grpc.Decompressor;
+
+/**
+ * Compressing and decompressing a put request with the codecs the client registers, {@code identity} being no
+ * compression and {@code pooled-snappy} the {@link PooledSnappyCodec} registered for snappy in place of the
+ * {@link SnappyCodec}. The {@link Bytes} counters report the request and the compressed bytes of {@code compress},
+ * their ratio is the saving on the wire; the time per operation divided by the request size is the CPU cost per byte.
+ * The small sizes show the requests which {@code CompressionConfig.minMessageSize} sends uncompressed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"identity", "snappy", "pooled-snappy", "gzip"})
+    public String codec;
+
+    @Param({"16", "256", "1024", "16384", "262144"})
+    public int valueSize;
+
+    @Param({"true", "false"})
+    public boolean compressible;
+
+    private Compressor compressor;
+    private Decompressor decompressor;
+    private byte[] message;
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (codec) {
+            case SnappyCodec.NAME -> {
+                compressor = SnappyCodec.INSTANCE;
+                decompressor = SnappyCodec.INSTANCE;
+            }
+            case "pooled-snappy" -> {
+                compressor = PooledSnappyCodec.INSTANCE;
+                decompressor = PooledSnappyCodec.INSTANCE;
+            }
+            case "gzip" -> {
+                var gzip = new Codec.Gzip();
+                compressor = gzip;
+                decompressor = gzip;
+            }
+            default -> {
+                compressor = Codec.Identity.NONE;
+                decompressor = Codec.Identity.NONE;
+            }
+        }
+        message = PutRequest.newBuilder()
+                .setTable(ByteString.copyFromUtf8("table"))
+                .setKey(ByteString.copyFrom(Values.bytes(16, false, 1)))
+                .setValue(ByteString.copyFrom(Values.bytes(valueSize, compressible, 2)))
+                .build()
+                .toByteArray();
+        compressed = compress(new Bytes());
+    }
+
+    @Benchmark
+    public byte[] compress(Bytes bytes) throws IOException {
+        var out = new ByteArrayOutputStream(message.length + 64);
+        try (var compressing = compressor.compress(out)) {
+            compressing.write(message);
+        }
+        bytes.requestBytes += message.length;
+        bytes.compressedBytes += out.size();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        try (var decompressing = decompressor.decompress(new ByteArrayInputStream(compressed))) {
+            return decompressing.readAllBytes();
+        }
+    }
+
+    /**
+     * Bytes before and after compression, summed over the iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+
+        public long requestBytes;
+        public long compressedBytes;
+    }
+}
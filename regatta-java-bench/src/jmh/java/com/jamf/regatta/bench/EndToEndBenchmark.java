@@ -0,0 +1,134 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.AsyncKV;
+import com.jamf.regatta.core.KV;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.api.PutResponse;
+import com.jamf.regatta.core.api.TxnResponse;
+import com.jamf.regatta.core.api.op.Cmp;
+import com.jamf.regatta.core.api.op.CmpTarget;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.impl.ClientImpl;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.test.GrpcServerExtension;
+
+/**
+ * Calls of the KV clients against an in-process server answering with prepared responses, which measures the client
+ * side of a call: building the request, the interceptors and the stub, the in-process transport and converting the
+ * response. The in-process transport passes the messages without framing, so the messages are not compressed, see
+ * {@link CompressionBenchmark} for the codecs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final ByteSequence TABLE = ByteSequence.fromUtf8String("bench");
+    private static final ByteSequence UNBOUNDED = ByteSequence.from(new byte[]{0});
+
+    @Param({"16", "128"})
+    public int keySize;
+
+    @Param({"64", "1024", "16384"})
+    public int valueSize;
+
+    /**
+     * Key-values per response of a get and per chunk of an iterate.
+     */
+    @Param({"1", "100"})
+    public int kvs;
+
+    @Param({"10"})
+    public int chunks;
+
+    private GrpcServerExtension server;
+    private ClientImpl client;
+    private KV kv;
+    private AsyncKV asyncKv;
+    private ByteSequence key;
+    private ByteSequence value;
+
+    @Setup
+    public void setUp() throws Exception {
+        key = Values.key(keySize, 1);
+        value = Values.value(valueSize, 2);
+        var range = RangeResponse.newBuilder().setCount(kvs);
+        for (int i = 0; i < kvs; i++) {
+            range.addKvs(KeyValue.newBuilder()
+                    .setKey(ByteString.copyFrom(Values.bytes(keySize, false, i)))
+                    .setValue(value.getByteString()));
+        }
+        // the KV clients compress with snappy
+        server = new GrpcServerExtension().codec(SnappyCodec.INSTANCE);
+        server.beforeEach(null);
+        server.getServiceRegistry().addService(new CannedKVService(range.build(), chunks));
+        client = new ClientImpl(server.getChannel(), RetryConfig.NO_RETRY);
+        kv = client.getKVClient();
+        asyncKv = client.getAsyncKVClient();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.afterEach(null);
+    }
+
+    @Benchmark
+    public GetResponse get() {
+        return kv.get(TABLE, key);
+    }
+
+    @Benchmark
+    public GetResponse asyncGet() {
+        return asyncKv.get(TABLE, key).join();
+    }
+
+    @Benchmark
+    public PutResponse put() {
+        return kv.put(TABLE, key, value);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        try (var responses = kv.iterate(TABLE, key, GetOption.builder().withRange(UNBOUNDED).build())) {
+            responses.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public TxnResponse txn() {
+        return kv.txn(TABLE)
+                .If(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.value(value)))
+                .Then(Op.put(key, value, PutOption.DEFAULT), Op.get(key, GetOption.DEFAULT))
+                .commit();
+    }
+}
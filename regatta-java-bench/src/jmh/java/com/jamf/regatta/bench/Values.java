@@ -0,0 +1,41 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.jamf.regatta.core.api.ByteSequence;
+
+/**
+ * Deterministic keys and values of the benchmarks.
+ */
+public final class Values {
+
+    private Values() {
+    }
+
+    /**
+     * @param size         number of bytes.
+     * @param compressible whether half of the bytes repeat, as in typical JSON or protobuf values, or all are random.
+     */
+    public static byte[] bytes(int size, boolean compressible, long seed) {
+        var bytes = new byte[size];
+        var random = new Random(seed);
+        random.nextBytes(bytes);
+        if (compressible) {
+            Arrays.fill(bytes, size / 2, size, (byte) 'x');
+        }
+        return bytes;
+    }
+
+    public static ByteSequence key(int size, long seed) {
+        return ByteSequence.from(bytes(size, false, seed));
+    }
+
+    public static ByteSequence value(int size, long seed) {
+        return ByteSequence.from(bytes(size, true, seed));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.jamf.regatta.bench.Values;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.api.op.Cmp;
+import com.jamf.regatta.core.api.op.CmpTarget;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.api.op.TxnImpl;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.TxnRequest;
+
+/**
+ * Building the requests and converting the responses of the KV client, without any transport. It lives in the package
+ * of the client to reach its request and response helpers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireBenchmark {
+
+    private static final ByteSequence TABLE = ByteSequence.fromUtf8String("bench");
+
+    @Param({"16", "128"})
+    public int keySize;
+
+    @Param({"64", "1024", "16384"})
+    public int valueSize;
+
+    @Param({"1", "100"})
+    public int kvs;
+
+    private ByteSequence key;
+    private ByteSequence value;
+    private RangeResponse range;
+    private byte[] serializedRange;
+
+    @Setup
+    public void setUp() {
+        key = Values.key(keySize, 1);
+        value = Values.value(valueSize, 2);
+        var response = RangeResponse.newBuilder().setCount(kvs);
+        for (int i = 0; i < kvs; i++) {
+            response.addKvs(KeyValue.newBuilder()
+                    .setKey(ByteString.copyFrom(Values.bytes(keySize, false, i)))
+                    .setValue(value.getByteString()));
+        }
+        range = response.build();
+        serializedRange = range.toByteArray();
+    }
+
+    @Benchmark
+    public PutRequest putRequest() {
+        return KVImpl.putRequest(TABLE, key, value, PutOption.DEFAULT);
+    }
+
+    @Benchmark
+    public RangeRequest rangeRequest() {
+        return KVImpl.rangeRequest(TABLE, key, GetOption.DEFAULT);
+    }
+
+    @Benchmark
+    public TxnRequest txnRequest() {
+        var request = new TxnRequest[1];
+        TxnImpl.newTxn(built -> {
+                    request[0] = built;
+                    return null;
+                }, TABLE)
+                .If(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.value(value)))
+                .Then(Op.put(key, value, PutOption.DEFAULT), Op.get(key, GetOption.DEFAULT))
+                .Else(Op.get(key, GetOption.DEFAULT))
+                .commit();
+        return request[0];
+    }
+
+    @Benchmark
+    public GetResponse toGetResponse() {
+        return KVImpl.toGetResponse(range);
+    }
+
+    @Benchmark
+    public GetResponse parseAndConvertRange() throws InvalidProtocolBufferException {
+        return KVImpl.toGetResponse(RangeResponse.parseFrom(serializedRange));
+    }
+
+    @Benchmark
+    public byte[] serializePut() {
+        return KVImpl.putRequest(TABLE, key, value, PutOption.DEFAULT).toByteArray();
+    }
+}
@@ -11,6 +11,7 @@ var autoServiceVersion = "1.1.1"
 val failsafeVersion = "3.3.2"
 val jupiterVersion = "5.10.3"
 val assertjVersion = "3.26.3"
+val micrometerVersion = "1.12.8"
 
 plugins {
     id("regatta.library-conventions")
@@ -37,10 +38,16 @@ dependencies {
     implementation("dev.failsafe:failsafe:${failsafeVersion}")
     implementation("com.google.auto.service:auto-service-annotations:${autoServiceVersion}")
 
+    // Optional, the Micrometer binding of the client metrics is used only when Micrometer is on the classpath.
+    compileOnly("io.micrometer:micrometer-observation:${micrometerVersion}")
+
     annotationProcessor("com.google.auto.service:auto-service:${autoServiceVersion}")
 
+    testImplementation(project(":regatta-java-test"))
     testImplementation("org.assertj:assertj-core:${assertjVersion}")
     testImplementation("io.grpc:grpc-testing:${grpcVersion}")
+    testImplementation("io.grpc:grpc-inprocess:${grpcVersion}")
+    testImplementation("io.micrometer:micrometer-observation:${micrometerVersion}")
     testImplementation("org.junit.jupiter:junit-jupiter-api:${jupiterVersion}")
     testImplementation("org.junit.jupiter:junit-jupiter-migrationsupport:${jupiterVersion}")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:${jupiterVersion}")
@@ -0,0 +1,13 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.MemberListResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncCluster extends CloseableClient {
+    CompletableFuture<MemberListResponse> memberList();
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.*;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Non-blocking variant of {@link KV}. Every operation returns immediately with a future that is completed
+ * once the response arrives, the calling thread is never blocked.
+ */
+public interface AsyncKV extends CloseableClient {
+
+    /**
+     * put a key-value pair into regatta.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @param value value in ByteSequence
+     * @return future of PutResponse
+     */
+    CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value);
+
+    /**
+     * put a key-value pair into regatta.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @param value value in ByteSequence
+     * @return future of PutResponse
+     */
+    CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value, PutOption option);
+
+    /**
+     * retrieve value for the given key.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return future of GetResponse
+     */
+    CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key);
+
+    /**
+     * retrieve value for the given key.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return future of GetResponse
+     */
+    CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key, GetOption option);
+
+    /**
+     * retrieve values for the given keys. Keys are looked up in parallel chunks of read-only transactions, or with a
+     * single bounded range scan if they densely populate a narrow interval. Range related settings of the option
+     * ({@code limit}, {@code endKey}, {@code prefix}, {@code countOnly}) are ignored.
+     *
+     * @param table table in ByteSequence
+     * @param keys  keys in ByteSequence
+     * @return future of the map of the found key-values ordered by key, missing keys are absent
+     */
+    CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys);
+
+    /**
+     * retrieve values for the given keys. Keys are looked up in parallel chunks of read-only transactions, or with a
+     * single bounded range scan if they densely populate a narrow interval. Range related settings of the option
+     * ({@code limit}, {@code endKey}, {@code prefix}, {@code countOnly}) are ignored.
+     *
+     * @param table table in ByteSequence
+     * @param keys  keys in ByteSequence
+     * @return future of the map of the found key-values ordered by key, missing keys are absent
+     */
+    CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys, GetOption option);
+
+    /**
+     * read a page of the range {@code [start, end)} in key order. The next page is read by passing
+     * {@link Page#continuation()} as {@code start} while keeping the other arguments, no server side state is kept
+     * between the calls. Only the {@code serializable}, {@code keysOnly} and timeout settings of the option apply.
+     *
+     * @param table    table in ByteSequence
+     * @param start    first key of the page in ByteSequence
+     * @param end      exclusive end of the range in ByteSequence, '\0' for all keys {@literal >=} start
+     * @param pageSize maximal number of key-values in the page
+     * @return future of Page
+     */
+    CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize);
+
+    /**
+     * read a page of the range {@code [start, end)} in key order. The next page is read by passing
+     * {@link Page#continuation()} as {@code start} while keeping the other arguments, no server side state is kept
+     * between the calls. Only the {@code serializable}, {@code keysOnly} and timeout settings of the option apply.
+     *
+     * @param table    table in ByteSequence
+     * @param start    first key of the page in ByteSequence
+     * @param end      exclusive end of the range in ByteSequence, '\0' for all keys {@literal >=} start
+     * @param pageSize maximal number of key-values in the page
+     * @return future of Page
+     */
+    CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option);
+
+    /**
+     * retrieve values for the given keys. The server stream is consumed according to the subscriber demand, only a
+     * single chunk of key-values is buffered at a time. Cancelling the subscription cancels the server stream.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return Publisher of key-values
+     */
+    Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key);
+
+    /**
+     * retrieve values for the given keys. The server stream is consumed according to the subscriber demand, only a
+     * single chunk of key-values is buffered at a time. Cancelling the subscription cancels the server stream.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return Publisher of key-values
+     */
+    Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key, GetOption option);
+
+    /**
+     * delete value with given key.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return future of DeleteResponse
+     */
+    CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key);
+
+    /**
+     * delete value with given key.
+     *
+     * @param table table in ByteSequence
+     * @param key   key in ByteSequence
+     * @return future of DeleteResponse
+     */
+    CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key, DeleteOption option);
+
+    /**
+     * creates a transaction.
+     *
+     * @param table table in ByteSequence
+     * @return an AsyncTxn
+     */
+    AsyncTxn txn(ByteSequence table);
+
+    /**
+     * creates a transaction.
+     *
+     * @param table table in ByteSequence
+     * @return an AsyncTxn
+     */
+    AsyncTxn txn(ByteSequence table, TxnOption option);
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.CreateTableResponse;
+import com.jamf.regatta.core.api.DeleteTableResponse;
+import com.jamf.regatta.core.api.ListTablesResponse;
+import com.jamf.regatta.core.options.TableOption;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncTables extends CloseableClient {
+
+	CompletableFuture<CreateTableResponse> createTable(String name);
+
+	CompletableFuture<CreateTableResponse> createTable(String name, TableOption option);
+
+	CompletableFuture<DeleteTableResponse> deleteTable(String name);
+
+	CompletableFuture<DeleteTableResponse> deleteTable(String name, TableOption option);
+
+	CompletableFuture<ListTablesResponse> listTables();
+
+	CompletableFuture<ListTablesResponse> listTables(TableOption option);
+}
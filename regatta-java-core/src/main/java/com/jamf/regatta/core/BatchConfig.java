@@ -0,0 +1,25 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.options.TxnOption;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the batching KV client.
+ *
+ * @param maxBatchSize maximal number of operations submitted in a single transaction.
+ * @param linger       how long the first operation of a batch waits for other operations to join.
+ * @param txnOption    options of the transaction the batch is submitted with, its timeout is shortened to the
+ *                     strictest deadline of the batched operations.
+ */
+public record BatchConfig(
+        int maxBatchSize,
+        Duration linger,
+        TxnOption txnOption
+) {
+    public static final BatchConfig DEFAULT = new BatchConfig(128, Duration.ofMillis(2), TxnOption.DEFAULT);
+}
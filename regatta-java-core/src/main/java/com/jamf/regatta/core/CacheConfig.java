@@ -0,0 +1,29 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.ByteSequence;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Configuration of the client side read cache of the {@link KV} client.
+ *
+ * @param maxSize maximal number of cached keys across all tables, the least recently used ones are evicted first.
+ * @param ttl     how long a cached value is served before it is read from the server again.
+ * @param tables  tables whose point reads are cached.
+ */
+public record CacheConfig(
+        int maxSize,
+        Duration ttl,
+        Set<ByteSequence> tables
+) {
+    public static final CacheConfig DISABLED = new CacheConfig(0, Duration.ZERO, Set.of());
+
+    public CacheConfig {
+        tables = Set.copyOf(tables);
+    }
+}
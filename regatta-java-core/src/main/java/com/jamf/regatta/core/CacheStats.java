@@ -0,0 +1,21 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+/**
+ * Statistics of the client side read cache.
+ *
+ * @param hits      number of reads served from the cache.
+ * @param misses    number of cacheable reads sent to the server.
+ * @param evictions number of entries removed because of the size limit or an expired TTL.
+ * @param size      current number of entries.
+ */
+public record CacheStats(
+        long hits,
+        long misses,
+        long evictions,
+        long size
+) {
+}
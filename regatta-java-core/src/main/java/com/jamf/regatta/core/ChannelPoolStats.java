@@ -0,0 +1,31 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import java.util.List;
+
+/**
+ * Usage of the pooled channels.
+ *
+ * @param outstandingCalls number of calls in progress on each of the channels.
+ * @param startedCalls     number of calls started on each of the channels.
+ */
+public record ChannelPoolStats(
+        List<Integer> outstandingCalls,
+        List<Long> startedCalls
+) {
+
+    public ChannelPoolStats {
+        outstandingCalls = List.copyOf(outstandingCalls);
+        startedCalls = List.copyOf(startedCalls);
+    }
+
+    /**
+     * @return number of pooled channels.
+     */
+    public int size() {
+        return outstandingCalls.size();
+    }
+}
@@ -4,6 +4,8 @@
 
 package com.jamf.regatta.core;
 
+import java.util.Optional;
+
 public interface Client extends AutoCloseable {
 
     static ClientBuilder builder() {
@@ -12,7 +14,43 @@ public interface Client extends AutoCloseable {
 
 	KV getKVClient();
 
+	/**
+	 * Returns the statistics of the read cache of the {@link KV} client configured by {@link ClientBuilder#nearCache(CacheConfig)}.
+	 *
+	 * @return the cache statistics.
+	 */
+	CacheStats getKVCacheStats();
+
+	/**
+	 * Returns the usage of the channels configured by {@link ClientBuilder#channelPoolSize(int)}.
+	 *
+	 * @return the pool usage, empty if a single channel is used.
+	 */
+	Optional<ChannelPoolStats> getChannelPoolStats();
+
+	/**
+	 * Returns the dictionaries of the tables whose values are compressed according to the
+	 * {@link ClientBuilder#valueCompression(ValueCompressionConfig)}.
+	 *
+	 * @return the value dictionaries.
+	 */
+	ValueDictionaries getValueDictionaries();
+
+	AsyncKV getAsyncKVClient();
+
+	/**
+	 * Returns the KV client which submits concurrent puts, gets and deletes on the same table as a single transaction.
+	 * Batches are sized and timed according to the {@link BatchConfig} set on the {@link ClientBuilder}.
+	 *
+	 * @return the batching KV client.
+	 */
+	AsyncKV getBatchingKVClient();
+
 	Cluster getClusterClient();
 
+	AsyncCluster getAsyncClusterClient();
+
 	Tables getTablesClient();
+
+	AsyncTables getAsyncTablesClient();
 }
@@ -5,12 +5,20 @@
 package com.jamf.regatta.core;
 
 import com.google.common.base.Strings;
-import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.balancer.LeaderAffinityLoadBalancer;
+import com.jamf.regatta.core.balancer.LeaderTracker;
+import com.jamf.regatta.core.encoding.PooledSnappyCodec;
+import com.jamf.regatta.core.impl.ChannelPool;
 import com.jamf.regatta.core.impl.ClientImpl;
+import com.jamf.regatta.core.impl.MetricsInterceptor;
+import com.jamf.regatta.core.metrics.ClientMetrics;
 import io.grpc.ClientInterceptor;
 import io.grpc.Codec;
+import io.grpc.Compressor;
 import io.grpc.CompressorRegistry;
+import io.grpc.Decompressor;
 import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NegotiationType;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
@@ -24,6 +32,7 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 
@@ -35,6 +44,16 @@ public class ClientBuilder {
     private List<ClientInterceptor> interceptors;
     private SSLFactory sslFactory;
     private RetryConfig retryConfig = RetryConfig.DEFAULT;
+    private BatchConfig batchConfig = BatchConfig.DEFAULT;
+    private CacheConfig cacheConfig = CacheConfig.DISABLED;
+    private HedgeConfig hedgeConfig = HedgeConfig.DISABLED;
+    private LimitConfig limitConfig = LimitConfig.DISABLED;
+    private CompressionConfig compressionConfig = CompressionConfig.DEFAULT;
+    private ValueCompressionConfig valueCompressionConfig = ValueCompressionConfig.DISABLED;
+    private final List<Compressor> codecs = new ArrayList<>(List.of(Codec.Identity.NONE, PooledSnappyCodec.INSTANCE, new Codec.Gzip()));
+    private int channelPoolSize = 1;
+    private boolean leaderRouting = false;
+    private ClientMetrics metrics;
 
 
     ClientBuilder() {
@@ -129,6 +148,168 @@ public class ClientBuilder {
         return this;
     }
 
+    /**
+     * The batching configuration used by {@link Client#getBatchingKVClient()}. If not set the {@code BatchConfig.DEFAULT} is used.
+     *
+     * @param batchConfig The batching configuration.
+     * @return this builder
+     */
+    public ClientBuilder batching(BatchConfig batchConfig) {
+        Preconditions.checkArgument(batchConfig != null, "batchConfig can't be null");
+        Preconditions.checkArgument(batchConfig.maxBatchSize() > 0, "maxBatchSize must be greater than 0");
+        Preconditions.checkArgument(batchConfig.linger() != null && !batchConfig.linger().isNegative(), "linger can't be null or negative");
+        Preconditions.checkArgument(batchConfig.txnOption() != null, "txnOption can't be null");
+        this.batchConfig = batchConfig;
+        return this;
+    }
+
+    /**
+     * Enables the read cache of the {@link KV} client. Point reads of the configured tables are served from the cache
+     * until their TTL expires. Writes done through any KV client of the same {@link Client}, asynchronous and batching
+     * ones included, invalidate the written keys immediately, writes done by other clients become visible once the
+     * cached entry expires. Disabled by default.
+     *
+     * @param cacheConfig The cache configuration.
+     * @return this builder
+     */
+    public ClientBuilder nearCache(CacheConfig cacheConfig) {
+        Preconditions.checkArgument(cacheConfig != null, "cacheConfig can't be null");
+        Preconditions.checkArgument(cacheConfig.maxSize() >= 0, "maxSize can't be negative");
+        Preconditions.checkArgument(cacheConfig.ttl() != null && !cacheConfig.ttl().isNegative(), "ttl can't be null or negative");
+        this.cacheConfig = cacheConfig;
+        return this;
+    }
+
+    /**
+     * Enables hedging of serializable reads and read-only transactions. A call not answered within the hedging delay
+     * is sent once more to another member, the first response wins and the other call is cancelled. The calls are
+     * balanced by the leader affinity policy, which picks another member for the hedge, also without
+     * {@link #leaderRouting(boolean)}. Disabled by default.
+     *
+     * @param hedgeConfig The hedging configuration.
+     * @return this builder
+     */
+    public ClientBuilder hedging(HedgeConfig hedgeConfig) {
+        Preconditions.checkArgument(hedgeConfig != null, "hedgeConfig can't be null");
+        Preconditions.checkArgument(hedgeConfig.delay() != null && !hedgeConfig.delay().isNegative(), "delay can't be null or negative");
+        Preconditions.checkArgument(hedgeConfig.percentile() >= 0 && hedgeConfig.percentile() < 1, "percentile must be in [0, 1)");
+        Preconditions.checkArgument(hedgeConfig.budget() >= 0, "budget can't be negative");
+        this.hedgeConfig = hedgeConfig;
+        return this;
+    }
+
+    /**
+     * Enables the adaptive concurrency limit of the KV clients, with a separate limit of reads and writes per table.
+     * Once a limit is reached, new calls wait up to {@link LimitConfig#maxWait()} for a free slot and then fail with
+     * {@code RESOURCE_EXHAUSTED} instead of piling up on a slow cluster. Disabled by default.
+     *
+     * @param limitConfig The concurrency limit configuration.
+     * @return this builder
+     */
+    public ClientBuilder concurrencyLimit(LimitConfig limitConfig) {
+        Preconditions.checkArgument(limitConfig != null, "limitConfig can't be null");
+        Preconditions.checkArgument(limitConfig.maxLimit() >= 0, "maxLimit can't be negative");
+        if (limitConfig.maxLimit() > 0) {
+            Preconditions.checkArgument(limitConfig.minLimit() >= 1 && limitConfig.minLimit() <= limitConfig.maxLimit(), "minLimit must be in [1, maxLimit]");
+            Preconditions.checkArgument(limitConfig.initialLimit() >= limitConfig.minLimit() && limitConfig.initialLimit() <= limitConfig.maxLimit(),
+                    "initialLimit must be in [minLimit, maxLimit]");
+        }
+        Preconditions.checkArgument(limitConfig.maxWait() != null && !limitConfig.maxWait().isNegative(), "maxWait can't be null or negative");
+        this.limitConfig = limitConfig;
+        return this;
+    }
+
+    /**
+     * The compression of the KV requests, the codec per table or RPC method and the size below which a request is sent
+     * uncompressed. If not set the {@code CompressionConfig.DEFAULT} is used, snappy for requests of at least 512 bytes.
+     *
+     * @param compressionConfig The compression configuration.
+     * @return this builder
+     */
+    public ClientBuilder compression(CompressionConfig compressionConfig) {
+        Preconditions.checkArgument(compressionConfig != null, "compressionConfig can't be null");
+        Preconditions.checkArgument(!Strings.isNullOrEmpty(compressionConfig.codec()), "codec can't be null or empty");
+        Preconditions.checkArgument(compressionConfig.minMessageSize() >= 0, "minMessageSize can't be negative");
+        this.compressionConfig = compressionConfig;
+        return this;
+    }
+
+    /**
+     * The tables whose values are compressed by the client with dictionaries trained on their values, see
+     * {@link Client#getValueDictionaries()}. If not set the {@code ValueCompressionConfig.DISABLED} is used, the values
+     * are stored as written.
+     *
+     * @param valueCompressionConfig The value compression configuration.
+     * @return this builder
+     */
+    public ClientBuilder valueCompression(ValueCompressionConfig valueCompressionConfig) {
+        Preconditions.checkArgument(valueCompressionConfig != null, "valueCompressionConfig can't be null");
+        Preconditions.checkArgument(valueCompressionConfig.level() >= 1 && valueCompressionConfig.level() <= 9, "level must be in [1, 9]");
+        Preconditions.checkArgument(valueCompressionConfig.dictionarySize() > 0
+                && valueCompressionConfig.dictionarySize() <= ValueCompressionConfig.MAX_DICTIONARY_SIZE, "dictionarySize must be in [1, 32768]");
+        Preconditions.checkArgument(valueCompressionConfig.sampleSize() > 0, "sampleSize must be positive");
+        Preconditions.checkArgument(valueCompressionConfig.refreshInterval() != null
+                && !valueCompressionConfig.refreshInterval().isNegative() && !valueCompressionConfig.refreshInterval().isZero(),
+                "refreshInterval can't be null or non-positive");
+        this.valueCompressionConfig = valueCompressionConfig;
+        return this;
+    }
+
+    /**
+     * Registers a codec in addition to {@code identity}, {@code snappy} and {@code gzip}, for example a zstd or lz4
+     * codec, so that it can be used by the {@link CompressionConfig} and decompress the responses. The server must
+     * support the codec under the same message encoding.
+     *
+     * @param codec the codec to register
+     * @param <C>   type of the codec
+     * @return this builder
+     */
+    public <C extends Compressor & Decompressor> ClientBuilder codec(C codec) {
+        Preconditions.checkArgument(codec != null, "codec can't be null");
+        this.codecs.add(codec);
+        return this;
+    }
+
+    /**
+     * Number of channels the calls are spread over. Each channel opens its own connection to every server, a new call
+     * goes to the channel with the least calls in progress. Use more than one channel when a single HTTP/2
+     * connection per server limits the throughput. Defaults to 1.
+     *
+     * @param channelPoolSize number of channels.
+     * @return this builder
+     */
+    public ClientBuilder channelPoolSize(int channelPoolSize) {
+        Preconditions.checkArgument(channelPoolSize > 0, "channelPoolSize must be greater than 0");
+        this.channelPoolSize = channelPoolSize;
+        return this;
+    }
+
+    /**
+     * Send writes and linearizable reads directly to the raft leader instead of a round-robin picked member which
+     * would forward them to the leader. The leader is learned from the responses, until then and for serializable
+     * reads the calls are balanced round-robin. Disabled by default, all calls are balanced round-robin.
+     *
+     * @param leaderRouting whether to route to the leader.
+     * @return this builder
+     */
+    public ClientBuilder leaderRouting(boolean leaderRouting) {
+        this.leaderRouting = leaderRouting;
+        return this;
+    }
+
+    /**
+     * Records latency, calls in flight, payload sizes, attempts and status codes of every RPC and of every operation
+     * of the client, tagged by RPC method, table and consistency. Use {@link com.jamf.regatta.core.metrics.ObservationClientMetrics} to record them
+     * with Micrometer. Disabled by default.
+     *
+     * @param metrics receiver of the metrics.
+     * @return this builder
+     */
+    public ClientBuilder metrics(ClientMetrics metrics) {
+        Preconditions.checkArgument(metrics != null, "metrics can't be null");
+        this.metrics = metrics;
+        return this;
+    }
 
     /**
      * build a new Client.
@@ -157,17 +338,44 @@ public class ClientBuilder {
         }
 
         var compressorRegistry = CompressorRegistry.newEmptyInstance();
-        compressorRegistry.register(Codec.Identity.NONE);
-        compressorRegistry.register(SnappyCodec.INSTANCE);
+        var decompressorRegistry = DecompressorRegistry.emptyInstance();
+        var encodings = new HashSet<String>();
+        for (var codec : codecs) {
+            compressorRegistry.register(codec);
+            decompressorRegistry = decompressorRegistry.with((Decompressor) codec, codec != Codec.Identity.NONE);
+            encodings.add(codec.getMessageEncoding());
+        }
+        Preconditions.checkState(encodings.contains(compressionConfig.codec())
+                && encodings.containsAll(compressionConfig.tables().values())
+                && encodings.containsAll(compressionConfig.methods().values()), "compression uses a codec which is not registered");
         channelBuilder.compressorRegistry(compressorRegistry);
-
-        var decompressorRegistry = DecompressorRegistry.emptyInstance()
-                .with(Codec.Identity.NONE, false)
-                .with(SnappyCodec.INSTANCE, true);
         channelBuilder.decompressorRegistry(decompressorRegistry);
-        channelBuilder.defaultLoadBalancingPolicy("round_robin");
+        if (leaderRouting) {
+            channelBuilder.intercept(new LeaderTracker());
+        }
+        if (leaderRouting || hedgeConfig.budget() > 0) {
+            // round-robin without a leader tracker, but only this policy sends a hedge to another member
+            channelBuilder.defaultLoadBalancingPolicy(LeaderAffinityLoadBalancer.POLICY_NAME);
+        } else {
+            channelBuilder.defaultLoadBalancingPolicy("round_robin");
+        }
+        if (metrics != null) {
+            // intercepted last, so that it runs first and times the RPCs as seen by the caller
+            channelBuilder.intercept(new MetricsInterceptor(metrics));
+        }
+
+        ManagedChannel channel;
+        if (channelPoolSize > 1) {
+            var channels = new ArrayList<ManagedChannel>(channelPoolSize);
+            for (int i = 0; i < channelPoolSize; i++) {
+                channels.add(channelBuilder.build());
+            }
+            channel = new ChannelPool(channels);
+        } else {
+            channel = channelBuilder.build();
+        }
 
-        return new ClientImpl(channelBuilder.build(), retryConfig);
+        return new ClientImpl(channel, retryConfig, batchConfig, cacheConfig, hedgeConfig, limitConfig, compressionConfig, valueCompressionConfig);
     }
 
     private static SslContextBuilder toSslContextBuilder(SSLFactory sslFactory) {
@@ -0,0 +1,40 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+
+import java.util.Map;
+
+/**
+ * Configuration of the compression of the KV requests. The codec of a request is the one of its table, otherwise the
+ * one of its RPC method, otherwise {@code codec}. A request smaller than {@code minMessageSize} is sent uncompressed,
+ * the framing and checksum of a codec cost more than they save on a few bytes. The responses are compressed by the
+ * server, usually with the codec of the request. Every codec must be registered with the client and supported by the
+ * server.
+ *
+ * @param codec          message encoding of the requests, {@code snappy}, {@code gzip}, a codec registered by
+ *                       {@link ClientBuilder#codec(io.grpc.Compressor)} or {@code identity} for no compression.
+ * @param minMessageSize requests of fewer serialized bytes are not compressed. {@code 0} compresses every request.
+ * @param tables         codecs of the requests on the given tables.
+ * @param methods        codecs of the requests of the given RPC methods, {@code Range}, {@code IterateRange},
+ *                       {@code Put}, {@code DeleteRange} or {@code Txn}.
+ */
+public record CompressionConfig(
+        String codec,
+        int minMessageSize,
+        Map<ByteSequence, String> tables,
+        Map<String, String> methods
+) {
+    public static final CompressionConfig DEFAULT = new CompressionConfig(SnappyCodec.NAME, 512, Map.of(), Map.of());
+
+    public static final CompressionConfig DISABLED = new CompressionConfig("identity", 0, Map.of(), Map.of());
+
+    public CompressionConfig {
+        tables = Map.copyOf(tables);
+        methods = Map.copyOf(methods);
+    }
+}
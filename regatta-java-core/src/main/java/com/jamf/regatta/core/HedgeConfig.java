@@ -0,0 +1,26 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import java.time.Duration;
+
+/**
+ * Configuration of hedged reads. A serializable read, or a read-only transaction, not answered within the hedging
+ * delay is sent once more to another member, the first response wins and the other call is cancelled.
+ *
+ * @param delay      how long a call waits for its response before it is hedged. If a percentile is set, the delay is
+ *                   used only until enough latencies were observed.
+ * @param percentile percentile of the observed latencies after which a call is hedged, for example {@code 0.95}.
+ *                   {@code 0} to always wait for {@code delay}.
+ * @param budget     maximal ratio of hedged calls to all calls, for example {@code 0.1} hedges at most every tenth
+ *                   call. {@code 0} disables hedging.
+ */
+public record HedgeConfig(
+        Duration delay,
+        double percentile,
+        double budget
+) {
+    public static final HedgeConfig DISABLED = new HedgeConfig(Duration.ZERO, 0, 0);
+}
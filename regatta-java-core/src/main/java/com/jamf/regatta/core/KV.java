@@ -10,6 +10,9 @@ import com.jamf.regatta.core.options.GetOption;
 import com.jamf.regatta.core.options.PutOption;
 import com.jamf.regatta.core.options.TxnOption;
 
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public interface KV extends CloseableClient {
@@ -52,6 +55,54 @@ public interface KV extends CloseableClient {
      */
     GetResponse get(ByteSequence table, ByteSequence key, GetOption option);
 
+    /**
+     * read a page of the range {@code [start, end)} in key order. The next page is read by passing
+     * {@link Page#continuation()} as {@code start} while keeping the other arguments, no server side state is kept
+     * between the calls. Only the {@code serializable}, {@code keysOnly} and timeout settings of the option apply.
+     *
+     * @param table    table in ByteSequence
+     * @param start    first key of the page in ByteSequence
+     * @param end      exclusive end of the range in ByteSequence, '\0' for all keys {@literal >=} start
+     * @param pageSize maximal number of key-values in the page
+     * @return Page
+     */
+    Page page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize);
+
+    /**
+     * read a page of the range {@code [start, end)} in key order. The next page is read by passing
+     * {@link Page#continuation()} as {@code start} while keeping the other arguments, no server side state is kept
+     * between the calls. Only the {@code serializable}, {@code keysOnly} and timeout settings of the option apply.
+     *
+     * @param table    table in ByteSequence
+     * @param start    first key of the page in ByteSequence
+     * @param end      exclusive end of the range in ByteSequence, '\0' for all keys {@literal >=} start
+     * @param pageSize maximal number of key-values in the page
+     * @return Page
+     */
+    Page page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option);
+
+    /**
+     * retrieve values for the given keys. Keys are looked up in parallel chunks of read-only transactions, or with a
+     * single bounded range scan if they densely populate a narrow interval. Range related settings of the option
+     * ({@code limit}, {@code endKey}, {@code prefix}, {@code countOnly}) are ignored.
+     *
+     * @param table table in ByteSequence
+     * @param keys  keys in ByteSequence
+     * @return map of the found key-values ordered by key, missing keys are absent
+     */
+    SortedMap<ByteSequence, KeyValue> getAll(ByteSequence table, Collection<ByteSequence> keys);
+
+    /**
+     * retrieve values for the given keys. Keys are looked up in parallel chunks of read-only transactions, or with a
+     * single bounded range scan if they densely populate a narrow interval. Range related settings of the option
+     * ({@code limit}, {@code endKey}, {@code prefix}, {@code countOnly}) are ignored.
+     *
+     * @param table table in ByteSequence
+     * @param keys  keys in ByteSequence
+     * @return map of the found key-values ordered by key, missing keys are absent
+     */
+    SortedMap<ByteSequence, KeyValue> getAll(ByteSequence table, Collection<ByteSequence> keys, GetOption option);
+
     /**
      * retrieve values for the given keys.
      *
@@ -70,6 +121,35 @@ public interface KV extends CloseableClient {
      */
     Stream<GetResponse> iterate(ByteSequence table, ByteSequence key, GetOption option);
 
+    /**
+     * retrieve values for the given keys reading several sub-ranges concurrently. The range is cut into at most
+     * {@code parallelism} sub-ranges at existing keys, each of them is read by its own server stream once the
+     * returned parallel stream splits its work. The {@code limit} and {@code countOnly} settings of the option are
+     * ignored.
+     *
+     * @param table       table in ByteSequence
+     * @param key         key in ByteSequence
+     * @param option      option defining the range
+     * @param parallelism maximal number of sub-ranges
+     * @return parallel Stream of key-values in key order
+     */
+    Stream<KeyValue> scan(ByteSequence table, ByteSequence key, GetOption option, int parallelism);
+
+    /**
+     * retrieve values for the given keys reading several sub-ranges concurrently and pass them to the consumer. The
+     * range is cut into at most {@code parallelism} sub-ranges at existing keys, all of them are read at the same
+     * time. The consumer is called concurrently from multiple threads, key-values of a single sub-range are passed
+     * in key order. Returns once all the sub-ranges were consumed, the first failure cancels the remaining
+     * sub-ranges and is rethrown. The {@code limit} and {@code countOnly} settings of the option are ignored.
+     *
+     * @param table       table in ByteSequence
+     * @param key         key in ByteSequence
+     * @param option      option defining the range
+     * @param parallelism maximal number of sub-ranges
+     * @param consumer    thread-safe consumer of the key-values
+     */
+    void scan(ByteSequence table, ByteSequence key, GetOption option, int parallelism, Consumer<? super KeyValue> consumer);
+
     /**
      * delete value with given key.
      *
@@ -88,6 +168,24 @@ public interface KV extends CloseableClient {
      */
     DeleteResponse delete(ByteSequence table, ByteSequence key, DeleteOption option);
 
+    /**
+     * returns the operations of a single table, with the table name encoded once and default options.
+     *
+     * @param name table name
+     * @return TableKV
+     */
+    default TableKV table(String name) {
+        return table(ByteSequence.fromUtf8String(name));
+    }
+
+    /**
+     * returns the operations of a single table, with default options.
+     *
+     * @param name table in ByteSequence
+     * @return TableKV
+     */
+    TableKV table(ByteSequence name);
+
     /**
      * creates a transaction.
      *
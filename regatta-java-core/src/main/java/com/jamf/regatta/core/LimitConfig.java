@@ -0,0 +1,27 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the adaptive concurrency limit of the KV clients. Every table has its own limit for reads and for
+ * writes. A limit grows while the latency stays close to the lowest observed one. It shrinks once calls start queueing
+ * up on the server or fail with a timeout or an overload.
+ *
+ * @param initialLimit number of concurrent calls allowed before any latency was observed, in {@code [minLimit, maxLimit]}.
+ * @param minLimit     the limit never drops below this number of concurrent calls, at least {@code 1}.
+ * @param maxLimit     the limit never grows above this number of concurrent calls. {@code 0} disables the limit.
+ * @param maxWait      how long a call waits for a free slot once the limit is reached before it fails with
+ *                     {@code RESOURCE_EXHAUSTED}. {@code Duration.ZERO} to fail immediately.
+ */
+public record LimitConfig(
+        int initialLimit,
+        int minLimit,
+        int maxLimit,
+        Duration maxWait
+) {
+    public static final LimitConfig DISABLED = new LimitConfig(0, 0, 0, Duration.ZERO);
+}
@@ -7,13 +7,32 @@ package com.jamf.regatta.core;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 
+/**
+ * Configuration of the retries of failed calls. A retry is skipped if it could not finish before the deadline of the
+ * call.
+ *
+ * @param maxAttempts maximal number of retries of a call.
+ * @param delay       backoff before the first retry, doubled with every retry.
+ * @param maxDelay    maximal backoff between retries.
+ * @param unit        unit of {@code delay} and {@code maxDelay}.
+ * @param maxDuration maximal duration of a call including its retries, {@code null} for no limit.
+ * @param budget      maximal ratio of retries to calls of a client, for example {@code 0.2} retries at most every
+ *                    fifth call once a small initial reserve is used up. {@code 0} for no limit.
+ */
 public record RetryConfig(
         int maxAttempts,
         int delay,
         int maxDelay,
         ChronoUnit unit,
-        Duration maxDuration
+        Duration maxDuration,
+        double budget
 ) {
+    public static final double DEFAULT_BUDGET = 0.2;
+
     public static final RetryConfig DEFAULT = new RetryConfig(4, 50, 1000, ChronoUnit.MILLIS, null);
     public static final RetryConfig NO_RETRY = new RetryConfig(0, 1, 10, ChronoUnit.MILLIS, null);
+
+    public RetryConfig(int maxAttempts, int delay, int maxDelay, ChronoUnit unit, Duration maxDuration) {
+        this(maxAttempts, delay, maxDelay, unit, maxDuration, DEFAULT_BUDGET);
+    }
 }
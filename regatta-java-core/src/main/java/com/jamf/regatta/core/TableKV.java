@@ -0,0 +1,154 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.*;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+
+/**
+ * The {@link KV} operations of a single table, returned by {@link KV#table(String)}. The operations without an option
+ * use the defaults of the handle, e.g. serializable gets with a timeout of the table. The table name is encoded and
+ * the requests of the default options are prepared once per handle, so that a handle kept for a hot path builds
+ * neither options nor the common part of its requests on every call.
+ */
+public interface TableKV {
+
+    /**
+     * @return the table name.
+     */
+    ByteSequence name();
+
+    /**
+     * returns a handle of the table whose gets, pages, iterations and scans use the option by default.
+     *
+     * @param option default option of the reads
+     * @return TableKV
+     */
+    TableKV withGetOption(GetOption option);
+
+    /**
+     * returns a handle of the table whose puts use the option by default.
+     *
+     * @param option default option of the puts
+     * @return TableKV
+     */
+    TableKV withPutOption(PutOption option);
+
+    /**
+     * returns a handle of the table whose deletes use the option by default.
+     *
+     * @param option default option of the deletes
+     * @return TableKV
+     */
+    TableKV withDeleteOption(DeleteOption option);
+
+    /**
+     * returns a handle of the table whose transactions use the option by default.
+     *
+     * @param option default option of the transactions
+     * @return TableKV
+     */
+    TableKV withTxnOption(TxnOption option);
+
+    /**
+     * put a key-value pair into the table with the default option.
+     *
+     * @param key   key in ByteSequence
+     * @param value value in ByteSequence
+     * @return PutResponse
+     */
+    PutResponse put(ByteSequence key, ByteSequence value);
+
+    /**
+     * put a key-value pair into the table.
+     *
+     * @param key   key in ByteSequence
+     * @param value value in ByteSequence
+     * @return PutResponse
+     */
+    PutResponse put(ByteSequence key, ByteSequence value, PutOption option);
+
+    /**
+     * retrieve value for the given key with the default option.
+     *
+     * @param key key in ByteSequence
+     * @return GetResponse
+     */
+    GetResponse get(ByteSequence key);
+
+    /**
+     * retrieve value for the given key.
+     *
+     * @param key key in ByteSequence
+     * @return GetResponse
+     */
+    GetResponse get(ByteSequence key, GetOption option);
+
+    /**
+     * read a page of the range {@code [start, end)} with the default option, see {@link KV#page}.
+     *
+     * @param start    first key of the page in ByteSequence
+     * @param end      exclusive end of the range in ByteSequence, '\0' for all keys {@literal >=} start
+     * @param pageSize maximal number of key-values in the page
+     * @return Page
+     */
+    Page page(ByteSequence start, ByteSequence end, int pageSize);
+
+    /**
+     * retrieve values for the given keys with the default option, see {@link KV#getAll}.
+     *
+     * @param keys keys in ByteSequence
+     * @return map of the found key-values ordered by key, missing keys are absent
+     */
+    SortedMap<ByteSequence, KeyValue> getAll(Collection<ByteSequence> keys);
+
+    /**
+     * retrieve values from the given key with the default option.
+     *
+     * @param key key in ByteSequence
+     * @return Stream of responses
+     */
+    Stream<GetResponse> iterate(ByteSequence key);
+
+    /**
+     * retrieve values from the given key reading several sub-ranges concurrently with the default option, see
+     * {@link KV#scan(ByteSequence, ByteSequence, GetOption, int)}.
+     *
+     * @param key         key in ByteSequence
+     * @param parallelism maximal number of sub-ranges
+     * @return parallel Stream of key-values in key order
+     */
+    Stream<KeyValue> scan(ByteSequence key, int parallelism);
+
+    /**
+     * delete value with given key with the default option.
+     *
+     * @param key key in ByteSequence
+     * @return DeleteResponse
+     */
+    DeleteResponse delete(ByteSequence key);
+
+    /**
+     * delete value with given key.
+     *
+     * @param key key in ByteSequence
+     * @return DeleteResponse
+     */
+    DeleteResponse delete(ByteSequence key, DeleteOption option);
+
+    /**
+     * creates a transaction on the table with the default option.
+     *
+     * @return a Txn
+     */
+    Txn txn();
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.ByteSequence;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Configuration of the compression of the values of tables by the client. A value is compressed on its own with deflate
+ * and a dictionary trained on the values of its table by {@link ValueDictionaries#train(ByteSequence)}, small values
+ * which share most of their content, like JSON documents of one schema, shrink several times. The values are stored
+ * with the id of their dictionary, so that a table can be trained again while its older values remain readable.
+ * <p>
+ * The dictionaries are stored in their table, under the reserved keys below {@code \0\1}, that is {@code \0} and the
+ * keys starting with {@code \0\0}. Ranges read or deleted by the clients start after them, requests which only reach
+ * reserved keys, like putting one of them, fail with {@code INVALID_ARGUMENT}. Transactions comparing values of the
+ * tables fail with {@code INVALID_ARGUMENT} too, the server would compare them with the stored, compressed values.
+ *
+ * @param tables          tables whose values are compressed.
+ * @param level           deflate level, from {@code 1} for the fastest to {@code 9} for the smallest values.
+ * @param dictionarySize  maximum size of a trained dictionary, at most 32 KiB, the window of deflate.
+ * @param sampleSize      number of values read from the start of a table to train its dictionary.
+ * @param refreshInterval interval of reloading the dictionaries of a table, to use those trained by other clients.
+ */
+public record ValueCompressionConfig(
+        Set<ByteSequence> tables,
+        int level,
+        int dictionarySize,
+        int sampleSize,
+        Duration refreshInterval
+) {
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    public static final ValueCompressionConfig DISABLED = new ValueCompressionConfig(Set.of(), 6, 16 * 1024, 1000, Duration.ofMinutes(1));
+
+    public ValueCompressionConfig {
+        tables = Set.copyOf(tables);
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core;
+
+import com.jamf.regatta.core.api.ByteSequence;
+
+/**
+ * Dictionaries of the tables whose values are compressed by the client, configured by
+ * {@link ClientBuilder#valueCompression(ValueCompressionConfig)}.
+ */
+public interface ValueDictionaries {
+
+	/**
+	 * Trains a dictionary on the values at the start of the table, stores it and compresses the values written from
+	 * now on with it. Other clients use it once they reload the dictionaries of the table.
+	 *
+	 * @param table table whose values are compressed.
+	 * @return the id of the new dictionary.
+	 */
+	int train(ByteSequence table);
+
+	/**
+	 * Returns the dictionary the values of the table are compressed with.
+	 *
+	 * @param table table whose values are compressed.
+	 * @return the id of the dictionary, {@code 0} if the table has not been trained yet.
+	 */
+	int current(ByteSequence table);
+}
@@ -5,24 +5,25 @@
 package com.jamf.regatta.core.api;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Objects;
 
 /**
- * Etcd binary bytes, easy to convert between byte[], String and ByteString.
+ * Etcd binary bytes, easy to convert between byte[], String and ByteString. Sequences are ordered by unsigned
+ * lexicographical comparison of their bytes, which is the order keys are stored in.
  */
-public final class ByteSequence {
+public final class ByteSequence implements Comparable<ByteSequence> {
     public static final ByteSequence EMPTY = new ByteSequence(ByteString.EMPTY);
     public static final ByteSequence NAMESPACE_DELIMITER = ByteSequence.from(new byte[]{'/'});
 
-    private final int hashVal;
     private final ByteString byteString;
 
     private ByteSequence(ByteString byteString) {
         Objects.requireNonNull(byteString, "byteString should not be null");
         this.byteString = byteString;
-        this.hashVal = byteString.hashCode();
     }
 
     public static ByteSequence fromUtf8String(String source) {
@@ -37,8 +38,7 @@ public final class ByteSequence {
      * @return the ByteSequence
      */
     public static ByteSequence from(String source, Charset charset) {
-        byte[] bytes = source.getBytes(charset);
-        return new ByteSequence(ByteString.copyFrom(bytes));
+        return new ByteSequence(ByteString.copyFrom(source, charset));
     }
 
     /**
@@ -61,6 +61,28 @@ public final class ByteSequence {
         return new ByteSequence(ByteString.copyFrom(source));
     }
 
+    /**
+     * Create new ByteSequence backed by the given bytes without copying them. The array must not be modified
+     * afterwards, otherwise the content of the ByteSequence changes as well.
+     *
+     * @param source input bytes
+     * @return the ByteSequence
+     */
+    public static ByteSequence wrap(byte[] source) {
+        return new ByteSequence(UnsafeByteOperations.unsafeWrap(source));
+    }
+
+    /**
+     * Create new ByteSequence backed by the remaining bytes of the given buffer without copying them. Neither the
+     * buffer content nor its position and limit may be modified afterwards.
+     *
+     * @param source input buffer
+     * @return the ByteSequence
+     */
+    public static ByteSequence wrap(ByteBuffer source) {
+        return new ByteSequence(UnsafeByteOperations.unsafeWrap(source));
+    }
+
     /**
      * Tests if this <code>ByteSequence</code> starts with the specified prefix.
      *
@@ -132,28 +154,58 @@ public final class ByteSequence {
         }
         if (obj instanceof ByteSequence) {
             ByteSequence other = (ByteSequence) obj;
-            if (other.hashCode() != hashCode()) {
-                return false;
-            }
             return byteString.equals(other.byteString);
         } else {
             return false;
         }
     }
 
+    /**
+     * The hash is computed on first use and cached by the underlying {@link ByteString}, so sequences that are never
+     * hashed never pay for scanning their content.
+     */
     @Override
     public int hashCode() {
-        return hashVal;
+        return byteString.hashCode();
+    }
+
+    @Override
+    public int compareTo(ByteSequence other) {
+        return ByteString.unsignedLexicographicalComparator().compare(byteString, other.byteString);
     }
 
     public String toString(Charset charset) {
         return byteString.toString(charset);
     }
 
+    /**
+     * Returns a copy of the bytes. Prefer {@link #getByteString()} when the bytes are passed on to protobuf or gRPC.
+     *
+     * @return copy of the bytes
+     */
     public byte[] getBytes() {
         return byteString.toByteArray();
     }
 
+    /**
+     * Returns the underlying immutable {@link ByteString} without copying.
+     *
+     * @return the ByteString
+     */
+    public ByteString getByteString() {
+        return byteString;
+    }
+
+    /**
+     * Returns a read-only {@link ByteBuffer} view of the bytes, the content is copied only if the underlying
+     * {@link ByteString} is not backed by a single contiguous buffer.
+     *
+     * @return read-only buffer
+     */
+    public ByteBuffer asReadOnlyByteBuffer() {
+        return byteString.asReadOnlyByteBuffer();
+    }
+
     public boolean isEmpty() {
         return byteString.isEmpty();
     }
@@ -6,5 +6,12 @@ package com.jamf.regatta.core.api;
 
 import java.util.List;
 
-public record GetResponse(Header header, List<KeyValue> kvs, long count) implements Response {
+/**
+ * @param more {@code true} if the range contains more keys than returned because of the limit
+ */
+public record GetResponse(Header header, List<KeyValue> kvs, long count, boolean more) implements Response {
+
+    public GetResponse(Header header, List<KeyValue> kvs, long count) {
+        this(header, kvs, count, false);
+    }
 }
@@ -4,5 +4,17 @@
 
 package com.jamf.regatta.core.api;
 
-public record KeyValue(ByteSequence key, ByteSequence value) {
+/**
+ * A key-value pair.
+ *
+ * @param key            the key
+ * @param value          the value, empty if only keys were requested
+ * @param createRevision revision of the store when the key was created
+ * @param modRevision    revision of the store when the key was last modified
+ */
+public record KeyValue(ByteSequence key, ByteSequence value, long createRevision, long modRevision) {
+
+    public KeyValue(ByteSequence key, ByteSequence value) {
+        this(key, value, 0, 0);
+    }
 }
@@ -0,0 +1,18 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.api;
+
+import java.util.List;
+
+/**
+ * A page of a range read in key order.
+ *
+ * @param kvs          key-values of the page
+ * @param hasMore      {@code true} if the range contains keys past this page
+ * @param continuation start of the next page, pass it as the {@code start} of the next call. {@code null} if there
+ *                     are no more keys.
+ */
+public record Page(Header header, List<KeyValue> kvs, boolean hasMore, ByteSequence continuation) implements Response {
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.api.op;
+
+import com.jamf.regatta.core.api.AsyncTxn;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.TxnResponse;
+import com.jamf.regatta.proto.TxnRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public class AsyncTxnImpl implements AsyncTxn {
+    public static AsyncTxn newTxn(Function<TxnRequest, CompletableFuture<TxnResponse>> f, ByteSequence table) {
+        return new AsyncTxnImpl(f, table);
+    }
+
+    public AsyncTxnImpl(Function<TxnRequest, CompletableFuture<TxnResponse>> f, ByteSequence table) {
+        this.table = table;
+        this.requestF = f;
+    }
+
+    private final Function<TxnRequest, CompletableFuture<TxnResponse>> requestF;
+    private final ByteSequence table;
+    private final List<Cmp> cmpList = new ArrayList<>();
+    private final List<Op> successOpList = new ArrayList<>();
+    private final List<Op> failureOpList = new ArrayList<>();
+
+    @Override
+    public AsyncTxnImpl If(Cmp... cmps) {
+        cmpList.addAll(Arrays.asList(cmps));
+        return this;
+    }
+
+    @Override
+    public AsyncTxnImpl Then(Op... ops) {
+        successOpList.addAll(Arrays.asList(ops));
+        return this;
+    }
+
+    @Override
+    public AsyncTxnImpl Else(Op... ops) {
+        failureOpList.addAll(Arrays.asList(ops));
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<TxnResponse> commit() {
+        return this.requestF.apply(TxnImpl.toTxnRequest(this.table, this.cmpList, this.successOpList, this.failureOpList));
+    }
+}
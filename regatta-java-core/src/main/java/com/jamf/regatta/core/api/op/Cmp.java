@@ -23,7 +23,7 @@ public class Cmp {
     private final CmpTarget<?> target;
 
     public Cmp(ByteSequence key, Op compareOp, CmpTarget<?> target) {
-        this.key = ByteString.copyFrom(key.getBytes());
+        this.key = key.getByteString();
         this.op = compareOp;
         this.target = target;
     }
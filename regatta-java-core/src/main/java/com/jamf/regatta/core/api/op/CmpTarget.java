@@ -21,7 +21,7 @@ public abstract class CmpTarget<T> {
      * @return the value compare target
      */
     public static ValueCmpTarget value(ByteSequence value) {
-        return new ValueCmpTarget(ByteString.copyFrom(value.getBytes()));
+        return new ValueCmpTarget(value.getByteString());
     }
 
     private final Compare.CompareTarget target;
@@ -35,15 +35,15 @@ public abstract class Op {
     abstract RequestOp toRequestOp();
 
     public static PutOp put(ByteSequence key, ByteSequence value, PutOption option) {
-        return new PutOp(ByteString.copyFrom(key.getBytes()), ByteString.copyFrom(value.getBytes()), option);
+        return new PutOp(key.getByteString(), value.getByteString(), option);
     }
 
     public static GetOp get(ByteSequence key, GetOption option) {
-        return new GetOp(ByteString.copyFrom(key.getBytes()), option);
+        return new GetOp(key.getByteString(), option);
     }
 
     public static DeleteOp delete(ByteSequence key, DeleteOption option) {
-        return new DeleteOp(ByteString.copyFrom(key.getBytes()), option);
+        return new DeleteOp(key.getByteString(), option);
     }
 
     public static final class PutOp extends Op {
@@ -103,8 +103,8 @@ public abstract class Op {
         return RequestOp.Range.newBuilder()
                 .setKey(key)
                 .setRangeEnd(option.getEndKey()
-                        .map(byteSequence -> ByteString.copyFrom(byteSequence.getBytes()))
-                        .orElseGet(() -> option.isPrefix() ? ByteString.copyFrom(OptionsUtil.prefixEndOf(ByteSequence.from(key)).getBytes()) : ByteString.EMPTY)
+                        .map(ByteSequence::getByteString)
+                        .orElseGet(() -> option.isPrefix() ? OptionsUtil.prefixEndOf(ByteSequence.from(key)).getByteString() : ByteString.EMPTY)
                 )
                 .setCountOnly(option.isCountOnly())
                 .setLimit(option.getLimit())
@@ -125,8 +125,8 @@ public abstract class Op {
         return RequestOp.DeleteRange.newBuilder()
                 .setKey(key)
                 .setRangeEnd(option.getEndKey()
-                        .map(byteSequence -> ByteString.copyFrom(byteSequence.getBytes()))
-                        .orElseGet(() -> option.isPrefix() ? ByteString.copyFrom(OptionsUtil.prefixEndOf(ByteSequence.from(key)).getBytes()) : ByteString.EMPTY)
+                        .map(ByteSequence::getByteString)
+                        .orElseGet(() -> option.isPrefix() ? OptionsUtil.prefixEndOf(ByteSequence.from(key)).getByteString() : ByteString.EMPTY)
                 )
                 .setPrevKv(option.isPrevKV())
                 .build();
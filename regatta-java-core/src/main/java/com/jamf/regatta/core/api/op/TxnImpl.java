@@ -4,7 +4,6 @@
 
 package com.jamf.regatta.core.api.op;
 
-import com.google.protobuf.ByteString;
 import com.jamf.regatta.core.api.ByteSequence;
 import com.jamf.regatta.core.api.Txn;
 import com.jamf.regatta.core.api.TxnResponse;
@@ -63,23 +62,23 @@ public class TxnImpl implements Txn {
 
     @Override
     public TxnResponse commit() {
-        return this.requestF.apply(this.toTxnRequest());
+        return this.requestF.apply(toTxnRequest(this.table, this.cmpList, this.successOpList, this.failureOpList));
     }
 
-    private TxnRequest toTxnRequest() {
+    static TxnRequest toTxnRequest(ByteSequence table, List<Cmp> cmpList, List<Op> successOpList, List<Op> failureOpList) {
         TxnRequest.Builder requestBuilder = TxnRequest.newBuilder();
 
-        requestBuilder.setTable(ByteString.copyFrom(this.table.getBytes()));
+        requestBuilder.setTable(table.getByteString());
 
-        for (Cmp c : this.cmpList) {
+        for (Cmp c : cmpList) {
             requestBuilder.addCompare(c.toCompare());
         }
 
-        for (Op o : this.successOpList) {
+        for (Op o : successOpList) {
             requestBuilder.addSuccess(o.toRequestOp());
         }
 
-        for (Op o : this.failureOpList) {
+        for (Op o : failureOpList) {
             requestBuilder.addFailure(o.toRequestOp());
         }
 
@@ -0,0 +1,223 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.balancer;
+
+import com.google.auto.service.AutoService;
+import io.grpc.CallOptions;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.Status;
+
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load balancer sending the calls flagged with {@link #ROUTE_TO_LEADER} directly to the subchannel of the raft leader,
+ * saving the hop from a follower to the leader. All other calls, and the flagged calls while the leader is unknown or
+ * not connected, are balanced round-robin over the ready subchannels. The leader is learned by the
+ * {@link LeaderTracker} intercepting the calls of the channel.
+ */
+public final class LeaderAffinityLoadBalancer extends LoadBalancer {
+
+    public static final String POLICY_NAME = "regatta_leader_affinity";
+
+    /**
+     * Call option flagging a call to be sent to the raft leader.
+     */
+    public static final CallOptions.Key<Boolean> ROUTE_TO_LEADER = CallOptions.Key.createWithDefault("regatta-route-to-leader", false);
+
+    /**
+     * Call option shared by the attempts of a hedged call. The picker adds the addresses of the subchannel it picked
+     * and prefers the subchannels no other attempt was sent to.
+     */
+    public static final CallOptions.Key<Set<SocketAddress>> PICKED = CallOptions.Key.create("regatta-picked-addresses");
+
+    static final CallOptions.Key<LeaderTracker> TRACKER = CallOptions.Key.create("regatta-leader-tracker");
+
+    private final Helper helper;
+    private final Map<EquivalentAddressGroup, Subchannel> subchannels = new LinkedHashMap<>();
+    private final Map<Subchannel, ConnectivityStateInfo> states = new LinkedHashMap<>();
+
+    LeaderAffinityLoadBalancer(Helper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public Status acceptResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        var groups = resolvedAddresses.getAddresses();
+        if (groups.isEmpty()) {
+            var status = Status.UNAVAILABLE.withDescription("name resolver returned no addresses");
+            handleNameResolutionError(status);
+            return status;
+        }
+        var resolved = new HashSet<EquivalentAddressGroup>();
+        for (var group : groups) {
+            // attributes do not identify the server
+            var key = new EquivalentAddressGroup(group.getAddresses());
+            resolved.add(key);
+            if (subchannels.containsKey(key)) {
+                continue;
+            }
+            var subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder().setAddresses(group).build());
+            subchannels.put(key, subchannel);
+            states.put(subchannel, ConnectivityStateInfo.forNonError(ConnectivityState.IDLE));
+            subchannel.start(state -> onStateChange(subchannel, state));
+            subchannel.requestConnection();
+        }
+        var iterator = subchannels.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            if (!resolved.contains(entry.getKey())) {
+                states.remove(entry.getValue());
+                entry.getValue().shutdown();
+                iterator.remove();
+            }
+        }
+        updateBalancingState();
+        return Status.OK;
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (states.values().stream().noneMatch(state -> state.getState() == ConnectivityState.READY)) {
+            helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        subchannels.values().forEach(Subchannel::shutdown);
+        subchannels.clear();
+        states.clear();
+    }
+
+    private void onStateChange(Subchannel subchannel, ConnectivityStateInfo state) {
+        if (!states.containsKey(subchannel)) {
+            return;
+        }
+        if (state.getState() == ConnectivityState.IDLE) {
+            subchannel.requestConnection();
+        }
+        states.put(subchannel, state);
+        updateBalancingState();
+    }
+
+    private void updateBalancingState() {
+        var ready = subchannels.entrySet().stream()
+                .filter(entry -> states.get(entry.getValue()).getState() == ConnectivityState.READY)
+                .map(entry -> new Candidate(entry.getValue(), entry.getKey().getAddresses()))
+                .toList();
+        if (!ready.isEmpty()) {
+            helper.updateBalancingState(ConnectivityState.READY, new Picker(ready));
+            return;
+        }
+        var connecting = states.values().stream()
+                .anyMatch(state -> state.getState() == ConnectivityState.CONNECTING || state.getState() == ConnectivityState.IDLE);
+        if (connecting) {
+            helper.updateBalancingState(ConnectivityState.CONNECTING, new FixedPicker(PickResult.withNoResult()));
+            return;
+        }
+        var error = states.values().stream()
+                .map(ConnectivityStateInfo::getStatus)
+                .filter(status -> !status.isOk())
+                .findFirst()
+                .orElse(Status.UNAVAILABLE.withDescription("no ready subchannel"));
+        helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE, new FixedPicker(PickResult.withError(error)));
+    }
+
+    private record Candidate(Subchannel subchannel, List<SocketAddress> addresses) {
+
+        private boolean isPicked(Set<SocketAddress> picked) {
+            return picked != null && addresses.stream().anyMatch(picked::contains);
+        }
+
+        private PickResult pick(Set<SocketAddress> picked) {
+            if (picked != null) {
+                picked.addAll(addresses);
+            }
+            return PickResult.withSubchannel(subchannel);
+        }
+    }
+
+    private static final class Picker extends SubchannelPicker {
+
+        private final List<Candidate> ready;
+        private final AtomicInteger next = new AtomicInteger(ThreadLocalRandom.current().nextInt());
+
+        private Picker(List<Candidate> ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            var options = args.getCallOptions();
+            var picked = options.getOption(PICKED);
+            var tracker = options.getOption(TRACKER);
+            if (tracker != null && options.getOption(ROUTE_TO_LEADER)) {
+                var leader = tracker.leaderAddresses();
+                for (var candidate : ready) {
+                    if (candidate.addresses().stream().anyMatch(leader::contains) && !candidate.isPicked(picked)) {
+                        return candidate.pick(picked);
+                    }
+                }
+            }
+            var candidates = ready;
+            if (picked != null && !picked.isEmpty()) {
+                var others = ready.stream().filter(candidate -> !candidate.isPicked(picked)).toList();
+                if (!others.isEmpty()) {
+                    candidates = others;
+                }
+            }
+            return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size())).pick(picked);
+        }
+    }
+
+    private static final class FixedPicker extends SubchannelPicker {
+
+        private final PickResult result;
+
+        private FixedPicker(PickResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+
+    @AutoService(LoadBalancerProvider.class)
+    public static class Provider extends LoadBalancerProvider {
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public int getPriority() {
+            return 5;
+        }
+
+        @Override
+        public String getPolicyName() {
+            return POLICY_NAME;
+        }
+
+        @Override
+        public LoadBalancer newLoadBalancer(Helper helper) {
+            return new LeaderAffinityLoadBalancer(helper);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.balancer;
+
+import com.google.common.util.concurrent.Futures;
+import com.jamf.regatta.core.resolver.AbstractNameResolver;
+import com.jamf.regatta.proto.ClusterGrpc;
+import com.jamf.regatta.proto.DeleteRangeResponse;
+import com.jamf.regatta.proto.MemberListRequest;
+import com.jamf.regatta.proto.MemberListResponse;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.ResponseHeader;
+import com.jamf.regatta.proto.TxnResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Learns the raft leader for {@link LeaderAffinityLoadBalancer}. Installed as an interceptor of the channel it reads
+ * the {@link ResponseHeader} of every KV response, the {@code raft_leader_id} names the current leader and the member
+ * answering the call ({@code replica_id}) is mapped to the remote address of the call. A leader not seen answering a
+ * call yet is looked up in the client URLs of the {@code MemberList} response.
+ */
+public final class LeaderTracker implements ClientInterceptor {
+
+    static final Duration REFRESH_INTERVAL = Duration.ofSeconds(5);
+    static final Duration REFRESH_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeaderTracker.class);
+
+    private final Map<Long, Set<SocketAddress>> members = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long lastRefresh = System.nanoTime() - REFRESH_INTERVAL.toNanos();
+    private volatile long leaderId;
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        var call = next.newCall(method, callOptions.withOption(LeaderAffinityLoadBalancer.TRACKER, this));
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        var header = header(message);
+                        if (header != null) {
+                            observe(header, call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR), next);
+                        }
+                        super.onMessage(message);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    /**
+     * @return the member id of the last known leader, {@code 0} if not known.
+     */
+    public long leaderId() {
+        return leaderId;
+    }
+
+    /**
+     * @return the addresses of the last known leader, empty if the leader or its addresses are not known.
+     */
+    Set<SocketAddress> leaderAddresses() {
+        var leader = leaderId;
+        return leader == 0 ? Set.of() : members.getOrDefault(leader, Set.of());
+    }
+
+    void observe(ResponseHeader header, SocketAddress remote, Channel channel) {
+        var replica = header.getReplicaId();
+        if (replica != 0 && remote != null) {
+            members.compute(replica, (id, addresses) -> addresses != null && addresses.contains(remote) ? addresses : Set.of(remote));
+        }
+        var leader = header.getRaftLeaderId();
+        if (leader == 0) {
+            return;
+        }
+        leaderId = leader;
+        if (!members.containsKey(leader)) {
+            refresh(channel);
+        }
+    }
+
+    void members(MemberListResponse response) {
+        for (var member : response.getMembersList()) {
+            long id;
+            try {
+                id = Long.parseUnsignedLong(member.getId());
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring member with id {}", member.getId());
+                continue;
+            }
+            var addresses = new HashSet<SocketAddress>();
+            for (var url : member.getClientURLsList()) {
+                addresses.addAll(resolve(url));
+            }
+            if (!addresses.isEmpty()) {
+                // addresses seen answering a call take precedence
+                members.putIfAbsent(id, Set.copyOf(addresses));
+            }
+        }
+    }
+
+    private void refresh(Channel channel) {
+        var now = System.nanoTime();
+        if (now - lastRefresh < REFRESH_INTERVAL.toNanos() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        lastRefresh = now;
+        var future = ClusterGrpc.newFutureStub(channel)
+                .withDeadlineAfter(REFRESH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .memberList(MemberListRequest.getDefaultInstance());
+        // resolving the client URLs may block
+        future.addListener(() -> {
+            try {
+                members(Futures.getDone(future));
+            } catch (ExecutionException e) {
+                LOGGER.debug("Unable to list cluster members", e.getCause());
+            } finally {
+                refreshing.set(false);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+
+    private static Set<SocketAddress> resolve(String url) {
+        try {
+            var uri = URI.create(url);
+            if (uri.getHost() == null) {
+                return Set.of();
+            }
+            var port = uri.getPort() != -1 ? uri.getPort() : AbstractNameResolver.REGATTA_CLIENT_PORT;
+            var addresses = new HashSet<SocketAddress>();
+            for (var address : InetAddress.getAllByName(uri.getHost())) {
+                addresses.add(new InetSocketAddress(address, port));
+            }
+            return addresses;
+        } catch (IllegalArgumentException | UnknownHostException e) {
+            LOGGER.debug("Unable to resolve member URL {}", url, e);
+            return Set.of();
+        }
+    }
+
+    private static ResponseHeader header(Object message) {
+        if (message instanceof RangeResponse response) {
+            return response.getHeader();
+        } else if (message instanceof PutResponse response) {
+            return response.getHeader();
+        } else if (message instanceof DeleteRangeResponse response) {
+            return response.getHeader();
+        } else if (message instanceof TxnResponse response) {
+            return response.getHeader();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.encoding;
+
+import com.jamf.regatta.core.Preconditions;
+import io.grpc.Compressor;
+import io.grpc.Decompressor;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Snappy codec writing and reading the same framing format as {@link SnappyCodec}, without allocating the framed
+ * streams and their buffers for every message.
+ * <p>
+ * A message is compressed in blocks of 64 KiB through buffers kept by the compressing thread, gRPC writes and closes
+ * the compressing stream before the thread compresses the next message. A message is decompressed at once when it is
+ * first read, into a buffer borrowed from the reading thread and given back once the message is closed or read to its
+ * end. The messages are handed to the native compressor as heap arrays, the JNI binding accesses them without a copy.
+ * <p>
+ * The decompressed size of a message is known from its chunks before it is read, so it is checked here rather than by
+ * the size limit of gRPC, which applies to the decompressed stream as it is read. A chunk holds at most 64 KiB, as
+ * required by the framing format, and a message at most the maximal decoded size, 4 MiB by default, the maximal
+ * inbound message size of a gRPC channel.
+ */
+public final class PooledSnappyCodec implements Compressor, Decompressor {
+
+    public static final int DEFAULT_MAX_DECODED_SIZE = 4 * 1024 * 1024;
+    public static final PooledSnappyCodec INSTANCE = new PooledSnappyCodec(DEFAULT_MAX_DECODED_SIZE);
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    // buffers grown above this size for a large message are not kept by the thread
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    // a block is sent uncompressed unless it shrinks below this ratio, as done by the SnappyFramedOutputStream
+    private static final double MIN_COMPRESSION_RATIO = 0.85;
+    private static final int HEADER_SIZE = 8;
+    private static final int COMPRESSED_CHUNK = 0x00;
+    private static final int UNCOMPRESSED_CHUNK = 0x01;
+    private static final int STREAM_IDENTIFIER_CHUNK = 0xff;
+    private static final byte[] STREAM_IDENTIFIER = {(byte) STREAM_IDENTIFIER_CHUNK, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'};
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final int maxDecodedSize;
+
+    private PooledSnappyCodec(int maxDecodedSize) {
+        this.maxDecodedSize = maxDecodedSize;
+    }
+
+    /**
+     * Creates a codec decompressing messages up to the given size, for channels accepting larger inbound messages than
+     * the default.
+     *
+     * @param maxDecodedSize maximal decompressed size of a message in bytes.
+     * @return the codec.
+     */
+    public static PooledSnappyCodec withMaxDecodedSize(int maxDecodedSize) {
+        Preconditions.checkArgument(maxDecodedSize > 0, "maxDecodedSize must be greater than 0");
+        return new PooledSnappyCodec(maxDecodedSize);
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return SnappyCodec.NAME;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) {
+        var output = BUFFERS.get().output;
+        output.reset(os);
+        return output;
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) {
+        return new FramedInput(is, maxDecodedSize);
+    }
+
+    private static int maskedCrc(CRC32C crc, byte[] data, int offset, int length) {
+        crc.reset();
+        crc.update(data, offset, length);
+        var value = (int) crc.getValue();
+        return ((value >>> 15) | (value << 17)) + 0xa282ead8;
+    }
+
+    private static void writeHeader(byte[] buffer, int type, int length, int crc) {
+        buffer[0] = (byte) type;
+        buffer[1] = (byte) length;
+        buffer[2] = (byte) (length >>> 8);
+        buffer[3] = (byte) (length >>> 16);
+        buffer[4] = (byte) crc;
+        buffer[5] = (byte) (crc >>> 8);
+        buffer[6] = (byte) (crc >>> 16);
+        buffer[7] = (byte) (crc >>> 24);
+    }
+
+    private static int readInt24(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | (buffer[offset + 2] & 0xff) << 16;
+    }
+
+    private static int readInt32(byte[] buffer, int offset) {
+        return readInt24(buffer, offset) | (buffer[offset + 3] & 0xff) << 24;
+    }
+
+    /**
+     * The buffers of a thread.
+     */
+    private static final class Buffers {
+
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private final byte[] compressed = new byte[HEADER_SIZE + Snappy.maxCompressedLength(BLOCK_SIZE)];
+        private final CRC32C crc = new CRC32C();
+        private final FramedOutput output = new FramedOutput(this);
+        private byte[] input = new byte[BLOCK_SIZE];
+        private byte[] spare;
+
+        byte[] borrow(int size) {
+            var buffer = spare;
+            if (buffer != null && buffer.length >= size) {
+                spare = null;
+                return buffer;
+            }
+            return new byte[size <= BLOCK_SIZE ? BLOCK_SIZE : size];
+        }
+
+        void giveBack(byte[] buffer) {
+            if (buffer.length <= MAX_RETAINED_SIZE && (spare == null || spare.length < buffer.length)) {
+                spare = buffer;
+            }
+        }
+    }
+
+    private static final class FramedOutput extends OutputStream {
+
+        private final Buffers buffers;
+        private OutputStream out;
+        private int position;
+        private boolean started;
+
+        FramedOutput(Buffers buffers) {
+            this.buffers = buffers;
+        }
+
+        void reset(OutputStream out) {
+            this.out = out;
+            this.position = 0;
+            this.started = false;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == BLOCK_SIZE) {
+                writeBlock();
+            }
+            buffers.block[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (position == BLOCK_SIZE) {
+                    writeBlock();
+                }
+                var n = Math.min(len, BLOCK_SIZE - position);
+                System.arraycopy(b, off, buffers.block, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out == null) {
+                return;
+            }
+            if (position > 0 || !started) {
+                writeBlock();
+            }
+            var closed = out;
+            out = null;
+            closed.close();
+        }
+
+        private void writeBlock() throws IOException {
+            if (out == null) {
+                throw new IOException("stream closed");
+            }
+            if (!started) {
+                out.write(STREAM_IDENTIFIER);
+                started = true;
+            }
+            if (position == 0) {
+                return;
+            }
+            var block = buffers.block;
+            var compressed = buffers.compressed;
+            var crc = maskedCrc(buffers.crc, block, 0, position);
+            var compressedLength = Snappy.compress(block, 0, position, compressed, HEADER_SIZE);
+            if (compressedLength <= position * MIN_COMPRESSION_RATIO) {
+                writeHeader(compressed, COMPRESSED_CHUNK, compressedLength + 4, crc);
+                out.write(compressed, 0, HEADER_SIZE + compressedLength);
+            } else {
+                writeHeader(compressed, UNCOMPRESSED_CHUNK, position + 4, crc);
+                out.write(compressed, 0, HEADER_SIZE);
+                out.write(block, 0, position);
+            }
+            position = 0;
+        }
+    }
+
+    /**
+     * A decompressed message. It may be read by another thread than the one which received it, it is decompressed by
+     * the thread which reads it first.
+     */
+    private static final class FramedInput extends InputStream {
+
+        private final int maxSize;
+        private InputStream in;
+        private byte[] data;
+        private int position;
+        private int limit;
+
+        FramedInput(InputStream in, int maxSize) {
+            this.in = in;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            decode();
+            if (position == limit) {
+                release();
+                return -1;
+            }
+            return data[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            decode();
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                release();
+                return -1;
+            }
+            var n = Math.min(len, limit - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            decode();
+            var skipped = (int) Math.min(Math.max(n, 0), limit - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            decode();
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+            if (in != null) {
+                var closed = in;
+                in = null;
+                closed.close();
+            }
+        }
+
+        private void release() {
+            if (data != null) {
+                BUFFERS.get().giveBack(data);
+                data = null;
+                position = 0;
+                limit = 0;
+            }
+        }
+
+        private void decode() throws IOException {
+            if (in == null) {
+                return;
+            }
+            var buffers = BUFFERS.get();
+            var input = buffers.input;
+            var length = 0;
+            while (true) {
+                if (length == input.length) {
+                    input = Arrays.copyOf(input, input.length * 2);
+                }
+                var n = in.read(input, length, input.length - length);
+                if (n < 0) {
+                    break;
+                }
+                length += n;
+            }
+            if (input.length <= MAX_RETAINED_SIZE) {
+                buffers.input = input;
+            }
+            var closed = in;
+            in = null;
+            closed.close();
+
+            var size = decodedSize(input, length, maxSize);
+            var output = buffers.borrow(size);
+            var written = 0;
+            for (int offset = 0; offset < length; ) {
+                var type = input[offset] & 0xff;
+                var chunkLength = readInt24(input, offset + 1);
+                var chunk = offset + HEADER_SIZE;
+                if (type == COMPRESSED_CHUNK || type == UNCOMPRESSED_CHUNK) {
+                    var dataLength = type == COMPRESSED_CHUNK
+                            ? Snappy.uncompress(input, chunk, chunkLength - 4, output, written)
+                            : copy(input, chunk, chunkLength - 4, output, written);
+                    if (maskedCrc(buffers.crc, output, written, dataLength) != readInt32(input, offset + 4)) {
+                        buffers.giveBack(output);
+                        throw new IOException("invalid snappy chunk checksum");
+                    }
+                    written += dataLength;
+                }
+                offset += 4 + chunkLength;
+            }
+            data = output;
+            limit = written;
+        }
+
+        /**
+         * Validates the chunks of the stream and sums up the sizes of their data, before any of it is allocated.
+         */
+        private static int decodedSize(byte[] input, int length, int maxSize) throws IOException {
+            if (length < STREAM_IDENTIFIER.length || !Arrays.equals(input, 0, STREAM_IDENTIFIER.length, STREAM_IDENTIFIER, 0, STREAM_IDENTIFIER.length)) {
+                throw new IOException("missing snappy stream identifier");
+            }
+            long size = 0;
+            for (int offset = 0; offset < length; ) {
+                if (offset + 4 > length) {
+                    throw new IOException("truncated snappy chunk header");
+                }
+                var type = input[offset] & 0xff;
+                var chunkLength = readInt24(input, offset + 1);
+                if (offset + 4 + chunkLength > length) {
+                    throw new IOException("truncated snappy chunk");
+                }
+                if (type == COMPRESSED_CHUNK || type == UNCOMPRESSED_CHUNK) {
+                    if (chunkLength < 4) {
+                        throw new IOException("invalid snappy chunk length " + chunkLength);
+                    }
+                    var dataLength = type == COMPRESSED_CHUNK ? Snappy.uncompressedLength(input, offset + HEADER_SIZE, chunkLength - 4) : chunkLength - 4;
+                    if (dataLength > BLOCK_SIZE) {
+                        throw new IOException("snappy chunk data of " + dataLength + " bytes exceeds " + BLOCK_SIZE);
+                    }
+                    size += dataLength;
+                    if (size > maxSize) {
+                        throw new IOException("snappy stream exceeds the maximal decoded size of " + maxSize + " bytes");
+                    }
+                } else if (type < 0x80) {
+                    throw new IOException("unsupported unskippable snappy chunk type " + type);
+                }
+                offset += 4 + chunkLength;
+            }
+            return (int) size;
+        }
+
+        private static int copy(byte[] source, int offset, int length, byte[] target, int position) {
+            System.arraycopy(source, offset, target, position, length);
+            return length;
+        }
+    }
+}
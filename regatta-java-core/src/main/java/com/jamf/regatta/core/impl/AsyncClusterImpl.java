@@ -0,0 +1,38 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.AsyncCluster;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.MemberListResponse;
+import com.jamf.regatta.proto.ClusterGrpc;
+import com.jamf.regatta.proto.MemberListRequest;
+import io.grpc.Channel;
+
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncClusterImpl extends Impl implements AsyncCluster {
+
+    private final ClusterGrpc.ClusterFutureStub stub;
+
+    AsyncClusterImpl(Channel managedChannel, RetryConfig retryConfig) {
+        this(managedChannel, retryConfig, retryBudget(retryConfig));
+    }
+
+    AsyncClusterImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget) {
+        super(retryConfig, retryBudget);
+        stub = ClusterGrpc.newFutureStub(managedChannel);
+    }
+
+    @Override
+    public CompletableFuture<MemberListResponse> memberList() {
+        return executeAsync(
+                () -> stub.memberList(MemberListRequest.getDefaultInstance()),
+                ClusterImpl::toMemberListResponse,
+                RETRY_TRANSIENT
+        );
+    }
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.jamf.regatta.core.AsyncKV;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.CompressionConfig;
+import com.jamf.regatta.core.HedgeConfig;
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.*;
+import com.jamf.regatta.core.api.op.AsyncTxnImpl;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.balancer.LeaderAffinityLoadBalancer;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.TxnRequest;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class AsyncKVImpl extends Impl implements AsyncKV {
+
+    private final KVGrpc.KVFutureStub stub;
+    private final KVGrpc.KVStub streamingStub;
+    private final NearCache nearCache;
+    private final Hedger hedger;
+
+    AsyncKVImpl(Channel managedChannel, RetryConfig retryConfig) {
+        this(managedChannel, retryConfig, new NearCache(CacheConfig.DISABLED));
+    }
+
+    AsyncKVImpl(Channel managedChannel, RetryConfig retryConfig, NearCache nearCache) {
+        this(ClientInterceptors.intercept(managedChannel, new CompressionInterceptor(CompressionConfig.DEFAULT)), retryConfig,
+                retryBudget(retryConfig), nearCache, new Hedger(HedgeConfig.DISABLED), new ConcurrencyLimiter(LimitConfig.DISABLED));
+    }
+
+    AsyncKVImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget, NearCache nearCache, Hedger hedger, ConcurrencyLimiter limiter) {
+        super(retryConfig, retryBudget, limiter);
+        stub = KVGrpc.newFutureStub(managedChannel);
+        streamingStub = KVGrpc.newStub(managedChannel);
+        this.nearCache = nearCache;
+        this.hedger = hedger;
+    }
+
+    @Override
+    public CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value) {
+        return put(table, key, value, PutOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value, PutOption option) {
+        var request = KVImpl.putRequest(table, key, value, option);
+        return write(table, List.of(key), false, () -> executeAsync(
+                ConcurrencyLimiter.write(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> toLeader(stub).withDeadline(deadline).put(request),
+                KVImpl::toPutResponse,
+                RETRY_NEVER
+        ));
+    }
+
+    @Override
+    public CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key) {
+        return get(table, key, GetOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key, GetOption option) {
+        var request = KVImpl.rangeRequest(table, key, option);
+        return executeAsync(
+                ConcurrencyLimiter.read(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> read(option, deadline, routed -> routed.range(request)),
+                KVImpl::toGetResponse,
+                option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
+        );
+    }
+
+    @Override
+    public CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys) {
+        return getAll(table, keys, GetOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys, GetOption option) {
+        var sorted = new TreeSet<>(keys);
+        if (sorted.isEmpty()) {
+            return CompletableFuture.completedFuture(new TreeMap<>());
+        }
+        if (GetAllPlanner.isDense(sorted)) {
+            return scanAll(table, sorted, option);
+        }
+        return lookupAll(table, sorted, option);
+    }
+
+    private CompletableFuture<SortedMap<ByteSequence, KeyValue>> scanAll(ByteSequence table, NavigableSet<ByteSequence> keys, GetOption option) {
+        var request = GetAllPlanner.scanRequest(table, keys, option);
+        return executeAsync(
+                ConcurrencyLimiter.read(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> read(option, deadline, routed -> routed.range(request)),
+                Function.identity(),
+                option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
+        ).thenCompose(response -> {
+            var result = new TreeMap<ByteSequence, KeyValue>();
+            ByteSequence lastKey = null;
+            for (var kv : response.getKvsList()) {
+                var keyValue = KVImpl.toKeyValue(kv);
+                lastKey = keyValue.key();
+                if (keys.contains(lastKey)) {
+                    result.put(lastKey, keyValue);
+                }
+            }
+            if (!response.getMore()) {
+                return CompletableFuture.completedFuture(result);
+            }
+            // the interval was not as dense as estimated, look up the keys past the scanned ones
+            var remaining = lastKey == null ? keys : keys.tailSet(lastKey, false);
+            return lookupAll(table, remaining, option).thenApply(rest -> {
+                result.putAll(rest);
+                return result;
+            });
+        });
+    }
+
+    private CompletableFuture<SortedMap<ByteSequence, KeyValue>> lookupAll(ByteSequence table, NavigableSet<ByteSequence> keys, GetOption option) {
+        var txnOption = GetAllPlanner.txnOption(option);
+        var chunks = GetAllPlanner.chunks(keys, GetAllPlanner.lookupOption(option)).stream()
+                .map(ops -> txn(table, txnOption).Then(ops.toArray(Op[]::new)).commit())
+                .toList();
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        chunks.forEach(chunk -> chunk.cancel(false));
+                    }
+                })
+                .thenApply(ignored -> {
+                    SortedMap<ByteSequence, KeyValue> result = new TreeMap<>();
+                    for (var chunk : chunks) {
+                        for (var response : chunk.join().responses()) {
+                            for (var kv : response.getResponseRange().getKvsList()) {
+                                var keyValue = KVImpl.toKeyValue(kv);
+                                result.put(keyValue.key(), keyValue);
+                            }
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize) {
+        return page(table, start, end, pageSize, GetOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option) {
+        var request = KVImpl.pageRequest(table, start, end, pageSize, option);
+        return executeAsync(
+                ConcurrencyLimiter.read(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> route(stub, option).withDeadline(deadline).range(request),
+                KVImpl::toPage,
+                option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
+        );
+    }
+
+    @Override
+    public Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key) {
+        return iterate(table, key, GetOption.DEFAULT);
+    }
+
+    @Override
+    public Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key, GetOption option) {
+        return iterate(KVImpl.rangeRequest(table, key, option), option);
+    }
+
+    Flow.Publisher<KeyValue> iterate(RangeRequest request, GetOption option) {
+        return new RangePublisher(
+                (next, observer) -> route(streamingStub, option).withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).iterateRange(next, observer),
+                () -> new RangeResumption(request, retryConfig(), retryBudget(), option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT)
+        );
+    }
+
+    /**
+     * Opens a blocking iterator over the range which reads ahead according to the prefetch settings of the option.
+     */
+    PrefetchingRangeIterator prefetch(RangeRequest request, GetOption option) {
+        var iterator = new PrefetchingRangeIterator(
+                (next, observer) -> route(streamingStub, option).withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).iterateRange(next, observer),
+                new RangeResumption(request, retryConfig(), retryBudget(), option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT),
+                option.getPrefetchChunks(),
+                option.getPrefetchBytes()
+        );
+        iterator.open();
+        return iterator;
+    }
+
+    /**
+     * Subscribes to the publisher passing every key-value to the consumer on the thread it arrives on. Cancelling the
+     * returned future cancels the subscription.
+     */
+    CompletableFuture<Void> consume(Flow.Publisher<KeyValue> publisher, Consumer<? super KeyValue> consumer) {
+        var subscription = new AtomicReference<Flow.Subscription>();
+        var result = new CompletableFuture<Void>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                var current = subscription.get();
+                if (current != null) {
+                    current.cancel();
+                }
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(KeyValue item) {
+                try {
+                    consumer.accept(item);
+                } catch (RuntimeException e) {
+                    subscription.get().cancel();
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key) {
+        return delete(table, key, DeleteOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key, DeleteOption option) {
+        var request = KVImpl.deleteRangeRequest(table, key, option);
+        return write(table, List.of(key), !request.getRangeEnd().isEmpty(), () -> executeAsync(
+                ConcurrencyLimiter.write(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> toLeader(stub).withDeadline(deadline).deleteRange(request),
+                KVImpl::toDeleteResponse,
+                RETRY_NEVER
+        ));
+    }
+
+    @Override
+    public AsyncTxn txn(ByteSequence table) {
+        return txn(table, TxnOption.DEFAULT);
+    }
+
+    @Override
+    public AsyncTxn txn(ByteSequence table, TxnOption option) {
+        return AsyncTxnImpl.newTxn(request -> this.txn(request, option), table);
+    }
+
+    CompletableFuture<TxnResponse> txn(TxnRequest request, TxnOption option) {
+        var deadline = Deadline.after(option.getTimeout(), option.getTimeoutUnit());
+        if (KVImpl.isReadonlyTxn(request)) {
+            return executeAsync(
+                    ConcurrencyLimiter.read(ByteSequence.from(request.getTable())),
+                    deadline,
+                    attemptDeadline -> hedger.hedge(picked -> toLeader(stub).withDeadline(attemptDeadline).withOption(LeaderAffinityLoadBalancer.PICKED, picked).txn(request)),
+                    KVImpl::toTxnResponse,
+                    RETRY_TRANSIENT
+            );
+        }
+        return write(ByteSequence.from(request.getTable()), NearCache.writtenKeys(request), NearCache.writesRange(request), () -> executeAsync(
+                ConcurrencyLimiter.write(ByteSequence.from(request.getTable())),
+                deadline,
+                attemptDeadline -> toLeader(stub).withDeadline(attemptDeadline).txn(request),
+                KVImpl::toTxnResponse,
+                RETRY_NEVER
+        ));
+    }
+
+    /**
+     * Executes the write keeping the near cache shared with the {@link KVImpl} of the client consistent with it, the
+     * written keys (or the whole table if a range is written) are not served from the cache from the moment the write
+     * starts.
+     */
+    private <T extends Response> CompletableFuture<T> write(ByteSequence table, Collection<ByteSequence> keys, boolean range,
+                                                            Supplier<CompletableFuture<T>> call) {
+        if (!nearCache.isEnabled(table)) {
+            return call.get();
+        }
+        nearCache.started(table, keys, range);
+        CompletableFuture<T> response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            nearCache.finished(table, keys, range, 0);
+            throw e;
+        }
+        response.whenComplete((written, throwable) ->
+                nearCache.finished(table, keys, range, throwable == null ? written.header().getRevision() : 0));
+        return response;
+    }
+
+    /**
+     * Starts a read routed according to its consistency, serializable reads are hedged.
+     */
+    private <S> ListenableFuture<S> read(GetOption option, Deadline deadline, Function<KVGrpc.KVFutureStub, ListenableFuture<S>> call) {
+        var routed = route(stub, option).withDeadline(deadline);
+        if (!option.isSerializable()) {
+            return call.apply(routed);
+        }
+        return hedger.hedge(picked -> call.apply(routed.withOption(LeaderAffinityLoadBalancer.PICKED, picked)));
+    }
+}
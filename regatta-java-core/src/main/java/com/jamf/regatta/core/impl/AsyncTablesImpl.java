@@ -0,0 +1,84 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.AsyncTables;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.CreateTableResponse;
+import com.jamf.regatta.core.api.DeleteTableResponse;
+import com.jamf.regatta.core.api.ListTablesResponse;
+import com.jamf.regatta.core.options.TableOption;
+import com.jamf.regatta.proto.CreateTableRequest;
+import com.jamf.regatta.proto.DeleteTableRequest;
+import com.jamf.regatta.proto.ListTablesRequest;
+import com.jamf.regatta.proto.TablesGrpc;
+import io.grpc.Channel;
+import io.grpc.Deadline;
+
+import java.util.concurrent.CompletableFuture;
+
+public class AsyncTablesImpl extends Impl implements AsyncTables {
+
+    private final TablesGrpc.TablesFutureStub stub;
+
+    AsyncTablesImpl(Channel managedChannel, RetryConfig retryConfig) {
+        this(managedChannel, retryConfig, retryBudget(retryConfig));
+    }
+
+    AsyncTablesImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget) {
+        super(retryConfig, retryBudget);
+        stub = TablesGrpc.newFutureStub(managedChannel);
+    }
+
+    @Override
+    public CompletableFuture<CreateTableResponse> createTable(String name) {
+        return createTable(name, TableOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<CreateTableResponse> createTable(String name, TableOption option) {
+        var request = CreateTableRequest.newBuilder()
+                .setName(name)
+                .build();
+
+        return executeAsync(
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).create(request),
+                r -> new CreateTableResponse(r.getId()),
+                RETRY_NEVER);
+    }
+
+    @Override
+    public CompletableFuture<DeleteTableResponse> deleteTable(String name) {
+        return deleteTable(name, TableOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<DeleteTableResponse> deleteTable(String name, TableOption option) {
+        var request = DeleteTableRequest.newBuilder()
+                .setName(name)
+                .build();
+        return executeAsync(
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).delete(request),
+                r -> new DeleteTableResponse(),
+                RETRY_NEVER);
+    }
+
+    @Override
+    public CompletableFuture<ListTablesResponse> listTables() {
+        return listTables(TableOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<ListTablesResponse> listTables(TableOption option) {
+        return executeAsync(
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).list(ListTablesRequest.getDefaultInstance()),
+                TablesImpl::toListTablesResponse,
+                RETRY_TRANSIENT
+        );
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.AsyncKV;
+import com.jamf.regatta.core.BatchConfig;
+import com.jamf.regatta.core.api.*;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+import com.jamf.regatta.proto.ResponseOp;
+import io.grpc.Deadline;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncKV} which collects concurrent puts, gets and deletes per table and submits them together as the
+ * unconditional {@code success} ops of a single transaction. A batch is submitted once it reaches
+ * {@link BatchConfig#maxBatchSize()} operations or once {@link BatchConfig#linger()} elapses since its first
+ * operation, whichever comes first. Serializable gets, multi-gets, iterations and transactions are passed through.
+ * <p>
+ * The transaction of a batch times out with the strictest deadline of its callers. As a single invalid operation would
+ * otherwise fail all the unrelated callers of the batch, every operation is executed on its own, within the remaining
+ * deadline of its caller, once the server rejected the transaction before committing it. Any other failure leaves the
+ * outcome of the transaction unknown, its puts and deletes fail with it as they are never retried, only its gets are
+ * executed on their own.
+ */
+final class BatchingKVImpl implements AsyncKV {
+
+    private final AsyncKV kv;
+    private final BatchConfig config;
+    private final Executor lingerExecutor;
+    private final ConcurrentHashMap<ByteSequence, Batch> batches = new ConcurrentHashMap<>();
+
+    BatchingKVImpl(AsyncKV kv, BatchConfig config) {
+        this.kv = kv;
+        this.config = config;
+        this.lingerExecutor = CompletableFuture.delayedExecutor(config.linger().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value) {
+        return put(table, key, value, PutOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<PutResponse> put(ByteSequence table, ByteSequence key, ByteSequence value, PutOption option) {
+        return enqueue(table, Op.put(key, value, option), BatchingKVImpl::toPutResponse,
+                true, Deadline.after(option.getTimeout(), option.getTimeoutUnit()), () -> kv.put(table, key, value, option));
+    }
+
+    @Override
+    public CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key) {
+        return get(table, key, GetOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<GetResponse> get(ByteSequence table, ByteSequence key, GetOption option) {
+        if (option.isSerializable()) {
+            // reads within a transaction are always linearizable
+            return kv.get(table, key, option);
+        }
+        return enqueue(table, Op.get(key, option), BatchingKVImpl::toGetResponse,
+                false, Deadline.after(option.getTimeout(), option.getTimeoutUnit()), () -> kv.get(table, key, option));
+    }
+
+    @Override
+    public CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys) {
+        return kv.getAll(table, keys);
+    }
+
+    @Override
+    public CompletableFuture<SortedMap<ByteSequence, KeyValue>> getAll(ByteSequence table, Collection<ByteSequence> keys, GetOption option) {
+        return kv.getAll(table, keys, option);
+    }
+
+    @Override
+    public CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize) {
+        return kv.page(table, start, end, pageSize);
+    }
+
+    @Override
+    public CompletableFuture<Page> page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option) {
+        return kv.page(table, start, end, pageSize, option);
+    }
+
+    @Override
+    public Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key) {
+        return kv.iterate(table, key);
+    }
+
+    @Override
+    public Flow.Publisher<KeyValue> iterate(ByteSequence table, ByteSequence key, GetOption option) {
+        return kv.iterate(table, key, option);
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key) {
+        return delete(table, key, DeleteOption.DEFAULT);
+    }
+
+    @Override
+    public CompletableFuture<DeleteResponse> delete(ByteSequence table, ByteSequence key, DeleteOption option) {
+        return enqueue(table, Op.delete(key, option), BatchingKVImpl::toDeleteResponse,
+                true, Deadline.after(option.getTimeout(), option.getTimeoutUnit()), () -> kv.delete(table, key, option));
+    }
+
+    @Override
+    public AsyncTxn txn(ByteSequence table) {
+        return kv.txn(table);
+    }
+
+    @Override
+    public AsyncTxn txn(ByteSequence table, TxnOption option) {
+        return kv.txn(table, option);
+    }
+
+    private <T> CompletableFuture<T> enqueue(ByteSequence table, Op op, BiFunction<Response.Header, ResponseOp, T> convert,
+                                             boolean write, Deadline deadline, Supplier<CompletableFuture<T>> alone) {
+        var entry = new Entry<>(op, convert, write, deadline, alone, new CompletableFuture<>());
+        var full = new Batch[1];
+        batches.compute(table, (t, batch) -> {
+            if (batch == null) {
+                batch = new Batch(t);
+                var lingering = batch;
+                lingerExecutor.execute(() -> {
+                    if (batches.remove(t, lingering)) {
+                        submit(lingering);
+                    }
+                });
+            }
+            batch.entries.add(entry);
+            if (batch.entries.size() >= config.maxBatchSize()) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            submit(full[0]);
+        }
+        return entry.result;
+    }
+
+    private void submit(Batch batch) {
+        var entries = new ArrayList<Entry<?>>(batch.entries.size());
+        var timeout = config.txnOption().getTimeoutUnit().toNanos(config.txnOption().getTimeout());
+        for (var entry : batch.entries) {
+            var remaining = entry.deadline.timeRemaining(TimeUnit.NANOSECONDS);
+            if (remaining <= 0) {
+                entry.result.completeExceptionally(Status.DEADLINE_EXCEEDED
+                        .withDescription("deadline expired before the batch was submitted").asRuntimeException());
+            } else {
+                entries.add(entry);
+                timeout = Math.min(timeout, remaining);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        var ops = entries.stream().map(Entry::op).toArray(Op[]::new);
+        var option = TxnOption.builder().withTimeout(timeout, TimeUnit.NANOSECONDS).build();
+        CompletableFuture<TxnResponse> response;
+        try {
+            response = kv.txn(batch.table, option).Then(ops).commit();
+        } catch (RuntimeException e) {
+            // nothing was sent
+            entries.forEach(entry -> entry.recover(e, true));
+            return;
+        }
+        response.whenComplete((txn, throwable) -> {
+            if (throwable != null) {
+                var rejected = isRejected(Status.fromThrowable(throwable).getCode());
+                entries.forEach(entry -> entry.recover(throwable, rejected));
+            } else if (txn.responses().size() != entries.size()) {
+                var e = new IllegalStateException("expected " + entries.size() + " responses in batch, got " + txn.responses().size());
+                entries.forEach(entry -> entry.recover(e, false));
+            } else {
+                for (int i = 0; i < entries.size(); i++) {
+                    entries.get(i).complete(txn.header(), txn.responses().get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether the server refused the transaction without committing it.
+     */
+    private static boolean isRejected(Status.Code code) {
+        return code == Status.Code.INVALID_ARGUMENT || code == Status.Code.FAILED_PRECONDITION;
+    }
+
+    private static PutResponse toPutResponse(Response.Header header, ResponseOp op) {
+        return new PutResponse(header, KVImpl.toKeyValue(op.getResponsePut().getPrevKv()));
+    }
+
+    private static GetResponse toGetResponse(Response.Header header, ResponseOp op) {
+        var range = op.getResponseRange();
+        return new GetResponse(header, range.getKvsList().stream().map(KVImpl::toKeyValue).toList(), range.getCount(), range.getMore());
+    }
+
+    private static DeleteResponse toDeleteResponse(Response.Header header, ResponseOp op) {
+        var delete = op.getResponseDeleteRange();
+        return new DeleteResponse(header, delete.getPrevKvsList().stream().map(KVImpl::toKeyValue).toList(), delete.getDeleted());
+    }
+
+    private static final class Batch {
+        private final ByteSequence table;
+        private final List<Entry<?>> entries = new ArrayList<>();
+
+        private Batch(ByteSequence table) {
+            this.table = table;
+        }
+    }
+
+    private record Entry<T>(Op op, BiFunction<Response.Header, ResponseOp, T> convert, boolean write, Deadline deadline,
+                            Supplier<CompletableFuture<T>> alone, CompletableFuture<T> result) {
+
+        private void complete(Response.Header header, ResponseOp response) {
+            try {
+                result.complete(convert.apply(header, response));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Completes the operation of a failed batch. A write is executed on its own only if the batch was rejected
+         * before it was committed, otherwise it fails with the failure of the batch.
+         */
+        private void recover(Throwable batchFailure, boolean rejected) {
+            if (write && !rejected) {
+                result.completeExceptionally(batchFailure);
+            } else {
+                executeAlone(batchFailure);
+            }
+        }
+
+        /**
+         * Executes the operation without the failed batch, the result fails with the failure of the batch once the
+         * deadline of the caller expired and with {@code DEADLINE_EXCEEDED} if the operation outlives it.
+         */
+        private void executeAlone(Throwable batchFailure) {
+            var remaining = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+            if (remaining <= 0) {
+                result.completeExceptionally(batchFailure);
+                return;
+            }
+            CompletableFuture<T> single;
+            try {
+                single = alone.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            single.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(response);
+                }
+            });
+            CompletableFuture.delayedExecutor(remaining, TimeUnit.NANOSECONDS).execute(() -> {
+                if (result.completeExceptionally(Status.DEADLINE_EXCEEDED.withDescription("deadline of the batched operation expired").asRuntimeException())) {
+                    single.cancel(false);
+                }
+            });
+        }
+    }
+}
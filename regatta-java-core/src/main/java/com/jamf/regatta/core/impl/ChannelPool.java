@@ -0,0 +1,135 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.ChannelPoolStats;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link ManagedChannel} spreading calls over several channels, each of them with its own connections, so that the
+ * traffic isn't limited by the concurrent streams of a single HTTP/2 connection and by a single event loop. Every new
+ * call goes to the channel with the least calls in progress.
+ */
+public final class ChannelPool extends ManagedChannel {
+
+    private final List<ManagedChannel> channels;
+    private final AtomicIntegerArray outstanding;
+    private final AtomicLongArray started;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ChannelPool(List<ManagedChannel> channels) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("channels can't be empty");
+        }
+        this.channels = List.copyOf(channels);
+        this.outstanding = new AtomicIntegerArray(channels.size());
+        this.started = new AtomicLongArray(channels.size());
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        int index = pick();
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(channels.get(index).newCall(methodDescriptor, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                outstanding.incrementAndGet(index);
+                started.incrementAndGet(index);
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            outstanding.decrementAndGet(index);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    outstanding.decrementAndGet(index);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Picks the channel with the least calls in progress, ties are broken round-robin.
+     */
+    private int pick() {
+        int size = channels.size();
+        int offset = Math.floorMod(next.getAndIncrement(), size);
+        int best = offset;
+        int bestOutstanding = outstanding.get(offset);
+        for (int i = 1; i < size && bestOutstanding > 0; i++) {
+            int index = (offset + i) % size;
+            int current = outstanding.get(index);
+            if (current < bestOutstanding) {
+                best = index;
+                bestOutstanding = current;
+            }
+        }
+        return best;
+    }
+
+    public ChannelPoolStats stats() {
+        var outstandingCalls = new ArrayList<Integer>(channels.size());
+        var startedCalls = new ArrayList<Long>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            outstandingCalls.add(outstanding.get(i));
+            startedCalls.add(started.get(i));
+        }
+        return new ChannelPoolStats(outstandingCalls, startedCalls);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return channels.stream().allMatch(ManagedChannel::isShutdown);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return channels.stream().allMatch(ManagedChannel::isTerminated);
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (var channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
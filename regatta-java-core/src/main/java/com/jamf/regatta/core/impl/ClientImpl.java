@@ -5,20 +5,64 @@
 package com.jamf.regatta.core.impl;
 
 import com.jamf.regatta.core.*;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 
+import java.util.Optional;
+
 public final class ClientImpl implements Client {
 
     private final KV kvClient;
+    private final AsyncKV asyncKvClient;
+    private final AsyncKV batchingKvClient;
     private final Cluster clusterClient;
+    private final AsyncCluster asyncClusterClient;
     private final Tables tables;
+    private final AsyncTables asyncTables;
+    private final NearCache nearCache;
+    private final ValueCodec valueCodec;
     private final ManagedChannel channel;
 
     public ClientImpl(ManagedChannel channel, RetryConfig retryConfig) {
+        this(channel, retryConfig, BatchConfig.DEFAULT, CacheConfig.DISABLED);
+    }
+
+    public ClientImpl(ManagedChannel channel, RetryConfig retryConfig, BatchConfig batchConfig, CacheConfig cacheConfig) {
+        this(channel, retryConfig, batchConfig, cacheConfig, HedgeConfig.DISABLED, LimitConfig.DISABLED);
+    }
+
+    public ClientImpl(ManagedChannel channel, RetryConfig retryConfig, BatchConfig batchConfig, CacheConfig cacheConfig,
+                      HedgeConfig hedgeConfig, LimitConfig limitConfig) {
+        this(channel, retryConfig, batchConfig, cacheConfig, hedgeConfig, limitConfig, CompressionConfig.DEFAULT);
+    }
+
+    public ClientImpl(ManagedChannel channel, RetryConfig retryConfig, BatchConfig batchConfig, CacheConfig cacheConfig,
+                      HedgeConfig hedgeConfig, LimitConfig limitConfig, CompressionConfig compressionConfig) {
+        this(channel, retryConfig, batchConfig, cacheConfig, hedgeConfig, limitConfig, compressionConfig, ValueCompressionConfig.DISABLED);
+    }
+
+    public ClientImpl(ManagedChannel channel, RetryConfig retryConfig, BatchConfig batchConfig, CacheConfig cacheConfig,
+                      HedgeConfig hedgeConfig, LimitConfig limitConfig, CompressionConfig compressionConfig,
+                      ValueCompressionConfig valueCompressionConfig) {
         this.channel = channel;
-        this.kvClient = new KVImpl(channel, retryConfig);
-        this.clusterClient = new ClusterImpl(channel, retryConfig);
-        this.tables = new TablesImpl(channel, retryConfig);
+        this.nearCache = new NearCache(cacheConfig);
+        var hedger = new Hedger(hedgeConfig);
+        var limiter = new ConcurrencyLimiter(limitConfig);
+        var retryBudget = Impl.retryBudget(retryConfig);
+        var recorded = ClientInterceptors.intercept(channel, new RpcEventInterceptor());
+        var compressed = ClientInterceptors.intercept(recorded, new CompressionInterceptor(compressionConfig));
+        this.valueCodec = new ValueCodec(valueCompressionConfig, recorded);
+        if (!valueCompressionConfig.tables().isEmpty()) {
+            // intercepted last, so that the size of the request with its values compressed decides its compression
+            compressed = ClientInterceptors.intercept(compressed, new ValueCompressionInterceptor(valueCodec));
+        }
+        this.kvClient = new KVImpl(compressed, retryConfig, retryBudget, nearCache, hedger, limiter);
+        this.asyncKvClient = new AsyncKVImpl(compressed, retryConfig, retryBudget, nearCache, hedger, limiter);
+        this.batchingKvClient = new BatchingKVImpl(asyncKvClient, batchConfig);
+        this.clusterClient = new ClusterImpl(recorded, retryConfig, retryBudget);
+        this.asyncClusterClient = new AsyncClusterImpl(recorded, retryConfig, retryBudget);
+        this.tables = new TablesImpl(recorded, retryConfig, retryBudget);
+        this.asyncTables = new AsyncTablesImpl(recorded, retryConfig, retryBudget);
     }
 
     @Override
@@ -26,18 +70,54 @@ public final class ClientImpl implements Client {
         return kvClient;
     }
 
+    @Override
+    public AsyncKV getAsyncKVClient() {
+        return asyncKvClient;
+    }
+
+    @Override
+    public AsyncKV getBatchingKVClient() {
+        return batchingKvClient;
+    }
+
     @Override
     public Cluster getClusterClient() {
         return clusterClient;
     }
 
+    @Override
+    public AsyncCluster getAsyncClusterClient() {
+        return asyncClusterClient;
+    }
+
     @Override
     public Tables getTablesClient() {
         return tables;
     }
 
+    @Override
+    public AsyncTables getAsyncTablesClient() {
+        return asyncTables;
+    }
+
+    @Override
+    public CacheStats getKVCacheStats() {
+        return nearCache.stats();
+    }
+
+    @Override
+    public ValueDictionaries getValueDictionaries() {
+        return valueCodec;
+    }
+
+    @Override
+    public Optional<ChannelPoolStats> getChannelPoolStats() {
+        return channel instanceof ChannelPool pool ? Optional.of(pool.stats()) : Optional.empty();
+    }
+
     @Override
     public void close() throws Exception {
+        valueCodec.close();
         channel.shutdown();
     }
 }
@@ -17,7 +17,11 @@ public class ClusterImpl extends Impl implements Cluster {
     private final ClusterGrpc.ClusterBlockingStub stub;
 
     ClusterImpl(Channel managedChannel, RetryConfig retryConfig) {
-        super(retryConfig);
+        this(managedChannel, retryConfig, retryBudget(retryConfig));
+    }
+
+    ClusterImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget) {
+        super(retryConfig, retryBudget);
         stub = ClusterGrpc.newBlockingStub(managedChannel);
     }
 
@@ -25,18 +29,22 @@ public class ClusterImpl extends Impl implements Cluster {
     public MemberListResponse memberList() {
         return execute(
                 () -> stub.memberList(MemberListRequest.getDefaultInstance()),
-                ml -> new MemberListResponse(
-                        ml.getCluster(),
-                        ml.getMembersList().stream()
-                                .map(member -> new Member(
-                                        member.getId(),
-                                        member.getName(),
-                                        member.getPeerURLsList().stream().toList(),
-                                        member.getClientURLsList().stream().toList()
-                                ))
-                                .toList()),
+                ClusterImpl::toMemberListResponse,
                 RETRY_TRANSIENT
         );
     }
 
+    static MemberListResponse toMemberListResponse(com.jamf.regatta.proto.MemberListResponse ml) {
+        return new MemberListResponse(
+                ml.getCluster(),
+                ml.getMembersList().stream()
+                        .map(member -> new Member(
+                                member.getId(),
+                                member.getName(),
+                                member.getPeerURLsList().stream().toList(),
+                                member.getClientURLsList().stream().toList()
+                        ))
+                        .toList());
+    }
+
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.MessageLite;
+import com.jamf.regatta.core.CompressionConfig;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.TxnRequest;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies the {@link CompressionConfig} to the calls of the KV clients. The codec is set on the call, a request below
+ * the size threshold is sent with the compression of the message turned off. The call still advertises its codec, so
+ * that a large response to a small request is compressed by the server.
+ * <p>
+ * The table of a call is known only once its request is sent, a call is therefore started with its first request when
+ * codecs are configured per table.
+ */
+final class CompressionInterceptor implements ClientInterceptor {
+
+    private final CompressionConfig config;
+    private final Map<ByteString, String> tables = new HashMap<>();
+
+    CompressionInterceptor(CompressionConfig config) {
+        this.config = config;
+        config.tables().forEach((table, codec) -> tables.put(ByteString.copyFrom(table.getBytes()), codec));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        var codec = config.methods().getOrDefault(method.getBareMethodName(), config.codec());
+        if (tables.isEmpty() || !method.getType().clientSendsOneMessage()) {
+            return new SizeAwareCall<>(next.newCall(method, callOptions.withCompression(codec)));
+        }
+        return new DeferredCall<>(method, callOptions, next, codec);
+    }
+
+    private String codec(Object request, String methodCodec) {
+        var table = table(request);
+        return table == null ? methodCodec : tables.getOrDefault(table, methodCodec);
+    }
+
+    private boolean compress(Object request) {
+        return request instanceof MessageLite message && message.getSerializedSize() >= config.minMessageSize();
+    }
+
+    static ByteString table(Object request) {
+        if (request instanceof RangeRequest range) {
+            return range.getTable();
+        } else if (request instanceof PutRequest put) {
+            return put.getTable();
+        } else if (request instanceof DeleteRangeRequest delete) {
+            return delete.getTable();
+        } else if (request instanceof TxnRequest txn) {
+            return txn.getTable();
+        }
+        return null;
+    }
+
+    private final class SizeAwareCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        SizeAwareCall(ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            delegate().setMessageCompression(compress(message));
+            super.sendMessage(message);
+        }
+    }
+
+    /**
+     * Call of a single request, started with the codec of the table of the request once it is sent. The listener,
+     * headers and requested responses are held until then.
+     */
+    private final class DeferredCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private final String methodCodec;
+        private Listener<RespT> listener;
+        private Metadata headers;
+        // guarded by this
+        private ClientCall<ReqT, RespT> delegate;
+        private int requested;
+        private boolean cancelled;
+
+        DeferredCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next, String methodCodec) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+            this.methodCodec = methodCodec;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            this.listener = responseListener;
+            this.headers = headers;
+        }
+
+        @Override
+        public void request(int numMessages) {
+            ClientCall<ReqT, RespT> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    requested += numMessages;
+                    return;
+                }
+            }
+            call.request(numMessages);
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            ClientCall<ReqT, RespT> call;
+            synchronized (this) {
+                call = delegate;
+                if (call == null) {
+                    if (cancelled) {
+                        return;
+                    }
+                    cancelled = true;
+                }
+            }
+            if (call != null) {
+                call.cancel(message, cause);
+            } else if (listener != null) {
+                var status = Status.CANCELLED.withDescription(message).withCause(cause);
+                listener.onClose(status, new Metadata());
+            }
+        }
+
+        @Override
+        public void halfClose() {
+            var call = delegate(null);
+            if (call != null) {
+                call.halfClose();
+            }
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            var call = delegate(message);
+            if (call != null) {
+                call.setMessageCompression(compress(message));
+                call.sendMessage(message);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            ClientCall<ReqT, RespT> call;
+            synchronized (this) {
+                call = delegate;
+            }
+            return call != null && call.isReady();
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            ClientCall<ReqT, RespT> call;
+            synchronized (this) {
+                call = delegate;
+            }
+            return call != null ? call.getAttributes() : Attributes.EMPTY;
+        }
+
+        /**
+         * @return the started call, {@code null} if the call was cancelled before it started.
+         */
+        private synchronized ClientCall<ReqT, RespT> delegate(ReqT message) {
+            if (delegate == null && !cancelled) {
+                delegate = next.newCall(method, callOptions.withCompression(codec(message, methodCodec)));
+                delegate.start(listener, headers);
+                if (requested > 0) {
+                    delegate.request(requested);
+                }
+            }
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import io.grpc.Status;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive client side concurrency limits, one per table and operation class. A limit follows a Vegas style estimate
+ * of the calls queued on the server, derived from the latency of a call compared to the lowest observed latency: it
+ * grows by one while fewer than {@link #ALPHA} calls are queued, shrinks by one once more than {@link #BETA} calls are
+ * queued and shrinks multiplicatively when a call fails because the server is overloaded or the call timed out. Calls
+ * over the limit wait for a free slot up to {@link LimitConfig#maxWait()} and then fail with
+ * {@code RESOURCE_EXHAUSTED}.
+ */
+final class ConcurrencyLimiter {
+
+    static final int ALPHA = 3;
+    static final int BETA = 6;
+    static final double BACKOFF_RATIO = 0.9;
+    // the lowest latency is forgotten from time to time, the cluster it was measured on may have changed since
+    static final int PROBE_INTERVAL = 1000;
+
+    enum OpClass {
+        READ, WRITE
+    }
+
+    record Key(ByteSequence table, OpClass opClass) {
+    }
+
+    private final LimitConfig config;
+    private final LongSupplier nanoClock;
+    private final Map<Key, Limit> limits = new ConcurrentHashMap<>();
+
+    ConcurrencyLimiter(LimitConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(LimitConfig config, LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+    }
+
+    static Key read(ByteSequence table) {
+        return new Key(table, OpClass.READ);
+    }
+
+    static Key write(ByteSequence table) {
+        return new Key(table, OpClass.WRITE);
+    }
+
+    boolean isEnabled() {
+        return config.maxLimit() > 0;
+    }
+
+    /**
+     * @return a permit which has to be released once the call completed, or a failure with {@code RESOURCE_EXHAUSTED}
+     * if no slot got free in time.
+     */
+    CompletableFuture<Permit> acquire(Key key) {
+        return limits.computeIfAbsent(key, Limit::new).acquire();
+    }
+
+    /**
+     * @return the current limit of the key.
+     */
+    int limit(Key key) {
+        return limits.computeIfAbsent(key, Limit::new).current();
+    }
+
+    /**
+     * Slot taken by a call.
+     */
+    final class Permit {
+
+        private final Limit limit;
+        private final long startedAt = nanoClock.getAsLong();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Limit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Frees the slot, only the first release of a permit counts.
+         *
+         * @param failure the failure the call completed with, {@code null} if it succeeded.
+         */
+        void release(Throwable failure) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(nanoClock.getAsLong() - startedAt, failure);
+            }
+        }
+    }
+
+    private final class Limit {
+
+        private final Key key;
+        private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private double limit = Math.max(config.minLimit(), Math.min(config.maxLimit(), config.initialLimit()));
+        private long lowestLatency = Long.MAX_VALUE;
+        private int samples;
+        private int inFlight;
+
+        private Limit(Key key) {
+            this.key = key;
+        }
+
+        private synchronized int current() {
+            return (int) limit;
+        }
+
+        private CompletableFuture<Permit> acquire() {
+            var waiter = new CompletableFuture<Permit>();
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(new Permit(this));
+                }
+                if (config.maxWait().isZero() || config.maxWait().isNegative()) {
+                    return CompletableFuture.failedFuture(rejected());
+                }
+                waiters.add(waiter);
+            }
+            CompletableFuture.delayedExecutor(config.maxWait().toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                boolean expired;
+                synchronized (this) {
+                    expired = waiters.remove(waiter);
+                }
+                if (expired) {
+                    waiter.completeExceptionally(rejected());
+                }
+            });
+            return waiter;
+        }
+
+        private void release(long latency, Throwable failure) {
+            var granted = new ArrayList<CompletableFuture<Permit>>();
+            synchronized (this) {
+                inFlight--;
+                update(latency, failure);
+                while (inFlight < (int) limit && !waiters.isEmpty()) {
+                    inFlight++;
+                    granted.add(waiters.poll());
+                }
+            }
+            granted.forEach(waiter -> waiter.complete(new Permit(this)));
+        }
+
+        private void update(long latency, Throwable failure) {
+            if (failure != null) {
+                if (isOverload(Status.fromThrowable(failure))) {
+                    limit = Math.max(config.minLimit(), limit * BACKOFF_RATIO);
+                }
+                return;
+            }
+            if (++samples % PROBE_INTERVAL == 0) {
+                lowestLatency = latency;
+            }
+            lowestLatency = Math.min(lowestLatency, Math.max(latency, 1));
+            var queued = limit * (1 - (double) lowestLatency / Math.max(latency, 1));
+            // growing is pointless unless the calls actually use the limit
+            if (queued < ALPHA && inFlight + 1 >= limit / 2) {
+                limit = Math.min(config.maxLimit(), limit + 1);
+            } else if (queued > BETA) {
+                limit = Math.max(config.minLimit(), limit - 1);
+            }
+        }
+
+        private RuntimeException rejected() {
+            return Status.RESOURCE_EXHAUSTED
+                    .withDescription("concurrency limit of " + (int) limit + " " + key.opClass().name().toLowerCase()
+                            + " calls to table " + key.table() + " reached")
+                    .asRuntimeException();
+        }
+    }
+
+    private static boolean isOverload(Status status) {
+        return switch (status.getCode()) {
+            case DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED, UNAVAILABLE -> true;
+            default -> false;
+        };
+    }
+}
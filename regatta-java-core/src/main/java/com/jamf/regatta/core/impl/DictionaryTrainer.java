@@ -0,0 +1,137 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Trains a deflate dictionary on sample values. The samples are cut into overlapping segments, a segment is worth the
+ * number of other samples sharing its 8 byte substrings. The best segments are picked one by one, the substrings of a
+ * picked segment are no longer worth anything to the others, so that the dictionary does not repeat itself. Deflate
+ * encodes nearer matches with fewer bits, the best segments are therefore put at the end of the dictionary.
+ */
+final class DictionaryTrainer {
+
+    private static final int SEGMENT_SIZE = 64;
+    private static final int SHINGLE_SIZE = 8;
+
+    private DictionaryTrainer() {
+    }
+
+    static byte[] train(List<byte[]> samples, int size) {
+        var frequencies = new HashMap<Long, Integer>();
+        for (var sample : samples) {
+            for (var shingle : shingles(sample, 0, sample.length)) {
+                frequencies.merge(shingle, 1, Integer::sum);
+            }
+        }
+        var candidates = new PriorityQueue<Segment>((a, b) -> Long.compare(b.score, a.score));
+        for (var sample : samples) {
+            for (int offset = 0; offset < sample.length; offset += SEGMENT_SIZE / 2) {
+                var segment = new Segment(sample, offset, Math.min(SEGMENT_SIZE, sample.length - offset));
+                segment.score = segment.score(frequencies);
+                if (segment.score > 0) {
+                    candidates.add(segment);
+                }
+                if (offset + SEGMENT_SIZE >= sample.length) {
+                    break;
+                }
+            }
+        }
+
+        var picked = new ArrayList<Segment>();
+        var length = 0;
+        while (length < size && !candidates.isEmpty()) {
+            var best = candidates.poll();
+            // the score only drops as segments are picked, a segment still ahead of the others once rescored is the best
+            var score = best.score(frequencies);
+            if (score == 0) {
+                continue;
+            }
+            if (score < best.score && !candidates.isEmpty() && score < candidates.peek().score) {
+                best.score = score;
+                candidates.add(best);
+                continue;
+            }
+            picked.add(best);
+            length += best.length;
+            for (var shingle : best.shingles()) {
+                frequencies.put(shingle, 0);
+            }
+        }
+        if (picked.isEmpty()) {
+            return fallback(samples, size);
+        }
+
+        var dictionary = new ByteArrayOutputStream(length);
+        for (int i = picked.size() - 1; i >= 0; i--) {
+            var segment = picked.get(i);
+            dictionary.write(segment.sample, segment.offset, segment.length);
+        }
+        var bytes = dictionary.toByteArray();
+        return bytes.length <= size ? bytes : Arrays.copyOfRange(bytes, bytes.length - size, bytes.length);
+    }
+
+    /**
+     * Samples without repeated substrings of the shingle size still share shorter ones, the dictionary is their tail.
+     */
+    private static byte[] fallback(List<byte[]> samples, int size) {
+        var dictionary = new ByteArrayOutputStream();
+        for (int i = samples.size() - 1; i >= 0 && dictionary.size() < size; i--) {
+            var sample = samples.get(i);
+            dictionary.write(sample, 0, Math.min(sample.length, size - dictionary.size()));
+        }
+        return dictionary.toByteArray();
+    }
+
+    private static Set<Long> shingles(byte[] data, int offset, int length) {
+        var shingles = new HashSet<Long>();
+        for (int i = offset; i + SHINGLE_SIZE <= offset + length; i++) {
+            long shingle = 0;
+            for (int j = 0; j < SHINGLE_SIZE; j++) {
+                shingle = shingle << 8 | (data[i + j] & 0xff);
+            }
+            shingles.add(shingle);
+        }
+        return shingles;
+    }
+
+    private static final class Segment {
+
+        private final byte[] sample;
+        private final int offset;
+        private final int length;
+        private long score;
+
+        Segment(byte[] sample, int offset, int length) {
+            this.sample = sample;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        Set<Long> shingles() {
+            return DictionaryTrainer.shingles(sample, offset, length);
+        }
+
+        /**
+         * @return the number of other samples sharing the substrings of the segment.
+         */
+        long score(Map<Long, Integer> frequencies) {
+            long score = 0;
+            for (var shingle : shingles()) {
+                score += Math.max(frequencies.getOrDefault(shingle, 0) - 1, 0);
+            }
+            return score;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.TxnOption;
+import com.jamf.regatta.proto.RangeRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * Decides how a multi-get is sent to the server. Sparse keys are looked up as point {@code Range} ops of read-only
+ * transactions, chunked by op count and request size. Keys which densely populate a narrow interval are read with a
+ * single bounded range scan instead and filtered on the client.
+ */
+final class GetAllPlanner {
+
+    /**
+     * Minimal number of keys for which a range scan is considered.
+     */
+    static final int MIN_SCAN_KEYS = 16;
+    /**
+     * Maximal ratio between the number of possible keys in the interval and the number of requested keys for the
+     * interval to be considered dense, it is also the overfetch factor of the scan limit.
+     */
+    static final int MAX_SCAN_SPARSITY = 4;
+    /**
+     * Maximal number of ops in a single transaction.
+     */
+    static final int MAX_CHUNK_OPS = 128;
+    /**
+     * Maximal approximate size of a single transaction request, well below the default 4MiB gRPC message limit.
+     */
+    static final int MAX_CHUNK_BYTES = 1 << 20;
+
+    private static final int MAX_SUFFIX_WIDTH = 8;
+    private static final int OP_OVERHEAD_BYTES = 16;
+
+    private GetAllPlanner() {
+    }
+
+    /**
+     * Estimates whether the sorted keys densely populate the interval between the first and the last of them. Bytes
+     * following the common prefix are read as digits of a number whose radix is the range of byte values observed in
+     * all the suffixes, so e.g. decimal suffixes count as base 10 rather than base 256.
+     *
+     * @param keys sorted distinct keys
+     * @return {@code true} if a range scan is expected to be cheaper than point lookups.
+     */
+    static boolean isDense(NavigableSet<ByteSequence> keys) {
+        if (keys.size() < MIN_SCAN_KEYS) {
+            return false;
+        }
+        var first = keys.first().getByteString();
+        var last = keys.last().getByteString();
+        int prefix = 0;
+        while (prefix < first.size() && prefix < last.size() && first.byteAt(prefix) == last.byteAt(prefix)) {
+            prefix++;
+        }
+        int width = 0;
+        for (var key : keys) {
+            width = Math.max(width, key.size() - prefix);
+        }
+        if (width > MAX_SUFFIX_WIDTH) {
+            return false;
+        }
+        int min = 0xff;
+        int max = 0;
+        for (var key : keys) {
+            for (int i = 0; i < width; i++) {
+                int b = digit(key, prefix + i);
+                min = Math.min(min, b);
+                max = Math.max(max, b);
+            }
+        }
+        long radix = max - min + 1L;
+        long from = 0;
+        long to = 0;
+        try {
+            for (int i = 0; i < width; i++) {
+                from = Math.addExact(Math.multiplyExact(from, radix), digit(keys.first(), prefix + i) - min);
+                to = Math.addExact(Math.multiplyExact(to, radix), digit(keys.last(), prefix + i) - min);
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        return to - from + 1 <= (long) keys.size() * MAX_SCAN_SPARSITY;
+    }
+
+    /**
+     * Splits the keys into chunks of get ops, each of them small enough to be sent as a single transaction.
+     *
+     * @param keys   keys to look up
+     * @param option option of every get op
+     * @return chunks of ops
+     */
+    static List<List<Op>> chunks(Iterable<ByteSequence> keys, GetOption option) {
+        var chunks = new ArrayList<List<Op>>();
+        var chunk = new ArrayList<Op>();
+        int chunkBytes = 0;
+        for (var key : keys) {
+            int opBytes = key.size() + OP_OVERHEAD_BYTES;
+            if (!chunk.isEmpty() && (chunk.size() == MAX_CHUNK_OPS || chunkBytes + opBytes > MAX_CHUNK_BYTES)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(Op.get(key, option));
+            chunkBytes += opBytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Builds the range request covering all the keys, the limit allows for {@link #MAX_SCAN_SPARSITY} times more
+     * keys to be present in the interval than requested.
+     *
+     * @param table  table in ByteSequence
+     * @param keys   sorted distinct keys
+     * @param option option of the multi-get
+     * @return the range request
+     */
+    static RangeRequest scanRequest(ByteSequence table, NavigableSet<ByteSequence> keys, GetOption option) {
+        return RangeRequest.newBuilder()
+                .setTable(table.getByteString())
+                .setKey(keys.first().getByteString())
+                .setRangeEnd(keys.last().getByteString().concat(KVImpl.NUL))
+                .setLimit((long) keys.size() * MAX_SCAN_SPARSITY)
+                .setKeysOnly(option.isKeysOnly())
+                .setLinearizable(!option.isSerializable())
+                .build();
+    }
+
+    /**
+     * Option of the individual point lookups, range related settings of the multi-get option do not apply.
+     */
+    static GetOption lookupOption(GetOption option) {
+        return GetOption.builder()
+                .withKeysOnly(option.isKeysOnly())
+                .withSerializable(option.isSerializable())
+                .withTimeout(option.getTimeout(), option.getTimeoutUnit())
+                .build();
+    }
+
+    static TxnOption txnOption(GetOption option) {
+        return TxnOption.builder()
+                .withTimeout(option.getTimeout(), option.getTimeoutUnit())
+                .build();
+    }
+
+    private static int digit(ByteSequence key, int index) {
+        return index < key.size() ? key.getByteString().byteAt(index) & 0xff : 0;
+    }
+}
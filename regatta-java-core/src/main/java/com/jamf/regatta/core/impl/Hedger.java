@@ -0,0 +1,144 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.jamf.regatta.core.HedgeConfig;
+import io.grpc.Context;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Sends a second attempt of a call which was not answered within the hedging delay, the first successful attempt wins
+ * and the others are cancelled. The attempts share the set of addresses they were sent to, so that the load balancer
+ * can pick another member for the hedge. Hedges are paid from a token bucket, every call deposits
+ * {@link HedgeConfig#budget()} tokens and a hedge takes one, which bounds the extra load to the configured ratio. The
+ * bucket starts full and holds at most {@link #MAX_TOKENS} tokens.
+ */
+final class Hedger {
+
+    static final int WINDOW = 256;
+    static final int MAX_TOKENS = 10;
+
+    private final HedgeConfig config;
+    private final LongSupplier nanoClock;
+    private final TokenBucket tokens;
+    private final long[] latencies = new long[WINDOW];
+    private long recorded;
+    private volatile long observedDelay = -1;
+
+    Hedger(HedgeConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    Hedger(HedgeConfig config, LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.tokens = new TokenBucket(config.budget(), MAX_TOKENS);
+    }
+
+    boolean isEnabled() {
+        return tokens.isEnabled();
+    }
+
+    /**
+     * Starts the call and hedges it if it is not answered in time.
+     *
+     * @param attempt starts an attempt of the call, with the set of addresses shared by the attempts.
+     * @return the response of the first successful attempt, the failure of the last one if none succeeded. Cancelling
+     * it cancels all attempts.
+     */
+    <S> ListenableFuture<S> hedge(Function<Set<SocketAddress>, ListenableFuture<S>> attempt) {
+        Set<SocketAddress> picked = ConcurrentHashMap.newKeySet();
+        if (!isEnabled()) {
+            return attempt.apply(picked);
+        }
+        tokens.deposit();
+        var result = SettableFuture.<S>create();
+        List<ListenableFuture<S>> attempts = new CopyOnWriteArrayList<>();
+        result.addListener(() -> attempts.forEach(started -> started.cancel(false)), MoreExecutors.directExecutor());
+        start(attempt, picked, attempts, result);
+        // the hedge belongs to the operation of the call
+        CompletableFuture.delayedExecutor(delayNanos(), TimeUnit.NANOSECONDS).execute(Context.current().wrap(() -> {
+            if (!result.isDone() && tokens.tryAcquire()) {
+                start(attempt, picked, attempts, result);
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * @return the current hedging delay in nanoseconds.
+     */
+    long delayNanos() {
+        var observed = observedDelay;
+        return observed >= 0 ? observed : config.delay().toNanos();
+    }
+
+    private <S> void start(Function<Set<SocketAddress>, ListenableFuture<S>> attempt, Set<SocketAddress> picked,
+                           List<ListenableFuture<S>> attempts, SettableFuture<S> result) {
+        var startedAt = nanoClock.getAsLong();
+        ListenableFuture<S> future;
+        try {
+            future = attempt.apply(picked);
+        } catch (RuntimeException e) {
+            future = Futures.immediateFailedFuture(e);
+        }
+        attempts.add(future);
+        if (result.isDone()) {
+            future.cancel(false);
+            return;
+        }
+        var started = future;
+        future.addListener(() -> {
+            try {
+                var response = Futures.getDone(started);
+                var latency = nanoClock.getAsLong() - startedAt;
+                // the caller gets the response whatever happens to the recording
+                result.set(response);
+                record(latency);
+            } catch (ExecutionException e) {
+                // another attempt may still succeed
+                if (attempts.stream().allMatch(ListenableFuture::isDone)) {
+                    result.setException(e.getCause());
+                }
+            } catch (CancellationException e) {
+                result.cancel(false);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void record(long latency) {
+        if (config.percentile() <= 0) {
+            return;
+        }
+        long[] window;
+        synchronized (latencies) {
+            latencies[(int) (recorded % WINDOW)] = latency;
+            recorded++;
+            // the percentile is recomputed every sixteenth sample once the window is full
+            if (recorded < WINDOW || recorded % 16 != 0) {
+                return;
+            }
+            window = latencies.clone();
+        }
+        Arrays.sort(window);
+        observedDelay = window[Math.min(WINDOW - 1, (int) Math.ceil(config.percentile() * WINDOW) - 1)];
+    }
+}
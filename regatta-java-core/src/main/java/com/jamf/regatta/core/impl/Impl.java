@@ -4,18 +4,37 @@
 
 package com.jamf.regatta.core.impl;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.jamf.regatta.core.Errors;
+import com.jamf.regatta.core.LimitConfig;
 import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.balancer.LeaderAffinityLoadBalancer;
+import com.jamf.regatta.core.options.GetOption;
 import dev.failsafe.Failsafe;
 import dev.failsafe.RetryPolicy;
 import dev.failsafe.RetryPolicyBuilder;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.Status;
+import io.grpc.stub.AbstractStub;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public abstract class Impl {
 
@@ -23,14 +42,44 @@ public abstract class Impl {
     static final Predicate<Status> RETRY_ALWAYS = status -> true;
     static final Predicate<Status> RETRY_TRANSIENT = Errors::isRetryable;
 
+    static final int RETRY_BUDGET_CAPACITY = 10;
+
     private final Logger logger;
     private final RetryConfig retryCfg;
+    private final TokenBucket retryBudget;
+    private final ConcurrencyLimiter limiter;
+    private final Map<Predicate<Status>, RetryPolicy<Object>> retryPolicies = new ConcurrentHashMap<>();
 
     Impl(RetryConfig retryCfg) {
+        this(retryCfg, retryBudget(retryCfg), new ConcurrencyLimiter(LimitConfig.DISABLED));
+    }
+
+    Impl(RetryConfig retryCfg, TokenBucket retryBudget) {
+        this(retryCfg, retryBudget, new ConcurrencyLimiter(LimitConfig.DISABLED));
+    }
+
+    Impl(RetryConfig retryCfg, TokenBucket retryBudget, ConcurrencyLimiter limiter) {
         this.retryCfg = retryCfg;
+        this.retryBudget = retryBudget;
+        this.limiter = limiter;
         this.logger = LoggerFactory.getLogger(getClass());
     }
 
+    /**
+     * Creates the retry budget of a client, shared by all its calls.
+     */
+    static TokenBucket retryBudget(RetryConfig retryCfg) {
+        return new TokenBucket(retryCfg.budget(), RETRY_BUDGET_CAPACITY);
+    }
+
+    RetryConfig retryConfig() {
+        return retryCfg;
+    }
+
+    TokenBucket retryBudget() {
+        return retryBudget;
+    }
+
     /**
      * execute the task and retry it in case of failure.
      *
@@ -44,7 +93,7 @@ public abstract class Impl {
             Supplier<S> supplier,
             Function<S, T> resultConvert) {
 
-        return execute(supplier, resultConvert, Errors::isRetryable);
+        return execute(supplier, resultConvert, RETRY_TRANSIENT);
     }
 
     /**
@@ -58,11 +107,259 @@ public abstract class Impl {
      * @return a CompletableFuture with type T.
      */
     protected <S, T> T execute(Supplier<S> supplier, Function<S, T> resultConvert, Predicate<Status> doRetry) {
-        return resultConvert.apply(Failsafe.with(retryPolicy(doRetry)).get(supplier::get));
+        return resultConvert.apply(retrying(null, supplier, doRetry));
+    }
+
+    /**
+     * execute the task and retry it in case of failure. All attempts share the deadline, a retry is skipped if the
+     * deadline expires before its backoff does.
+     *
+     * @param deadline      the deadline of the task.
+     * @param call          a function that makes a call with the given deadline.
+     * @param resultConvert a function that converts Type S to Type T.
+     * @param doRetry       a predicate to determine if a failure has to be retried
+     * @param <S>           Source type
+     * @param <T>           Converted Type.
+     * @return the converted result.
+     */
+    <S, T> T execute(Deadline deadline, Function<Deadline, S> call, Function<S, T> resultConvert, Predicate<Status> doRetry) {
+        return resultConvert.apply(retrying(deadline, () -> call.apply(deadline), doRetry));
+    }
+
+    /**
+     * execute the asynchronous task and retry it in case of failure. Retries are scheduled, the calling thread is never
+     * blocked.
+     *
+     * @param supplier      a function that returns a new Future.
+     * @param resultConvert a function that converts Type S to Type T.
+     * @param doRetry       a predicate to determine if a failure has to be retried
+     * @param <S>           Source type
+     * @param <T>           Converted Type.
+     * @return a CompletableFuture with type T.
+     */
+    protected <S, T> CompletableFuture<T> executeAsync(Supplier<ListenableFuture<S>> supplier, Function<S, T> resultConvert, Predicate<Status> doRetry) {
+        return retryingAsync(null, supplier, doRetry).thenApply(resultConvert);
+    }
+
+    /**
+     * execute the asynchronous task and retry it in case of failure. All attempts share the deadline, a retry is
+     * skipped if the deadline expires before its backoff does.
+     *
+     * @param deadline      the deadline of the task.
+     * @param call          a function that makes a call with the given deadline.
+     * @param resultConvert a function that converts Type S to Type T.
+     * @param doRetry       a predicate to determine if a failure has to be retried
+     * @param <S>           Source type
+     * @param <T>           Converted Type.
+     * @return a CompletableFuture with type T.
+     */
+    <S, T> CompletableFuture<T> executeAsync(Deadline deadline, Function<Deadline, ListenableFuture<S>> call, Function<S, T> resultConvert, Predicate<Status> doRetry) {
+        return retryingAsync(deadline, () -> call.apply(deadline), doRetry).thenApply(resultConvert);
+    }
+
+    /**
+     * execute the task within the concurrency limit of the key and retry it in case of failure. Every attempt takes a
+     * permit of its own, the backoff before a retry holds none, so that the limit only learns the latency of the calls.
+     * An attempt over the limit is not retried.
+     *
+     * @param key           the concurrency limit the task is subject to.
+     * @param deadline      the deadline of the task.
+     * @param call          a function that makes a call with the given deadline.
+     * @param resultConvert a function that converts Type S to Type T.
+     * @param doRetry       a predicate to determine if a failure has to be retried
+     * @param <S>           Source type
+     * @param <T>           Converted Type.
+     * @return the converted result.
+     * @throws io.grpc.StatusRuntimeException with {@code RESOURCE_EXHAUSTED} if the limit was reached.
+     */
+    <S, T> T execute(ConcurrencyLimiter.Key key, Deadline deadline, Function<Deadline, S> call, Function<S, T> resultConvert, Predicate<Status> doRetry) {
+        if (!limiter.isEnabled()) {
+            return execute(deadline, call, resultConvert, doRetry);
+        }
+        return execute(deadline, attemptDeadline -> {
+            ConcurrencyLimiter.Permit permit;
+            try {
+                permit = join(limiter.acquire(key));
+            } catch (RuntimeException e) {
+                throw overLimit(e);
+            }
+            try {
+                var result = call.apply(attemptDeadline);
+                permit.release(null);
+                return result;
+            } catch (RuntimeException e) {
+                permit.release(e);
+                throw e;
+            }
+        }, resultConvert, doRetry);
+    }
+
+    /**
+     * execute the asynchronous task within the concurrency limit of the key and retry it in case of failure. An
+     * attempt over the limit waits for a free slot without blocking the calling thread. Every attempt takes a permit
+     * of its own, the backoff before a retry holds none. An attempt over the limit is not retried.
+     *
+     * @param key           the concurrency limit the task is subject to.
+     * @param deadline      the deadline of the task.
+     * @param call          a function that makes a call with the given deadline.
+     * @param resultConvert a function that converts Type S to Type T.
+     * @param doRetry       a predicate to determine if a failure has to be retried
+     * @param <S>           Source type
+     * @param <T>           Converted Type.
+     * @return a CompletableFuture with type T, failed with {@code RESOURCE_EXHAUSTED} if the limit was reached.
+     */
+    <S, T> CompletableFuture<T> executeAsync(ConcurrencyLimiter.Key key, Deadline deadline, Function<Deadline, ListenableFuture<S>> call, Function<S, T> resultConvert, Predicate<Status> doRetry) {
+        if (!limiter.isEnabled()) {
+            return executeAsync(deadline, call, resultConvert, doRetry);
+        }
+        return executeAsync(deadline, attemptDeadline -> limited(key, attemptDeadline, call), resultConvert, doRetry);
+    }
+
+    /**
+     * Makes the call once a permit of the key is acquired and releases the permit once the call completed. Cancelling
+     * the returned future cancels the call, or releases the permit acquired after the cancellation.
+     */
+    private <S> ListenableFuture<S> limited(ConcurrencyLimiter.Key key, Deadline deadline, Function<Deadline, ListenableFuture<S>> call) {
+        var result = SettableFuture.<S>create();
+        // the call is made in the context of the attempt, also if the permit is acquired on another thread
+        var context = Context.current();
+        limiter.acquire(key).whenComplete((permit, failure) -> {
+            if (failure != null) {
+                result.setException(overLimit(failure));
+                return;
+            }
+            if (result.isCancelled()) {
+                permit.release(new CancellationException());
+                return;
+            }
+            ListenableFuture<S> called;
+            var previous = context.attach();
+            try {
+                called = call.apply(deadline);
+            } catch (RuntimeException e) {
+                permit.release(e);
+                result.setException(e);
+                return;
+            } finally {
+                context.detach(previous);
+            }
+            Futures.addCallback(called, new FutureCallback<>() {
+                @Override
+                public void onSuccess(S response) {
+                    permit.release(null);
+                    result.set(response);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    permit.release(t);
+                    result.setException(t);
+                }
+            }, MoreExecutors.directExecutor());
+            result.addListener(() -> {
+                if (result.isCancelled()) {
+                    called.cancel(false);
+                }
+            }, MoreExecutors.directExecutor());
+        });
+        return result;
+    }
+
+    /**
+     * @return the rejection of an attempt over the concurrency limit, which is never retried.
+     */
+    private static RuntimeException overLimit(Throwable rejection) {
+        var cause = rejection instanceof CompletionException && rejection.getCause() != null ? rejection.getCause() : rejection;
+        return new RetrySkippedException(Status.fromThrowable(cause), cause, "concurrency limit reached");
+    }
+
+    private <S> S retrying(Deadline deadline, Supplier<S> supplier, Predicate<Status> doRetry) {
+        retryBudget.deposit();
+        var operation = new Operation();
+        var context = Context.current().withValue(Operation.KEY, operation);
+        try {
+            var result = Failsafe.with(this.<S>retryPolicy(doRetry)).get(() -> {
+                var previous = context.attach();
+                var attempt = operation.nextAttempt();
+                try {
+                    return supplier.get();
+                } catch (RuntimeException e) {
+                    throw (RuntimeException) vetoRetry(e, attempt, operation, deadline, doRetry);
+                } finally {
+                    context.detach(previous);
+                }
+            });
+            operation.stop(Status.Code.OK);
+            return result;
+        } catch (RuntimeException e) {
+            operation.stop(Status.fromThrowable(e).getCode());
+            throw e;
+        }
+    }
+
+    private <S> CompletableFuture<S> retryingAsync(Deadline deadline, Supplier<ListenableFuture<S>> supplier, Predicate<Status> doRetry) {
+        retryBudget.deposit();
+        var operation = new Operation();
+        var context = Context.current().withValue(Operation.KEY, operation);
+        var future = Failsafe.with(this.<S>retryPolicy(doRetry)).getStageAsync(() -> {
+            var previous = context.attach();
+            var attempt = operation.nextAttempt();
+            try {
+                return toCompletableFuture(supplier.get(), t -> vetoRetry(t, attempt, operation, deadline, doRetry));
+            } finally {
+                context.detach(previous);
+            }
+        });
+        future.whenComplete((ignored, throwable) -> operation.stop(throwable == null ? Status.Code.OK : Status.fromThrowable(throwable).getCode()));
+        return future;
+    }
+
+    /**
+     * Decides whether the failed attempt may be retried with regard to the deadline and the retry budget, which the
+     * cached retry policies know nothing about. The decision is recorded as a {@link RetryEvent}.
+     *
+     * @return the failure, or a {@link RetrySkippedException} if the failure must not be retried.
+     */
+    private Throwable vetoRetry(Throwable failure, int attempt, Operation operation, Deadline deadline, Predicate<Status> doRetry) {
+        if (failure instanceof RetrySkippedException) {
+            return failure;
+        }
+        var status = Status.fromThrowable(failure);
+        if (attempt > retryCfg.maxAttempts() || !doRetry.test(status)) {
+            // not retried anyway
+            return failure;
+        }
+        var backoff = backoff(attempt);
+        if (deadline != null && deadline.timeRemaining(TimeUnit.NANOSECONDS) <= backoff.toNanos()) {
+            RetryEvent.emit(operation.tags(), attempt, status, RetryEvent.DEADLINE, backoff);
+            return new RetrySkippedException(status, failure, "deadline expires before the next attempt");
+        }
+        if (retryBudget.isEnabled() && !retryBudget.tryAcquire()) {
+            RetryEvent.emit(operation.tags(), attempt, status, RetryEvent.BUDGET, backoff);
+            return new RetrySkippedException(status, failure, "retry budget exhausted");
+        }
+        RetryEvent.emit(operation.tags(), attempt, status, RetryEvent.RETRIED, backoff);
+        return failure;
     }
 
+    /**
+     * @return the backoff before the given retry, as computed by the retry policy.
+     */
+    Duration backoff(int retry) {
+        long delay = Math.min((long) retryCfg.delay() << Math.min(retry - 1, 30), retryCfg.maxDelay());
+        return Duration.of(delay, retryCfg.unit());
+    }
+
+    /**
+     * The retry policy of the predicate, built once and shared by all calls retried by the predicate.
+     */
+    @SuppressWarnings("unchecked")
     protected <S> RetryPolicy<S> retryPolicy(Predicate<Status> doRetry) {
-        RetryPolicyBuilder<S> policy = RetryPolicy.<S>builder()
+        return (RetryPolicy<S>) retryPolicies.computeIfAbsent(doRetry, this::newRetryPolicy);
+    }
+
+    private RetryPolicy<Object> newRetryPolicy(Predicate<Status> doRetry) {
+        RetryPolicyBuilder<Object> policy = RetryPolicy.builder()
                 .onFailure(e -> {
                     logger.warn("retry failure (attempt: {}, error: {})",
                             e.getAttemptCount(),
@@ -79,6 +376,9 @@ public abstract class Impl {
                             e.getException() != null ? e.getException().getMessage() : "<none>");
                 })
                 .handleIf(throwable -> {
+                    if (throwable instanceof RetrySkippedException) {
+                        return false;
+                    }
                     Status status = Status.fromThrowable(throwable);
                     return doRetry.test(status);
                 })
@@ -95,5 +395,66 @@ public abstract class Impl {
         return policy.build();
     }
 
+    /**
+     * Waits for the future and rethrows its failure unwrapped, so that blocking clients fail with the same exceptions
+     * whether the operation was executed synchronously or asynchronously.
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adapts a gRPC {@link ListenableFuture} to a {@link CompletableFuture}. Cancelling the returned future cancels
+     * the underlying call.
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture) {
+        return toCompletableFuture(listenableFuture, UnaryOperator.identity());
+    }
+
+    /**
+     * Adapts a gRPC {@link ListenableFuture} to a {@link CompletableFuture} failing with the mapped failure of the
+     * gRPC future. Cancelling the returned future cancels the underlying call.
+     */
+    static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenableFuture, UnaryOperator<Throwable> mapFailure) {
+        var future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenableFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        Futures.addCallback(listenableFuture, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(mapFailure.apply(t));
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    /**
+     * Flags the calls of the stub to be sent to the raft leader, see {@link LeaderAffinityLoadBalancer}.
+     */
+    static <S extends AbstractStub<S>> S toLeader(S stub) {
+        return stub.withOption(LeaderAffinityLoadBalancer.ROUTE_TO_LEADER, true);
+    }
 
+    /**
+     * Linearizable reads are sent to the raft leader, serializable reads can be served by any member.
+     */
+    static <S extends AbstractStub<S>> S route(S stub, GetOption option) {
+        return option.isSerializable() ? stub : toLeader(stub);
+    }
 }
@@ -5,32 +5,69 @@
 package com.jamf.regatta.core.impl;
 
 import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.CompressionConfig;
+import com.jamf.regatta.core.HedgeConfig;
 import com.jamf.regatta.core.KV;
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.Preconditions;
 import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.TableKV;
 import com.jamf.regatta.core.api.KeyValue;
 import com.jamf.regatta.core.api.PutResponse;
 import com.jamf.regatta.core.api.Txn;
 import com.jamf.regatta.core.api.TxnResponse;
 import com.jamf.regatta.core.api.*;
 import com.jamf.regatta.core.api.op.TxnImpl;
-import com.jamf.regatta.core.encoding.SnappyCodec;
 import com.jamf.regatta.core.options.*;
 import com.jamf.regatta.proto.*;
 import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.SortedMap;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class KVImpl extends Impl implements KV {
 
+    /**
+     * A single NUL byte, appended to a key it forms the successor of the key, as range end it leaves the range
+     * unbounded.
+     */
+    static final ByteString NUL = ByteString.copyFrom(new byte[]{0});
+
     private final KVGrpc.KVBlockingStub stub;
+    private final AsyncKVImpl asyncKv;
+    private final NearCache nearCache;
+    private final Hedger hedger;
 
     KVImpl(Channel managedChannel, RetryConfig retryConfig) {
-        super(retryConfig);
-        stub = KVGrpc.newBlockingStub(managedChannel).withCompression(SnappyCodec.NAME);
+        this(managedChannel, retryConfig, new NearCache(CacheConfig.DISABLED));
+    }
+
+    KVImpl(Channel managedChannel, RetryConfig retryConfig, NearCache nearCache) {
+        this(ClientInterceptors.intercept(managedChannel, new CompressionInterceptor(CompressionConfig.DEFAULT)), retryConfig,
+                retryBudget(retryConfig), nearCache, new Hedger(HedgeConfig.DISABLED), new ConcurrencyLimiter(LimitConfig.DISABLED));
+    }
+
+    KVImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget, NearCache nearCache, Hedger hedger, ConcurrencyLimiter limiter) {
+        super(retryConfig, retryBudget, limiter);
+        stub = KVGrpc.newBlockingStub(managedChannel);
+        asyncKv = new AsyncKVImpl(managedChannel, retryConfig, retryBudget, nearCache, hedger, limiter);
+        this.nearCache = nearCache;
+        this.hedger = hedger;
     }
 
     @Override
@@ -40,16 +77,17 @@ public class KVImpl extends Impl implements KV {
 
     @Override
     public PutResponse put(ByteSequence table, ByteSequence key, ByteSequence value, PutOption option) {
-        var request = PutRequest.newBuilder()
-                .setTable(ByteString.copyFrom(table.getBytes()))
-                .setKey(ByteString.copyFrom(key.getBytes()))
-                .setValue(ByteString.copyFrom(value.getBytes()))
-                .build();
-        return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).put(request),
-                put -> new PutResponse(new Response.HeaderImpl(put.getHeader()), new KeyValue(ByteSequence.from(put.getPrevKv().getKey()), ByteSequence.from(put.getPrevKv().getValue()))),
+        return put(table, key, putRequest(table, key, value, option), option, ConcurrencyLimiter.write(table));
+    }
+
+    PutResponse put(ByteSequence table, ByteSequence key, PutRequest request, PutOption option, ConcurrencyLimiter.Key limit) {
+        return write(table, List.of(key), false, () -> execute(
+                limit,
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> toLeader(stub).withDeadline(deadline).put(request),
+                KVImpl::toPutResponse,
                 RETRY_NEVER
-        );
+        ));
     }
 
     @Override
@@ -59,25 +97,62 @@ public class KVImpl extends Impl implements KV {
 
     @Override
     public GetResponse get(ByteSequence table, ByteSequence key, GetOption option) {
-        var request = RangeRequest.newBuilder()
-                .setTable(ByteString.copyFrom(table.getBytes()))
-                .setKey(ByteString.copyFrom(key.getBytes()))
-                .setRangeEnd(option.getEndKey()
-                        .map(byteSequence -> ByteString.copyFrom(byteSequence.getBytes()))
-                        .orElseGet(() -> option.isPrefix() ? ByteString.copyFrom(OptionsUtil.prefixEndOf(key).getBytes()) : ByteString.EMPTY)
-                )
-                .setLimit(option.getLimit())
-                .setCountOnly(option.isCountOnly())
-                .setKeysOnly(option.isKeysOnly())
-                .setLinearizable(!option.isSerializable())
-                .build();
+        return get(table, key, option, null, ConcurrencyLimiter.read(table));
+    }
+
+    /**
+     * @param request the request of the get, {@code null} to build it from the option once the cache is missed.
+     */
+    GetResponse get(ByteSequence table, ByteSequence key, GetOption option, RangeRequest request, ConcurrencyLimiter.Key limit) {
+        var cacheable = nearCache.isEnabled(table) && NearCache.isCacheable(option);
+        if (cacheable) {
+            var cached = nearCache.get(table, key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        GetResponse response;
+        if (hedger.isEnabled() && option.isSerializable()) {
+            response = join(asyncKv.get(table, key, option));
+        } else {
+            var range = request != null ? request : rangeRequest(table, key, option);
+            response = execute(
+                    limit,
+                    Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                    deadline -> route(stub, option).withDeadline(deadline).range(range),
+                    KVImpl::toGetResponse,
+                    option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
+            );
+        }
+        if (cacheable) {
+            nearCache.put(table, key, response);
+        }
+        return response;
+    }
+
+    @Override
+    public SortedMap<ByteSequence, KeyValue> getAll(ByteSequence table, Collection<ByteSequence> keys) {
+        return getAll(table, keys, GetOption.DEFAULT);
+    }
+
+    @Override
+    public SortedMap<ByteSequence, KeyValue> getAll(ByteSequence table, Collection<ByteSequence> keys, GetOption option) {
+        return join(asyncKv.getAll(table, keys, option));
+    }
 
+    @Override
+    public Page page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize) {
+        return page(table, start, end, pageSize, GetOption.DEFAULT);
+    }
+
+    @Override
+    public Page page(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option) {
+        var request = pageRequest(table, start, end, pageSize, option);
         return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).range(request),
-                get -> {
-                    var kvs = get.getKvsList().stream().map(keyValue -> new KeyValue(ByteSequence.from(keyValue.getKey()), ByteSequence.from(keyValue.getValue()))).toList();
-                    return new GetResponse(new Response.HeaderImpl(get.getHeader()), kvs, get.getCount());
-                },
+                ConcurrencyLimiter.read(table),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> route(stub, option).withDeadline(deadline).range(request),
+                KVImpl::toPage,
                 option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
         );
     }
@@ -89,30 +164,100 @@ public class KVImpl extends Impl implements KV {
 
     @Override
     public Stream<GetResponse> iterate(ByteSequence table, ByteSequence key, GetOption option) {
-        var request = RangeRequest.newBuilder()
-                .setTable(ByteString.copyFrom(table.getBytes()))
-                .setKey(ByteString.copyFrom(key.getBytes()))
-                .setRangeEnd(option.getEndKey()
-                        .map(byteSequence -> ByteString.copyFrom(byteSequence.getBytes()))
-                        .orElseGet(() -> option.isPrefix() ? ByteString.copyFrom(OptionsUtil.prefixEndOf(key).getBytes()) : ByteString.EMPTY)
-                )
-                .setLimit(option.getLimit())
-                .setCountOnly(option.isCountOnly())
-                .setKeysOnly(option.isKeysOnly())
-                .setLinearizable(!option.isSerializable())
+        var request = rangeRequest(table, key, option);
+        if (option.getPrefetchChunks() > 0) {
+            var responses = asyncKv.prefetch(request, option);
+            return StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(responses, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.IMMUTABLE),
+                            false)
+                    .onClose(responses::cancel);
+        }
+        var responses = iterateRange(request, option);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(responses, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.IMMUTABLE),
+                        false)
+                .map(KVImpl::toGetResponse);
+    }
+
+    /**
+     * Opens the {@code IterateRange} stream lazily, a failed stream is reopened after the last received key. As the
+     * other reads, a serializable stream is reopened whatever its failure, a linearizable one on a transient status.
+     */
+    private Iterator<RangeResponse> iterateRange(RangeRequest request, GetOption option) {
+        return new ResumableRangeIterator(
+                next -> route(stub, option).withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).iterateRange(next),
+                new RangeResumption(request, retryConfig(), retryBudget(), option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT)
+        );
+    }
+
+    @Override
+    public Stream<KeyValue> scan(ByteSequence table, ByteSequence key, GetOption option, int parallelism) {
+        var template = scanTemplate(table, key, option);
+        var bounds = scanBounds(template, option, parallelism);
+        var spliterator = new RangeSpliterator(template, bounds, request -> iterateRange(request, option));
+        return StreamSupport.stream(spliterator, true);
+    }
+
+    @Override
+    public void scan(ByteSequence table, ByteSequence key, GetOption option, int parallelism, Consumer<? super KeyValue> consumer) {
+        var template = scanTemplate(table, key, option);
+        var bounds = scanBounds(template, option, parallelism);
+        var ranges = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < bounds.size() - 1; i++) {
+            var request = template.toBuilder().setKey(bounds.get(i)).setRangeEnd(bounds.get(i + 1)).build();
+            ranges.add(asyncKv.consume(asyncKv.iterate(request, option), consumer));
+        }
+        var all = CompletableFuture.allOf(ranges.toArray(CompletableFuture[]::new));
+        all.whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                ranges.forEach(range -> range.cancel(false));
+            }
+        });
+        join(all);
+    }
+
+    private static RangeRequest scanTemplate(ByteSequence table, ByteSequence key, GetOption option) {
+        return rangeRequest(table, key, option).toBuilder()
+                .setLimit(0)
+                .setCountOnly(false)
                 .build();
-        return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).iterateRange(request),
-                ir -> StreamSupport.stream(
-                                Spliterators.spliteratorUnknownSize(ir, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.IMMUTABLE),
-                                false)
-                        .map(get -> new GetResponse(
-                                new Response.HeaderImpl(get.getHeader()),
-                                get.getKvsList().stream().map(keyValue -> new KeyValue(ByteSequence.from(keyValue.getKey()), ByteSequence.from(keyValue.getValue()))).toList(),
-                                get.getCount()
-                        )),
+    }
+
+    /**
+     * Samples the key space of the scanned range and returns bounds of at most {@code parallelism} sub-ranges.
+     */
+    private List<ByteString> scanBounds(RangeRequest template, GetOption option, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be greater than 0");
+        var bounds = new ArrayList<ByteString>();
+        bounds.add(template.getKey());
+        var rangeEnd = template.getRangeEnd();
+        if (parallelism > 1 && !rangeEnd.isEmpty()) {
+            var end = rangeEnd.equals(NUL) ? null : rangeEnd;
+            var splitter = new KeySpaceSplitter((from, to) -> firstKey(template, from, to, option));
+            var first = firstKey(template, template.getKey(), end, option);
+            if (first != null) {
+                bounds.addAll(splitter.split(first, end, parallelism));
+            }
+        }
+        bounds.add(rangeEnd);
+        return bounds;
+    }
+
+    private ByteString firstKey(RangeRequest template, ByteString from, ByteString to, GetOption option) {
+        var request = template.toBuilder()
+                .setKey(from)
+                .setRangeEnd(to == null ? NUL : to)
+                .setLimit(1)
+                .setKeysOnly(true)
+                .build();
+        var response = execute(
+                ConcurrencyLimiter.read(ByteSequence.from(request.getTable())),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> route(stub, option).withDeadline(deadline).range(request),
+                Function.identity(),
                 option.isSerializable() ? RETRY_ALWAYS : RETRY_TRANSIENT
         );
+        return response.getKvsCount() == 0 ? null : response.getKvs(0).getKey();
     }
 
     @Override
@@ -122,23 +267,22 @@ public class KVImpl extends Impl implements KV {
 
     @Override
     public DeleteResponse delete(ByteSequence table, ByteSequence key, DeleteOption option) {
-        var request = DeleteRangeRequest.newBuilder()
-                .setTable(ByteString.copyFrom(table.getBytes()))
-                .setKey(ByteString.copyFrom(key.getBytes()))
-                .setRangeEnd(option.getEndKey()
-                        .map(byteSequence -> ByteString.copyFrom(byteSequence.getBytes()))
-                        .orElseGet(() -> option.isPrefix() ? ByteString.copyFrom(OptionsUtil.prefixEndOf(key).getBytes()) : ByteString.EMPTY)
-                )
-                .setPrevKv(option.isPrevKV())
-                .build();
-        return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).deleteRange(request),
-                delete -> {
-                    var kvs = delete.getPrevKvsList().stream().map(keyValue -> new KeyValue(ByteSequence.from(keyValue.getKey()), ByteSequence.from(keyValue.getValue()))).toList();
-                    return new DeleteResponse(new Response.HeaderImpl(delete.getHeader()), kvs, delete.getDeleted());
-                },
+        return delete(table, key, deleteRangeRequest(table, key, option), option, ConcurrencyLimiter.write(table));
+    }
+
+    DeleteResponse delete(ByteSequence table, ByteSequence key, DeleteRangeRequest request, DeleteOption option, ConcurrencyLimiter.Key limit) {
+        return write(table, List.of(key), !request.getRangeEnd().isEmpty(), () -> execute(
+                limit,
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> toLeader(stub).withDeadline(deadline).deleteRange(request),
+                KVImpl::toDeleteResponse,
                 RETRY_NEVER
-        );
+        ));
+    }
+
+    @Override
+    public TableKV table(ByteSequence name) {
+        return new TableKVImpl(this, name);
     }
 
     @Override
@@ -152,14 +296,131 @@ public class KVImpl extends Impl implements KV {
     }
 
     private TxnResponse txn(TxnRequest request, TxnOption option) {
-        return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).txn(request),
-                txnResult -> new TxnResponse(new Response.HeaderImpl(txnResult.getHeader()), txnResult.getSucceeded(), txnResult.getResponsesList()),
-                isReadonlyTxn(request) ? RETRY_TRANSIENT : RETRY_NEVER
+        if (isReadonlyTxn(request)) {
+            if (hedger.isEnabled()) {
+                return join(asyncKv.txn(request, option));
+            }
+            return execute(
+                    ConcurrencyLimiter.read(ByteSequence.from(request.getTable())),
+                    Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                    deadline -> toLeader(stub).withDeadline(deadline).txn(request),
+                    KVImpl::toTxnResponse,
+                    RETRY_TRANSIENT
+            );
+        }
+        return write(ByteSequence.from(request.getTable()), NearCache.writtenKeys(request), NearCache.writesRange(request), () -> execute(
+                ConcurrencyLimiter.write(ByteSequence.from(request.getTable())),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> toLeader(stub).withDeadline(deadline).txn(request),
+                KVImpl::toTxnResponse,
+                RETRY_NEVER
+        ));
+    }
+
+    /**
+     * Executes the write keeping the near cache consistent with it, the written keys (or the whole table if a range
+     * is written) are not served from the cache from the moment the write starts.
+     */
+    private <T extends Response> T write(ByteSequence table, Collection<ByteSequence> keys, boolean range, Supplier<T> call) {
+        if (!nearCache.isEnabled(table)) {
+            return call.get();
+        }
+        nearCache.started(table, keys, range);
+        long revision = 0;
+        try {
+            var response = call.get();
+            revision = response.header().getRevision();
+            return response;
+        } finally {
+            nearCache.finished(table, keys, range, revision);
+        }
+    }
+
+    static PutRequest putRequest(ByteSequence table, ByteSequence key, ByteSequence value, PutOption option) {
+        return PutRequest.newBuilder()
+                .setTable(table.getByteString())
+                .setKey(key.getByteString())
+                .setValue(value.getByteString())
+                .setPrevKv(option.getPrevKV())
+                .build();
+    }
+
+    static RangeRequest rangeRequest(ByteSequence table, ByteSequence key, GetOption option) {
+        return RangeRequest.newBuilder()
+                .setTable(table.getByteString())
+                .setKey(key.getByteString())
+                .setRangeEnd(option.getEndKey()
+                        .map(ByteSequence::getByteString)
+                        .orElseGet(() -> option.isPrefix() ? OptionsUtil.prefixEndOf(key).getByteString() : ByteString.EMPTY)
+                )
+                .setLimit(option.getLimit())
+                .setCountOnly(option.isCountOnly())
+                .setKeysOnly(option.isKeysOnly())
+                .setLinearizable(!option.isSerializable())
+                .build();
+    }
+
+    static DeleteRangeRequest deleteRangeRequest(ByteSequence table, ByteSequence key, DeleteOption option) {
+        return DeleteRangeRequest.newBuilder()
+                .setTable(table.getByteString())
+                .setKey(key.getByteString())
+                .setRangeEnd(option.getEndKey()
+                        .map(ByteSequence::getByteString)
+                        .orElseGet(() -> option.isPrefix() ? OptionsUtil.prefixEndOf(key).getByteString() : ByteString.EMPTY)
+                )
+                .setPrevKv(option.isPrevKV())
+                .build();
+    }
+
+    static PutResponse toPutResponse(com.jamf.regatta.proto.PutResponse put) {
+        return new PutResponse(new Response.HeaderImpl(put.getHeader()), toKeyValue(put.getPrevKv()));
+    }
+
+    static GetResponse toGetResponse(RangeResponse get) {
+        var kvs = get.getKvsList().stream().map(KVImpl::toKeyValue).toList();
+        return new GetResponse(new Response.HeaderImpl(get.getHeader()), kvs, get.getCount(), get.getMore());
+    }
+
+    static RangeRequest pageRequest(ByteSequence table, ByteSequence start, ByteSequence end, int pageSize, GetOption option) {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0");
+        return RangeRequest.newBuilder()
+                .setTable(table.getByteString())
+                .setKey(start.getByteString())
+                .setRangeEnd(end.getByteString())
+                .setLimit(pageSize)
+                .setKeysOnly(option.isKeysOnly())
+                .setLinearizable(!option.isSerializable())
+                .build();
+    }
+
+    static Page toPage(RangeResponse range) {
+        var kvs = range.getKvsList().stream().map(KVImpl::toKeyValue).toList();
+        ByteSequence continuation = null;
+        if (range.getMore() && !kvs.isEmpty()) {
+            continuation = kvs.get(kvs.size() - 1).key().concat(NUL);
+        }
+        return new Page(new Response.HeaderImpl(range.getHeader()), kvs, continuation != null, continuation);
+    }
+
+    static DeleteResponse toDeleteResponse(DeleteRangeResponse delete) {
+        var kvs = delete.getPrevKvsList().stream().map(KVImpl::toKeyValue).toList();
+        return new DeleteResponse(new Response.HeaderImpl(delete.getHeader()), kvs, delete.getDeleted());
+    }
+
+    static TxnResponse toTxnResponse(com.jamf.regatta.proto.TxnResponse txnResult) {
+        return new TxnResponse(new Response.HeaderImpl(txnResult.getHeader()), txnResult.getSucceeded(), txnResult.getResponsesList());
+    }
+
+    static KeyValue toKeyValue(com.jamf.regatta.proto.KeyValue keyValue) {
+        return new KeyValue(
+                ByteSequence.from(keyValue.getKey()),
+                ByteSequence.from(keyValue.getValue()),
+                keyValue.getCreateRevision(),
+                keyValue.getModRevision()
         );
     }
 
-    private static boolean isReadonlyTxn(TxnRequest request) {
+    static boolean isReadonlyTxn(TxnRequest request) {
         var ops = new LinkedList<RequestOp>();
         ops.addAll(request.getSuccessList());
         ops.addAll(request.getFailureList());
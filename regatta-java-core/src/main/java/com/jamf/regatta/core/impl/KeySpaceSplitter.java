@@ -0,0 +1,144 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.protobuf.ByteString;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Cuts a key range into sub-ranges for a parallel scan. The upper bound is first narrowed down to the last stored key,
+ * then split points are found by bisecting the range in byte space and snapping every midpoint to the first existing
+ * key after it with a {@code keysOnly}, {@code limit = 1} probe. If there is no key between the midpoint and the upper
+ * bound, the upper half is empty and the bisection continues in the lower half, so the split points adapt to where
+ * keys are actually stored.
+ */
+final class KeySpaceSplitter {
+
+    /**
+     * Maximal number of probes spent on finding a single split point.
+     */
+    static final int MAX_PROBES = 128;
+
+    private static final int MAX_WIDTH = 32;
+
+    private final BiFunction<ByteString, ByteString, ByteString> probe;
+
+    /**
+     * @param probe returns the first key in {@code [from, to)}, or {@code null} if there is none. A {@code null}
+     *              upper bound means the range is unbounded.
+     */
+    KeySpaceSplitter(BiFunction<ByteString, ByteString, ByteString> probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * @param first the first existing key of the range
+     * @param end   the exclusive upper bound of the range, {@code null} if the range is unbounded
+     * @param parts desired number of sub-ranges
+     * @return sorted existing keys splitting the range, at most {@code parts - 1} of them
+     */
+    List<ByteString> split(ByteString first, ByteString end, int parts) {
+        var splits = new ArrayList<ByteString>();
+        if (parts > 1) {
+            split(first, tighten(first, end), parts, splits);
+        }
+        return splits;
+    }
+
+    /**
+     * Narrows the upper bound down to just above the last key of the range, so that the bisection isn't skewed by
+     * the unused key space above it (e.g. the whole space above a common key prefix of an unbounded range).
+     */
+    private ByteString tighten(ByteString first, ByteString end) {
+        var low = first;
+        var high = end;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            var mid = midpoint(low, high);
+            if (mid == null) {
+                break;
+            }
+            var key = probe.apply(mid, high);
+            if (key == null) {
+                high = mid;
+            } else {
+                low = key;
+            }
+        }
+        return high;
+    }
+
+    private void split(ByteString low, ByteString high, int parts, List<ByteString> splits) {
+        if (parts <= 1) {
+            return;
+        }
+        for (int i = 0; i < MAX_PROBES; i++) {
+            var mid = midpoint(low, high);
+            if (mid == null) {
+                return;
+            }
+            var key = probe.apply(mid, high);
+            if (key == null) {
+                high = mid;
+                continue;
+            }
+            int lowerParts = parts / 2;
+            split(low, key, lowerParts, splits);
+            splits.add(key);
+            split(key, high, parts - lowerParts, splits);
+            return;
+        }
+    }
+
+    /**
+     * Returns a key lying strictly between the bounds, halfway between them when both are read as big-endian
+     * numbers of equal width following their common prefix.
+     *
+     * @param low  the lower bound
+     * @param high the upper bound, {@code null} if unbounded
+     * @return the midpoint, or {@code null} if there is no room between the bounds
+     */
+    static ByteString midpoint(ByteString low, ByteString high) {
+        int prefix = 0;
+        if (high != null) {
+            while (prefix < low.size() && prefix < high.size() && low.byteAt(prefix) == high.byteAt(prefix)) {
+                prefix++;
+            }
+        }
+        int width = Math.min(Math.max(low.size(), high == null ? 0 : high.size()) - prefix + 1, MAX_WIDTH);
+        var from = toNumber(low, prefix, width);
+        var to = high == null ? BigInteger.ONE.shiftLeft(8 * width) : toNumber(high, prefix, width);
+        var mid = from.add(to).shiftRight(1);
+        if (mid.compareTo(from) <= 0) {
+            return null;
+        }
+        var digits = new byte[width];
+        var bytes = mid.toByteArray();
+        int length = Math.min(bytes.length, width);
+        System.arraycopy(bytes, bytes.length - length, digits, width - length, length);
+        int significant = width;
+        while (significant > 0 && digits[significant - 1] == 0) {
+            significant--;
+        }
+        var result = low.substring(0, prefix).concat(ByteString.copyFrom(digits, 0, significant));
+        var comparator = ByteString.unsignedLexicographicalComparator();
+        if (comparator.compare(result, low) <= 0 || (high != null && comparator.compare(result, high) >= 0)) {
+            return null;
+        }
+        return result;
+    }
+
+    private static BigInteger toNumber(ByteString key, int offset, int width) {
+        var digits = new byte[width];
+        int length = Math.max(0, Math.min(key.size() - offset, width));
+        if (length > 0) {
+            key.substring(offset, offset + length).copyTo(digits, 0);
+        }
+        return new BigInteger(1, digits);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.protobuf.MessageLite;
+import com.jamf.regatta.core.metrics.CallTags;
+import com.jamf.regatta.core.metrics.ClientMetrics;
+import com.jamf.regatta.proto.CreateTableRequest;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.DeleteTableRequest;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.TxnRequest;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Records every RPC of the channel to {@link ClientMetrics}. An RPC is timed from its start until it is closed, the
+ * tags are taken from its request message once it is sent. The RPC is counted as an attempt of the {@link Operation} it
+ * was started in, if any.
+ */
+public final class MetricsInterceptor implements ClientInterceptor {
+
+    private final ClientMetrics metrics;
+
+    public MetricsInterceptor(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        var operation = Operation.KEY.get();
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+
+            private volatile ClientMetrics.RpcSample sample = ClientMetrics.RpcSample.NOOP;
+            private volatile CallTags tags = new CallTags(method.getBareMethodName(), "", "");
+            private volatile boolean sent;
+
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                if (operation != null) {
+                    operation.rpc(metrics, tags);
+                }
+                var started = metrics.startRpc(method.getBareMethodName());
+                sample = started;
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        if (message instanceof MessageLite response) {
+                            started.responseSize(response.getSerializedSize());
+                        }
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        started.stop(tags, status.getCode());
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                if (!sent) {
+                    sent = true;
+                    tags = tags(method.getBareMethodName(), message);
+                    if (operation != null) {
+                        operation.tags(tags);
+                    }
+                }
+                if (message instanceof MessageLite request) {
+                    sample.requestSize(request.getSerializedSize());
+                }
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    static CallTags tags(String method, Object request) {
+        if (request instanceof RangeRequest range) {
+            return new CallTags(method, range.getTable().toStringUtf8(), range.getLinearizable() ? CallTags.LINEARIZABLE : CallTags.SERIALIZABLE);
+        } else if (request instanceof PutRequest put) {
+            return new CallTags(method, put.getTable().toStringUtf8(), CallTags.LINEARIZABLE);
+        } else if (request instanceof DeleteRangeRequest delete) {
+            return new CallTags(method, delete.getTable().toStringUtf8(), CallTags.LINEARIZABLE);
+        } else if (request instanceof TxnRequest txn) {
+            return new CallTags(method, txn.getTable().toStringUtf8(), CallTags.LINEARIZABLE);
+        } else if (request instanceof CreateTableRequest create) {
+            return new CallTags(method, create.getName(), "");
+        } else if (request instanceof DeleteTableRequest delete) {
+            return new CallTags(method, delete.getName(), "");
+        }
+        return new CallTags(method, "", "");
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.common.collect.Iterables;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.CacheStats;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.proto.TxnRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Client side cache of point reads, bounded by size with LRU eviction and by TTL. Every entry carries the store
+ * revision it was read at, a response is only cached if no newer revision is known for its key or table. Local
+ * writes replace the entry with a tombstone carrying the revision of the write, so that reads which were in flight
+ * during the write can't bring the old value back. A failed write may have been committed at an unknown revision, its
+ * key (or table) is not cached for the TTL, no longer than a value read before the write would have been served.
+ */
+final class NearCache {
+
+    private static final long PENDING = Long.MAX_VALUE;
+
+    private final CacheConfig config;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<CacheKey, Entry> entries;
+    private final Map<ByteSequence, Long> tableFloors = new HashMap<>();
+    // the time of the failed range writes of the tables, whose floor is kept for the TTL
+    private final Map<ByteSequence, Long> tableFailures = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    NearCache(CacheConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    NearCache(CacheConfig config, LongSupplier nanoClock) {
+        this.config = config;
+        this.ttlNanos = config.ttl().toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                if (size() > config.maxSize()) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    boolean isEnabled(ByteSequence table) {
+        return config.maxSize() > 0 && config.tables().contains(table);
+    }
+
+    static boolean isCacheable(GetOption option) {
+        return option.getEndKey().isEmpty() && !option.isPrefix() && !option.isCountOnly() && !option.isKeysOnly();
+    }
+
+    synchronized GetResponse get(ByteSequence table, ByteSequence key) {
+        var cacheKey = new CacheKey(table, key);
+        var entry = entries.get(cacheKey);
+        if (entry == null || entry.response == null) {
+            misses++;
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.readAt >= ttlNanos) {
+            entries.remove(cacheKey);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    synchronized void put(ByteSequence table, ByteSequence key, GetResponse response) {
+        long revision = response.header().getRevision();
+        for (KeyValue kv : response.kvs()) {
+            revision = Math.max(revision, kv.modRevision());
+        }
+        var now = nanoClock.getAsLong();
+        if (revision < tableFloors.getOrDefault(table, 0L)) {
+            var failedAt = tableFailures.get(table);
+            if (failedAt == null || now - failedAt < ttlNanos) {
+                return;
+            }
+            tableFloors.remove(table);
+            tableFailures.remove(table);
+        }
+        var cacheKey = new CacheKey(table, key);
+        var existing = entries.get(cacheKey);
+        if (existing != null && existing.revision > revision && !(existing.failed && now - existing.readAt >= ttlNanos)) {
+            return;
+        }
+        entries.put(cacheKey, new Entry(response, revision, now, false));
+    }
+
+    /**
+     * Invalidates the key before it is written, until {@link #written(ByteSequence, ByteSequence, long)} is called no
+     * read of the key is cached.
+     */
+    synchronized void invalidate(ByteSequence table, ByteSequence key) {
+        entries.put(new CacheKey(table, key), new Entry(null, PENDING, 0, false));
+    }
+
+    /**
+     * Records the revision of a finished write, reads older than it won't be cached. The outcome of a failed write is
+     * unknown, no read of the key is cached for the TTL.
+     *
+     * @param revision revision of the write, {@code 0} if it failed
+     */
+    synchronized void written(ByteSequence table, ByteSequence key, long revision) {
+        var cacheKey = new CacheKey(table, key);
+        if (revision == 0) {
+            entries.put(cacheKey, new Entry(null, PENDING, nanoClock.getAsLong(), true));
+            return;
+        }
+        var existing = entries.get(cacheKey);
+        if (existing == null || existing.response == null || existing.revision <= revision) {
+            entries.put(cacheKey, new Entry(null, revision, 0, false));
+        }
+    }
+
+    /**
+     * Invalidates the whole table before a range of keys is written, until
+     * {@link #tableWritten(ByteSequence, long)} is called no read of the table is cached.
+     */
+    synchronized void invalidateTable(ByteSequence table) {
+        entries.keySet().removeIf(cacheKey -> cacheKey.table.equals(table));
+        tableFloors.put(table, PENDING);
+        tableFailures.remove(table);
+    }
+
+    /**
+     * Records the revision of a finished range write, reads of the table older than it won't be cached. The outcome of
+     * a failed write is unknown, no read of the table is cached for the TTL.
+     *
+     * @param revision revision of the write, {@code 0} if it failed
+     */
+    synchronized void tableWritten(ByteSequence table, long revision) {
+        if (revision == 0) {
+            tableFailures.put(table, nanoClock.getAsLong());
+            return;
+        }
+        tableFloors.put(table, revision);
+    }
+
+    /**
+     * Invalidates the keys (or the whole table if a range is written) before they are written, until
+     * {@link #finished(ByteSequence, Collection, boolean, long)} is called.
+     */
+    void started(ByteSequence table, Collection<ByteSequence> keys, boolean range) {
+        if (range) {
+            invalidateTable(table);
+        } else {
+            keys.forEach(key -> invalidate(table, key));
+        }
+    }
+
+    /**
+     * Records the revision of a finished write of the keys (or of a range of the table).
+     *
+     * @param revision revision of the write, {@code 0} if it failed
+     */
+    void finished(ByteSequence table, Collection<ByteSequence> keys, boolean range, long revision) {
+        if (range) {
+            tableWritten(table, revision);
+        } else {
+            keys.forEach(key -> written(table, key, revision));
+        }
+    }
+
+    /**
+     * @return the keys written by the puts and deletes of the transaction.
+     */
+    static List<ByteSequence> writtenKeys(TxnRequest request) {
+        var keys = new ArrayList<ByteSequence>();
+        for (var op : Iterables.concat(request.getSuccessList(), request.getFailureList())) {
+            if (op.hasRequestPut()) {
+                keys.add(ByteSequence.from(op.getRequestPut().getKey()));
+            } else if (op.hasRequestDeleteRange()) {
+                keys.add(ByteSequence.from(op.getRequestDeleteRange().getKey()));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return whether the transaction deletes a range of keys.
+     */
+    static boolean writesRange(TxnRequest request) {
+        for (var op : Iterables.concat(request.getSuccessList(), request.getFailureList())) {
+            if (op.hasRequestDeleteRange() && !op.getRequestDeleteRange().getRangeEnd().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size());
+    }
+
+    private record CacheKey(ByteSequence table, ByteSequence key) {
+    }
+
+    /**
+     * @param response cached response, {@code null} for tombstones
+     * @param readAt   time the response was read, or the write of a failed tombstone failed
+     * @param failed   tombstone of a write which failed, expires after the TTL
+     */
+    private record Entry(GetResponse response, long revision, long readAt, boolean failed) {
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.metrics.CallTags;
+import com.jamf.regatta.core.metrics.ClientMetrics;
+import io.grpc.Context;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An operation of the client, spanning the attempts of a call. {@link Impl} attaches it to the {@link Context} its
+ * attempts are sent in and numbers the attempts. The {@link MetricsInterceptor} counts the RPCs, hedges included, and
+ * starts the operation sample with the first one, so that operations are recorded only when the client has metrics.
+ */
+final class Operation {
+
+    static final Context.Key<Operation> KEY = Context.key("regatta-operation");
+
+    private final AtomicInteger rpcs = new AtomicInteger();
+    private volatile ClientMetrics.OperationSample sample;
+    private volatile CallTags tags;
+    private volatile int attempt;
+
+    /**
+     * Starts the next attempt, attempts are sequential.
+     *
+     * @return the number of the attempt, starting at 1.
+     */
+    int nextAttempt() {
+        return ++attempt;
+    }
+
+    int attempt() {
+        return attempt;
+    }
+
+    /**
+     * @return the tags of the last RPC, {@code null} if no interceptor saw the RPCs of the operation.
+     */
+    CallTags tags() {
+        return tags;
+    }
+
+    void tags(CallTags tags) {
+        this.tags = tags;
+    }
+
+    void rpc(ClientMetrics metrics, CallTags tags) {
+        this.tags = tags;
+        if (rpcs.getAndIncrement() == 0) {
+            sample = metrics.startOperation();
+        }
+    }
+
+    void stop(Status.Code code) {
+        var started = sample;
+        if (started != null) {
+            started.stop(tags, code, rpcs.get());
+        }
+    }
+}
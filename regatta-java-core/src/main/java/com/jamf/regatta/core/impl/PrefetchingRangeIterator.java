@@ -0,0 +1,218 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Blocking {@code IterateRange} iterator which reads ahead. Chunks are received and converted to {@link GetResponse}
+ * on the gRPC threads into a bounded queue while the consumer processes the previous ones. A new chunk is requested
+ * from the server only while the queued and requested chunks stay below the chunk limit and the queued chunks stay
+ * below the byte limit. A call failing with a retryable status is reopened after the last received key, see
+ * {@link RangeResumption}.
+ */
+final class PrefetchingRangeIterator implements Iterator<GetResponse>, ClientResponseObserver<RangeRequest, RangeResponse> {
+
+    private final BiConsumer<RangeRequest, ClientResponseObserver<RangeRequest, RangeResponse>> call;
+    private final RangeResumption resumption;
+    private final int maxChunks;
+    private final long maxBytes;
+
+    private final ArrayDeque<Chunk> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private int requested;
+    private ClientCallStreamObserver<RangeRequest> startingStream;
+    private ClientCallStreamObserver<RangeRequest> requestStream;
+    private boolean done;
+    private boolean cancelled;
+    private Throwable error;
+
+    /**
+     * @param call       starts the {@code IterateRange} call of the request with the given response observer.
+     * @param resumption progress of the iterated range
+     * @param maxChunks  maximal number of queued and requested chunks
+     * @param maxBytes   maximal serialized size of the queued chunks
+     */
+    PrefetchingRangeIterator(BiConsumer<RangeRequest, ClientResponseObserver<RangeRequest, RangeResponse>> call, RangeResumption resumption, int maxChunks, long maxBytes) {
+        this.call = call;
+        this.resumption = resumption;
+        this.maxChunks = maxChunks;
+        this.maxBytes = maxBytes;
+    }
+
+    void open() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+        }
+        var request = resumption.nextRequest();
+        if (request == null) {
+            onCompleted();
+            return;
+        }
+        try {
+            call.accept(request, this);
+        } catch (RuntimeException e) {
+            onError(e);
+            return;
+        }
+        ClientCallStreamObserver<RangeRequest> abandoned = null;
+        synchronized (this) {
+            // the call can be used only once it was started
+            if (cancelled) {
+                abandoned = startingStream;
+            } else {
+                requestStream = startingStream;
+                requested = 0;
+            }
+        }
+        if (abandoned != null) {
+            abandoned.cancel("iteration cancelled", null);
+            return;
+        }
+        requestMore();
+    }
+
+    /**
+     * Stops reading ahead and cancels the call.
+     */
+    void cancel() {
+        ClientCallStreamObserver<RangeRequest> stream;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            stream = done ? null : requestStream;
+            queue.clear();
+            queuedBytes = 0;
+            notifyAll();
+        }
+        if (stream != null) {
+            stream.cancel("iteration cancelled", null);
+        }
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<RangeRequest> requestStream) {
+        requestStream.disableAutoRequestWithInitial(0);
+        synchronized (this) {
+            this.startingStream = requestStream;
+        }
+    }
+
+    @Override
+    public void onNext(RangeResponse response) {
+        resumption.received(response);
+        var chunk = new Chunk(KVImpl.toGetResponse(response), response.getSerializedSize());
+        synchronized (this) {
+            requested--;
+            if (cancelled) {
+                return;
+            }
+            queue.add(chunk);
+            queuedBytes += chunk.bytes;
+            notifyAll();
+        }
+        requestMore();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        var delay = isCancelled() ? null : resumption.onFailure(t);
+        synchronized (this) {
+            if (delay != null) {
+                requestStream = null;
+                requested = 0;
+            } else {
+                error = t;
+                done = true;
+                notifyAll();
+            }
+        }
+        if (delay != null) {
+            CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(this::open);
+        }
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        done = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        while (queue.isEmpty() && !done && !cancelled) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw Status.CANCELLED.withDescription("interrupted while waiting for the next chunk").withCause(e).asRuntimeException();
+            }
+        }
+        if (!queue.isEmpty()) {
+            return true;
+        }
+        if (error != null) {
+            throw error instanceof StatusRuntimeException sre ? sre : Status.fromThrowable(error).asRuntimeException();
+        }
+        return false;
+    }
+
+    @Override
+    public GetResponse next() {
+        Chunk chunk;
+        synchronized (this) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            chunk = queue.poll();
+            queuedBytes -= chunk.bytes;
+        }
+        requestMore();
+        return chunk.response;
+    }
+
+    private void requestMore() {
+        ClientCallStreamObserver<RangeRequest> stream;
+        int count = 0;
+        synchronized (this) {
+            stream = requestStream;
+            if (stream == null || done || cancelled) {
+                return;
+            }
+            while (requested + queue.size() < maxChunks && queuedBytes < maxBytes) {
+                requested++;
+                count++;
+            }
+        }
+        if (count > 0) {
+            stream.request(count);
+        }
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private record Chunk(GetResponse response, int bytes) {
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Cold {@link Flow.Publisher} over a server streaming {@code IterateRange} call. Every subscription opens its own call
+ * with automatic inbound flow control disabled, a new {@link RangeResponse} chunk is requested from the server only
+ * once the previous one was handed over to the subscriber and there is outstanding demand. At most a single chunk is
+ * buffered per subscription. Cancelling the subscription cancels the call. A call failing with a retryable status is
+ * reopened after the last received key, see {@link RangeResumption}.
+ */
+final class RangePublisher implements Flow.Publisher<KeyValue> {
+
+    private final BiConsumer<RangeRequest, StreamObserver<RangeResponse>> call;
+    private final Supplier<RangeResumption> resumption;
+
+    /**
+     * @param call       starts the {@code IterateRange} call of the request with the given response observer.
+     * @param resumption creates the progress tracking of a new subscription.
+     */
+    RangePublisher(BiConsumer<RangeRequest, StreamObserver<RangeResponse>> call, Supplier<RangeResumption> resumption) {
+        this.call = call;
+        this.resumption = resumption;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super KeyValue> subscriber) {
+        var subscription = new RangeSubscription(subscriber, call, resumption.get());
+        subscriber.onSubscribe(subscription);
+        subscription.open();
+    }
+
+    private static final class RangeSubscription implements Flow.Subscription, ClientResponseObserver<RangeRequest, RangeResponse> {
+
+        private final Flow.Subscriber<? super KeyValue> subscriber;
+        private final BiConsumer<RangeRequest, StreamObserver<RangeResponse>> call;
+        private final RangeResumption resumption;
+        private final Queue<KeyValue> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile ClientCallStreamObserver<RangeRequest> startingStream;
+        private volatile ClientCallStreamObserver<RangeRequest> requestStream;
+        private volatile boolean chunkRequested;
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+
+        private RangeSubscription(Flow.Subscriber<? super KeyValue> subscriber, BiConsumer<RangeRequest, StreamObserver<RangeResponse>> call, RangeResumption resumption) {
+            this.subscriber = subscriber;
+            this.call = call;
+            this.resumption = resumption;
+        }
+
+        private void open() {
+            if (cancelled || done) {
+                return;
+            }
+            var request = resumption.nextRequest();
+            if (request == null) {
+                onCompleted();
+                return;
+            }
+            try {
+                call.accept(request, this);
+            } catch (RuntimeException e) {
+                onError(e);
+                return;
+            }
+            // the call can be used only once it was started
+            requestStream = startingStream;
+            if (cancelled || done) {
+                requestStream.cancel("subscription cancelled", null);
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<RangeRequest> requestStream) {
+            requestStream.disableAutoRequestWithInitial(0);
+            this.startingStream = requestStream;
+        }
+
+        @Override
+        public void onNext(RangeResponse response) {
+            resumption.received(response);
+            for (var kv : response.getKvsList()) {
+                buffer.offer(KVImpl.toKeyValue(kv));
+            }
+            chunkRequested = false;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                // the subscription already failed, e.g. by an invalid request, and this is the cancelled call
+                return;
+            }
+            var delay = cancelled ? null : resumption.onFailure(t);
+            if (delay != null) {
+                requestStream = null;
+                chunkRequested = false;
+                CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(this::open);
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // signalled by drain, which serializes it with the signals of the call
+                error = new IllegalArgumentException("non-positive subscription request: " + n);
+                done = true;
+                var stream = requestStream;
+                if (stream != null) {
+                    stream.cancel("invalid subscription request", null);
+                }
+                drain();
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            var stream = requestStream;
+            if (stream != null && !done) {
+                stream.cancel("subscription cancelled", null);
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (cancelled) {
+                        buffer.clear();
+                        return;
+                    }
+                    if (error != null) {
+                        terminate();
+                        return;
+                    }
+                    boolean completed = done;
+                    var kv = buffer.poll();
+                    if (kv == null) {
+                        if (completed) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    subscriber.onNext(kv);
+                    emitted++;
+                }
+                if (cancelled) {
+                    buffer.clear();
+                    return;
+                }
+                if (done && (error != null || buffer.isEmpty())) {
+                    terminate();
+                    return;
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+                var stream = requestStream;
+                if (stream != null && !done && !chunkRequested && buffer.isEmpty() && demand.get() > 0) {
+                    chunkRequested = true;
+                    stream.request(1);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            cancelled = true;
+            buffer.clear();
+            if (error != null) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.metrics.CallTags;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Tracks the progress of an {@code IterateRange} stream so that it can be reopened right after the last received key
+ * when it fails with a retryable status. Consecutive failures are retried with the exponential backoff of the
+ * {@link RetryConfig}, receiving a chunk resets the backoff. Reopening the stream is paid from the retry budget of the
+ * client, if any, and recorded as a {@link RetryEvent}. Chunks are tracked as received, not as consumed, the
+ * caller keeps every received chunk until it is consumed, so the reopened stream neither repeats nor skips keys.
+ */
+final class RangeResumption {
+
+    private final RangeRequest request;
+    private final RetryConfig retryConfig;
+    private final TokenBucket retryBudget;
+    private final Predicate<Status> doRetry;
+    private final CallTags tags;
+
+    private ByteString lastKey;
+    private long received;
+    private int failures;
+    private long firstFailureNanos;
+
+    RangeResumption(RangeRequest request, RetryConfig retryConfig, Predicate<Status> doRetry) {
+        this(request, retryConfig, new TokenBucket(0, 0), doRetry);
+    }
+
+    RangeResumption(RangeRequest request, RetryConfig retryConfig, TokenBucket retryBudget, Predicate<Status> doRetry) {
+        this.request = request;
+        this.retryConfig = retryConfig;
+        this.retryBudget = retryBudget;
+        this.doRetry = doRetry;
+        this.tags = MetricsInterceptor.tags("IterateRange", request);
+        retryBudget.deposit();
+    }
+
+    synchronized void received(RangeResponse chunk) {
+        if (chunk.getKvsCount() > 0) {
+            lastKey = chunk.getKvs(chunk.getKvsCount() - 1).getKey();
+            received += chunk.getKvsCount();
+        }
+        failures = 0;
+    }
+
+    /**
+     * @param t the failure of the stream
+     * @return delay before the stream is reopened, {@code null} if it must not be reopened
+     */
+    synchronized Duration onFailure(Throwable t) {
+        if (!doRetry.test(Status.fromThrowable(t)) || failures >= retryConfig.maxAttempts()) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (failures == 0) {
+            firstFailureNanos = now;
+        } else if (retryConfig.maxDuration() != null && now - firstFailureNanos >= retryConfig.maxDuration().toNanos()) {
+            return null;
+        }
+        long delay = Math.min((long) retryConfig.delay() << Math.min(failures, 30), retryConfig.maxDelay());
+        var backoff = Duration.of(delay, retryConfig.unit());
+        if (retryBudget.isEnabled() && !retryBudget.tryAcquire()) {
+            RetryEvent.emit(tags, failures + 1, Status.fromThrowable(t), RetryEvent.BUDGET, backoff);
+            return null;
+        }
+        failures++;
+        RetryEvent.emit(tags, failures, Status.fromThrowable(t), RetryEvent.RETRIED, backoff);
+        return backoff;
+    }
+
+    /**
+     * @return the request continuing after the last received key, {@code null} if the range was fully received
+     */
+    synchronized RangeRequest nextRequest() {
+        if (lastKey == null) {
+            return request;
+        }
+        if (request.getRangeEnd().isEmpty()) {
+            return null;
+        }
+        var next = request.toBuilder().setKey(lastKey.concat(KVImpl.NUL));
+        if (request.getLimit() > 0) {
+            if (received >= request.getLimit()) {
+                return null;
+            }
+            next.setLimit(request.getLimit() - received);
+        }
+        return next.build();
+    }
+}
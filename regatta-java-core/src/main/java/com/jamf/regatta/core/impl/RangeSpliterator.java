@@ -0,0 +1,96 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link Spliterator} over consecutive sub-ranges of a scan. Every sub-range is read by its own {@code IterateRange}
+ * call which is opened lazily on the first {@link #tryAdvance(Consumer)}. Until then the remaining sub-ranges can be
+ * split off, so a parallel stream reads the sub-ranges concurrently.
+ */
+final class RangeSpliterator implements Spliterator<KeyValue> {
+
+    private final RangeRequest template;
+    private final List<ByteString> bounds;
+    private final Function<RangeRequest, Iterator<RangeResponse>> call;
+    private final int fence;
+    private int index;
+    private Iterator<RangeResponse> responses;
+    private Iterator<com.jamf.regatta.proto.KeyValue> chunk = Collections.emptyIterator();
+
+    /**
+     * @param template request the sub-range requests are derived from
+     * @param bounds   sorted bounds of the sub-ranges, sub-range {@code i} is {@code [bounds[i], bounds[i + 1])}
+     * @param call     opens the {@code IterateRange} call
+     */
+    RangeSpliterator(RangeRequest template, List<ByteString> bounds, Function<RangeRequest, Iterator<RangeResponse>> call) {
+        this(template, bounds, call, 0, bounds.size() - 1);
+    }
+
+    private RangeSpliterator(RangeRequest template, List<ByteString> bounds, Function<RangeRequest, Iterator<RangeResponse>> call, int index, int fence) {
+        this.template = template;
+        this.bounds = bounds;
+        this.call = call;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super KeyValue> action) {
+        while (true) {
+            if (chunk.hasNext()) {
+                action.accept(KVImpl.toKeyValue(chunk.next()));
+                return true;
+            }
+            if (responses != null && responses.hasNext()) {
+                chunk = responses.next().getKvsList().iterator();
+                continue;
+            }
+            if (responses != null) {
+                responses = null;
+                index++;
+            }
+            if (index >= fence) {
+                return false;
+            }
+            responses = call.apply(template.toBuilder()
+                    .setKey(bounds.get(index))
+                    .setRangeEnd(bounds.get(index + 1))
+                    .build());
+        }
+    }
+
+    @Override
+    public Spliterator<KeyValue> trySplit() {
+        if (responses != null || fence - index < 2) {
+            return null;
+        }
+        int mid = (index + fence) >>> 1;
+        var prefix = new RangeSpliterator(template, bounds, call, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import io.grpc.Status;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Blocking {@code IterateRange} iterator which transparently reopens the stream after the last received key when it
+ * fails with a retryable status.
+ */
+final class ResumableRangeIterator implements Iterator<RangeResponse> {
+
+    private final Function<RangeRequest, Iterator<RangeResponse>> call;
+    private final RangeResumption resumption;
+    private Iterator<RangeResponse> current;
+    private RangeResponse next;
+    private boolean done;
+
+    /**
+     * @param call       opens the {@code IterateRange} call
+     * @param resumption progress of the iterated range
+     */
+    ResumableRangeIterator(Function<RangeRequest, Iterator<RangeResponse>> call, RangeResumption resumption) {
+        this.call = call;
+        this.resumption = resumption;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !done) {
+            try {
+                if (current == null) {
+                    var request = resumption.nextRequest();
+                    if (request == null) {
+                        done = true;
+                        break;
+                    }
+                    current = call.apply(request);
+                }
+                if (current.hasNext()) {
+                    next = current.next();
+                    resumption.received(next);
+                } else {
+                    done = true;
+                }
+            } catch (RuntimeException e) {
+                var delay = resumption.onFailure(e);
+                if (delay == null) {
+                    throw e;
+                }
+                current = null;
+                sleep(delay.toNanos());
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public RangeResponse next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var response = next;
+        next = null;
+        return response;
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withDescription("interrupted while resuming the stream").withCause(e).asRuntimeException();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.metrics.CallTags;
+import io.grpc.Status;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.time.Duration;
+
+/**
+ * Flight recorder event of a failed attempt the client considered retrying, including the retries skipped because of
+ * the deadline or the retry budget.
+ */
+@Name(RetryEvent.NAME)
+@Label("Regatta Retry")
+@Category("Regatta")
+@Description("A failed attempt of a Regatta call which would be retried")
+@StackTrace(false)
+final class RetryEvent extends Event {
+
+    static final String NAME = "com.jamf.regatta.Retry";
+
+    static final String RETRIED = "retried";
+    static final String DEADLINE = "deadline";
+    static final String BUDGET = "budget";
+
+    private static final EventType TYPE = EventType.getEventType(RetryEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Table")
+    String table;
+
+    @Label("Attempt")
+    @Description("Attempt number of the failed attempt")
+    int attempt;
+
+    @Label("Status")
+    String status;
+
+    @Label("Outcome")
+    @Description("retried, or the reason the retry was skipped: deadline or budget")
+    String outcome;
+
+    @Label("Backoff")
+    @Timespan
+    long backoff;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void emit(CallTags tags, int attempt, Status status, String outcome, Duration backoff) {
+        var event = new RetryEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        if (tags != null) {
+            event.method = tags.method();
+            event.table = tags.table();
+        }
+        event.attempt = attempt;
+        event.status = status.getCode().name();
+        event.outcome = outcome;
+        event.backoff = backoff.toNanos();
+        event.commit();
+    }
+}
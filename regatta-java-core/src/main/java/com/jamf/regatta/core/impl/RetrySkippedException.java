@@ -0,0 +1,21 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Failure of an attempt which would have been retried, but the retry was skipped because it could not finish before
+ * the deadline or the retry budget was exhausted. It carries the status of the failed attempt.
+ */
+final class RetrySkippedException extends StatusRuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    RetrySkippedException(Status status, Throwable failure, String reason) {
+        super(status.withCause(failure).augmentDescription("retry skipped: " + reason));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of an RPC sent to the server, committed when the RPC is closed. The threshold is set by the
+ * {@code com.jamf.regatta.Rpc#threshold} setting of the recording.
+ */
+@Name(RpcEvent.NAME)
+@Label("Regatta RPC")
+@Category("Regatta")
+@Description("An RPC sent to the Regatta server, an IterateRange stream spans all its chunks")
+@StackTrace(false)
+@Threshold("10 ms")
+final class RpcEvent extends Event {
+
+    static final String NAME = "com.jamf.regatta.Rpc";
+
+    private static final EventType TYPE = EventType.getEventType(RpcEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Table")
+    String table;
+
+    @Label("Key Size")
+    @Description("Size of the keys of the request")
+    @DataAmount
+    long keySize;
+
+    @Label("Value Bytes")
+    @Description("Size of the values sent and received")
+    @DataAmount
+    long valueBytes;
+
+    @Label("Attempt")
+    @Description("Attempt number of the call, 0 if the RPC is not retried by the client")
+    int attempt;
+
+    @Label("Status")
+    String status;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+}
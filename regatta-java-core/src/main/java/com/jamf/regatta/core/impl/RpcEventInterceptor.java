@@ -0,0 +1,139 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.List;
+
+/**
+ * Emits an {@link RpcEvent} for every RPC of the channel. Calls are not wrapped while neither the RPC nor the
+ * {@link RetryEvent} is enabled, which keeps the interceptor close to free when no recording is running.
+ */
+final class RpcEventInterceptor implements ClientInterceptor {
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        var operation = Operation.KEY.get();
+        var call = next.newCall(method, callOptions);
+        if (!RpcEvent.enabled() && (operation == null || !RetryEvent.enabled())) {
+            return call;
+        }
+        var event = new RpcEvent();
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(call) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onMessage(RespT message) {
+                        event.valueBytes += valueBytes(message);
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.status = status.getCode().name();
+                            event.commit();
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                if (event.method == null) {
+                    event.begin();
+                    var tags = MetricsInterceptor.tags(method.getBareMethodName(), message);
+                    event.method = tags.method();
+                    event.table = tags.table();
+                    if (operation != null) {
+                        operation.tags(tags);
+                        event.attempt = operation.attempt();
+                    }
+                }
+                event.keySize += keySize(message);
+                event.valueBytes += valueBytes(message);
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    private static long keySize(Object request) {
+        if (request instanceof RangeRequest range) {
+            return range.getKey().size();
+        } else if (request instanceof PutRequest put) {
+            return put.getKey().size();
+        } else if (request instanceof DeleteRangeRequest delete) {
+            return delete.getKey().size();
+        } else if (request instanceof TxnRequest txn) {
+            return keySize(txn.getSuccessList()) + keySize(txn.getFailureList());
+        }
+        return 0;
+    }
+
+    private static long keySize(List<RequestOp> ops) {
+        long size = 0;
+        for (var op : ops) {
+            size += switch (op.getRequestCase()) {
+                case REQUEST_RANGE -> op.getRequestRange().getKey().size();
+                case REQUEST_PUT -> op.getRequestPut().getKey().size();
+                case REQUEST_DELETE_RANGE -> op.getRequestDeleteRange().getKey().size();
+                default -> 0;
+            };
+        }
+        return size;
+    }
+
+    private static long valueBytes(Object message) {
+        if (message instanceof PutRequest put) {
+            return put.getValue().size();
+        } else if (message instanceof RangeResponse range) {
+            return valueBytes(range.getKvsList());
+        } else if (message instanceof TxnRequest txn) {
+            long size = 0;
+            for (var op : txn.getSuccessList()) {
+                size += op.getRequestPut().getValue().size();
+            }
+            for (var op : txn.getFailureList()) {
+                size += op.getRequestPut().getValue().size();
+            }
+            return size;
+        } else if (message instanceof TxnResponse txn) {
+            long size = 0;
+            for (var op : txn.getResponsesList()) {
+                size += valueBytes(op.getResponseRange().getKvsList());
+            }
+            return size;
+        }
+        return 0;
+    }
+
+    private static long valueBytes(List<KeyValue> kvs) {
+        long size = 0;
+        for (var kv : kvs) {
+            size += kv.getValue().size();
+        }
+        return size;
+    }
+}
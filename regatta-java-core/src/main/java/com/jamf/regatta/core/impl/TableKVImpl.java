@@ -0,0 +1,159 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.jamf.regatta.core.Preconditions;
+import com.jamf.regatta.core.TableKV;
+import com.jamf.regatta.core.api.*;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.OptionsUtil;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+
+/**
+ * Handle of a table of the {@link KVImpl}. The requests of the default options are built from templates holding the
+ * table and the settings of the options, a call adds its key and value. A call with another option builds its request
+ * from the option as the {@link KVImpl} does.
+ */
+final class TableKVImpl implements TableKV {
+
+    private final KVImpl kv;
+    private final ByteSequence table;
+    private final GetOption getOption;
+    private final PutOption putOption;
+    private final DeleteOption deleteOption;
+    private final TxnOption txnOption;
+    private final ConcurrencyLimiter.Key readLimit;
+    private final ConcurrencyLimiter.Key writeLimit;
+    private final RangeRequest rangeTemplate;
+    private final PutRequest putTemplate;
+    private final DeleteRangeRequest deleteTemplate;
+
+    TableKVImpl(KVImpl kv, ByteSequence table) {
+        this(kv, table, GetOption.DEFAULT, PutOption.DEFAULT, DeleteOption.DEFAULT, TxnOption.DEFAULT);
+    }
+
+    private TableKVImpl(KVImpl kv, ByteSequence table, GetOption getOption, PutOption putOption, DeleteOption deleteOption, TxnOption txnOption) {
+        this.kv = kv;
+        this.table = table;
+        this.getOption = getOption;
+        this.putOption = putOption;
+        this.deleteOption = deleteOption;
+        this.txnOption = txnOption;
+        this.readLimit = ConcurrencyLimiter.read(table);
+        this.writeLimit = ConcurrencyLimiter.write(table);
+        this.rangeTemplate = KVImpl.rangeRequest(table, ByteSequence.EMPTY, getOption);
+        this.putTemplate = KVImpl.putRequest(table, ByteSequence.EMPTY, ByteSequence.EMPTY, putOption);
+        this.deleteTemplate = KVImpl.deleteRangeRequest(table, ByteSequence.EMPTY, deleteOption);
+    }
+
+    @Override
+    public ByteSequence name() {
+        return table;
+    }
+
+    @Override
+    public TableKV withGetOption(GetOption option) {
+        Preconditions.checkArgument(option != null, "option can't be null");
+        return new TableKVImpl(kv, table, option, putOption, deleteOption, txnOption);
+    }
+
+    @Override
+    public TableKV withPutOption(PutOption option) {
+        Preconditions.checkArgument(option != null, "option can't be null");
+        return new TableKVImpl(kv, table, getOption, option, deleteOption, txnOption);
+    }
+
+    @Override
+    public TableKV withDeleteOption(DeleteOption option) {
+        Preconditions.checkArgument(option != null, "option can't be null");
+        return new TableKVImpl(kv, table, getOption, putOption, option, txnOption);
+    }
+
+    @Override
+    public TableKV withTxnOption(TxnOption option) {
+        Preconditions.checkArgument(option != null, "option can't be null");
+        return new TableKVImpl(kv, table, getOption, putOption, deleteOption, option);
+    }
+
+    @Override
+    public PutResponse put(ByteSequence key, ByteSequence value) {
+        var request = putTemplate.toBuilder().setKey(key.getByteString()).setValue(value.getByteString()).build();
+        return kv.put(table, key, request, putOption, writeLimit);
+    }
+
+    @Override
+    public PutResponse put(ByteSequence key, ByteSequence value, PutOption option) {
+        return kv.put(table, key, KVImpl.putRequest(table, key, value, option), option, writeLimit);
+    }
+
+    @Override
+    public GetResponse get(ByteSequence key) {
+        return kv.get(table, key, getOption, rangeRequest(key), readLimit);
+    }
+
+    @Override
+    public GetResponse get(ByteSequence key, GetOption option) {
+        return kv.get(table, key, option, null, readLimit);
+    }
+
+    @Override
+    public Page page(ByteSequence start, ByteSequence end, int pageSize) {
+        return kv.page(table, start, end, pageSize, getOption);
+    }
+
+    @Override
+    public SortedMap<ByteSequence, KeyValue> getAll(Collection<ByteSequence> keys) {
+        return kv.getAll(table, keys, getOption);
+    }
+
+    @Override
+    public Stream<GetResponse> iterate(ByteSequence key) {
+        return kv.iterate(table, key, getOption);
+    }
+
+    @Override
+    public Stream<KeyValue> scan(ByteSequence key, int parallelism) {
+        return kv.scan(table, key, getOption, parallelism);
+    }
+
+    @Override
+    public DeleteResponse delete(ByteSequence key) {
+        var builder = deleteTemplate.toBuilder().setKey(key.getByteString());
+        if (deleteOption.getEndKey().isEmpty() && deleteOption.isPrefix()) {
+            builder.setRangeEnd(OptionsUtil.prefixEndOf(key).getByteString());
+        }
+        return kv.delete(table, key, builder.build(), deleteOption, writeLimit);
+    }
+
+    @Override
+    public DeleteResponse delete(ByteSequence key, DeleteOption option) {
+        return kv.delete(table, key, KVImpl.deleteRangeRequest(table, key, option), option, writeLimit);
+    }
+
+    @Override
+    public Txn txn() {
+        return kv.txn(table, txnOption);
+    }
+
+    /**
+     * The range end of a prefix depends on the key, it is the only part of the template set per call.
+     */
+    RangeRequest rangeRequest(ByteSequence key) {
+        var builder = rangeTemplate.toBuilder().setKey(key.getByteString());
+        if (getOption.getEndKey().isEmpty() && getOption.isPrefix()) {
+            builder.setRangeEnd(OptionsUtil.prefixEndOf(key).getByteString());
+        }
+        return builder.build();
+    }
+}
@@ -19,6 +19,7 @@ import com.jamf.regatta.proto.DeleteTableRequest;
 import com.jamf.regatta.proto.ListTablesRequest;
 import com.jamf.regatta.proto.TablesGrpc;
 import io.grpc.Channel;
+import io.grpc.Deadline;
 
 import java.util.List;
 import java.util.Map;
@@ -29,7 +30,11 @@ public class TablesImpl extends Impl implements Tables {
     private final TablesGrpc.TablesBlockingStub stub;
 
     TablesImpl(Channel managedChannel, RetryConfig retryConfig) {
-        super(retryConfig);
+        this(managedChannel, retryConfig, retryBudget(retryConfig));
+    }
+
+    TablesImpl(Channel managedChannel, RetryConfig retryConfig, TokenBucket retryBudget) {
+        super(retryConfig, retryBudget);
         stub = TablesGrpc.newBlockingStub(managedChannel);
     }
 
@@ -45,7 +50,8 @@ public class TablesImpl extends Impl implements Tables {
                 .build();
 
         return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).create(request),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).create(request),
                 r -> new CreateTableResponse(r.getId()),
                 RETRY_NEVER);
     }
@@ -61,7 +67,8 @@ public class TablesImpl extends Impl implements Tables {
                 .setName(name)
                 .build();
         return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).delete(request),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).delete(request),
                 r -> new DeleteTableResponse(),
                 RETRY_NEVER);
     }
@@ -74,23 +81,28 @@ public class TablesImpl extends Impl implements Tables {
     @Override
     public ListTablesResponse listTables(TableOption option) {
         return execute(
-                () -> stub.withDeadlineAfter(option.getTimeout(), option.getTimeoutUnit()).list(ListTablesRequest.getDefaultInstance()),
-                lt -> new ListTablesResponse(
-                        lt.getTablesList().stream()
-                                .map(table -> new TableInfo(
-                                        table.getId(),
-                                        table.getName(),
-                                        table.getConfig().getFieldsMap().entrySet()
-                                                .stream()
-                                                .collect(Collectors.toMap(Map.Entry::getKey, e -> convertValue(e.getValue())))
-                                ))
-                                .toList()
-                ),
+                Deadline.after(option.getTimeout(), option.getTimeoutUnit()),
+                deadline -> stub.withDeadline(deadline).list(ListTablesRequest.getDefaultInstance()),
+                TablesImpl::toListTablesResponse,
                 RETRY_TRANSIENT
         );
 
     }
 
+    static ListTablesResponse toListTablesResponse(com.jamf.regatta.proto.ListTablesResponse lt) {
+        return new ListTablesResponse(
+                lt.getTablesList().stream()
+                        .map(table -> new TableInfo(
+                                table.getId(),
+                                table.getName(),
+                                table.getConfig().getFieldsMap().entrySet()
+                                        .stream()
+                                        .collect(Collectors.toMap(Map.Entry::getKey, e -> convertValue(e.getValue())))
+                        ))
+                        .toList()
+        );
+    }
+
     private static Object convertValue(Value protoValue) {
         return switch (protoValue.getKindCase()) {
             case NULL_VALUE -> null;
@@ -0,0 +1,55 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting extra calls, such as hedges or retries, to a ratio of the calls. Every call deposits
+ * {@code ratio} tokens and an extra call takes one. The bucket starts full and holds at most {@code maxTokens} tokens,
+ * so that a burst of extra calls is allowed after a quiet period.
+ */
+final class TokenBucket {
+
+    private static final long TOKEN = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    TokenBucket(double ratio, int maxTokens) {
+        this.deposit = Math.round(ratio * TOKEN);
+        this.capacity = maxTokens * TOKEN;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * @return {@code false} if the ratio is not positive, in which case the bucket does not limit anything.
+     */
+    boolean isEnabled() {
+        return deposit > 0;
+    }
+
+    void deposit() {
+        if (isEnabled()) {
+            tokens.getAndUpdate(current -> Math.min(capacity, current + deposit));
+        }
+    }
+
+    /**
+     * @return {@code true} if a token was taken and the extra call may be made.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            var current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.ValueCompressionConfig;
+import com.jamf.regatta.core.ValueDictionaries;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.proto.Compare;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.TxnRequest;
+import io.grpc.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the values of the tables of the {@link ValueCompressionConfig} with their trained dictionaries. A value is
+ * stored with a header of a magic byte and its format, a compressed value follows with the varint id of its dictionary
+ * and its varint length, a value which does not shrink is stored as is. The id {@code 0} stands for no dictionary, the
+ * values of a table are compressed before it is trained.
+ * <p>
+ * The dictionaries of the tables are loaded when the client is built and reloaded every refresh interval, the newest
+ * dictionary compresses the values. The loads are asynchronous, the values of a table are compressed without a
+ * dictionary until its first load completes. A value of a dictionary trained by another client since the last load
+ * fails to decode with a {@link MissingDictionaryException}, the caller reloads the dictionaries with {@link #load} and
+ * decodes it again once they are loaded.
+ */
+final class ValueCodec implements ValueDictionaries {
+
+    /**
+     * The first key of a table which is not reserved, the dictionaries are stored below it.
+     */
+    static final ByteString FIRST_KEY = ByteString.copyFrom(new byte[]{0, 1});
+    static final ByteString DICTIONARY_PREFIX = ByteString.copyFromUtf8("\0\0regatta/dict/");
+    static final byte MAGIC = (byte) 0xd1;
+    static final byte STORED = 0;
+    static final byte DEFLATED = 1;
+    private static final ByteString DICTIONARY_PREFIX_END = ByteString.copyFromUtf8("\0\0regatta/dict0");
+    // the header of a compressed value, magic byte, format and two varints
+    private static final int MAX_HEADER_SIZE = 2 + 5 + 5;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    private static final int TRAIN_ATTEMPTS = 3;
+    // buffers grown above this size for a large value are not kept by the thread
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    private static final Duration LOAD_TIMEOUT = Duration.ofSeconds(10);
+    private static final Logger logger = LoggerFactory.getLogger(ValueCodec.class);
+
+    private final ValueCompressionConfig config;
+    private final Set<ByteString> tables;
+    private final KVGrpc.KVFutureStub stub;
+    private final ConcurrentMap<ByteString, Dictionaries> dictionaries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ByteString, CompletableFuture<Dictionaries>> loading = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[1024]);
+    private volatile boolean closed;
+
+    ValueCodec(ValueCompressionConfig config, Channel channel) {
+        this.config = config;
+        this.tables = config.tables().stream().map(table -> ByteString.copyFrom(table.getBytes())).collect(Collectors.toUnmodifiableSet());
+        this.stub = Impl.toLeader(KVGrpc.newFutureStub(channel));
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(config.level(), true));
+        for (var table : tables) {
+            refresh(table);
+        }
+    }
+
+    /**
+     * Stops the refreshes of the dictionaries.
+     */
+    void close() {
+        closed = true;
+    }
+
+    boolean compresses(ByteString table) {
+        return table != null && tables.contains(table);
+    }
+
+    /**
+     * @return whether the key is below {@link #FIRST_KEY}, {@code \0} or a key starting with {@code \0\0}.
+     */
+    static boolean isReserved(ByteString key) {
+        return ByteString.unsignedLexicographicalComparator().compare(key, FIRST_KEY) < 0;
+    }
+
+    ByteString encode(ByteString table, ByteString value) {
+        var loaded = dictionaries.get(table);
+        var id = loaded == null ? 0 : loaded.current;
+        var deflater = deflaters.get();
+        deflater.reset();
+        if (id != 0) {
+            deflater.setDictionary(loaded.byId.get(id));
+        }
+        deflater.setInput(value.asReadOnlyByteBuffer());
+        deflater.finish();
+
+        var buffer = buffer(value.size() + MAX_HEADER_SIZE);
+        buffer[0] = MAGIC;
+        buffer[1] = DEFLATED;
+        var position = writeVarint(buffer, 2, id);
+        position = writeVarint(buffer, position, value.size());
+        // only a value which shrinks is kept compressed, the header of a stored value is smaller than the one above
+        var limit = value.size() + 2;
+        while (!deflater.finished() && position < limit) {
+            var n = deflater.deflate(buffer, position, limit - position);
+            if (n == 0) {
+                break;
+            }
+            position += n;
+        }
+        if (!deflater.finished()) {
+            return ByteString.copyFrom(new byte[]{MAGIC, STORED}).concat(value);
+        }
+        return ByteString.copyFrom(buffer, 0, position);
+    }
+
+    /**
+     * @return the value as written, a value without the header, e.g. written before the table was configured, as it is.
+     * @throws MissingDictionaryException if the dictionary of the value is not loaded.
+     */
+    ByteString decode(ByteString table, ByteString value) {
+        if (value.size() < 2 || value.byteAt(0) != MAGIC) {
+            return value;
+        }
+        if (value.byteAt(1) == STORED) {
+            return value.substring(2);
+        }
+        if (value.byteAt(1) != DEFLATED) {
+            return value;
+        }
+        var input = value.newCodedInput();
+        int id;
+        int length;
+        try {
+            input.skipRawBytes(2);
+            id = input.readUInt32();
+            length = input.readUInt32();
+        } catch (IOException e) {
+            return value;
+        }
+        // deflate shrinks a value at most about a thousand times
+        if (length < 0 || length > MAX_DEFLATE_RATIO * (long) value.size()) {
+            return value;
+        }
+        var inflater = inflaters.get();
+        inflater.reset();
+        if (id != 0) {
+            var loaded = dictionaries.get(table);
+            var dictionary = loaded == null ? null : loaded.byId.get(id);
+            if (dictionary == null) {
+                throw new MissingDictionaryException(table, id);
+            }
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(value.substring(input.getTotalBytesRead()).asReadOnlyByteBuffer());
+        var decoded = new byte[length];
+        try {
+            var inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                var n = inflater.inflate(decoded, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                return value;
+            }
+        } catch (DataFormatException e) {
+            return value;
+        }
+        return ByteString.copyFrom(decoded);
+    }
+
+    @Override
+    public int train(ByteSequence table) {
+        var name = ByteString.copyFrom(table.getBytes());
+        Preconditions.checkArgument(compresses(name), "values of the table are not compressed");
+        var samples = new ArrayList<byte[]>();
+        var sampled = Impl.join(Impl.toCompletableFuture(withDeadline().range(RangeRequest.newBuilder()
+                .setTable(name)
+                .setKey(FIRST_KEY)
+                .setRangeEnd(KVImpl.NUL)
+                .setLimit(config.sampleSize())
+                .setLinearizable(true)
+                .build())));
+        Impl.join(load(name));
+        for (var kv : sampled.getKvsList()) {
+            if (!kv.getValue().isEmpty()) {
+                try {
+                    samples.add(decode(name, kv.getValue()).toByteArray());
+                } catch (MissingDictionaryException e) {
+                    // the dictionary was stored after the load, the value is left out of the samples
+                }
+            }
+        }
+        Preconditions.checkState(!samples.isEmpty(), "the table has no values to train a dictionary on");
+        var dictionary = ByteString.copyFrom(DictionaryTrainer.train(samples, config.dictionarySize()));
+
+        for (int attempt = 0; attempt < TRAIN_ATTEMPTS; attempt++) {
+            var id = Impl.join(load(name)).byId.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+            // the dictionary is put only if another client did not take its id in the meantime
+            var response = Impl.join(Impl.toCompletableFuture(withDeadline().txn(TxnRequest.newBuilder()
+                    .setTable(name)
+                    .addCompare(Compare.newBuilder().setKey(dictionaryKey(id)))
+                    .addFailure(RequestOp.newBuilder().setRequestPut(RequestOp.Put.newBuilder()
+                            .setKey(dictionaryKey(id))
+                            .setValue(dictionary)))
+                    .build())));
+            if (!response.getSucceeded()) {
+                merge(name, Map.of(id, dictionary.toByteArray()));
+                return id;
+            }
+        }
+        throw new IllegalStateException("dictionary ids of the table are taken by concurrent trainings");
+    }
+
+    @Override
+    public int current(ByteSequence table) {
+        var name = ByteString.copyFrom(table.getBytes());
+        Preconditions.checkArgument(compresses(name), "values of the table are not compressed");
+        var loaded = dictionaries.get(name);
+        return loaded != null ? loaded.current : Impl.join(load(name)).current;
+    }
+
+    /**
+     * Loads the dictionaries of the table, a load in progress is shared by the callers. The future completes on the
+     * thread receiving the response, the callers must not block it.
+     *
+     * @return the dictionaries of the table, once loaded.
+     */
+    CompletableFuture<Dictionaries> load(ByteString table) {
+        var pending = loading.get(table);
+        if (pending != null) {
+            return pending;
+        }
+        var load = new CompletableFuture<Dictionaries>();
+        pending = loading.putIfAbsent(table, load);
+        if (pending != null) {
+            return pending;
+        }
+        Impl.toCompletableFuture(withDeadline().range(RangeRequest.newBuilder()
+                .setTable(table)
+                .setKey(DICTIONARY_PREFIX)
+                .setRangeEnd(DICTIONARY_PREFIX_END)
+                .setLinearizable(true)
+                .build())).whenComplete((response, failure) -> {
+            loading.remove(table, load);
+            if (failure != null) {
+                load.completeExceptionally(failure);
+                return;
+            }
+            var byId = new HashMap<Integer, byte[]>();
+            for (KeyValue kv : response.getKvsList()) {
+                if (kv.getKey().size() == DICTIONARY_PREFIX.size() + 4) {
+                    byId.put(dictionaryId(kv.getKey()), kv.getValue().toByteArray());
+                }
+            }
+            load.complete(merge(table, byId));
+        });
+        return load;
+    }
+
+    /**
+     * Loads the dictionaries of the table now and again every refresh interval, until the client is closed.
+     */
+    private void refresh(ByteString table) {
+        if (closed) {
+            return;
+        }
+        load(table).whenComplete((loaded, failure) -> {
+            if (failure != null) {
+                logger.warn("loading the dictionaries of table {} failed: {}", table.toStringUtf8(), failure.getMessage());
+            }
+            CompletableFuture.delayedExecutor(config.refreshInterval().toNanos(), TimeUnit.NANOSECONDS).execute(() -> refresh(table));
+        });
+    }
+
+    /**
+     * Adds the dictionaries to those of the table. A dictionary is never changed once stored, merging keeps a
+     * dictionary stored by {@link #train} while an older load was in progress.
+     */
+    private Dictionaries merge(ByteString table, Map<Integer, byte[]> byId) {
+        return dictionaries.merge(table, Dictionaries.of(byId), (loaded, added) -> {
+            var merged = new HashMap<>(loaded.byId);
+            merged.putAll(added.byId);
+            return Dictionaries.of(merged);
+        });
+    }
+
+    private KVGrpc.KVFutureStub withDeadline() {
+        return stub.withDeadlineAfter(LOAD_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private byte[] buffer(int size) {
+        var buffer = buffers.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.max(size, 2 * buffer.length)];
+            if (buffer.length <= MAX_RETAINED_SIZE) {
+                buffers.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    static ByteString dictionaryKey(int id) {
+        return DICTIONARY_PREFIX.concat(ByteString.copyFrom(new byte[]{(byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id}));
+    }
+
+    private static int dictionaryId(ByteString key) {
+        var offset = DICTIONARY_PREFIX.size();
+        return (key.byteAt(offset) & 0xff) << 24 | (key.byteAt(offset + 1) & 0xff) << 16
+                | (key.byteAt(offset + 2) & 0xff) << 8 | key.byteAt(offset + 3) & 0xff;
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[position++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * The dictionaries of a table by their id, the current one compresses the values.
+     */
+    record Dictionaries(Map<Integer, byte[]> byId, int current) {
+
+        static Dictionaries of(Map<Integer, byte[]> byId) {
+            return new Dictionaries(Map.copyOf(byId), byId.keySet().stream().mapToInt(Integer::intValue).max().orElse(0));
+        }
+    }
+
+    /**
+     * The dictionary of a value is not loaded yet, the value can be decoded once {@link #load} completes.
+     */
+    static final class MissingDictionaryException extends RuntimeException {
+
+        MissingDictionaryException(ByteString table, int id) {
+            super("dictionary " + id + " of table " + table.toStringUtf8() + " is missing", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import com.google.common.collect.Iterables;
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.Compare;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.DeleteRangeResponse;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.ResponseOp;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Compresses the values put by the requests of the KV clients with the {@link ValueCodec} and decompresses the values
+ * of their responses, so that the puts, gets and transactions of the clients see the values as written. The ranges of
+ * the requests start after the keys reserved for the dictionaries, so that the server leaves them out of the results,
+ * their counts and limits. A request which only reaches reserved keys, or a transaction comparing values of a
+ * compressed table, fails with {@code INVALID_ARGUMENT} without being sent, the server would compare the given values
+ * with the stored, compressed ones.
+ * <p>
+ * A response holding a value of a dictionary which is not loaded yet is delivered once the dictionaries of its table are
+ * reloaded, the responses and the close of the call following it wait for it, so that the listener sees them in order.
+ * The callbacks of the call never wait for the load.
+ */
+final class ValueCompressionInterceptor implements ClientInterceptor {
+
+    private static final String RESERVED = "its keys below \\0\\1 are reserved for the dictionaries";
+
+    private final ValueCodec codec;
+
+    ValueCompressionInterceptor(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        return new ValueCall<>(next.newCall(method, callOptions));
+    }
+
+    /**
+     * @return the reason to reject the request to a compressed table, {@code null} if it can be sent.
+     */
+    private static String rejection(Object request) {
+        if (request instanceof TxnRequest txn) {
+            if (txn.getCompareList().stream().anyMatch(Compare::hasValue)) {
+                return "transactions can't compare its values";
+            }
+            for (var op : Iterables.concat(txn.getSuccessList(), txn.getFailureList())) {
+                var reserved = switch (op.getRequestCase()) {
+                    case REQUEST_RANGE -> start(op.getRequestRange().getKey(), op.getRequestRange().getRangeEnd()) == null;
+                    case REQUEST_PUT -> ValueCodec.isReserved(op.getRequestPut().getKey());
+                    case REQUEST_DELETE_RANGE -> start(op.getRequestDeleteRange().getKey(), op.getRequestDeleteRange().getRangeEnd()) == null;
+                    case REQUEST_NOT_SET -> false;
+                };
+                if (reserved) {
+                    return RESERVED;
+                }
+            }
+            return null;
+        }
+        var reserved = request instanceof PutRequest put && ValueCodec.isReserved(put.getKey())
+                || request instanceof RangeRequest range && start(range.getKey(), range.getRangeEnd()) == null
+                || request instanceof DeleteRangeRequest delete && start(delete.getKey(), delete.getRangeEnd()) == null;
+        return reserved ? RESERVED : null;
+    }
+
+    /**
+     * @return the first key of the range which is not reserved, {@code null} if the range holds only reserved keys.
+     */
+    private static ByteString start(ByteString key, ByteString rangeEnd) {
+        if (!ValueCodec.isReserved(key)) {
+            return key;
+        }
+        if (rangeEnd.isEmpty()) {
+            return null;
+        }
+        if (rangeEnd.equals(KVImpl.NUL) || ByteString.unsignedLexicographicalComparator().compare(rangeEnd, ValueCodec.FIRST_KEY) > 0) {
+            return ValueCodec.FIRST_KEY;
+        }
+        return null;
+    }
+
+    /**
+     * Compresses the values put by the request and starts its ranges after the reserved keys.
+     */
+    private Object encode(ByteString table, Object request) {
+        if (request instanceof PutRequest put) {
+            return put.toBuilder().setValue(codec.encode(table, put.getValue())).build();
+        } else if (request instanceof RangeRequest range && ValueCodec.isReserved(range.getKey())) {
+            return range.toBuilder().setKey(start(range.getKey(), range.getRangeEnd())).build();
+        } else if (request instanceof DeleteRangeRequest delete && ValueCodec.isReserved(delete.getKey())) {
+            return delete.toBuilder().setKey(start(delete.getKey(), delete.getRangeEnd())).build();
+        } else if (request instanceof TxnRequest txn) {
+            var builder = txn.toBuilder();
+            for (int i = 0; i < builder.getSuccessCount(); i++) {
+                builder.setSuccess(i, encode(table, builder.getSuccess(i)));
+            }
+            for (int i = 0; i < builder.getFailureCount(); i++) {
+                builder.setFailure(i, encode(table, builder.getFailure(i)));
+            }
+            return builder.build();
+        }
+        return request;
+    }
+
+    private RequestOp encode(ByteString table, RequestOp op) {
+        return switch (op.getRequestCase()) {
+            case REQUEST_RANGE -> {
+                var range = op.getRequestRange();
+                yield ValueCodec.isReserved(range.getKey())
+                        ? op.toBuilder().setRequestRange(range.toBuilder().setKey(start(range.getKey(), range.getRangeEnd()))).build()
+                        : op;
+            }
+            case REQUEST_PUT -> {
+                var put = op.getRequestPut();
+                yield op.toBuilder().setRequestPut(put.toBuilder().setValue(codec.encode(table, put.getValue()))).build();
+            }
+            case REQUEST_DELETE_RANGE -> {
+                var delete = op.getRequestDeleteRange();
+                yield ValueCodec.isReserved(delete.getKey())
+                        ? op.toBuilder().setRequestDeleteRange(delete.toBuilder().setKey(start(delete.getKey(), delete.getRangeEnd()))).build()
+                        : op;
+            }
+            case REQUEST_NOT_SET -> op;
+        };
+    }
+
+    private Object decode(ByteString table, Object response) {
+        if (response instanceof RangeResponse range) {
+            var builder = range.toBuilder().clearKvs();
+            decode(table, range.getKvsList(), builder::addKvs);
+            return builder.build();
+        } else if (response instanceof PutResponse put && put.hasPrevKv()) {
+            return put.toBuilder().setPrevKv(decode(table, put.getPrevKv())).build();
+        } else if (response instanceof DeleteRangeResponse delete && delete.getPrevKvsCount() > 0) {
+            var builder = delete.toBuilder().clearPrevKvs();
+            decode(table, delete.getPrevKvsList(), builder::addPrevKvs);
+            return builder.build();
+        } else if (response instanceof TxnResponse txn) {
+            var builder = txn.toBuilder();
+            for (int i = 0; i < builder.getResponsesCount(); i++) {
+                builder.setResponses(i, decode(table, builder.getResponses(i)));
+            }
+            return builder.build();
+        }
+        return response;
+    }
+
+    private ResponseOp decode(ByteString table, ResponseOp op) {
+        return switch (op.getResponseCase()) {
+            case RESPONSE_RANGE -> {
+                var range = op.getResponseRange();
+                var builder = range.toBuilder().clearKvs();
+                decode(table, range.getKvsList(), builder::addKvs);
+                yield op.toBuilder().setResponseRange(builder).build();
+            }
+            case RESPONSE_PUT -> op.getResponsePut().hasPrevKv()
+                    ? op.toBuilder().setResponsePut(op.getResponsePut().toBuilder().setPrevKv(decode(table, op.getResponsePut().getPrevKv()))).build()
+                    : op;
+            case RESPONSE_DELETE_RANGE -> {
+                var delete = op.getResponseDeleteRange();
+                var builder = delete.toBuilder().clearPrevKvs();
+                decode(table, delete.getPrevKvsList(), builder::addPrevKvs);
+                yield op.toBuilder().setResponseDeleteRange(builder).build();
+            }
+            case RESPONSE_NOT_SET -> op;
+        };
+    }
+
+    private void decode(ByteString table, List<KeyValue> kvs, Consumer<KeyValue> decoded) {
+        for (var kv : kvs) {
+            decoded.accept(decode(table, kv));
+        }
+    }
+
+    private KeyValue decode(ByteString table, KeyValue kv) {
+        return kv.getValue().isEmpty() ? kv : kv.toBuilder().setValue(codec.decode(table, kv.getValue())).build();
+    }
+
+    /**
+     * Call encoding its request and decoding its responses once the table of the request is known to be compressed.
+     */
+    private final class ValueCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private volatile ByteString table;
+        private volatile Status rejected;
+
+        ValueCall(ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            super.start(new ValueListener(responseListener), headers);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void sendMessage(ReqT message) {
+            var requested = CompressionInterceptor.table(message);
+            if (codec.compresses(requested)) {
+                var rejection = rejection(message);
+                if (rejection != null) {
+                    // the listener is closed with the rejection once the cancelled call closes
+                    rejected = Status.INVALID_ARGUMENT.withDescription(
+                            "values of table " + requested.toStringUtf8() + " are compressed, " + rejection);
+                    super.cancel(rejected.getDescription(), null);
+                    return;
+                }
+                table = requested;
+                message = (ReqT) encode(requested, message);
+            }
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void halfClose() {
+            if (rejected == null) {
+                super.halfClose();
+            }
+        }
+
+        /**
+         * Listener decoding the responses, the ones waiting for a dictionary are chained to the load.
+         */
+        private final class ValueListener extends ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT> {
+
+            // the delivery of the responses received so far, only accessed by the callbacks, which are serialized
+            private CompletableFuture<Void> delivered = CompletableFuture.completedFuture(null);
+            private volatile Status failed;
+
+            ValueListener(Listener<RespT> delegate) {
+                super(delegate);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void onMessage(RespT message) {
+                var compressed = table;
+                if (compressed == null) {
+                    super.onMessage(message);
+                    return;
+                }
+                if (delivered.isDone()) {
+                    RespT decoded;
+                    try {
+                        decoded = (RespT) decode(compressed, message);
+                    } catch (ValueCodec.MissingDictionaryException e) {
+                        decoded = null;
+                    }
+                    if (decoded != null) {
+                        if (failed == null) {
+                            super.onMessage(decoded);
+                        }
+                        return;
+                    }
+                }
+                delivered = delivered.thenCompose(ignored -> codec.load(compressed)).handle((loaded, failure) -> {
+                    if (failed != null) {
+                        return null;
+                    }
+                    try {
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        delegate().onMessage((RespT) decode(compressed, message));
+                    } catch (Throwable t) {
+                        // the close of the call, received or to come, is replaced by the failure
+                        failed = Status.INTERNAL.withDescription("values of table " + compressed.toStringUtf8() + " can't be decoded").withCause(t);
+                        ValueCall.this.cancel(failed.getDescription(), t);
+                    }
+                    return null;
+                });
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                if (delivered.isDone()) {
+                    close(status, trailers);
+                } else {
+                    delivered.whenComplete((ignored, failure) -> close(status, trailers));
+                }
+            }
+
+            private void close(Status status, Metadata trailers) {
+                var rejection = rejected != null ? rejected : failed;
+                super.onClose(rejection == null ? status : rejection, rejection == null ? trailers : new Metadata());
+            }
+        }
+    }
+}
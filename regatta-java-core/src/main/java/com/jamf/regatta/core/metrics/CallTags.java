@@ -0,0 +1,21 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.metrics;
+
+/**
+ * Tags of a recorded call.
+ *
+ * @param method      bare name of the RPC method, for example {@code Range}.
+ * @param table       name of the table the call reads or writes, empty if the call is not bound to a table.
+ * @param consistency {@link #LINEARIZABLE} or {@link #SERIALIZABLE} for calls on a table, empty otherwise.
+ */
+public record CallTags(
+        String method,
+        String table,
+        String consistency
+) {
+    public static final String LINEARIZABLE = "linearizable";
+    public static final String SERIALIZABLE = "serializable";
+}
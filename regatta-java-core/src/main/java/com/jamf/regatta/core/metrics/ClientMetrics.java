@@ -0,0 +1,91 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.metrics;
+
+import io.grpc.Status;
+
+/**
+ * Receives the metrics of a client, see {@code ClientBuilder.metrics(ClientMetrics)}. Every RPC sent to the server is
+ * timed by an {@link RpcSample}, every operation of the client, which covers all attempts of a call including retries
+ * and hedges, by an {@link OperationSample}. Implementations are called on the gRPC threads and must not block.
+ * {@link ObservationClientMetrics} binds the metrics to Micrometer.
+ */
+public interface ClientMetrics {
+
+    ClientMetrics NOOP = new ClientMetrics() {
+        @Override
+        public RpcSample startRpc(String method) {
+            return RpcSample.NOOP;
+        }
+
+        @Override
+        public OperationSample startOperation() {
+            return OperationSample.NOOP;
+        }
+    };
+
+    /**
+     * Called when an RPC is started, the RPC is in flight until the sample is stopped. Every started sample is
+     * stopped, also when the RPC is closed before its request is sent.
+     *
+     * @param method the RPC method.
+     * @return the sample of the RPC.
+     */
+    RpcSample startRpc(String method);
+
+    /**
+     * Called when the first attempt of an operation is sent.
+     *
+     * @return the sample of the operation.
+     */
+    OperationSample startOperation();
+
+    interface RpcSample {
+
+        RpcSample NOOP = new RpcSample() {
+            @Override
+            public void requestSize(long bytes) {
+            }
+
+            @Override
+            public void responseSize(long bytes) {
+            }
+
+            @Override
+            public void stop(CallTags tags, Status.Code code) {
+            }
+        };
+
+        /**
+         * @param bytes serialized size of a request message, before compression.
+         */
+        void requestSize(long bytes);
+
+        /**
+         * @param bytes serialized size of a response message, after decompression. Called for every message of a
+         *              streaming response.
+         */
+        void responseSize(long bytes);
+
+        /**
+         * @param tags tags of the RPC, with the table and consistency of its request, empty if it was not sent.
+         * @param code the final status of the RPC.
+         */
+        void stop(CallTags tags, Status.Code code);
+    }
+
+    interface OperationSample {
+
+        OperationSample NOOP = (tags, code, attempts) -> {
+        };
+
+        /**
+         * @param tags     tags of the last attempt.
+         * @param code     the final status of the operation.
+         * @param attempts number of RPCs sent, more than one if the operation was retried or hedged.
+         */
+        void stop(CallTags tags, Status.Code code, int attempts);
+    }
+}
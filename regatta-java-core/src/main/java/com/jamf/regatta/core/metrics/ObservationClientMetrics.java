@@ -0,0 +1,110 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.metrics;
+
+import io.grpc.Status;
+import io.micrometer.common.KeyValues;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the metrics as Micrometer {@link Observation}s, {@value #RPC} for RPCs and {@value #OPERATION} for
+ * operations. With the default meter handler of Micrometer every observation is a timer, tagged by method, table,
+ * consistency and status code, and a long task timer of the observations in flight. Operations carry the number of
+ * attempts. Observations have no distributions, the payload sizes of the RPCs are passed to a {@link SizeRecorder}, for
+ * example one recording a {@code DistributionSummary} per name and tags. Requires
+ * {@code io.micrometer:micrometer-observation} on the classpath.
+ */
+public final class ObservationClientMetrics implements ClientMetrics {
+
+    public static final String RPC = "regatta.client.rpc";
+    public static final String OPERATION = "regatta.client.operation";
+
+    static final String METHOD = "rpc.method";
+    static final String TABLE = "regatta.table";
+    static final String CONSISTENCY = "regatta.consistency";
+    static final String STATUS = "rpc.grpc.status_code";
+    static final String ATTEMPTS = "regatta.attempts";
+    public static final String REQUEST_SIZE = "regatta.client.rpc.request.size";
+    public static final String RESPONSE_SIZE = "regatta.client.rpc.response.size";
+
+    private final ObservationRegistry registry;
+    private final SizeRecorder sizes;
+
+    public ObservationClientMetrics(ObservationRegistry registry) {
+        this(registry, SizeRecorder.NOOP);
+    }
+
+    /**
+     * @param registry registry of the observations.
+     * @param sizes    receiver of the payload sizes of the RPCs.
+     */
+    public ObservationClientMetrics(ObservationRegistry registry, SizeRecorder sizes) {
+        this.registry = registry;
+        this.sizes = sizes;
+    }
+
+    @Override
+    public RpcSample startRpc(String method) {
+        var observation = Observation.createNotStarted(RPC, registry)
+                .lowCardinalityKeyValue(METHOD, method)
+                .start();
+        var requestSize = new AtomicLong();
+        var responseSize = new AtomicLong();
+        return new RpcSample() {
+            @Override
+            public void requestSize(long bytes) {
+                requestSize.addAndGet(bytes);
+            }
+
+            @Override
+            public void responseSize(long bytes) {
+                responseSize.addAndGet(bytes);
+            }
+
+            @Override
+            public void stop(CallTags tags, Status.Code code) {
+                observation.lowCardinalityKeyValues(keyValues(tags))
+                        .lowCardinalityKeyValue(STATUS, code.name())
+                        .stop();
+                sizes.record(REQUEST_SIZE, tags, requestSize.get());
+                sizes.record(RESPONSE_SIZE, tags, responseSize.get());
+            }
+        };
+    }
+
+    @Override
+    public OperationSample startOperation() {
+        var observation = Observation.start(OPERATION, registry);
+        return (tags, code, attempts) -> observation.lowCardinalityKeyValues(keyValues(tags))
+                .lowCardinalityKeyValue(STATUS, code.name())
+                .lowCardinalityKeyValue(ATTEMPTS, Integer.toString(attempts))
+                .stop();
+    }
+
+    private static KeyValues keyValues(CallTags tags) {
+        return KeyValues.of(METHOD, tags.method(), TABLE, tags.table(), CONSISTENCY, tags.consistency());
+    }
+
+    /**
+     * Receives the payload sizes of every stopped RPC, {@value #REQUEST_SIZE} for the serialized requests and
+     * {@value #RESPONSE_SIZE} for the decompressed responses of the RPC. Called on the gRPC threads, must not block.
+     */
+    @FunctionalInterface
+    public interface SizeRecorder {
+
+        SizeRecorder NOOP = (name, tags, bytes) -> {
+        };
+
+        /**
+         * @param name  {@value #REQUEST_SIZE} or {@value #RESPONSE_SIZE}.
+         * @param tags  tags of the RPC.
+         * @param bytes total size of the messages of the RPC.
+         */
+        void record(String name, CallTags tags, long bytes);
+    }
+}
@@ -4,6 +4,8 @@
 
 package com.jamf.regatta.core.options;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.jamf.regatta.core.api.ByteSequence;
 
 import java.util.Optional;
@@ -24,6 +26,8 @@ public final class GetOption {
     private final boolean prefix;
     private final long timeout;
     private final TimeUnit timeoutUnit;
+    private final int prefetchChunks;
+    private final long prefetchBytes;
 
     private GetOption(
             ByteSequence endKey,
@@ -31,7 +35,9 @@ public final class GetOption {
             boolean serializable,
             boolean keysOnly,
             boolean countOnly,
-            boolean prefix, long timeout, TimeUnit timeoutUnit) {
+            boolean prefix, long timeout, TimeUnit timeoutUnit,
+            int prefetchChunks,
+            long prefetchBytes) {
 
         this.endKey = endKey;
         this.limit = limit;
@@ -41,6 +47,8 @@ public final class GetOption {
         this.prefix = prefix;
         this.timeout = timeout;
         this.timeoutUnit = timeoutUnit;
+        this.prefetchChunks = prefetchChunks;
+        this.prefetchBytes = prefetchBytes;
     }
 
     public static Builder builder() {
@@ -83,6 +91,25 @@ public final class GetOption {
     public TimeUnit getTimeoutUnit() {
         return timeoutUnit;
     }
+
+    /**
+     * Get the maximal number of chunks read ahead by iterate, {@code 0} if read-ahead is disabled.
+     *
+     * @return the maximal number of prefetched chunks.
+     */
+    public int getPrefetchChunks() {
+        return prefetchChunks;
+    }
+
+    /**
+     * Get the maximal serialized size of the chunks read ahead by iterate.
+     *
+     * @return the maximal number of prefetched bytes.
+     */
+    public long getPrefetchBytes() {
+        return prefetchBytes;
+    }
+
     public static final class Builder {
 
         private long limit = 0L;
@@ -93,6 +120,8 @@ public final class GetOption {
         private boolean prefix = false;
         private long timeout = 30;
         private TimeUnit timeoutUnit = TimeUnit.SECONDS;
+        private int prefetchChunks = 0;
+        private long prefetchBytes = 0;
 
         private Builder() {
         }
@@ -194,6 +223,24 @@ public final class GetOption {
             return this;
         }
 
+        /**
+         * Enables read-ahead of iterate. Chunks of the range are received and decoded in the background while the
+         * consumer processes the previous ones, as long as fewer than {@code chunks} chunks and fewer than
+         * {@code bytes} bytes are waiting to be consumed. Disabled by default.
+         *
+         * @param chunks maximal number of chunks read ahead, {@code 0} disables read-ahead.
+         * @param bytes  maximal serialized size of the chunks read ahead, greater than zero.
+         * @return builder
+         * @throws IllegalArgumentException if chunks is less than zero or bytes is not greater than zero.
+         */
+        public Builder withPrefetch(int chunks, long bytes) {
+            checkArgument(chunks >= 0, "chunks should greater than or equal to zero: chunks=%s", chunks);
+            checkArgument(bytes > 0, "bytes should greater than zero: bytes=%s", bytes);
+            this.prefetchChunks = chunks;
+            this.prefetchBytes = bytes;
+            return this;
+        }
+
         /**
          * Build the GetOption.
          *
@@ -208,7 +255,9 @@ public final class GetOption {
                     this.countOnly,
                     this.prefix,
                     this.timeout,
-                    this.timeoutUnit);
+                    this.timeoutUnit,
+                    this.prefetchChunks,
+                    this.prefetchBytes);
         }
 
     }
@@ -24,11 +24,11 @@ public class OptionsUtil {
      * @return the range end of the given prefix
      */
     public static ByteSequence prefixEndOf(ByteSequence prefix) {
-        byte[] endKey = prefix.getBytes().clone();
+        byte[] endKey = prefix.getBytes();
         for (int i = endKey.length - 1; i >= 0; i--) {
             if (endKey[i] != (byte) 0xff) {
                 endKey[i] = (byte) (endKey[i] + 1);
-                return ByteSequence.from(Arrays.copyOf(endKey, i + 1));
+                return ByteSequence.wrap(i + 1 == endKey.length ? endKey : Arrays.copyOf(endKey, i + 1));
             }
         }
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.tuple;
+
+import com.google.common.base.Preconditions;
+import com.jamf.regatta.core.api.ByteSequence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * An ordered list of elements packed into a key whose bytes sort in the order of its elements, element by element. A
+ * tuple sorts after the tuples it extends, {@code (1)} before {@code (1, "a")} before {@code (2)}, so that the keys of
+ * the tuples starting with the same elements are a range of keys, see {@link TupleRange}.
+ * <p>
+ * The elements are packed in the encoding of the FoundationDB tuple layer. Elements of different types sort by type,
+ * {@code null}, byte arrays, strings, nested tuples, longs, booleans and UUIDs. The longs sort numerically, the strings
+ * and byte arrays by their bytes, the UUIDs by their 16 bytes as an unsigned number. Integers, shorts and bytes are
+ * kept as longs, byte arrays as {@link ByteSequence}s and lists as nested tuples.
+ */
+public final class Tuple implements Comparable<Tuple> {
+
+    private static final Tuple EMPTY = new Tuple(List.of());
+
+    private final List<Object> items;
+    private volatile ByteSequence packed;
+
+    private Tuple(List<Object> items) {
+        this.items = items;
+    }
+
+    public static Tuple of(Object... items) {
+        return fromList(Arrays.asList(items));
+    }
+
+    public static Tuple fromList(List<?> items) {
+        if (items.isEmpty()) {
+            return EMPTY;
+        }
+        var normalized = new ArrayList<>(items.size());
+        for (var item : items) {
+            normalized.add(normalize(item));
+        }
+        return new Tuple(Collections.unmodifiableList(normalized));
+    }
+
+    /**
+     * Unpacks the tuple of a key.
+     *
+     * @param key the key, packed by {@link #pack()}.
+     * @return the tuple.
+     * @throws IllegalArgumentException if the key is not a packed tuple.
+     */
+    public static Tuple fromBytes(ByteSequence key) {
+        return new Tuple(Collections.unmodifiableList(TupleEncoding.decode(key.getBytes())));
+    }
+
+    /**
+     * Unpacks the tuple of a key packed by {@link #pack(ByteSequence)}.
+     *
+     * @param prefix prefix of the key, e.g. the namespace of the tuples.
+     * @param key    the key.
+     * @return the tuple.
+     * @throws IllegalArgumentException if the key does not start with the prefix or is not a packed tuple.
+     */
+    public static Tuple fromBytes(ByteSequence prefix, ByteSequence key) {
+        Preconditions.checkArgument(key.startsWith(prefix), "key does not start with the prefix");
+        return fromBytes(key.substring(prefix.size()));
+    }
+
+    public Tuple add(Object item) {
+        var extended = new ArrayList<>(items.size() + 1);
+        extended.addAll(items);
+        extended.add(normalize(item));
+        return new Tuple(Collections.unmodifiableList(extended));
+    }
+
+    public Tuple addAll(Tuple other) {
+        var extended = new ArrayList<>(items.size() + other.items.size());
+        extended.addAll(items);
+        extended.addAll(other.items);
+        return new Tuple(Collections.unmodifiableList(extended));
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * @return the elements, byte arrays as {@link ByteSequence}s.
+     */
+    public List<Object> items() {
+        return items;
+    }
+
+    public Object get(int index) {
+        return items.get(index);
+    }
+
+    public long getLong(int index) {
+        return (Long) items.get(index);
+    }
+
+    public String getString(int index) {
+        return (String) items.get(index);
+    }
+
+    public byte[] getBytes(int index) {
+        return ((ByteSequence) items.get(index)).getBytes();
+    }
+
+    public UUID getUUID(int index) {
+        return (UUID) items.get(index);
+    }
+
+    public boolean getBoolean(int index) {
+        return (Boolean) items.get(index);
+    }
+
+    public Tuple getNestedTuple(int index) {
+        return (Tuple) items.get(index);
+    }
+
+    /**
+     * Packs the tuple into a key.
+     *
+     * @return the key.
+     */
+    public ByteSequence pack() {
+        var key = packed;
+        if (key == null) {
+            key = ByteSequence.wrap(TupleEncoding.encode(items));
+            packed = key;
+        }
+        return key;
+    }
+
+    /**
+     * Packs the tuple into a key after the given prefix, e.g. the namespace of the tuples.
+     *
+     * @param prefix prefix of the key.
+     * @return the key.
+     */
+    public ByteSequence pack(ByteSequence prefix) {
+        return prefix.concat(pack());
+    }
+
+    /**
+     * Tuples are compared by their packed keys.
+     */
+    @Override
+    public int compareTo(Tuple other) {
+        return pack().compareTo(other.pack());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof Tuple other && items.equals(other.items);
+    }
+
+    @Override
+    public int hashCode() {
+        return items.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return items.stream().map(item -> item instanceof String string ? '"' + string + '"' : Objects.toString(item))
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static Object normalize(Object item) {
+        if (item == null || item instanceof Long || item instanceof String || item instanceof ByteSequence
+                || item instanceof UUID || item instanceof Boolean || item instanceof Tuple) {
+            return item;
+        } else if (item instanceof Integer || item instanceof Short || item instanceof Byte) {
+            return ((Number) item).longValue();
+        } else if (item instanceof byte[] bytes) {
+            return ByteSequence.from(bytes);
+        } else if (item instanceof List<?> list) {
+            return fromList(list);
+        }
+        throw new IllegalArgumentException("unsupported tuple element " + item.getClass().getName());
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.tuple;
+
+import com.jamf.regatta.core.api.ByteSequence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The encoding of the FoundationDB tuple layer. An element is a type code followed by its data. Byte arrays and
+ * strings end with {@code 0x00}, a zero byte of their data is escaped as {@code 0x00 0xff}. A nested tuple ends with
+ * {@code 0x00} as well, its {@code null} elements are therefore encoded as {@code 0x00 0xff}. A long is encoded in as
+ * few big-endian bytes as its magnitude needs, their number is part of the type code, so that longer numbers sort after
+ * shorter ones, a negative long is stored as the ones' complement of its magnitude, so that it sorts in reverse.
+ */
+final class TupleEncoding {
+
+    static final int NULL = 0x00;
+    static final int BYTES = 0x01;
+    static final int STRING = 0x02;
+    static final int NESTED = 0x05;
+    static final int ZERO = 0x14;
+    static final int FALSE = 0x26;
+    static final int TRUE = 0x27;
+    static final int UUID_CODE = 0x30;
+    private static final int ESCAPE = 0xff;
+
+    private TupleEncoding() {
+    }
+
+    static byte[] encode(List<Object> items) {
+        var out = new ByteArrayOutputStream();
+        for (var item : items) {
+            encode(out, item, false);
+        }
+        return out.toByteArray();
+    }
+
+    static List<Object> decode(byte[] key) {
+        var decoder = new Decoder(key);
+        var items = new ArrayList<>();
+        while (decoder.position < key.length) {
+            items.add(decoder.next(false));
+        }
+        return items;
+    }
+
+    private static void encode(ByteArrayOutputStream out, Object item, boolean nested) {
+        if (item == null) {
+            out.write(NULL);
+            if (nested) {
+                out.write(ESCAPE);
+            }
+        } else if (item instanceof ByteSequence bytes) {
+            out.write(BYTES);
+            writeEscaped(out, bytes.getBytes());
+        } else if (item instanceof String string) {
+            out.write(STRING);
+            writeEscaped(out, string.getBytes(StandardCharsets.UTF_8));
+        } else if (item instanceof Tuple tuple) {
+            out.write(NESTED);
+            for (var element : tuple.items()) {
+                encode(out, element, true);
+            }
+            out.write(NULL);
+        } else if (item instanceof Long value) {
+            writeLong(out, value);
+        } else if (item instanceof Boolean value) {
+            out.write(value ? TRUE : FALSE);
+        } else if (item instanceof UUID uuid) {
+            out.write(UUID_CODE);
+            writeBigEndian(out, uuid.getMostSignificantBits(), Long.BYTES);
+            writeBigEndian(out, uuid.getLeastSignificantBits(), Long.BYTES);
+        } else {
+            throw new IllegalArgumentException("unsupported tuple element " + item.getClass().getName());
+        }
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, byte[] data) {
+        for (var b : data) {
+            out.write(b);
+            if (b == 0) {
+                out.write(ESCAPE);
+            }
+        }
+        out.write(NULL);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        if (value == 0) {
+            out.write(ZERO);
+            return;
+        }
+        // the magnitude of Long.MIN_VALUE is its own bits read as unsigned
+        var magnitude = value > 0 ? value : -value;
+        var length = (Long.SIZE - Long.numberOfLeadingZeros(magnitude) + 7) / 8;
+        if (value > 0) {
+            out.write(ZERO + length);
+            writeBigEndian(out, magnitude, length);
+        } else {
+            out.write(ZERO - length);
+            writeBigEndian(out, ~magnitude, length);
+        }
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream out, long value, int length) {
+        for (int shift = 8 * (length - 1); shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static final class Decoder {
+
+        private final byte[] key;
+        private int position;
+
+        Decoder(byte[] key) {
+            this.key = key;
+        }
+
+        Object next(boolean nested) {
+            var code = key[position++] & 0xff;
+            if (code == NULL) {
+                if (nested) {
+                    // the end of a nested tuple is checked by the caller, a null of a nested tuple is escaped
+                    position++;
+                }
+                return null;
+            } else if (code == BYTES) {
+                return ByteSequence.wrap(readEscaped());
+            } else if (code == STRING) {
+                return new String(readEscaped(), StandardCharsets.UTF_8);
+            } else if (code == NESTED) {
+                var items = new ArrayList<>();
+                while (true) {
+                    if (position >= key.length) {
+                        throw new IllegalArgumentException("unterminated nested tuple");
+                    }
+                    if (key[position] == NULL && (position + 1 == key.length || (key[position + 1] & 0xff) != ESCAPE)) {
+                        position++;
+                        return Tuple.fromList(items);
+                    }
+                    items.add(next(true));
+                }
+            } else if (code >= ZERO - Long.BYTES && code <= ZERO + Long.BYTES) {
+                return readLong(code);
+            } else if (code == FALSE || code == TRUE) {
+                return code == TRUE;
+            } else if (code == UUID_CODE) {
+                return new UUID(readBigEndian(Long.BYTES), readBigEndian(Long.BYTES));
+            }
+            throw new IllegalArgumentException("unsupported tuple type code " + code + " at " + (position - 1));
+        }
+
+        private byte[] readEscaped() {
+            var out = new ByteArrayOutputStream();
+            while (true) {
+                if (position >= key.length) {
+                    throw new IllegalArgumentException("unterminated tuple element");
+                }
+                var b = key[position++];
+                if (b == 0) {
+                    if (position < key.length && (key[position] & 0xff) == ESCAPE) {
+                        position++;
+                    } else {
+                        return out.toByteArray();
+                    }
+                }
+                out.write(b);
+            }
+        }
+
+        private long readLong(int code) {
+            if (code == ZERO) {
+                return 0;
+            }
+            var length = Math.abs(code - ZERO);
+            var bits = readBigEndian(length);
+            if (code > ZERO) {
+                if (bits < 0) {
+                    throw new IllegalArgumentException("tuple integer exceeds a long");
+                }
+                return bits;
+            }
+            var mask = length == Long.BYTES ? -1L : (1L << 8 * length) - 1;
+            var magnitude = ~bits & mask;
+            if (magnitude < 0 && magnitude != Long.MIN_VALUE) {
+                throw new IllegalArgumentException("tuple integer exceeds a long");
+            }
+            return -magnitude;
+        }
+
+        private long readBigEndian(int length) {
+            if (position + length > key.length) {
+                throw new IllegalArgumentException("truncated tuple element");
+            }
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = value << 8 | (key[position++] & 0xff);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.tuple;
+
+import com.google.common.base.Preconditions;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+
+/**
+ * The range of the keys of the tuples starting with a prefix or between two bounds, as the key and the options of a
+ * get or delete, so that it reads exactly the tuples of the range:
+ * <pre>{@code
+ * var range = TupleRange.startsWith(Tuple.of("device", 42L));
+ * kv.get(table, range.key(), range.applyTo(GetOption.builder()).withLimit(100).build());
+ * }</pre>
+ */
+public final class TupleRange {
+
+    // no element is packed starting with 0xff, an escaped NUL continuing a string or bytes element is 00 ff
+    private static final ByteSequence END = ByteSequence.from(new byte[]{(byte) 0xff});
+
+    private final ByteSequence key;
+    private final ByteSequence endKey;
+
+    private TupleRange(ByteSequence key, ByteSequence endKey) {
+        this.key = key;
+        this.endKey = endKey;
+    }
+
+    /**
+     * The tuples starting with the elements of the prefix, the prefix itself included. {@code ("device", 42)} matches
+     * {@code ("device", 42)} and {@code ("device", 42, "os")}, not {@code ("device", 420)}. The range is
+     * {@code [packed, packed + 0xff)}, as in the FoundationDB tuple layer, so that {@code ("a")} does not match
+     * {@code ("a\0")}, whose key starts with the key of {@code ("a")}.
+     *
+     * @param prefix the first elements of the tuples, not empty.
+     * @return the range.
+     */
+    public static TupleRange startsWith(Tuple prefix) {
+        return startsWith(ByteSequence.EMPTY, prefix);
+    }
+
+    /**
+     * The tuples packed after the key prefix which start with the elements of the tuple prefix.
+     *
+     * @param keyPrefix the prefix the tuples are packed after, e.g. their namespace.
+     * @param prefix    the first elements of the tuples, not empty.
+     * @return the range.
+     */
+    public static TupleRange startsWith(ByteSequence keyPrefix, Tuple prefix) {
+        Preconditions.checkArgument(!prefix.isEmpty(), "prefix can't be empty");
+        var packed = prefix.pack(keyPrefix);
+        return new TupleRange(packed, packed.concat(END));
+    }
+
+    /**
+     * The tuples from the begin tuple, included, to the end tuple, excluded. The tuples extending the end tuple are
+     * excluded as well, they sort after it.
+     *
+     * @param begin the first tuple of the range.
+     * @param end   the tuple after the range.
+     * @return the range.
+     */
+    public static TupleRange between(Tuple begin, Tuple end) {
+        return between(ByteSequence.EMPTY, begin, end);
+    }
+
+    /**
+     * The tuples packed after the key prefix from the begin tuple, included, to the end tuple, excluded.
+     *
+     * @param keyPrefix the prefix the tuples are packed after, e.g. their namespace.
+     * @param begin     the first tuple of the range.
+     * @param end       the tuple after the range.
+     * @return the range.
+     */
+    public static TupleRange between(ByteSequence keyPrefix, Tuple begin, Tuple end) {
+        Preconditions.checkArgument(begin.compareTo(end) < 0, "begin must sort before end");
+        return new TupleRange(begin.pack(keyPrefix), end.pack(keyPrefix));
+    }
+
+    /**
+     * @return the first key of the range, the key of the get or delete.
+     */
+    public ByteSequence key() {
+        return key;
+    }
+
+    /**
+     * @return the end of the range, excluded.
+     */
+    public ByteSequence endKey() {
+        return endKey;
+    }
+
+    /**
+     * Sets the end of the range to the options of a get.
+     *
+     * @param builder the options.
+     * @return the builder.
+     */
+    public GetOption.Builder applyTo(GetOption.Builder builder) {
+        return builder.isPrefix(false).withRange(endKey);
+    }
+
+    /**
+     * Sets the end of the range to the options of a delete.
+     *
+     * @param builder the options.
+     * @return the builder.
+     */
+    public DeleteOption.Builder applyTo(DeleteOption.Builder builder) {
+        return builder.isPrefix(false).withRange(endKey);
+    }
+
+    /**
+     * @return the options of a get of the range.
+     */
+    public GetOption toGetOption() {
+        return applyTo(GetOption.builder()).build();
+    }
+
+    @Override
+    public String toString() {
+        return "TupleRange{key=" + key + ", endKey=" + endKey + '}';
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.api;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteSequenceTest {
+
+    @Test
+    void wrapDoesNotCopy() {
+        byte[] bytes = "abc".getBytes(StandardCharsets.UTF_8);
+        ByteSequence sequence = ByteSequence.wrap(bytes);
+
+        bytes[0] = 'x';
+
+        assertThat(sequence.toString()).isEqualTo("xbc");
+    }
+
+    @Test
+    void fromCopies() {
+        byte[] bytes = "abc".getBytes(StandardCharsets.UTF_8);
+        ByteSequence sequence = ByteSequence.from(bytes);
+
+        bytes[0] = 'x';
+
+        assertThat(sequence.toString()).isEqualTo("abc");
+    }
+
+    @Test
+    void wrapByteBufferUsesRemainingBytes() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+        buffer.put("xxabc".getBytes(StandardCharsets.UTF_8)).flip().position(2);
+
+        assertThat(ByteSequence.wrap(buffer)).isEqualTo(ByteSequence.fromUtf8String("abc"));
+    }
+
+    @Test
+    void equalsAndHashCodeAcrossFactories() {
+        ByteSequence copied = ByteSequence.from("abc", StandardCharsets.UTF_8);
+        ByteSequence wrapped = ByteSequence.wrap("abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(wrapped).isEqualTo(copied);
+        assertThat(wrapped.hashCode()).isEqualTo(copied.hashCode());
+        assertThat(wrapped.getByteString()).isEqualTo(ByteString.copyFromUtf8("abc"));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.balancer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.impl.ClientImpl;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.Member;
+import com.jamf.regatta.proto.MemberListResponse;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.ResponseHeader;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.ManagedChannel;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.inprocess.InProcessSocketAddress;
+import io.grpc.stub.StreamObserver;
+
+class LeaderAffinityLoadBalancerTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key1");
+	private static final ByteSequence VALUE = ByteSequence.fromUtf8String("value1");
+	private static final GetOption SERIALIZABLE = GetOption.builder().withSerializable(true).build();
+	private static final long LEADER = 2;
+
+	private final List<Server> servers = new ArrayList<>();
+	private final List<MemberStub> members = new ArrayList<>();
+	private final LeaderTracker tracker = new LeaderTracker();
+	private ManagedChannel channel;
+	private ClientImpl client;
+
+	@BeforeEach
+	@SuppressWarnings("deprecation")
+	void setUp() throws Exception {
+		var groups = new ArrayList<EquivalentAddressGroup>();
+		for (long id = 1; id <= 3; id++) {
+			var name = UUID.randomUUID().toString();
+			var member = new MemberStub(id);
+			members.add(member);
+			servers.add(InProcessServerBuilder.forName(name)
+					.addService(member)
+					.decompressorRegistry(DecompressorRegistry.getDefaultInstance().with(SnappyCodec.INSTANCE, true))
+					.build()
+					.start());
+			groups.add(new EquivalentAddressGroup(new InProcessSocketAddress(name)));
+		}
+		var compressorRegistry = CompressorRegistry.newEmptyInstance();
+		compressorRegistry.register(Codec.Identity.NONE);
+		compressorRegistry.register(SnappyCodec.INSTANCE);
+		channel = InProcessChannelBuilder.forTarget("members:///cluster")
+				.nameResolverFactory(new StaticResolverProvider(groups))
+				.defaultLoadBalancingPolicy(LeaderAffinityLoadBalancer.POLICY_NAME)
+				.intercept(tracker)
+				.compressorRegistry(compressorRegistry)
+				.build();
+		client = new ClientImpl(channel, RetryConfig.DEFAULT);
+	}
+
+	@AfterEach
+	void tearDown() {
+		channel.shutdownNow();
+		servers.forEach(Server::shutdownNow);
+	}
+
+	@Test
+	void sendsWritesAndLinearizableReadsToLeader() {
+		var kv = client.getKVClient();
+		// every response names the leader, its address is known once the leader answered a call
+		for (int i = 0; i < 100 && tracker.leaderAddresses().isEmpty(); i++) {
+			kv.get(TABLE, KEY, SERIALIZABLE);
+		}
+		assertThat(tracker.leaderId()).isEqualTo(LEADER);
+		assertThat(tracker.leaderAddresses()).isNotEmpty();
+		members.forEach(MemberStub::reset);
+
+		for (int i = 0; i < 10; i++) {
+			kv.put(TABLE, KEY, VALUE);
+			kv.get(TABLE, KEY);
+		}
+
+		var leader = members.get((int) LEADER - 1);
+		assertThat(leader.puts.get()).isEqualTo(10);
+		assertThat(leader.ranges.get()).isEqualTo(10);
+	}
+
+	@Test
+	void balancesSerializableReadsOverAllMembers() {
+		var kv = client.getKVClient();
+
+		for (int i = 0; i < 100 && members.stream().anyMatch(member -> member.ranges.get() == 0); i++) {
+			kv.get(TABLE, KEY, SERIALIZABLE);
+		}
+
+		assertThat(members).allMatch(member -> member.ranges.get() > 0);
+	}
+
+	@Test
+	void sendsHedgedAttemptsToDifferentMembers() {
+		var kv = client.getKVClient();
+		for (int i = 0; i < 100 && members.stream().anyMatch(member -> member.ranges.get() == 0); i++) {
+			kv.get(TABLE, KEY, SERIALIZABLE);
+		}
+		members.forEach(MemberStub::reset);
+		Set<SocketAddress> picked = ConcurrentHashMap.newKeySet();
+		var stub = KVGrpc.newBlockingStub(channel).withOption(LeaderAffinityLoadBalancer.PICKED, picked);
+
+		for (int i = 0; i < members.size(); i++) {
+			stub.range(RangeRequest.getDefaultInstance());
+		}
+
+		assertThat(picked).hasSize(members.size());
+		assertThat(members).allMatch(member -> member.ranges.get() == 1);
+	}
+
+	@Test
+	void resolvesLeaderFromMemberList() {
+		tracker.members(MemberListResponse.newBuilder()
+				.addMembers(Member.newBuilder().setId("1").addClientURLs("http://127.0.0.1:8444"))
+				.addMembers(Member.newBuilder().setId("2").addClientURLs("http://127.0.0.1"))
+				.build());
+
+		tracker.observe(ResponseHeader.newBuilder().setReplicaId(1).setRaftLeaderId(LEADER).build(), null, channel);
+
+		assertThat(tracker.leaderAddresses()).containsExactly(new InetSocketAddress("127.0.0.1", 8443));
+	}
+
+	private static final class MemberStub extends KVGrpc.KVImplBase {
+
+		private final long id;
+		private final AtomicInteger puts = new AtomicInteger();
+		private final AtomicInteger ranges = new AtomicInteger();
+
+		private MemberStub(long id) {
+			this.id = id;
+		}
+
+		private void reset() {
+			puts.set(0);
+			ranges.set(0);
+		}
+
+		private ResponseHeader header() {
+			return ResponseHeader.newBuilder().setReplicaId(id).setRaftLeaderId(LEADER).build();
+		}
+
+		@Override
+		public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+			puts.incrementAndGet();
+			responseObserver.onNext(PutResponse.newBuilder().setHeader(header()).build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			ranges.incrementAndGet();
+			responseObserver.onNext(RangeResponse.newBuilder().setHeader(header()).build());
+			responseObserver.onCompleted();
+		}
+	}
+
+	private static final class StaticResolverProvider extends NameResolverProvider {
+
+		private final List<EquivalentAddressGroup> groups;
+
+		private StaticResolverProvider(List<EquivalentAddressGroup> groups) {
+			this.groups = groups;
+		}
+
+		@Override
+		public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+			return new NameResolver() {
+				@Override
+				public String getServiceAuthority() {
+					return "cluster";
+				}
+
+				@Override
+				public void start(Listener2 listener) {
+					listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+				}
+
+				@Override
+				public void shutdown() {
+				}
+			};
+		}
+
+		@Override
+		public String getDefaultScheme() {
+			return "members";
+		}
+
+		@Override
+		protected boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		protected int priority() {
+			return 5;
+		}
+
+		@Override
+		public Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+			return List.of(InProcessSocketAddress.class);
+		}
+	}
+}
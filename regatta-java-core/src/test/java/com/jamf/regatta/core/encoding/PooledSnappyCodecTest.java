@@ -0,0 +1,192 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Compressor;
+import io.grpc.Decompressor;
+
+class PooledSnappyCodecTest {
+
+	private static final int[] SIZES = {0, 1, 100, PooledSnappyCodec.BLOCK_SIZE, 3 * PooledSnappyCodec.BLOCK_SIZE + 17};
+
+	@Test
+	void readsAndWritesTheFramingOfTheSnappyCodec() throws IOException {
+		for (var size : SIZES) {
+			for (var compressible : new boolean[]{true, false}) {
+				var message = message(size, compressible);
+
+				assertThat(roundTrip(PooledSnappyCodec.INSTANCE, SnappyCodec.INSTANCE, message)).isEqualTo(message);
+				assertThat(roundTrip(SnappyCodec.INSTANCE, PooledSnappyCodec.INSTANCE, message)).isEqualTo(message);
+				assertThat(compress(PooledSnappyCodec.INSTANCE, message)).isEqualTo(compress(SnappyCodec.INSTANCE, message));
+			}
+		}
+	}
+
+	@Test
+	void decompressedMessageKnowsItsLength() throws IOException {
+		var message = message(1000, true);
+
+		try (var decompressed = PooledSnappyCodec.INSTANCE.decompress(new ByteArrayInputStream(compress(PooledSnappyCodec.INSTANCE, message)))) {
+			assertThat(decompressed.available()).isEqualTo(1000);
+			assertThat(decompressed.skip(10)).isEqualTo(10);
+			assertThat(decompressed.read()).isEqualTo(message[10] & 0xff);
+			assertThat(decompressed.readAllBytes()).isEqualTo(Arrays.copyOfRange(message, 11, 1000));
+			assertThat(decompressed.read()).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	void rejectsCorruptedMessages() throws IOException {
+		var compressed = compress(PooledSnappyCodec.INSTANCE, message(1000, true));
+		var corrupted = compressed.clone();
+		// a literal of the random half, the checksum no longer matches
+		corrupted[30] ^= 1;
+
+		assertThatThrownBy(() -> decompress(PooledSnappyCodec.INSTANCE, corrupted)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> decompress(PooledSnappyCodec.INSTANCE, Arrays.copyOf(compressed, compressed.length - 3)))
+				.hasMessageContaining("truncated");
+		assertThatThrownBy(() -> decompress(PooledSnappyCodec.INSTANCE, new byte[]{1, 2, 3}))
+				.hasMessageContaining("stream identifier");
+	}
+
+	@Test
+	void rejectsMessagesAboveTheSizeLimitsBeforeDecoding() throws IOException {
+		var message = message(10_000, true);
+		// a single uncompressed chunk larger than the framing format allows
+		var oversized = new byte[10 + 8 + PooledSnappyCodec.BLOCK_SIZE + 1];
+		System.arraycopy(compress(PooledSnappyCodec.INSTANCE, new byte[0]), 0, oversized, 0, 10);
+		var chunkLength = PooledSnappyCodec.BLOCK_SIZE + 1 + 4;
+		oversized[10] = 0x01;
+		oversized[11] = (byte) chunkLength;
+		oversized[12] = (byte) (chunkLength >>> 8);
+		oversized[13] = (byte) (chunkLength >>> 16);
+
+		assertThatThrownBy(() -> decompress(PooledSnappyCodec.INSTANCE, oversized)).hasMessageContaining("chunk data");
+		assertThatThrownBy(() -> decompress(PooledSnappyCodec.withMaxDecodedSize(9_999), compress(PooledSnappyCodec.INSTANCE, message)))
+				.hasMessageContaining("maximal decoded size");
+		assertThat(decompress(PooledSnappyCodec.withMaxDecodedSize(10_000), compress(PooledSnappyCodec.INSTANCE, message))).isEqualTo(message);
+	}
+
+	@Test
+	void smallMessagesAllocateLittle() throws IOException {
+		var message = message(200, true);
+		var compressed = compress(PooledSnappyCodec.INSTANCE, message);
+		var target = new byte[message.length];
+
+		var pooled = allocatedPerRoundTrip(PooledSnappyCodec.INSTANCE, message, compressed, target);
+		var framed = allocatedPerRoundTrip(SnappyCodec.INSTANCE, message, compressed, target);
+
+		// the input stream of a message, the rest is reused
+		assertThat(pooled).isLessThan(256);
+		assertThat(framed).isGreaterThan(10 * pooled);
+	}
+
+	private static <C extends Compressor & Decompressor> long allocatedPerRoundTrip(C codec, byte[] message, byte[] compressed, byte[] target) throws IOException {
+		var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		var sink = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+		var source = new ReusableInputStream(compressed);
+		var rounds = 2_000;
+		long before = 0;
+		for (int i = 0; i < 2 * rounds; i++) {
+			if (i == rounds) {
+				before = threads.getCurrentThreadAllocatedBytes();
+			}
+			try (var out = codec.compress(sink)) {
+				out.write(message);
+			}
+			source.rewind();
+			try (var in = codec.decompress(source)) {
+				in.readNBytes(target, 0, target.length);
+			}
+		}
+		return (threads.getCurrentThreadAllocatedBytes() - before) / rounds;
+	}
+
+	private static byte[] roundTrip(Compressor compressor, Decompressor decompressor, byte[] message) throws IOException {
+		return decompress(decompressor, compress(compressor, message));
+	}
+
+	private static byte[] compress(Compressor compressor, byte[] message) throws IOException {
+		var out = new ByteArrayOutputStream();
+		try (var compressing = compressor.compress(out)) {
+			// written in pieces, as done by the protobuf marshaller
+			for (int offset = 0; offset < message.length; offset += 4096) {
+				compressing.write(message, offset, Math.min(4096, message.length - offset));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] decompress(Decompressor decompressor, byte[] compressed) throws IOException {
+		try (var decompressing = decompressor.decompress(new ByteArrayInputStream(compressed))) {
+			return decompressing.readAllBytes();
+		}
+	}
+
+	private static byte[] message(int size, boolean compressible) {
+		var message = new byte[size];
+		new Random(size).nextBytes(message);
+		if (compressible) {
+			Arrays.fill(message, size / 2, size, (byte) 'x');
+		}
+		return message;
+	}
+
+	private static final class ReusableInputStream extends InputStream {
+
+		private final byte[] data;
+		private int position;
+
+		ReusableInputStream(byte[] data) {
+			this.data = data;
+		}
+
+		void rewind() {
+			position = 0;
+		}
+
+		@Override
+		public int read() {
+			return position < data.length ? data[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (position == data.length) {
+				return -1;
+			}
+			var n = Math.min(len, data.length - position);
+			System.arraycopy(data, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
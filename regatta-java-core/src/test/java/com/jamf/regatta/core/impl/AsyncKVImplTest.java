@@ -0,0 +1,378 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.ResponseOp;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+class AsyncKVImplTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key1");
+	private static final ByteSequence VALUE = ByteSequence.fromUtf8String("value1");
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	private AsyncKVImpl client;
+
+	@BeforeEach
+	void setUp() {
+		client = new AsyncKVImpl(server.getChannel(), new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null));
+	}
+
+	@Test
+	void put() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+
+		var result = client.put(TABLE, KEY, VALUE, PutOption.builder().withPrevKV().build()).join();
+
+		assertThat(result).isNotNull();
+		assertThat(stub.lastPut.getTable()).isEqualTo(ByteString.copyFromUtf8("table1"));
+		assertThat(stub.lastPut.getKey()).isEqualTo(ByteString.copyFromUtf8("key1"));
+		assertThat(stub.lastPut.getValue()).isEqualTo(ByteString.copyFromUtf8("value1"));
+		assertThat(stub.lastPut.getPrevKv()).isTrue();
+	}
+
+	@Test
+	void get() {
+		server.addService(new KVTestStub());
+
+		var result = client.get(TABLE, KEY).join();
+
+		assertThat(result.kvs()).hasSize(1);
+		assertThat(result.kvs().get(0).key()).isEqualTo(KEY);
+		assertThat(result.kvs().get(0).value()).isEqualTo(VALUE);
+	}
+
+	@Test
+	void get_serializableIsRetried() {
+		var stub = new KVTestStub();
+		stub.failures.set(2);
+		server.addService(stub);
+
+		var result = client.get(TABLE, KEY, GetOption.builder().withSerializable(true).build()).join();
+
+		assertThat(result.kvs()).hasSize(1);
+		assertThat(stub.rangeCalls.get()).isEqualTo(3);
+	}
+
+	@Test
+	void get_retriesAreLimitedByBudget() {
+		var stub = new KVTestStub();
+		stub.failures.set(Integer.MAX_VALUE);
+		server.addService(stub);
+		client = new AsyncKVImpl(server.getChannel(), new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null, 0.1));
+		var option = GetOption.builder().withSerializable(true).build();
+
+		for (int i = 0; i < 6; i++) {
+			var thrown = catchThrowable(() -> client.get(TABLE, KEY, option).join());
+			assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+		}
+
+		// the full bucket pays for the retries of five calls, the deposits of the calls are not enough for another one
+		assertThat(stub.rangeCalls.get()).isEqualTo(5 * 3 + 1);
+	}
+
+	@Test
+	void get_retryIsSkippedWhenDeadlineExpiresBeforeBackoff() {
+		var stub = new KVTestStub();
+		stub.failures.set(1);
+		server.addService(stub);
+		client = new AsyncKVImpl(server.getChannel(), new RetryConfig(2, 1, 10, ChronoUnit.SECONDS, null));
+		var option = GetOption.builder().withSerializable(true).withTimeout(500, TimeUnit.MILLISECONDS).build();
+
+		var thrown = catchThrowable(() -> client.get(TABLE, KEY, option).join());
+
+		assertThat(thrown.getCause()).isInstanceOf(RetrySkippedException.class);
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+		assertThat(stub.rangeCalls.get()).isEqualTo(1);
+	}
+
+	@Test
+	void put_isNotRetried() {
+		var stub = new KVTestStub();
+		stub.failures.set(1);
+		server.addService(stub);
+
+		var thrown = catchThrowable(() -> client.put(TABLE, KEY, VALUE).join());
+
+		assertThat(thrown).isInstanceOf(CompletionException.class);
+		assertThat(thrown.getCause()).isInstanceOf(StatusRuntimeException.class);
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.UNAVAILABLE.getCode());
+	}
+
+	@Test
+	void txn() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+
+		var result = client.txn(TABLE)
+				.Then(Op.get(KEY, GetOption.DEFAULT))
+				.commit()
+				.join();
+
+		assertThat(result.succeeded()).isTrue();
+		assertThat(result.responses()).hasSize(1);
+		assertThat(stub.lastTxn.getSuccessList()).hasSize(1);
+	}
+
+	@Test
+	void getAll_looksUpSparseKeysInTxns() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+		var keys = List.of(
+				ByteSequence.fromUtf8String("c"),
+				ByteSequence.fromUtf8String("a"),
+				ByteSequence.fromUtf8String("missing"),
+				ByteSequence.fromUtf8String("b"),
+				ByteSequence.fromUtf8String("a"));
+
+		var result = client.getAll(TABLE, keys).join();
+
+		assertThat(result.keySet()).extracting(ByteSequence::toString).containsExactly("a", "b", "c");
+		assertThat(stub.rangeCalls.get()).isZero();
+		assertThat(stub.lastTxn.getSuccessList()).hasSize(4);
+	}
+
+	@Test
+	void getAll_scansDenseKeys() {
+		var stub = new KVTestStub();
+		for (int i = 0; i < 40; i++) {
+			stub.stored.add(String.format("key-%02d", i));
+		}
+		server.addService(stub);
+		var keys = new ArrayList<ByteSequence>();
+		for (int i = 0; i < 20; i++) {
+			keys.add(ByteSequence.fromUtf8String(String.format("key-%02d", i * 2)));
+		}
+
+		var result = client.getAll(TABLE, keys).join();
+
+		assertThat(result.keySet()).containsExactlyElementsOf(keys);
+		assertThat(stub.rangeCalls.get()).isEqualTo(1);
+		assertThat(stub.lastTxn).isNull();
+	}
+
+	@Test
+	void getAll_looksUpRemainingKeysWhenScanIsIncomplete() {
+		var stub = new KVTestStub();
+		for (int i = 0; i < 40; i++) {
+			stub.stored.add(String.format("key-%02d", i));
+			for (var suffix : List.of("a", "b", "c", "d")) {
+				stub.stored.add(String.format("key-%02d-%s", i, suffix));
+			}
+		}
+		server.addService(stub);
+		var keys = new ArrayList<ByteSequence>();
+		for (int i = 0; i < 20; i++) {
+			keys.add(ByteSequence.fromUtf8String(String.format("key-%02d", i * 2)));
+		}
+
+		var result = client.getAll(TABLE, keys).join();
+
+		assertThat(result).hasSize(20);
+		assertThat(stub.rangeCalls.get()).isEqualTo(1);
+		assertThat(stub.lastTxn).isNotNull();
+	}
+
+	@Test
+	void iterate_followsDemand() throws Exception {
+		server.addService(new KVTestStub());
+		var subscriber = new TestSubscriber();
+
+		client.iterate(TABLE, KEY).subscribe(subscriber);
+		subscriber.subscription.request(1);
+
+		assertThat(subscriber.received.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(subscriber.items).hasSize(1);
+		assertThat(subscriber.completed.getCount()).isEqualTo(1);
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+
+		assertThat(subscriber.completed.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(subscriber.items).extracting(kv -> kv.key().toString())
+				.containsExactly("key-0", "key-1", "key-2", "key-3", "key-4", "key-5");
+		assertThat(subscriber.error).isNull();
+	}
+
+	@Test
+	void iterate_cancelCancelsServerStream() throws Exception {
+		var stub = new KVTestStub();
+		stub.completeStream = false;
+		server.addService(stub);
+		var subscriber = new TestSubscriber();
+
+		client.iterate(TABLE, KEY).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertThat(subscriber.received.await(1, TimeUnit.SECONDS)).isTrue();
+		subscriber.subscription.cancel();
+
+		assertThat(stub.streamCancelled.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(subscriber.items).hasSize(1);
+	}
+
+	@Test
+	void iterate_nonPositiveRequestFailsSubscriptionAndCancelsServerStream() throws Exception {
+		var stub = new KVTestStub();
+		stub.completeStream = false;
+		server.addService(stub);
+		var subscriber = new TestSubscriber();
+
+		client.iterate(TABLE, KEY).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		assertThat(subscriber.received.await(1, TimeUnit.SECONDS)).isTrue();
+		subscriber.subscription.request(0);
+
+		assertThat(subscriber.completed.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+		assertThat(stub.streamCancelled.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static class TestSubscriber implements Flow.Subscriber<com.jamf.regatta.core.api.KeyValue> {
+
+		private final List<com.jamf.regatta.core.api.KeyValue> items = new CopyOnWriteArrayList<>();
+		private final CountDownLatch received = new CountDownLatch(1);
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private volatile Flow.Subscription subscription;
+		private volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(com.jamf.regatta.core.api.KeyValue item) {
+			items.add(item);
+			received.countDown();
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			completed.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed.countDown();
+		}
+	}
+
+	private static class KVTestStub extends KVGrpc.KVImplBase {
+
+		private final AtomicInteger failures = new AtomicInteger();
+		private final AtomicInteger rangeCalls = new AtomicInteger();
+		private final CountDownLatch streamCancelled = new CountDownLatch(1);
+		private volatile boolean completeStream = true;
+		private volatile PutRequest lastPut;
+		private volatile TxnRequest lastTxn;
+		private final NavigableSet<String> stored = new TreeSet<>();
+
+		@Override
+		public void iterateRange(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			((ServerCallStreamObserver<RangeResponse>) responseObserver).setOnCancelHandler(streamCancelled::countDown);
+			for (int chunk = 0; chunk < 3; chunk++) {
+				var response = RangeResponse.newBuilder();
+				for (int i = chunk * 2; i < chunk * 2 + 2; i++) {
+					response.addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8("key-" + i)).build());
+				}
+				responseObserver.onNext(response.build());
+			}
+			if (completeStream) {
+				responseObserver.onCompleted();
+			}
+		}
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			rangeCalls.incrementAndGet();
+			if (failures.getAndDecrement() > 0) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			if (!request.getRangeEnd().isEmpty()) {
+				var matching = stored.subSet(request.getKey().toStringUtf8(), true, request.getRangeEnd().toStringUtf8(), false);
+				var response = RangeResponse.newBuilder().setMore(matching.size() > request.getLimit());
+				matching.stream().limit(request.getLimit())
+						.forEach(key -> response.addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8(key))));
+				responseObserver.onNext(response.build());
+				responseObserver.onCompleted();
+				return;
+			}
+			responseObserver.onNext(RangeResponse.newBuilder()
+					.addKvs(KeyValue.newBuilder().setKey(request.getKey()).setValue(ByteString.copyFromUtf8("value1")).build())
+					.setCount(1)
+					.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+			lastPut = request;
+			if (failures.getAndDecrement() > 0) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(PutResponse.getDefaultInstance());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void txn(TxnRequest request, StreamObserver<TxnResponse> responseObserver) {
+			lastTxn = request;
+			var response = TxnResponse.newBuilder().setSucceeded(true);
+			for (var op : request.getSuccessList()) {
+				var range = ResponseOp.Range.newBuilder();
+				var key = op.getRequestRange().getKey();
+				if (!key.startsWith(ByteString.copyFromUtf8("missing"))) {
+					range.addKvs(KeyValue.newBuilder().setKey(key));
+				}
+				response.addResponses(ResponseOp.newBuilder().setResponseRange(range));
+			}
+			responseObserver.onNext(response.build());
+			responseObserver.onCompleted();
+		}
+	}
+}
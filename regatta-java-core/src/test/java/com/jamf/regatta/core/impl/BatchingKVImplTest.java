@@ -0,0 +1,266 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.jamf.regatta.core.BatchConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.core.options.TxnOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.DeleteRangeResponse;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.ResponseOp;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+
+class BatchingKVImplTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence OTHER_TABLE = ByteSequence.fromUtf8String("table2");
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	private BatchingKVImpl client(int maxBatchSize, Duration linger) {
+		var kv = new AsyncKVImpl(server.getChannel(), new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null));
+		return new BatchingKVImpl(kv, new BatchConfig(maxBatchSize, linger, TxnOption.DEFAULT));
+	}
+
+	@Test
+	void batchIsSubmittedWhenFull() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+		var client = client(4, Duration.ofMinutes(1));
+
+		var puts = new ArrayList<CompletableFuture<?>>();
+		for (int i = 0; i < 4; i++) {
+			puts.add(client.put(TABLE, ByteSequence.fromUtf8String("key-" + i), ByteSequence.fromUtf8String("value-" + i)));
+		}
+		CompletableFuture.allOf(puts.toArray(CompletableFuture[]::new)).join();
+
+		assertThat(stub.txns).hasSize(1);
+		assertThat(stub.txns.get(0).getTable()).isEqualTo(ByteString.copyFromUtf8("table1"));
+		assertThat(stub.txns.get(0).getCompareList()).isEmpty();
+		assertThat(stub.txns.get(0).getSuccessList())
+				.extracting(op -> op.getRequestPut().getKey().toStringUtf8())
+				.containsExactly("key-0", "key-1", "key-2", "key-3");
+	}
+
+	@Test
+	void batchIsSubmittedAfterLinger() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+		var client = client(100, Duration.ofMillis(20));
+
+		var put = client.put(TABLE, ByteSequence.fromUtf8String("key-0"), ByteSequence.fromUtf8String("value-0"));
+		var delete = client.delete(TABLE, ByteSequence.fromUtf8String("key-1"));
+		var otherTable = client.put(OTHER_TABLE, ByteSequence.fromUtf8String("key-2"), ByteSequence.fromUtf8String("value-2"));
+
+		assertThat(put.join()).isNotNull();
+		assertThat(delete.join().deleted()).isEqualTo(1);
+		assertThat(otherTable.join()).isNotNull();
+		assertThat(stub.txns).hasSize(2);
+	}
+
+	@Test
+	void responsesAreFannedOutInOrder() {
+		server.addService(new KVTestStub());
+		var client = client(3, Duration.ofMinutes(1));
+
+		var gets = new ArrayList<CompletableFuture<GetResponse>>();
+		for (int i = 0; i < 3; i++) {
+			gets.add(client.get(TABLE, ByteSequence.fromUtf8String("key-" + i)));
+		}
+
+		for (int i = 0; i < 3; i++) {
+			var response = gets.get(i).join();
+			assertThat(response.kvs()).hasSize(1);
+			assertThat(response.kvs().get(0).key()).isEqualTo(ByteSequence.fromUtf8String("key-" + i));
+		}
+	}
+
+	@Test
+	void failureOfBatchAndSingleOperationsCompletesAllCallers() {
+		var stub = new KVTestStub();
+		stub.fail = true;
+		server.addService(stub);
+		var client = client(2, Duration.ofMinutes(1));
+
+		var first = client.put(TABLE, ByteSequence.fromUtf8String("key-0"), ByteSequence.fromUtf8String("value-0"));
+		var second = client.delete(TABLE, ByteSequence.fromUtf8String("key-1"));
+
+		for (var future : List.of(first, second)) {
+			var thrown = catchThrowable(future::join);
+			assertThat(thrown).isInstanceOf(CompletionException.class);
+			assertThat(thrown.getCause()).isInstanceOf(StatusRuntimeException.class);
+		}
+		assertThat(stub.txns).hasSize(1);
+	}
+
+	@Test
+	void rejectedBatchFallsBackToSingleOperations() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+		var client = client(3, Duration.ofMinutes(1));
+
+		var first = client.put(TABLE, ByteSequence.fromUtf8String("key-0"), ByteSequence.fromUtf8String("value-0"));
+		var invalid = client.put(TABLE, ByteSequence.fromUtf8String(KVTestStub.INVALID), ByteSequence.fromUtf8String("value-1"));
+		var second = client.delete(TABLE, ByteSequence.fromUtf8String("key-2"));
+
+		assertThat(first.join()).isNotNull();
+		assertThat(second.join().deleted()).isEqualTo(1);
+		var thrown = catchThrowable(invalid::join);
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+		assertThat(stub.txns).hasSize(1);
+		assertThat(stub.singles).containsExactlyInAnyOrder("key-0", KVTestStub.INVALID, "key-2");
+	}
+
+	@Test
+	void writesOfBatchWithUnknownOutcomeAreNotReplayed() {
+		var stub = new KVTestStub();
+		stub.failAfterApply = true;
+		server.addService(stub);
+		var client = client(3, Duration.ofMinutes(1));
+
+		var put = client.put(TABLE, ByteSequence.fromUtf8String("key-0"), ByteSequence.fromUtf8String("value-0"));
+		var get = client.get(TABLE, ByteSequence.fromUtf8String("key-1"));
+		var delete = client.delete(TABLE, ByteSequence.fromUtf8String("key-2"));
+
+		for (var future : List.of(put, delete)) {
+			var thrown = catchThrowable(future::join);
+			assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+		}
+		assertThat(get.join().kvs()).extracting(kv -> kv.key().toString()).containsExactly("key-1");
+		assertThat(stub.applied).containsExactly("key-0", "key-1", "key-2");
+		assertThat(stub.singles).containsExactly("key-1");
+	}
+
+	@Test
+	void batchUsesTheStrictestDeadlineOfItsCallers() {
+		var stub = new KVTestStub();
+		server.addService(stub);
+		var client = client(2, Duration.ofMinutes(1));
+
+		var strict = client.put(TABLE, ByteSequence.fromUtf8String("key-0"), ByteSequence.fromUtf8String("value-0"),
+				PutOption.builder().withTimeout(2, TimeUnit.SECONDS).build());
+		var lenient = client.put(TABLE, ByteSequence.fromUtf8String("key-1"), ByteSequence.fromUtf8String("value-1"));
+		CompletableFuture.allOf(strict, lenient).join();
+
+		assertThat(stub.deadlines).singleElement().satisfies(remaining -> assertThat(remaining).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(2)));
+	}
+
+	private static class KVTestStub extends KVGrpc.KVImplBase {
+
+		private static final String INVALID = "invalid";
+
+		private final List<TxnRequest> txns = new CopyOnWriteArrayList<>();
+		private final List<Long> deadlines = new CopyOnWriteArrayList<>();
+		private final List<String> singles = new CopyOnWriteArrayList<>();
+		private final List<String> applied = new CopyOnWriteArrayList<>();
+		private volatile boolean fail;
+		private volatile boolean failAfterApply;
+
+		@Override
+		public void txn(TxnRequest request, StreamObserver<TxnResponse> responseObserver) {
+			txns.add(request);
+			deadlines.add(Context.current().getDeadline().timeRemaining(TimeUnit.NANOSECONDS));
+			if (fail) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			if (request.getSuccessList().stream().anyMatch(op -> op.getRequestPut().getKey().toStringUtf8().equals(INVALID))) {
+				responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+				return;
+			}
+			if (failAfterApply) {
+				for (RequestOp op : request.getSuccessList()) {
+					applied.add((op.hasRequestPut() ? op.getRequestPut().getKey()
+							: op.hasRequestRange() ? op.getRequestRange().getKey() : op.getRequestDeleteRange().getKey()).toStringUtf8());
+				}
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			var response = TxnResponse.newBuilder().setSucceeded(true);
+			for (RequestOp op : request.getSuccessList()) {
+				if (op.hasRequestPut()) {
+					response.addResponses(ResponseOp.newBuilder().setResponsePut(ResponseOp.Put.getDefaultInstance()));
+				} else if (op.hasRequestRange()) {
+					response.addResponses(ResponseOp.newBuilder().setResponseRange(ResponseOp.Range.newBuilder()
+							.addKvs(KeyValue.newBuilder().setKey(op.getRequestRange().getKey()).setValue(ByteString.copyFromUtf8("value")))
+							.setCount(1)));
+				} else {
+					response.addResponses(ResponseOp.newBuilder().setResponseDeleteRange(ResponseOp.DeleteRange.newBuilder().setDeleted(1)));
+				}
+			}
+			responseObserver.onNext(response.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+			singles.add(request.getKey().toStringUtf8());
+			if (fail) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			if (request.getKey().toStringUtf8().equals(INVALID)) {
+				responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(PutResponse.getDefaultInstance());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			singles.add(request.getKey().toStringUtf8());
+			responseObserver.onNext(RangeResponse.newBuilder()
+					.addKvs(KeyValue.newBuilder().setKey(request.getKey()).setValue(ByteString.copyFromUtf8("value")))
+					.setCount(1)
+					.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void deleteRange(DeleteRangeRequest request, StreamObserver<DeleteRangeResponse> responseObserver) {
+			singles.add(request.getKey().toStringUtf8());
+			if (fail) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(DeleteRangeResponse.newBuilder().setDeleted(1).build());
+			responseObserver.onCompleted();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+
+import io.grpc.stub.StreamObserver;
+
+class ChannelPoolTest {
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	@Test
+	void spreadsCallsToLeastLoadedChannel() throws Exception {
+		var release = new CountDownLatch(1);
+		var received = new CountDownLatch(3);
+		server.addService(new KVGrpc.KVImplBase() {
+			@Override
+			public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+				received.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				responseObserver.onNext(PutResponse.getDefaultInstance());
+				responseObserver.onCompleted();
+			}
+		});
+		var pool = new ChannelPool(List.of(server.getChannel(), server.newChannel(), server.newChannel()));
+		var stub = KVGrpc.newFutureStub(pool);
+
+		var calls = List.of(
+				stub.put(PutRequest.getDefaultInstance()),
+				stub.put(PutRequest.getDefaultInstance()),
+				stub.put(PutRequest.getDefaultInstance()));
+
+		assertThat(received.await(1, TimeUnit.SECONDS)).isTrue();
+		assertThat(pool.stats().size()).isEqualTo(3);
+		assertThat(pool.stats().outstandingCalls()).containsExactly(1, 1, 1);
+
+		release.countDown();
+		for (ListenableFuture<PutResponse> call : calls) {
+			call.get(1, TimeUnit.SECONDS);
+		}
+		assertThat(pool.stats().outstandingCalls()).containsExactly(0, 0, 0);
+		assertThat(pool.stats().startedCalls()).containsExactly(1L, 1L, 1L);
+	}
+
+	@Test
+	void shutdownShutsDownAllChannels() {
+		var channels = List.of(server.getChannel(), server.newChannel());
+		var pool = new ChannelPool(channels);
+
+		pool.shutdownNow();
+
+		assertThat(pool.isShutdown()).isTrue();
+		assertThat(channels).allMatch(io.grpc.ManagedChannel::isShutdown);
+	}
+}
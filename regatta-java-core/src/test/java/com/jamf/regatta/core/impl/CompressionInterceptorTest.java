@@ -0,0 +1,155 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.core.CompressionConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.RangeRequest;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.ClientCalls;
+
+class CompressionInterceptorTest {
+
+	private static final ByteString TABLE = ByteString.copyFromUtf8("table1");
+	private static final ByteString LARGE = ByteString.copyFrom(new byte[1024]);
+
+	private final RecordingChannel channel = new RecordingChannel();
+
+	@Test
+	void compressesOnlyLargeRequests() {
+		var intercepted = ClientInterceptors.intercept(channel, new CompressionInterceptor(CompressionConfig.DEFAULT));
+
+		put(intercepted, PutRequest.newBuilder().setTable(TABLE).setKey(ByteString.copyFromUtf8("key")).build());
+		put(intercepted, PutRequest.newBuilder().setTable(TABLE).setKey(ByteString.copyFromUtf8("key")).setValue(LARGE).build());
+
+		assertThat(channel.calls).extracting(call -> call.codec).containsExactly("snappy", "snappy");
+		assertThat(channel.calls).extracting(call -> call.messageCompression).containsExactly(false, true);
+	}
+
+	@Test
+	void choosesCodecByTableThenMethod() {
+		var config = new CompressionConfig("snappy", 0,
+				Map.of(ByteSequence.fromUtf8String("table2"), "identity"),
+				Map.of("Range", "gzip"));
+		var intercepted = ClientInterceptors.intercept(channel, new CompressionInterceptor(config));
+
+		put(intercepted, PutRequest.newBuilder().setTable(TABLE).setKey(ByteString.copyFromUtf8("key")).build());
+		range(intercepted, RangeRequest.newBuilder().setTable(TABLE).setKey(ByteString.copyFromUtf8("key")).build());
+		range(intercepted, RangeRequest.newBuilder().setTable(ByteString.copyFromUtf8("table2")).setKey(ByteString.copyFromUtf8("key")).build());
+
+		assertThat(channel.calls).extracting(call -> call.codec).containsExactly("snappy", "gzip", "identity");
+		assertThat(channel.calls).allMatch(call -> call.messageCompression);
+	}
+
+	@Test
+	void cancelledCallIsNotStarted() {
+		var config = new CompressionConfig("snappy", 0, Map.of(ByteSequence.fromUtf8String("table2"), "identity"), Map.of());
+		var intercepted = ClientInterceptors.intercept(channel, new CompressionInterceptor(config));
+		var call = intercepted.newCall(KVGrpc.getPutMethod(), CallOptions.DEFAULT);
+		var closed = new ArrayList<Status>();
+		call.start(new ClientCall.Listener<>() {
+			@Override
+			public void onClose(Status status, Metadata trailers) {
+				closed.add(status);
+			}
+		}, new Metadata());
+
+		call.cancel("cancelled", null);
+		call.sendMessage(PutRequest.getDefaultInstance());
+		call.halfClose();
+
+		assertThat(closed).extracting(Status::getCode).containsExactly(Status.Code.CANCELLED);
+		assertThat(channel.calls).isEmpty();
+	}
+
+	private static void put(Channel channel, PutRequest request) {
+		ClientCalls.blockingUnaryCall(channel, KVGrpc.getPutMethod(), CallOptions.DEFAULT, request);
+	}
+
+	private static void range(Channel channel, RangeRequest request) {
+		ClientCalls.blockingUnaryCall(channel, KVGrpc.getRangeMethod(), CallOptions.DEFAULT, request);
+	}
+
+	/**
+	 * Records the codec and the message compression of every call, the calls are answered with the default response.
+	 */
+	private static final class RecordingChannel extends Channel {
+
+		private final List<RecordedCall<?, ?>> calls = new ArrayList<>();
+
+		@Override
+		public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+			var call = new RecordedCall<>(method, callOptions.getCompressor());
+			calls.add(call);
+			return call;
+		}
+
+		@Override
+		public String authority() {
+			return "test";
+		}
+	}
+
+	private static final class RecordedCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+		private final MethodDescriptor<ReqT, RespT> method;
+		private final String codec;
+		private Listener<RespT> listener;
+		private boolean messageCompression;
+
+		RecordedCall(MethodDescriptor<ReqT, RespT> method, String codec) {
+			this.method = method;
+			this.codec = codec;
+		}
+
+		@Override
+		public void start(Listener<RespT> responseListener, Metadata headers) {
+			this.listener = responseListener;
+		}
+
+		@Override
+		public void request(int numMessages) {
+		}
+
+		@Override
+		public void cancel(String message, Throwable cause) {
+		}
+
+		@Override
+		public void halfClose() {
+			var response = method.parseResponse(new ByteArrayInputStream(new byte[0]));
+			listener.onMessage(response);
+			listener.onClose(Status.OK, new Metadata());
+		}
+
+		@Override
+		public void sendMessage(ReqT message) {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enabled) {
+			this.messageCompression = enabled;
+		}
+	}
+}
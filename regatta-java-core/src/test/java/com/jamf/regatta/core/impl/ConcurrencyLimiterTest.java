@@ -0,0 +1,214 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jamf.regatta.core.Client;
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Deadline;
+import io.grpc.Status;
+
+class ConcurrencyLimiterTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ConcurrencyLimiter.Key READ = ConcurrencyLimiter.read(TABLE);
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	void failsFastOverLimit() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(2, 1, 10, Duration.ZERO), clock::get);
+
+		limiter.acquire(READ).join();
+		limiter.acquire(READ).join();
+		var thrown = catchThrowable(() -> Impl.join(limiter.acquire(READ)));
+
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+		assertThat(thrown).hasMessageContaining("read").hasMessageContaining("table1");
+	}
+
+	@Test
+	void limitsAreSeparatePerTableAndOperation() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 10, Duration.ZERO), clock::get);
+
+		limiter.acquire(READ).join();
+
+		assertThat(limiter.acquire(ConcurrencyLimiter.write(TABLE))).isCompleted();
+		assertThat(limiter.acquire(ConcurrencyLimiter.read(ByteSequence.fromUtf8String("table2")))).isCompleted();
+		assertThat(limiter.acquire(READ)).isCompletedExceptionally();
+	}
+
+	@Test
+	void waitingCallGetsReleasedSlot() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 1, Duration.ofSeconds(10)), clock::get);
+		var first = limiter.acquire(READ).join();
+
+		var second = limiter.acquire(READ);
+		assertThat(second).isNotDone();
+
+		first.release(null);
+
+		assertThat(second).isCompleted();
+	}
+
+	@Test
+	void waitingCallFailsAfterMaxWait() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 1, Duration.ofMillis(10)), clock::get);
+		limiter.acquire(READ).join();
+
+		var thrown = catchThrowable(() -> Impl.join(limiter.acquire(READ)));
+
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+	}
+
+	@Test
+	void growsWhileLatencyIsStableUpToMax() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(2, 1, 10, Duration.ZERO), clock::get);
+
+		for (int round = 0; round < 20; round++) {
+			var permits = new ArrayList<ConcurrencyLimiter.Permit>();
+			for (int i = 0; i < limiter.limit(READ); i++) {
+				permits.add(limiter.acquire(READ).join());
+			}
+			clock.addAndGet(MILLIS);
+			permits.forEach(permit -> permit.release(null));
+			if (round == 0) {
+				assertThat(limiter.limit(READ)).isGreaterThan(2);
+			}
+		}
+
+		assertThat(limiter.limit(READ)).isEqualTo(10);
+	}
+
+	@Test
+	void doesNotGrowWhenLimitIsNotUsed() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(8, 1, 10, Duration.ZERO), clock::get);
+
+		for (int i = 0; i < 5; i++) {
+			var permit = limiter.acquire(READ).join();
+			clock.addAndGet(MILLIS);
+			permit.release(null);
+		}
+
+		assertThat(limiter.limit(READ)).isEqualTo(8);
+	}
+
+	@Test
+	void shrinksWhenCallsQueueUp() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(10, 1, 10, Duration.ZERO), clock::get);
+		var fast = limiter.acquire(READ).join();
+		clock.addAndGet(MILLIS);
+		fast.release(null);
+
+		var slow = limiter.acquire(READ).join();
+		clock.addAndGet(10 * MILLIS);
+		slow.release(null);
+
+		assertThat(limiter.limit(READ)).isEqualTo(9);
+	}
+
+	@Test
+	void backsOffOnOverload() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(10, 5, 10, Duration.ZERO), clock::get);
+
+		for (int i = 0; i < 10; i++) {
+			limiter.acquire(READ).join().release(Status.DEADLINE_EXCEEDED.asRuntimeException());
+		}
+
+		assertThat(limiter.limit(READ)).isEqualTo(5);
+	}
+
+	@Test
+	void backsOffToTheFloorAndStillAdmitsCalls() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(2, 1, 10, Duration.ZERO), clock::get);
+
+		for (int i = 0; i < 20; i++) {
+			limiter.acquire(READ).join().release(Status.RESOURCE_EXHAUSTED.asRuntimeException());
+		}
+		var permit = limiter.acquire(READ).join();
+
+		assertThat(limiter.limit(READ)).isEqualTo(1);
+		assertThat(limiter.acquire(READ)).isCompletedExceptionally();
+		permit.release(null);
+		assertThat(limiter.acquire(READ)).isCompleted();
+	}
+
+	@Test
+	void rejectsLimitsWhichAdmitNoCall() {
+		var builder = Client.builder();
+
+		assertThatThrownBy(() -> builder.concurrencyLimit(new LimitConfig(1, 0, 10, Duration.ZERO))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> builder.concurrencyLimit(new LimitConfig(0, 1, 10, Duration.ZERO))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> builder.concurrencyLimit(new LimitConfig(11, 1, 10, Duration.ZERO))).isInstanceOf(IllegalArgumentException.class);
+		builder.concurrencyLimit(LimitConfig.DISABLED);
+	}
+
+	@Test
+	void releasingTwiceFreesOneSlot() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 1, Duration.ZERO), clock::get);
+		var permit = limiter.acquire(READ).join();
+
+		permit.release(Status.NOT_FOUND.asRuntimeException());
+		permit.release(Status.NOT_FOUND.asRuntimeException());
+		limiter.acquire(READ).join();
+
+		assertThat(limiter.acquire(READ)).isCompletedExceptionally();
+	}
+
+	@Test
+	void backoffBetweenAttemptsHoldsNoPermit() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 1, Duration.ofSeconds(10)), clock::get);
+		var retryCfg = new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null);
+		var impl = new Impl(retryCfg, Impl.retryBudget(retryCfg), limiter) {
+		};
+		var waiting = new CompletableFuture<ConcurrencyLimiter.Permit>();
+		var attempts = new AtomicInteger();
+
+		var result = impl.execute(READ, Deadline.after(10, TimeUnit.SECONDS), deadline -> {
+			if (attempts.incrementAndGet() == 1) {
+				// another call waits for the permit of this attempt and is done before the next attempt
+				limiter.acquire(READ).thenAccept(permit -> {
+					permit.release(null);
+					waiting.complete(permit);
+				});
+				throw Status.UNAVAILABLE.asRuntimeException();
+			}
+			return waiting.isDone();
+		}, Boolean.class::cast, Impl.RETRY_TRANSIENT);
+
+		assertThat(result).isTrue();
+		assertThat(attempts).hasValue(2);
+	}
+
+	@Test
+	void attemptsOverLimitAreNotRetried() {
+		var limiter = new ConcurrencyLimiter(new LimitConfig(1, 1, 1, Duration.ZERO), clock::get);
+		var retryCfg = new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null);
+		var impl = new Impl(retryCfg, Impl.retryBudget(retryCfg), limiter) {
+		};
+		limiter.acquire(READ).join();
+
+		var thrown = catchThrowable(() -> impl.execute(READ, Deadline.after(10, TimeUnit.SECONDS), deadline -> "called",
+				String.class::cast, Impl.RETRY_ALWAYS));
+
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+	}
+}
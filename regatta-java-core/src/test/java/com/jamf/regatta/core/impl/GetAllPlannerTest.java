@@ -0,0 +1,70 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.options.GetOption;
+import org.junit.jupiter.api.Test;
+
+class GetAllPlannerTest {
+
+	@Test
+	void fewKeysAreNeverDense() {
+		var keys = keys(0, GetAllPlanner.MIN_SCAN_KEYS - 1, 1);
+
+		assertThat(GetAllPlanner.isDense(keys)).isFalse();
+	}
+
+	@Test
+	void consecutiveDecimalSuffixesAreDense() {
+		assertThat(GetAllPlanner.isDense(keys(0, 100, 1))).isTrue();
+		assertThat(GetAllPlanner.isDense(keys(0, 100, 3))).isTrue();
+	}
+
+	@Test
+	void scatteredKeysAreSparse() {
+		assertThat(GetAllPlanner.isDense(keys(0, 100, 100))).isFalse();
+
+		var keys = new TreeSet<ByteSequence>();
+		IntStream.range(0, 32).forEach(i -> keys.add(ByteSequence.fromUtf8String("user-" + Integer.toHexString(i * 7919 * 7919))));
+		assertThat(GetAllPlanner.isDense(keys)).isFalse();
+	}
+
+	@Test
+	void chunksAreBoundedByOpCount() {
+		var keys = keys(0, GetAllPlanner.MAX_CHUNK_OPS * 2 + 1, 1);
+
+		var chunks = GetAllPlanner.chunks(keys, GetOption.DEFAULT);
+
+		assertThat(chunks).hasSize(3);
+		assertThat(chunks.get(0)).hasSize(GetAllPlanner.MAX_CHUNK_OPS);
+		assertThat(chunks.get(2)).hasSize(1);
+	}
+
+	@Test
+	void chunksAreBoundedBySize() {
+		var keys = new TreeSet<ByteSequence>();
+		for (int i = 0; i < 3; i++) {
+			var key = new byte[GetAllPlanner.MAX_CHUNK_BYTES / 2];
+			key[0] = (byte) i;
+			keys.add(ByteSequence.wrap(key));
+		}
+
+		assertThat(GetAllPlanner.chunks(keys, GetOption.DEFAULT)).hasSize(3);
+	}
+
+	private static TreeSet<ByteSequence> keys(int from, int count, int step) {
+		var keys = new TreeSet<ByteSequence>();
+		for (int i = 0; i < count; i++) {
+			keys.add(ByteSequence.fromUtf8String(String.format("key-%08d", from + i * step)));
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.jamf.regatta.core.HedgeConfig;
+import org.junit.jupiter.api.Test;
+
+class HedgerTest {
+
+	private static final Duration DELAY = Duration.ofMillis(10);
+
+	private final List<SettableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+
+	@Test
+	void disabledStartsSingleAttempt() throws Exception {
+		var hedger = new Hedger(HedgeConfig.DISABLED);
+
+		var result = hedger.hedge(picked -> attempt());
+		TimeUnit.MILLISECONDS.sleep(50);
+
+		assertThat(hedger.isEnabled()).isFalse();
+		assertThat(attempts).hasSize(1);
+		assertThat(result).isSameAs(attempts.get(0));
+	}
+
+	@Test
+	void fastResponseIsNotHedged() throws Exception {
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0, 0.1));
+
+		var result = hedger.hedge(picked -> Futures.immediateFuture("first"));
+		TimeUnit.MILLISECONDS.sleep(50);
+
+		assertThat(result.get()).isEqualTo("first");
+		assertThat(attempts).isEmpty();
+	}
+
+	@Test
+	void slowResponseIsHedgedAndLoserCancelled() throws Exception {
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0, 0.1));
+
+		var result = hedger.hedge(picked -> attempt());
+		awaitAttempts(2);
+		attempts.get(1).set("hedge");
+
+		assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedge");
+		assertThat(attempts.get(0).isCancelled()).isTrue();
+	}
+
+	@Test
+	void failureWaitsForOutstandingHedge() throws Exception {
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0, 0.1));
+
+		var result = hedger.hedge(picked -> attempt());
+		awaitAttempts(2);
+		attempts.get(0).setException(new IllegalStateException("first"));
+
+		assertThat(result.isDone()).isFalse();
+
+		attempts.get(1).setException(new IllegalStateException("hedge"));
+		var thrown = catchThrowable(() -> result.get(1, TimeUnit.SECONDS));
+
+		assertThat(thrown).isInstanceOf(ExecutionException.class);
+		assertThat(thrown.getCause()).hasMessage("hedge");
+	}
+
+	@Test
+	void cancellingResultCancelsAttempts() throws Exception {
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0, 0.1));
+
+		var result = hedger.hedge(picked -> attempt());
+		awaitAttempts(2);
+		result.cancel(false);
+
+		assertThat(attempts).allMatch(SettableFuture::isCancelled);
+	}
+
+	@Test
+	void hedgesAreLimitedByBudget() throws Exception {
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0, 0.01));
+		var calls = Hedger.MAX_TOKENS + 1;
+
+		for (int i = 0; i < calls; i++) {
+			hedger.hedge(picked -> attempt());
+		}
+		TimeUnit.MILLISECONDS.sleep(100);
+
+		// the full bucket pays for MAX_TOKENS hedges, the deposits of the calls are not enough for another one
+		assertThat(attempts).hasSize(calls + Hedger.MAX_TOKENS);
+	}
+
+	@Test
+	void delayFollowsObservedPercentile() {
+		var clock = new AtomicLong();
+		var hedger = new Hedger(new HedgeConfig(DELAY, 0.95, 0.1), () -> clock.getAndAdd(TimeUnit.MILLISECONDS.toNanos(2)));
+
+		assertThat(hedger.delayNanos()).isEqualTo(DELAY.toNanos());
+
+		for (int i = 0; i < Hedger.WINDOW; i++) {
+			hedger.hedge(picked -> Futures.immediateFuture("value"));
+		}
+
+		assertThat(hedger.delayNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2));
+	}
+
+	private SettableFuture<String> attempt() {
+		var attempt = SettableFuture.<String>create();
+		attempts.add(attempt);
+		return attempt;
+	}
+
+	private void awaitAttempts(int count) throws InterruptedException {
+		for (int i = 0; i < 100 && attempts.size() < count; i++) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertThat(attempts).hasSize(count);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.api.op.Cmp;
+import com.jamf.regatta.core.api.op.CmpTarget;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.InMemoryClusterExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.RangeRequest;
+
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+
+class InMemoryClusterTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key");
+
+	@RegisterExtension
+	InMemoryClusterExtension server = new InMemoryClusterExtension(InMemoryCluster.builder()
+			.withMembers(3)
+			.withTables("table1")
+			.withCodec(SnappyCodec.INSTANCE));
+
+	private ClientImpl client;
+
+	@BeforeEach
+	void setUp() {
+		client = new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT);
+	}
+
+	@Test
+	void rangeHonoursPrefixLimitAndRevisions() {
+		var kv = client.getKVClient();
+		for (var key : new String[]{"a1", "a2", "a3", "b1"}) {
+			kv.put(TABLE, ByteSequence.fromUtf8String(key), ByteSequence.fromUtf8String("value-" + key));
+		}
+		var overwritten = kv.put(TABLE, ByteSequence.fromUtf8String("a1"), ByteSequence.fromUtf8String("value"),
+				PutOption.builder().withPrevKV().build());
+
+		var prefix = kv.get(TABLE, ByteSequence.fromUtf8String("a"), GetOption.builder().isPrefix(true).build());
+		var limited = kv.get(TABLE, ByteSequence.fromUtf8String("a"), GetOption.builder().isPrefix(true).withLimit(2).build());
+		var counted = kv.get(TABLE, ByteSequence.fromUtf8String("a"), GetOption.builder().isPrefix(true).withCountOnly(true).build());
+
+		assertThat(overwritten.header().getRevision()).isEqualTo(5);
+		assertThat(overwritten.prev().value().toString()).isEqualTo("value-a1");
+		assertThat(prefix.kvs()).extracting(item -> item.key().toString()).containsExactly("a1", "a2", "a3");
+		assertThat(prefix.kvs().get(0)).extracting(KeyValue::createRevision, KeyValue::modRevision).containsExactly(1L, 5L);
+		assertThat(limited.kvs()).hasSize(2);
+		assertThat(limited.more()).isTrue();
+		assertThat(counted.kvs()).isEmpty();
+		assertThat(counted.count()).isEqualTo(3);
+	}
+
+	@Test
+	void deleteRangeRemovesPrefix() {
+		var kv = client.getKVClient();
+		for (var key : new String[]{"a1", "a2", "b1"}) {
+			kv.put(TABLE, ByteSequence.fromUtf8String(key), ByteSequence.fromUtf8String("value"));
+		}
+
+		var deleted = kv.delete(TABLE, ByteSequence.fromUtf8String("a"), DeleteOption.builder().isPrefix(true).withPrevKV(true).build());
+
+		assertThat(deleted.prevKv()).hasSize(2);
+		assertThat(kv.get(TABLE, ByteSequence.fromUtf8String("\0"), GetOption.builder().withRange(ByteSequence.from(new byte[]{0})).build()).kvs())
+				.extracting(item -> item.key().toString())
+				.containsExactly("b1");
+	}
+
+	@Test
+	void txnAppliesBranchOfCompare() {
+		var kv = client.getKVClient();
+		var expected = ByteSequence.fromUtf8String("v1");
+		kv.put(TABLE, KEY, expected);
+
+		var swapped = kv.txn(TABLE)
+				.If(new Cmp(KEY, Cmp.Op.EQUAL, CmpTarget.value(expected)))
+				.Then(Op.put(KEY, ByteSequence.fromUtf8String("v2"), PutOption.DEFAULT))
+				.commit();
+		var conflicted = kv.txn(TABLE)
+				.If(new Cmp(KEY, Cmp.Op.EQUAL, CmpTarget.value(expected)))
+				.Then(Op.put(KEY, ByteSequence.fromUtf8String("v3"), PutOption.DEFAULT))
+				.Else(Op.get(KEY, GetOption.DEFAULT))
+				.commit();
+		var read = kv.txn(TABLE)
+				.Then(Op.get(KEY, GetOption.DEFAULT))
+				.commit();
+
+		assertThat(swapped.succeeded()).isTrue();
+		assertThat(conflicted.succeeded()).isFalse();
+		assertThat(conflicted.responses().get(0).getResponseRange().getKvs(0).getValue().toStringUtf8()).isEqualTo("v2");
+		// a txn with reads only does not go through the log
+		assertThat(read.header().getRevision()).isEqualTo(conflicted.header().getRevision());
+	}
+
+	@Test
+	void followerServesSerializableReadsAfterReplicationLag() {
+		var cluster = server.cluster();
+		var follower = cluster.member(2).replicationLag(Duration.ofHours(1));
+		var channel = InProcessChannelBuilder.forName(follower.serverName()).build();
+		try {
+			var stub = KVGrpc.newBlockingStub(channel);
+			client.getKVClient().put(TABLE, KEY, ByteSequence.fromUtf8String("value"));
+			var request = RangeRequest.newBuilder().setTable(TABLE.getByteString()).setKey(KEY.getByteString()).build();
+
+			var stale = stub.range(request);
+			var linearizable = stub.range(request.toBuilder().setLinearizable(true).build());
+			follower.replicationLag(Duration.ZERO);
+			var caughtUp = stub.range(request);
+
+			assertThat(stale.getKvsList()).isEmpty();
+			assertThat(stale.getHeader().getReplicaId()).isEqualTo(2);
+			assertThat(stale.getHeader().getRaftLeaderId()).isEqualTo(1);
+			assertThat(linearizable.getKvsList()).hasSize(1);
+			assertThat(caughtUp.getKvsList()).hasSize(1);
+			assertThat(caughtUp.getHeader().getRevision()).isEqualTo(1);
+		} finally {
+			channel.shutdownNow();
+		}
+	}
+
+	@Test
+	void leaderChangeIsReportedInHeaders() {
+		var cluster = server.cluster();
+		var stub = KVGrpc.newBlockingStub(cluster.newChannel());
+		var request = RangeRequest.newBuilder().setTable(TABLE.getByteString()).setKey(ByteString.copyFromUtf8("key")).build();
+		var before = stub.range(request).getHeader();
+
+		cluster.changeLeader();
+		var after = stub.range(request).getHeader();
+
+		assertThat(before.getRaftLeaderId()).isEqualTo(1);
+		assertThat(after.getRaftLeaderId()).isEqualTo(2);
+		assertThat(after.getRaftTerm()).isEqualTo(before.getRaftTerm() + 1);
+	}
+
+	@Test
+	void injectedErrorsAreRetriedOnOtherMembers() {
+		var cluster = server.cluster();
+		var kv = client.getKVClient();
+		kv.put(TABLE, KEY, ByteSequence.fromUtf8String("value"));
+		cluster.member(3).errors(1, Status.Code.UNAVAILABLE);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(kv.get(TABLE, KEY).kvs()).hasSize(1);
+		}
+		assertThat(cluster.member(3).calls()).isPositive();
+	}
+}
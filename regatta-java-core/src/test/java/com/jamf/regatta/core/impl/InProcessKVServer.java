@@ -0,0 +1,78 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import com.jamf.regatta.core.encoding.SnappyCodec;
+
+import io.grpc.BindableService;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.util.MutableHandlerRegistry;
+
+/**
+ * In-process server and channel with the snappy codec registered on both sides, as used by the KV clients.
+ */
+class InProcessKVServer implements BeforeEachCallback, AfterEachCallback {
+
+	private final List<ManagedChannel> channels = new ArrayList<>();
+	private MutableHandlerRegistry serviceRegistry;
+	private Server server;
+	private String serverName;
+	private ManagedChannel channel;
+
+	ManagedChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Opens another channel to the server, it is shut down together with the server.
+	 */
+	ManagedChannel newChannel() {
+		var compressorRegistry = CompressorRegistry.newEmptyInstance();
+		compressorRegistry.register(Codec.Identity.NONE);
+		compressorRegistry.register(SnappyCodec.INSTANCE);
+		var newChannel = InProcessChannelBuilder.forName(serverName)
+				.compressorRegistry(compressorRegistry)
+				.build();
+		channels.add(newChannel);
+		return newChannel;
+	}
+
+	void addService(BindableService service) {
+		serviceRegistry.addService(service);
+	}
+
+	@Override
+	public void beforeEach(ExtensionContext context) throws Exception {
+		serverName = UUID.randomUUID().toString();
+		serviceRegistry = new MutableHandlerRegistry();
+		server = InProcessServerBuilder.forName(serverName)
+				.fallbackHandlerRegistry(serviceRegistry)
+				.decompressorRegistry(DecompressorRegistry.getDefaultInstance().with(SnappyCodec.INSTANCE, true))
+				.build()
+				.start();
+		channel = newChannel();
+	}
+
+	@Override
+	public void afterEach(ExtensionContext context) {
+		channels.forEach(ManagedChannel::shutdownNow);
+		channels.clear();
+		server.shutdownNow();
+	}
+}
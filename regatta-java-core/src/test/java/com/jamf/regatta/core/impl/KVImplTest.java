@@ -0,0 +1,245 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.options.GetOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+class KVImplTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final GetOption ALL = GetOption.builder().withRange(ByteSequence.from(new byte[]{0})).build();
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	private KVTestStub stub;
+	private KVImpl client;
+
+	@BeforeEach
+	void setUp() {
+		stub = new KVTestStub();
+		for (int i = 0; i < 1000; i++) {
+			stub.put(String.format("key-%04d", i), "value-" + i);
+		}
+		server.addService(stub);
+		client = new KVImpl(server.getChannel(), new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null));
+	}
+
+	@Test
+	void scan_streamReturnsAllKeysInOrder() {
+		var keys = client.scan(TABLE, ByteSequence.fromUtf8String("key-"), ALL, 4)
+				.map(kv -> kv.key().toString())
+				.toList();
+
+		assertThat(keys).hasSize(1000).isSorted().doesNotHaveDuplicates();
+		assertThat(stub.streams.get()).isEqualTo(4);
+	}
+
+	@Test
+	void scan_consumerReceivesAllKeys() {
+		var received = new CopyOnWriteArrayList<KeyValue>();
+
+		client.scan(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).build(), 3, received::add);
+
+		assertThat(received).extracting(kv -> kv.key().toString()).hasSize(1000).doesNotHaveDuplicates();
+		assertThat(stub.streams.get()).isEqualTo(3);
+	}
+
+	@Test
+	void scan_singleKeyIsNotSplit() {
+		var keys = client.scan(TABLE, ByteSequence.fromUtf8String("key-0001"), GetOption.DEFAULT, 4).toList();
+
+		assertThat(keys).extracting(KeyValue::value).containsExactly(ByteSequence.fromUtf8String("value-1"));
+		assertThat(stub.streams.get()).isEqualTo(1);
+	}
+
+	@Test
+	void get_exposesMore() {
+		var limited = client.get(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).withLimit(10).build());
+		var all = client.get(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).build());
+
+		assertThat(limited.kvs()).hasSize(10);
+		assertThat(limited.more()).isTrue();
+		assertThat(all.more()).isFalse();
+	}
+
+	@Test
+	void page_walksRangeWithContinuation() {
+		var start = ByteSequence.fromUtf8String("key-0100");
+		var end = ByteSequence.fromUtf8String("key-0350");
+		var keys = new ArrayList<String>();
+		var pages = 0;
+
+		var page = client.page(TABLE, start, end, 100);
+		while (true) {
+			pages++;
+			page.kvs().forEach(kv -> keys.add(kv.key().toString()));
+			if (!page.hasMore()) {
+				break;
+			}
+			page = client.page(TABLE, page.continuation(), end, 100);
+		}
+
+		assertThat(pages).isEqualTo(3);
+		assertThat(page.continuation()).isNull();
+		assertThat(keys).hasSize(250).doesNotHaveDuplicates().isSorted();
+		assertThat(keys.get(0)).isEqualTo("key-0100");
+		assertThat(keys.get(249)).isEqualTo("key-0349");
+	}
+
+	@Test
+	void iterate_resumesAfterLastReceivedKey() {
+		stub.streamFailures.set(2);
+
+		var keys = client.iterate(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).build())
+				.flatMap(response -> response.kvs().stream())
+				.map(kv -> kv.key().toString())
+				.toList();
+
+		assertThat(keys).hasSize(1000).doesNotHaveDuplicates().isSorted();
+		assertThat(stub.streams.get()).isEqualTo(3);
+		assertThat(stub.streamRequests.get(1).getKey()).isEqualTo(ByteString.copyFromUtf8("key-0019\0"));
+	}
+
+	@Test
+	void iterate_resumptionKeepsLimit() {
+		stub.streamFailures.set(1);
+
+		var keys = client.iterate(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).withLimit(55).build())
+				.flatMap(response -> response.kvs().stream())
+				.toList();
+
+		assertThat(keys).hasSize(55);
+		assertThat(stub.streamRequests.get(1).getLimit()).isEqualTo(35);
+	}
+
+	@Test
+	void iterate_failsWhenRetriesAreExhausted() {
+		stub.streamFailures.set(10);
+		stub.failAtChunk = 0;
+
+		var thrown = catchThrowable(() -> client.iterate(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).build()).count());
+
+		assertThat(Status.fromThrowable(thrown).getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+		assertThat(stub.streams.get()).isEqualTo(3);
+	}
+
+	@Test
+	void iterate_prefetchReturnsAllChunksInOrder() {
+		stub.streamFailures.set(1);
+		var option = GetOption.builder().isPrefix(true).withPrefetch(4, 1 << 20).build();
+
+		try (var responses = client.iterate(TABLE, ByteSequence.fromUtf8String("key-"), option)) {
+			var keys = responses.flatMap(response -> response.kvs().stream())
+					.map(kv -> kv.key().toString())
+					.toList();
+
+			assertThat(keys).hasSize(1000).doesNotHaveDuplicates().isSorted();
+		}
+		assertThat(stub.streams.get()).isEqualTo(2);
+	}
+
+	@Test
+	void scan_consumerResumesStream() {
+		stub.streamFailures.set(1);
+		var received = new CopyOnWriteArrayList<KeyValue>();
+
+		client.scan(TABLE, ByteSequence.fromUtf8String("key-"), GetOption.builder().isPrefix(true).build(), 1, received::add);
+
+		assertThat(received).extracting(kv -> kv.key().toString()).hasSize(1000).doesNotHaveDuplicates().isSorted();
+		assertThat(stub.streams.get()).isEqualTo(2);
+	}
+
+	/**
+	 * Serves ranges from a sorted in-memory map, streams are sent in chunks of 10 key-values.
+	 */
+	static class KVTestStub extends KVGrpc.KVImplBase {
+
+		private final NavigableMap<ByteString, ByteString> data = new TreeMap<>(ByteString.unsignedLexicographicalComparator());
+		final AtomicInteger streams = new AtomicInteger();
+		final List<RangeRequest> ranges = new CopyOnWriteArrayList<>();
+		final List<RangeRequest> streamRequests = new CopyOnWriteArrayList<>();
+		final AtomicInteger streamFailures = new AtomicInteger();
+		volatile int failAtChunk = 2;
+
+		void put(String key, String value) {
+			data.put(ByteString.copyFromUtf8(key), ByteString.copyFromUtf8(value));
+		}
+
+		List<com.jamf.regatta.proto.KeyValue> select(RangeRequest request) {
+			NavigableMap<ByteString, ByteString> selected;
+			if (request.getRangeEnd().isEmpty()) {
+				selected = data.subMap(request.getKey(), true, request.getKey(), true);
+			} else if (request.getRangeEnd().equals(ByteString.copyFrom(new byte[]{0}))) {
+				selected = data.tailMap(request.getKey(), true);
+			} else {
+				selected = data.subMap(request.getKey(), true, request.getRangeEnd(), false);
+			}
+			return selected.entrySet().stream()
+					.map(e -> com.jamf.regatta.proto.KeyValue.newBuilder()
+							.setKey(e.getKey())
+							.setValue(request.getKeysOnly() ? ByteString.EMPTY : e.getValue())
+							.build())
+					.toList();
+		}
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			ranges.add(request);
+			var kvs = select(request);
+			var limit = request.getLimit() == 0 ? kvs.size() : (int) Math.min(request.getLimit(), kvs.size());
+			responseObserver.onNext(RangeResponse.newBuilder()
+					.addAllKvs(kvs.subList(0, limit))
+					.setMore(limit < kvs.size())
+					.setCount(limit)
+					.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void iterateRange(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			streams.incrementAndGet();
+			streamRequests.add(request);
+			var kvs = select(request);
+			if (request.getLimit() > 0 && request.getLimit() < kvs.size()) {
+				kvs = kvs.subList(0, (int) request.getLimit());
+			}
+			var fail = streamFailures.getAndDecrement() > 0;
+			for (int i = 0, chunks = 0; i < kvs.size(); i += 10, chunks++) {
+				if (fail && chunks == failAtChunk) {
+					responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+					return;
+				}
+				responseObserver.onNext(RangeResponse.newBuilder().addAllKvs(kvs.subList(i, Math.min(i + 10, kvs.size()))).build());
+			}
+			responseObserver.onCompleted();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+class KeySpaceSplitterTest {
+
+	private final TreeSet<ByteString> keys = new TreeSet<>(ByteString.unsignedLexicographicalComparator());
+	private final AtomicInteger probes = new AtomicInteger();
+	private final KeySpaceSplitter splitter = new KeySpaceSplitter((from, to) -> {
+		probes.incrementAndGet();
+		var key = keys.ceiling(from);
+		if (key == null || (to != null && ByteString.unsignedLexicographicalComparator().compare(key, to) >= 0)) {
+			return null;
+		}
+		return key;
+	});
+
+	@Test
+	void midpointLiesBetweenBounds() {
+		var comparator = ByteString.unsignedLexicographicalComparator();
+		var low = ByteString.copyFromUtf8("a");
+		var high = ByteString.copyFromUtf8("b");
+
+		var mid = KeySpaceSplitter.midpoint(low, high);
+
+		assertThat(comparator.compare(mid, low)).isPositive();
+		assertThat(comparator.compare(mid, high)).isNegative();
+		assertThat(KeySpaceSplitter.midpoint(low, null)).isNotNull();
+		assertThat(KeySpaceSplitter.midpoint(low, ByteString.copyFrom(new byte[]{'a', 0}))).isNull();
+	}
+
+	@Test
+	void splitsUnboundedRangeOfPrefixedKeysEvenly() {
+		for (int i = 0; i < 10_000; i++) {
+			keys.add(ByteString.copyFromUtf8(String.format("user-%06d", i)));
+		}
+
+		var splits = splitter.split(keys.first(), null, 4);
+
+		assertThat(splits).hasSize(3);
+		var sizes = new ArrayList<Integer>();
+		var low = keys.first();
+		for (var split : splits) {
+			sizes.add(keys.subSet(low, split).size());
+			low = split;
+		}
+		sizes.add(keys.tailSet(low).size());
+		assertThat(sizes).allSatisfy(size -> assertThat(size).isBetween(1_000, 4_000));
+		assertThat(probes.get()).isLessThan(5 * KeySpaceSplitter.MAX_PROBES);
+	}
+
+	@Test
+	void singleKeyIsNotSplit() {
+		keys.add(ByteString.copyFromUtf8("only"));
+
+		assertThat(splitter.split(keys.first(), null, 8)).isEmpty();
+	}
+}
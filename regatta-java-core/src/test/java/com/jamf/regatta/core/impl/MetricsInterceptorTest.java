@@ -0,0 +1,193 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.metrics.CallTags;
+import com.jamf.regatta.core.metrics.ClientMetrics;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+class MetricsInterceptorTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key1");
+	private static final ByteSequence VALUE = ByteSequence.fromUtf8String("value1");
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	private final RecordingMetrics metrics = new RecordingMetrics();
+	private final KVTestStub stub = new KVTestStub();
+	private KVImpl client;
+
+	@BeforeEach
+	void setUp() {
+		server.addService(stub);
+		var channel = ClientInterceptors.intercept(server.getChannel(), new MetricsInterceptor(metrics));
+		client = new KVImpl(channel, new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null));
+	}
+
+	@Test
+	void recordsEveryAttemptOfRetriedOperation() {
+		stub.failures.set(2);
+
+		client.get(TABLE, KEY, GetOption.builder().withSerializable(true).build());
+
+		var tags = new CallTags("Range", "table1", CallTags.SERIALIZABLE);
+		assertThat(metrics.rpcs).extracting(Rpc::tags).containsOnly(tags);
+		assertThat(metrics.rpcs).extracting(Rpc::code).containsExactly(Status.Code.UNAVAILABLE, Status.Code.UNAVAILABLE, Status.Code.OK);
+		assertThat(metrics.rpcs).allMatch(rpc -> rpc.requestSize.get() > 0);
+		assertThat(metrics.rpcs.get(2).responseSize.get()).isGreaterThan(0);
+		assertThat(metrics.operations).containsExactly(new Op(tags, Status.Code.OK, 3));
+	}
+
+	@Test
+	void recordsFailedOperation() {
+		stub.failures.set(1);
+
+		catchThrowable(() -> client.put(TABLE, KEY, VALUE));
+
+		var tags = new CallTags("Put", "table1", CallTags.LINEARIZABLE);
+		assertThat(metrics.rpcs).extracting(Rpc::code).containsExactly(Status.Code.UNAVAILABLE);
+		assertThat(metrics.operations).containsExactly(new Op(tags, Status.Code.UNAVAILABLE, 1));
+	}
+
+	@Test
+	void callsOutsideOperationAreRecordedAsRpcs() {
+		KVGrpc.newBlockingStub(ClientInterceptors.intercept(server.getChannel(), new MetricsInterceptor(metrics)))
+				.range(RangeRequest.newBuilder().setTable(TABLE.getByteString()).setLinearizable(true).build());
+
+		assertThat(metrics.rpcs).extracting(Rpc::tags).containsExactly(new CallTags("Range", "table1", CallTags.LINEARIZABLE));
+		assertThat(metrics.operations).isEmpty();
+	}
+
+	@Test
+	void callsClosedBeforeTheirRequestAreRecorded() throws Exception {
+		var call = ClientInterceptors.intercept(server.getChannel(), new MetricsInterceptor(metrics)).newCall(KVGrpc.getRangeMethod(), CallOptions.DEFAULT);
+		var closed = new CountDownLatch(1);
+		call.start(new ClientCall.Listener<>() {
+			@Override
+			public void onClose(Status status, Metadata trailers) {
+				closed.countDown();
+			}
+		}, new Metadata());
+
+		call.cancel("cancelled before the request", null);
+
+		assertThat(closed.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(metrics.rpcs).extracting(Rpc::tags).containsExactly(new CallTags("Range", "", ""));
+		assertThat(metrics.rpcs).extracting(Rpc::code).containsExactly(Status.Code.CANCELLED);
+	}
+
+	private record Op(CallTags tags, Status.Code code, int attempts) {
+	}
+
+	private static final class Rpc implements ClientMetrics.RpcSample {
+
+		private final AtomicLong requestSize = new AtomicLong();
+		private final AtomicLong responseSize = new AtomicLong();
+		private volatile CallTags tags;
+		private volatile Status.Code code;
+
+		private CallTags tags() {
+			return tags;
+		}
+
+		private Status.Code code() {
+			return code;
+		}
+
+		@Override
+		public void requestSize(long bytes) {
+			requestSize.addAndGet(bytes);
+		}
+
+		@Override
+		public void responseSize(long bytes) {
+			responseSize.addAndGet(bytes);
+		}
+
+		@Override
+		public void stop(CallTags tags, Status.Code code) {
+			this.tags = tags;
+			this.code = code;
+		}
+	}
+
+	private static final class RecordingMetrics implements ClientMetrics {
+
+		private final List<Rpc> rpcs = new CopyOnWriteArrayList<>();
+		private final List<Op> operations = new CopyOnWriteArrayList<>();
+
+		@Override
+		public RpcSample startRpc(String method) {
+			var rpc = new Rpc();
+			rpcs.add(rpc);
+			return rpc;
+		}
+
+		@Override
+		public OperationSample startOperation() {
+			return (tags, code, attempts) -> operations.add(new Op(tags, code, attempts));
+		}
+	}
+
+	private static class KVTestStub extends KVGrpc.KVImplBase {
+
+		private final AtomicInteger failures = new AtomicInteger();
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			if (failures.getAndDecrement() > 0) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(RangeResponse.newBuilder()
+					.addKvs(KeyValue.newBuilder().setKey(KEY.getByteString()).setValue(VALUE.getByteString()))
+					.setCount(1)
+					.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+			if (failures.getAndDecrement() > 0) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(PutResponse.getDefaultInstance());
+			responseObserver.onCompleted();
+		}
+	}
+}
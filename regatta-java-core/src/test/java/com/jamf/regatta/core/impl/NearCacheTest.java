@@ -0,0 +1,178 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jamf.regatta.core.BatchConfig;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.api.Response;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.InMemoryClusterExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.jamf.regatta.proto.ResponseHeader;
+
+class NearCacheTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key1");
+
+	@RegisterExtension
+	InMemoryClusterExtension server = new InMemoryClusterExtension(InMemoryCluster.builder()
+			.withMembers(1)
+			.withTables("table1")
+			.withCodec(SnappyCodec.INSTANCE));
+
+	private final AtomicLong clock = new AtomicLong();
+	private final NearCache cache = new NearCache(new CacheConfig(2, Duration.ofSeconds(10), Set.of(TABLE)), clock::get);
+
+	@Test
+	void enabledOnlyForConfiguredTablesAndPointReads() {
+		assertThat(cache.isEnabled(TABLE)).isTrue();
+		assertThat(cache.isEnabled(ByteSequence.fromUtf8String("table2"))).isFalse();
+		assertThat(NearCache.isCacheable(GetOption.DEFAULT)).isTrue();
+		assertThat(NearCache.isCacheable(GetOption.builder().isPrefix(true).build())).isFalse();
+		assertThat(NearCache.isCacheable(GetOption.builder().withKeysOnly(true).build())).isFalse();
+	}
+
+	@Test
+	void hitAndMiss() {
+		assertThat(cache.get(TABLE, KEY)).isNull();
+
+		var response = response(KEY, "value", 5);
+		cache.put(TABLE, KEY, response);
+
+		assertThat(cache.get(TABLE, KEY)).isSameAs(response);
+		assertThat(cache.stats().hits()).isEqualTo(1);
+		assertThat(cache.stats().misses()).isEqualTo(1);
+	}
+
+	@Test
+	void expiresAfterTtl() {
+		cache.put(TABLE, KEY, response(KEY, "value", 5));
+		clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		assertThat(cache.stats().evictions()).isEqualTo(1);
+		assertThat(cache.stats().size()).isZero();
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		var key2 = ByteSequence.fromUtf8String("key2");
+		var key3 = ByteSequence.fromUtf8String("key3");
+		cache.put(TABLE, KEY, response(KEY, "value", 1));
+		cache.put(TABLE, key2, response(key2, "value", 1));
+		cache.get(TABLE, KEY);
+		cache.put(TABLE, key3, response(key3, "value", 1));
+
+		assertThat(cache.get(TABLE, KEY)).isNotNull();
+		assertThat(cache.get(TABLE, key2)).isNull();
+		assertThat(cache.stats().evictions()).isEqualTo(1);
+	}
+
+	@Test
+	void olderRevisionDoesNotReplaceNewer() {
+		var newer = response(KEY, "new", 7);
+		cache.put(TABLE, KEY, newer);
+		cache.put(TABLE, KEY, response(KEY, "old", 6));
+
+		assertThat(cache.get(TABLE, KEY)).isSameAs(newer);
+	}
+
+	@Test
+	void readsInFlightDuringWriteAreNotCached() {
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		cache.invalidate(TABLE, KEY);
+
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		assertThat(cache.get(TABLE, KEY)).isNull();
+
+		cache.written(TABLE, KEY, 8);
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		assertThat(cache.get(TABLE, KEY)).isNull();
+
+		var fresh = response(KEY, "new", 8);
+		cache.put(TABLE, KEY, fresh);
+		assertThat(cache.get(TABLE, KEY)).isSameAs(fresh);
+	}
+
+	@Test
+	void failedWriteKeepsKeyUncachedForTtl() {
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		cache.invalidate(TABLE, KEY);
+		// the write timed out, it may have been committed at any revision
+		cache.written(TABLE, KEY, 0);
+
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		clock.addAndGet(Duration.ofSeconds(10).toNanos());
+		cache.put(TABLE, KEY, response(KEY, "new", 9));
+		assertThat(cache.get(TABLE, KEY)).isNotNull();
+	}
+
+	@Test
+	void failedRangeWriteKeepsTableUncachedForTtl() {
+		cache.invalidateTable(TABLE);
+		cache.tableWritten(TABLE, 0);
+
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		clock.addAndGet(Duration.ofSeconds(10).toNanos());
+		cache.put(TABLE, KEY, response(KEY, "new", 9));
+		assertThat(cache.get(TABLE, KEY)).isNotNull();
+	}
+
+	@Test
+	void writesOfAsyncClientsInvalidateReadsOfTheBlockingClient() {
+		var client = new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT, BatchConfig.DEFAULT,
+				new CacheConfig(10, Duration.ofMinutes(1), Set.of(TABLE)));
+		var kv = client.getKVClient();
+		kv.put(TABLE, KEY, ByteSequence.fromUtf8String("blocking"));
+		assertThat(kv.get(TABLE, KEY).kvs().get(0).value().toString()).isEqualTo("blocking");
+
+		client.getAsyncKVClient().put(TABLE, KEY, ByteSequence.fromUtf8String("async")).join();
+		assertThat(kv.get(TABLE, KEY).kvs().get(0).value().toString()).isEqualTo("async");
+
+		client.getBatchingKVClient().put(TABLE, KEY, ByteSequence.fromUtf8String("batched")).join();
+		assertThat(kv.get(TABLE, KEY).kvs().get(0).value().toString()).isEqualTo("batched");
+
+		client.getAsyncKVClient().delete(TABLE, KEY).join();
+		assertThat(kv.get(TABLE, KEY).kvs()).isEmpty();
+	}
+
+	@Test
+	void rangeWriteInvalidatesTable() {
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		cache.invalidateTable(TABLE);
+
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		cache.tableWritten(TABLE, 9);
+		cache.put(TABLE, KEY, response(KEY, "old", 5));
+		assertThat(cache.get(TABLE, KEY)).isNull();
+		cache.put(TABLE, KEY, response(KEY, "new", 9));
+		assertThat(cache.get(TABLE, KEY)).isNotNull();
+	}
+
+	private static GetResponse response(ByteSequence key, String value, long revision) {
+		var header = new Response.HeaderImpl(ResponseHeader.newBuilder().setRevision(revision).build());
+		var kv = new KeyValue(key, ByteSequence.fromUtf8String(value), 1, revision);
+		return new GetResponse(header, List.of(kv), 1);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.options.GetOption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+
+import io.grpc.stub.ClientCallStreamObserver;
+
+class PrefetchingRangeIteratorTest {
+
+	private static final RangeRequest REQUEST = RangeRequest.newBuilder()
+			.setKey(ByteString.copyFromUtf8("a"))
+			.setRangeEnd(ByteString.copyFromUtf8("z"))
+			.build();
+
+	private final FakeRequestStream requestStream = new FakeRequestStream();
+	private PrefetchingRangeIterator iterator;
+
+	@BeforeEach
+	void setUp() {
+		iterator = iterator(3, Long.MAX_VALUE);
+	}
+
+	@Test
+	void requestsUpToChunkLimit() {
+		assertThat(requestStream.requested.get()).isEqualTo(3);
+
+		iterator.onNext(chunk("b", 10));
+		iterator.onNext(chunk("c", 10));
+
+		assertThat(requestStream.requested.get()).isEqualTo(3);
+
+		iterator.next();
+
+		assertThat(requestStream.requested.get()).isEqualTo(4);
+	}
+
+	@Test
+	void requestsUpToByteLimit() {
+		iterator = iterator(10, 100);
+		int initial = requestStream.requested.get();
+
+		iterator.onNext(chunk("b", 200));
+
+		assertThat(requestStream.requested.get()).isEqualTo(initial);
+
+		iterator.next();
+
+		assertThat(requestStream.requested.get()).isEqualTo(initial + 1);
+	}
+
+	@Test
+	void deliversChunksInOrderAndCompletes() {
+		iterator.onNext(chunk("b", 1));
+		iterator.onNext(chunk("c", 1));
+		iterator.onCompleted();
+
+		assertThat(iterator.next().kvs().get(0).key().toString()).isEqualTo("b");
+		assertThat(iterator.next().kvs().get(0).key().toString()).isEqualTo("c");
+		assertThat(iterator.hasNext()).isFalse();
+	}
+
+	@Test
+	void cancelCancelsCall() {
+		iterator.cancel();
+
+		assertThat(requestStream.cancelled).isTrue();
+		assertThat(iterator.hasNext()).isFalse();
+	}
+
+	@Test
+	void rejectsLimitsWhichNeverRequestAChunk() {
+		assertThatThrownBy(() -> GetOption.builder().withPrefetch(4, 0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> GetOption.builder().withPrefetch(-1, 1 << 20)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(GetOption.builder().withPrefetch(0, 1).build().getPrefetchChunks()).isZero();
+	}
+
+	private PrefetchingRangeIterator iterator(int chunks, long bytes) {
+		var resumption = new RangeResumption(REQUEST, new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null), Impl.RETRY_TRANSIENT);
+		var prefetching = new PrefetchingRangeIterator((request, observer) -> observer.beforeStart(requestStream),
+				resumption, chunks, bytes);
+		prefetching.open();
+		return prefetching;
+	}
+
+	private static RangeResponse chunk(String key, int valueSize) {
+		return RangeResponse.newBuilder()
+				.addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8(key)).setValue(ByteString.copyFrom(new byte[valueSize])))
+				.build();
+	}
+
+	private static class FakeRequestStream extends ClientCallStreamObserver<RangeRequest> {
+
+		private final AtomicInteger requested = new AtomicInteger();
+		private volatile boolean cancelled;
+
+		@Override
+		public void cancel(String message, Throwable cause) {
+			cancelled = true;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+		}
+
+		@Override
+		public void request(int count) {
+			requested.addAndGet(count);
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void disableAutoRequestWithInitial(int request) {
+			requested.addAndGet(request);
+		}
+
+		@Override
+		public void onNext(RangeRequest value) {
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class RpcEventInterceptorTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ByteSequence KEY = ByteSequence.fromUtf8String("key1");
+	private static final ByteSequence VALUE = ByteSequence.fromUtf8String("value1");
+
+	@RegisterExtension
+	InProcessKVServer server = new InProcessKVServer();
+
+	private final KVTestStub stub = new KVTestStub();
+	private final Recording recording = new Recording();
+	private KVImpl client;
+
+	@BeforeEach
+	void setUp() {
+		server.addService(stub);
+		var channel = ClientInterceptors.intercept(server.getChannel(), new RpcEventInterceptor());
+		client = new KVImpl(channel, new RetryConfig(2, 1, 10, ChronoUnit.MILLIS, null));
+		recording.enable(RpcEvent.NAME).withThreshold(Duration.ZERO);
+		recording.enable(RetryEvent.NAME);
+		recording.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		recording.close();
+	}
+
+	@Test
+	void recordsAttemptsAndRetries() throws Exception {
+		stub.failures.set(2);
+
+		client.get(TABLE, KEY, GetOption.builder().withSerializable(true).build());
+
+		var rpcs = events(RpcEvent.NAME);
+		assertThat(rpcs).extracting(event -> event.getInt("attempt")).containsExactly(1, 2, 3);
+		assertThat(rpcs).extracting(event -> event.getString("status")).containsExactly("UNAVAILABLE", "UNAVAILABLE", "OK");
+		assertThat(rpcs).allMatch(event -> event.getString("method").equals("Range") && event.getString("table").equals("table1"));
+		assertThat(rpcs.get(2).getLong("valueBytes")).isEqualTo(VALUE.size());
+		var retries = events(RetryEvent.NAME);
+		assertThat(retries).extracting(event -> event.getInt("attempt")).containsExactly(1, 2);
+		assertThat(retries).allMatch(event -> event.getString("outcome").equals(RetryEvent.RETRIED));
+	}
+
+	@Test
+	void recordsKeyAndValueSizeOfWrite() throws Exception {
+		client.put(TABLE, KEY, VALUE);
+
+		var rpcs = events(RpcEvent.NAME);
+		assertThat(rpcs).hasSize(1);
+		assertThat(rpcs.get(0).getString("method")).isEqualTo("Put");
+		assertThat(rpcs.get(0).getLong("keySize")).isEqualTo(KEY.size());
+		assertThat(rpcs.get(0).getLong("valueBytes")).isEqualTo(VALUE.size());
+		assertThat(events(RetryEvent.NAME)).isEmpty();
+	}
+
+	@Test
+	void callsAreNotWrappedWithoutRecording() {
+		recording.stop();
+
+		var call = new RpcEventInterceptor().interceptCall(KVGrpc.getPutMethod(), CallOptions.DEFAULT, server.getChannel());
+
+		assertThat(call).isNotInstanceOf(ForwardingClientCall.class);
+	}
+
+	private List<RecordedEvent> events(String name) throws Exception {
+		if (recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+		}
+		var file = Files.createTempFile("regatta", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file).stream()
+					.filter(event -> event.getEventType().getName().equals(name))
+					.toList();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static class KVTestStub extends KVGrpc.KVImplBase {
+
+		private final AtomicInteger failures = new AtomicInteger();
+
+		@Override
+		public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+			if (failures.getAndDecrement() > 0) {
+				responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				return;
+			}
+			responseObserver.onNext(RangeResponse.newBuilder()
+					.addKvs(KeyValue.newBuilder().setKey(KEY.getByteString()).setValue(VALUE.getByteString()))
+					.setCount(1)
+					.build());
+			responseObserver.onCompleted();
+		}
+
+		@Override
+		public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+			responseObserver.onNext(PutResponse.getDefaultInstance());
+			responseObserver.onCompleted();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.InMemoryClusterExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class TableKVImplTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+
+	@RegisterExtension
+	InMemoryClusterExtension server = new InMemoryClusterExtension(InMemoryCluster.builder()
+			.withMembers(1)
+			.withTables("table1")
+			.withCodec(SnappyCodec.INSTANCE));
+
+	private ClientImpl client;
+
+	@BeforeEach
+	void setUp() {
+		client = new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT);
+	}
+
+	@Test
+	void templatesBuildTheRequestsOfTheOptions() {
+		var table = (TableKVImpl) client.getKVClient().table("table1");
+		var key = ByteSequence.fromUtf8String("key");
+		var options = List.of(
+				GetOption.DEFAULT,
+				GetOption.builder().isPrefix(true).withSerializable(true).build(),
+				GetOption.builder().withRange(ByteSequence.fromUtf8String("z")).withLimit(10).withKeysOnly(true).build(),
+				GetOption.builder().withCountOnly(true).withTimeout(1, TimeUnit.SECONDS).build());
+
+		for (var option : options) {
+			var handle = (TableKVImpl) table.withGetOption(option);
+			assertThat(handle.rangeRequest(key)).isEqualTo(KVImpl.rangeRequest(TABLE, key, option));
+		}
+		assertThat(table.name()).isEqualTo(TABLE);
+	}
+
+	@Test
+	void operationsUseTheDefaultsOfTheHandle() {
+		var table = client.getKVClient().table("table1")
+				.withGetOption(GetOption.builder().isPrefix(true).withSerializable(true).build())
+				.withPutOption(PutOption.builder().withPrevKV().build())
+				.withDeleteOption(DeleteOption.builder().isPrefix(true).withPrevKV(true).build());
+		for (var key : new String[]{"a1", "a2", "b1"}) {
+			table.put(ByteSequence.fromUtf8String(key), ByteSequence.fromUtf8String("value-" + key));
+		}
+
+		var overwritten = table.put(ByteSequence.fromUtf8String("a1"), ByteSequence.fromUtf8String("value"));
+		var prefix = table.get(ByteSequence.fromUtf8String("a"));
+		var single = table.get(ByteSequence.fromUtf8String("a"), GetOption.DEFAULT);
+		var committed = table.txn().Then(Op.put(ByteSequence.fromUtf8String("b2"), ByteSequence.fromUtf8String("value"), PutOption.DEFAULT)).commit();
+		var deleted = table.delete(ByteSequence.fromUtf8String("b"));
+
+		assertThat(overwritten.prev().value().toString()).isEqualTo("value-a1");
+		assertThat(prefix.kvs()).extracting(kv -> kv.key().toString()).containsExactly("a1", "a2");
+		assertThat(single.kvs()).isEmpty();
+		assertThat(committed.succeeded()).isTrue();
+		assertThat(deleted.prevKv()).extracting(KeyValue::key).containsExactly(ByteSequence.fromUtf8String("b1"), ByteSequence.fromUtf8String("b2"));
+		assertThat(client.getKVClient().get(TABLE, ByteSequence.fromUtf8String("b"), GetOption.builder().isPrefix(true).build()).kvs()).isEmpty();
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.Duration;
+import java.util.Set;
+
+import com.jamf.regatta.core.BatchConfig;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.CompressionConfig;
+import com.jamf.regatta.core.HedgeConfig;
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.ValueCompressionConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.GetResponse;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.api.op.Cmp;
+import com.jamf.regatta.core.api.op.CmpTarget;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.InMemoryClusterExtension;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.RangeRequest;
+
+class ValueCompressionTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+	private static final ValueCompressionConfig CONFIG = new ValueCompressionConfig(Set.of(TABLE), 6, 16 * 1024, 1000, Duration.ofMinutes(1));
+	private static final GetOption ALL = GetOption.builder().withRange(ByteSequence.from(new byte[]{0})).build();
+
+	@RegisterExtension
+	InMemoryClusterExtension server = new InMemoryClusterExtension(InMemoryCluster.builder()
+			.withMembers(1)
+			.withTables("table1"));
+
+	private ClientImpl client;
+	private KVGrpc.KVBlockingStub stub;
+
+	@BeforeEach
+	void setUp() {
+		client = newClient();
+		stub = KVGrpc.newBlockingStub(server.cluster().newChannel());
+	}
+
+	@Test
+	void valuesAreStoredCompressedAndReadAsWritten() {
+		var kv = client.getKVClient();
+		kv.put(TABLE, key(1), document(1));
+		kv.put(TABLE, key(2), ByteSequence.fromUtf8String("x"));
+
+		assertThat(stored(key(1))[0]).isEqualTo(ValueCodec.MAGIC);
+		assertThat(stored(key(1))).hasSizeLessThan(document(1).size());
+		// a value which does not shrink is stored behind the header
+		assertThat(stored(key(2))).containsExactly(ValueCodec.MAGIC, ValueCodec.STORED, (byte) 'x');
+		assertThat(kv.get(TABLE, key(1)).kvs()).extracting(KeyValue::value).containsExactly(document(1));
+		assertThat(kv.get(TABLE, key(2)).kvs()).extracting(KeyValue::value).containsExactly(ByteSequence.fromUtf8String("x"));
+	}
+
+	@Test
+	void trainedDictionaryShrinksValuesWhichStayReadableAfterRotation() {
+		var kv = client.getKVClient();
+		for (int i = 0; i < 200; i++) {
+			kv.put(TABLE, key(i), document(i));
+		}
+		var untrained = stored(key(0)).length;
+		var reader = newClient();
+		assertThat(reader.getValueDictionaries().current(TABLE)).isZero();
+
+		var first = client.getValueDictionaries().train(TABLE);
+		kv.put(TABLE, key(1000), document(1000));
+		var second = client.getValueDictionaries().train(TABLE);
+		kv.put(TABLE, key(1001), document(1001));
+
+		assertThat(first).isEqualTo(1);
+		assertThat(second).isEqualTo(2);
+		assertThat(stored(key(1000)).length).isLessThan(untrained / 2);
+		// another client loads the dictionaries, the values of every dictionary are read as written
+		var other = newClient();
+		assertThat(other.getValueDictionaries().current(TABLE)).isEqualTo(2);
+		for (var i : new int[]{0, 1000, 1001}) {
+			assertThat(other.getKVClient().get(TABLE, key(i)).kvs()).extracting(KeyValue::value).containsExactly(document(i));
+		}
+		// a client which loaded the dictionaries before the training reloads them to read the values
+		assertThat(reader.getAsyncKVClient().get(TABLE, key(1000)).join().kvs()).extracting(KeyValue::value).containsExactly(document(1000));
+		assertThat(reader.getKVClient().get(TABLE, key(1001)).kvs()).extracting(KeyValue::value).containsExactly(document(1001));
+		assertThat(reader.getValueDictionaries().current(TABLE)).isEqualTo(2);
+		// the dictionaries are left out of the results
+		var all = kv.get(TABLE, ByteSequence.from(new byte[]{0}), ALL);
+		assertThat(all.kvs()).hasSize(202).allMatch(item -> item.key().toString().startsWith("key-"));
+		assertThat(all.count()).isEqualTo(202);
+		assertThat(kv.iterate(TABLE, ByteSequence.from(new byte[]{0}), ALL).mapToLong(GetResponse::count).sum()).isEqualTo(202);
+	}
+
+	@Test
+	void transactionsAndPreviousValuesAreDecoded() {
+		var kv = client.getKVClient();
+		kv.txn(TABLE)
+				.Then(Op.put(key(1), document(1), PutOption.DEFAULT), Op.put(key(2), document(2), PutOption.DEFAULT))
+				.commit();
+
+		var read = kv.txn(TABLE).Then(Op.get(key(1), GetOption.DEFAULT)).commit();
+		var put = kv.put(TABLE, key(1), document(3), PutOption.builder().withPrevKV().build());
+		var deleted = kv.delete(TABLE, key(2), DeleteOption.builder().withPrevKV(true).build());
+
+		assertThat(stored(key(1))[0]).isEqualTo(ValueCodec.MAGIC);
+		assertThat(read.responses().get(0).getResponseRange().getKvs(0).getValue().toStringUtf8()).isEqualTo(document(1).toString());
+		assertThat(put.prev().value()).isEqualTo(document(1));
+		assertThat(deleted.prevKv()).extracting(KeyValue::value).containsExactly(document(2));
+	}
+
+	@Test
+	void transactionsComparingValuesAreRejected() {
+		var kv = client.getKVClient();
+		kv.put(TABLE, key(1), document(1));
+		var compare = new Cmp(key(1), Cmp.Op.EQUAL, CmpTarget.value(document(1)));
+
+		var failure = catchThrowable(() -> kv.txn(TABLE).If(compare).Then(Op.put(key(1), document(2), PutOption.DEFAULT)).commit());
+		var asyncFailure = catchThrowable(() -> client.getAsyncKVClient().txn(TABLE).If(compare)
+				.Then(Op.put(key(1), document(2), PutOption.DEFAULT)).commit().join());
+
+		assertThat(Status.fromThrowable(failure).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+		assertThat(Status.fromThrowable(asyncFailure).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+		assertThat(kv.get(TABLE, key(1)).kvs()).extracting(KeyValue::value).containsExactly(document(1));
+		// a transaction without compares of values is still sent
+		assertThat(kv.txn(TABLE).Then(Op.put(key(1), document(2), PutOption.DEFAULT)).commit().succeeded()).isTrue();
+	}
+
+	@Test
+	void reservedKeysAreLeftOutOfRangesCountsAndLimits() {
+		var kv = client.getKVClient();
+		for (int i = 0; i < 20; i++) {
+			kv.put(TABLE, key(i), document(i));
+		}
+		client.getValueDictionaries().train(TABLE);
+		client.getValueDictionaries().train(TABLE);
+		var first = ByteSequence.from(new byte[]{0});
+
+		var limited = kv.get(TABLE, first, GetOption.builder().withRange(first).withLimit(5).build());
+		var counted = kv.get(TABLE, first, GetOption.builder().withRange(first).withCountOnly(true).build());
+		var page = kv.page(TABLE, first, first, 5);
+		var walked = 0;
+		for (var next = page; ; next = kv.page(TABLE, next.continuation(), first, 5)) {
+			walked += next.kvs().size();
+			if (!next.hasMore()) {
+				break;
+			}
+		}
+
+		assertThat(limited.kvs()).extracting(item -> item.key()).containsExactly(key(0), key(1), key(2), key(3), key(4));
+		assertThat(counted.count()).isEqualTo(20);
+		assertThat(page.kvs()).extracting(item -> item.key()).containsExactly(key(0), key(1), key(2), key(3), key(4));
+		assertThat(walked).isEqualTo(20);
+	}
+
+	@Test
+	void requestsReachingOnlyReservedKeysAreRejected() {
+		var kv = client.getKVClient();
+		kv.put(TABLE, key(1), document(1));
+		client.getValueDictionaries().train(TABLE);
+		var reserved = ByteSequence.fromUtf8String("\0\0key");
+
+		var put = catchThrowable(() -> kv.put(TABLE, reserved, document(2)));
+		var get = catchThrowable(() -> kv.get(TABLE, ByteSequence.from(ValueCodec.dictionaryKey(1).toByteArray())));
+		var txn = catchThrowable(() -> kv.txn(TABLE).Then(Op.put(reserved, document(2), PutOption.DEFAULT)).commit());
+		var all = ByteSequence.from(new byte[]{0});
+		kv.delete(TABLE, all, DeleteOption.builder().withRange(all).build());
+
+		for (var failure : new Throwable[]{put, get, txn}) {
+			assertThat(Status.fromThrowable(failure).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+		}
+		// deleting all keys leaves the dictionaries in place
+		assertThat(kv.get(TABLE, key(1)).kvs()).isEmpty();
+		assertThat(newClient().getValueDictionaries().current(TABLE)).isEqualTo(1);
+	}
+
+	private ClientImpl newClient() {
+		return new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT, BatchConfig.DEFAULT, CacheConfig.DISABLED,
+				HedgeConfig.DISABLED, LimitConfig.DISABLED, CompressionConfig.DISABLED, CONFIG);
+	}
+
+	private byte[] stored(ByteSequence key) {
+		var response = stub.range(RangeRequest.newBuilder()
+				.setTable(TABLE.getByteString())
+				.setKey(key.getByteString())
+				.setLinearizable(true)
+				.build());
+		return response.getKvs(0).getValue().toByteArray();
+	}
+
+	private static ByteSequence key(int i) {
+		return ByteSequence.fromUtf8String(String.format("key-%04d", i));
+	}
+
+	private static ByteSequence document(int i) {
+		return ByteSequence.fromUtf8String(("{\"id\":%d,\"type\":\"computer\",\"name\":\"device-%d\",\"os\":{\"name\":\"macOS\",\"version\":\"14.%d\"},"
+				+ "\"managed\":true,\"site\":{\"id\":%d,\"name\":\"site-%d\"},\"lastInventoryUpdate\":\"2024-03-%02dT10:15:30Z\"}")
+				.formatted(i, i, i % 7, i % 5, i % 5, 1 + i % 28));
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.grpc.Status;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+
+class ObservationClientMetricsTest {
+
+	private static final CallTags TAGS = new CallTags("Range", "table1", CallTags.SERIALIZABLE);
+
+	private final List<Observation.Context> stopped = new CopyOnWriteArrayList<>();
+	private final List<String> sizes = new CopyOnWriteArrayList<>();
+	private ObservationClientMetrics metrics;
+
+	@BeforeEach
+	void setUp() {
+		var registry = ObservationRegistry.create();
+		registry.observationConfig().observationHandler(new ObservationHandler<>() {
+			@Override
+			public void onStop(Observation.Context context) {
+				stopped.add(context);
+			}
+
+			@Override
+			public boolean supportsContext(Observation.Context context) {
+				return true;
+			}
+		});
+		metrics = new ObservationClientMetrics(registry, (name, tags, bytes) -> sizes.add(name + " " + tags.table() + " " + bytes));
+	}
+
+	@Test
+	void rpcIsObservedWithTagsAndItsSizesAreRecorded() {
+		var sample = metrics.startRpc(TAGS.method());
+		sample.requestSize(10);
+		sample.responseSize(20);
+		sample.responseSize(30);
+		sample.stop(TAGS, Status.Code.OK);
+
+		assertThat(stopped).hasSize(1);
+		var context = stopped.get(0);
+		assertThat(context.getName()).isEqualTo(ObservationClientMetrics.RPC);
+		assertThat(context.getLowCardinalityKeyValues()).contains(
+				KeyValue.of(ObservationClientMetrics.METHOD, "Range"),
+				KeyValue.of(ObservationClientMetrics.TABLE, "table1"),
+				KeyValue.of(ObservationClientMetrics.CONSISTENCY, CallTags.SERIALIZABLE),
+				KeyValue.of(ObservationClientMetrics.STATUS, "OK"));
+		assertThat(context.getHighCardinalityKeyValues()).isEmpty();
+		assertThat(sizes).containsExactly(
+				ObservationClientMetrics.REQUEST_SIZE + " table1 10",
+				ObservationClientMetrics.RESPONSE_SIZE + " table1 50");
+	}
+
+	@Test
+	void operationIsObservedWithAttempts() {
+		metrics.startOperation().stop(TAGS, Status.Code.UNAVAILABLE, 3);
+
+		assertThat(stopped).hasSize(1);
+		var context = stopped.get(0);
+		assertThat(context.getName()).isEqualTo(ObservationClientMetrics.OPERATION);
+		assertThat(context.getLowCardinalityKeyValues()).contains(
+				KeyValue.of(ObservationClientMetrics.METHOD, "Range"),
+				KeyValue.of(ObservationClientMetrics.STATUS, "UNAVAILABLE"),
+				KeyValue.of(ObservationClientMetrics.ATTEMPTS, "3"));
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.core.tuple;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.KeyValue;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.impl.ClientImpl;
+import com.jamf.regatta.core.options.DeleteOption;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.InMemoryClusterExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class TupleTest {
+
+	private static final ByteSequence TABLE = ByteSequence.fromUtf8String("table1");
+
+	@RegisterExtension
+	InMemoryClusterExtension server = new InMemoryClusterExtension(InMemoryCluster.builder()
+			.withMembers(1)
+			.withTables("table1")
+			.withCodec(SnappyCodec.INSTANCE));
+
+	@Test
+	void packsInTheEncodingOfTheFoundationDbTupleLayer() {
+		assertThat(hex(Tuple.of("hello", 0L, -1L, 1L, 300L))).isEqualTo("0268656c6c6f00" + "14" + "13fe" + "1501" + "16012c");
+		assertThat(hex(Tuple.of(new byte[]{'f', 0, 'o'}, null, Tuple.of("x", null)))).isEqualTo("016600ff6f00" + "00" + "05027800" + "00ff" + "00");
+		assertThat(hex(Tuple.of(Long.MIN_VALUE, true, new UUID(1, 2))))
+				.isEqualTo("0c7fffffffffffffff" + "27" + "30" + "0000000000000001" + "0000000000000002");
+	}
+
+	@Test
+	void unpacksWhatItPacks() {
+		var tuple = Tuple.of(null, new byte[]{0, 1, 0}, "z\u00fcrich\0", Tuple.of(null, Tuple.of(7), ""), Long.MIN_VALUE, Long.MAX_VALUE,
+				-255, 256, false, UUID.randomUUID(), List.of("list"));
+
+		var unpacked = Tuple.fromBytes(tuple.pack());
+
+		assertThat(unpacked).isEqualTo(tuple);
+		assertThat(unpacked.getLong(4)).isEqualTo(Long.MIN_VALUE);
+		assertThat(unpacked.getBytes(1)).containsExactly(0, 1, 0);
+		assertThat(unpacked.getNestedTuple(10)).isEqualTo(Tuple.of("list"));
+		assertThat(Tuple.fromBytes(ByteSequence.fromUtf8String("ns/"), tuple.pack(ByteSequence.fromUtf8String("ns/")))).isEqualTo(tuple);
+		assertThatThrownBy(() -> Tuple.fromBytes(ByteSequence.fromUtf8String("\u0002abc"))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Tuple.of(1.5)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void packedKeysSortInTheOrderOfTheElements() {
+		var random = new Random(42);
+		var longs = new ArrayList<Tuple>();
+		var strings = new ArrayList<Tuple>();
+		var uuids = new ArrayList<Tuple>();
+		for (int i = 0; i < 2000; i++) {
+			var value = switch (i % 4) {
+				case 0 -> random.nextLong();
+				case 1 -> (long) random.nextInt();
+				case 2 -> (long) random.nextInt(1000) - 500;
+				default -> random.nextBoolean() ? Long.MIN_VALUE + random.nextInt(3) : Long.MAX_VALUE - random.nextInt(3);
+			};
+			longs.add(Tuple.of(value, "x"));
+			strings.add(Tuple.of("s" + random.nextInt(100000), value));
+			uuids.add(Tuple.of(new UUID(random.nextLong(), random.nextLong())));
+		}
+
+		longs.sort(Comparator.naturalOrder());
+		strings.sort(Comparator.naturalOrder());
+		uuids.sort(Comparator.naturalOrder());
+
+		assertThat(longs).extracting(tuple -> tuple.getLong(0)).isSorted();
+		assertThat(strings).extracting(tuple -> tuple.getString(0)).isSorted();
+		assertThat(uuids).extracting(tuple -> tuple.getUUID(0))
+				.isSortedAccordingTo(Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+						.thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned));
+		assertThat(Tuple.of(1L)).isLessThan(Tuple.of(1L, "a")).isLessThan(Tuple.of(2L));
+		assertThat(Tuple.of(9L)).isLessThan(Tuple.of(10L));
+	}
+
+	@Test
+	void rangesReadExactlyTheMatchingTuples() {
+		var kv = new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT).getKVClient();
+		var namespace = ByteSequence.fromUtf8String("devices/");
+		for (long site = 1; site <= 12; site++) {
+			for (long device = 1; device <= 3; device++) {
+				kv.put(TABLE, Tuple.of(site, device).pack(namespace), ByteSequence.fromUtf8String(site + "-" + device));
+			}
+		}
+
+		var site1 = TupleRange.startsWith(namespace, Tuple.of(1L));
+		var sites9To10 = TupleRange.between(namespace, Tuple.of(9L), Tuple.of(11L));
+		var devices = TupleRange.between(namespace, Tuple.of(10L, 2L), Tuple.of(10L, 3L));
+
+		assertThat(values(kv.get(TABLE, site1.key(), site1.toGetOption()).kvs())).containsExactly("1-1", "1-2", "1-3");
+		assertThat(values(kv.get(TABLE, sites9To10.key(), sites9To10.toGetOption()).kvs()))
+				.containsExactly("9-1", "9-2", "9-3", "10-1", "10-2", "10-3");
+		assertThat(values(kv.get(TABLE, devices.key(), devices.toGetOption()).kvs())).containsExactly("10-2");
+		kv.delete(TABLE, site1.key(), site1.applyTo(DeleteOption.builder()).build());
+		assertThat(kv.get(TABLE, site1.key(), site1.toGetOption()).kvs()).isEmpty();
+		var site12 = TupleRange.startsWith(namespace, Tuple.of(12L));
+		assertThat(kv.get(TABLE, site12.key(), site12.toGetOption()).kvs())
+				.extracting(item -> Tuple.fromBytes(namespace, item.key()))
+				.containsExactly(Tuple.of(12L, 1L), Tuple.of(12L, 2L), Tuple.of(12L, 3L));
+	}
+
+	@Test
+	void prefixRangesLeaveOutElementsContinuedWithNul() {
+		var kv = new ClientImpl(server.cluster().newChannel(), RetryConfig.DEFAULT).getKVClient();
+		var tuples = List.of(Tuple.of("a"), Tuple.of("a", 1L), Tuple.of("a", null), Tuple.of("a\0"), Tuple.of("a\0b"),
+				Tuple.of(new byte[]{'a'}), Tuple.of(new byte[]{'a', 0}), Tuple.of("b"));
+		for (var tuple : tuples) {
+			kv.put(TABLE, tuple.pack(), ByteSequence.fromUtf8String("value"));
+		}
+
+		var strings = TupleRange.startsWith(Tuple.of("a"));
+		var bytes = TupleRange.startsWith(Tuple.of(new byte[]{'a'}));
+
+		assertThat(kv.get(TABLE, strings.key(), strings.toGetOption()).kvs())
+				.extracting(item -> Tuple.fromBytes(item.key()))
+				.containsExactly(Tuple.of("a"), Tuple.of("a", null), Tuple.of("a", 1L));
+		assertThat(kv.get(TABLE, bytes.key(), bytes.toGetOption()).kvs())
+				.extracting(item -> Tuple.fromBytes(item.key()))
+				.containsExactly(Tuple.of(new byte[]{'a'}));
+	}
+
+	private static List<String> values(List<KeyValue> kvs) {
+		return kvs.stream().map(kv -> kv.value().toString()).toList();
+	}
+
+	private static String hex(Tuple tuple) {
+		return HexFormat.of().formatHex(tuple.pack().getBytes());
+	}
+}
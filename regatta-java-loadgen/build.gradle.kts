@@ -0,0 +1,47 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+val grpcVersion = "1.66.0"
+val hdrHistogramVersion = "2.2.2"
+val jupiterVersion = "5.10.3"
+val assertjVersion = "3.26.3"
+
+plugins {
+    application
+}
+
+group = "com.jamf.regatta"
+
+version = "1.4.1-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    }
+}
+
+dependencies {
+    implementation(project(":regatta-java-core"))
+    implementation(project(":regatta-java-test"))
+    implementation("io.grpc:grpc-inprocess:${grpcVersion}")
+    implementation("org.hdrhistogram:HdrHistogram:${hdrHistogramVersion}")
+
+    testImplementation("org.assertj:assertj-core:${assertjVersion}")
+}
+
+testing {
+    suites {
+        val test by getting(JvmTestSuite::class) {
+            useJUnitJupiter(jupiterVersion)
+        }
+    }
+}
+
+application {
+    mainClass.set("com.jamf.regatta.loadgen.LoadGen")
+}
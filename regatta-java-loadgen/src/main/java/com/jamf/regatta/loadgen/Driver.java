@@ -0,0 +1,217 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Runs the {@link Workload} and records the latency of every operation.
+ * <p>
+ * With an arrival rate the run is open-loop: the operations are started on a fixed schedule whether or not the
+ * earlier ones completed, and the latency is measured from the time an operation was scheduled to start. An
+ * operation delayed by a slow one ahead of it is charged the delay, so the percentiles are not skewed by
+ * coordinated omission. Without a rate the run is closed-loop, every thread starts the next operation once the
+ * previous one completed, which measures the service time only.
+ */
+final class Driver {
+
+    private static final int LOAD_ATTEMPTS = 5;
+
+    private final Workload workload;
+    private final LoadGenOptions options;
+    private final PrintStream out;
+    private final Map<Workload.Operation, Stats> stats = new EnumMap<>(Workload.Operation.class);
+
+    Driver(Workload workload, LoadGenOptions options, PrintStream out) {
+        this.workload = workload;
+        this.options = options;
+        this.out = out;
+        for (var operation : Workload.Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    Map<Workload.Operation, Stats> stats() {
+        return stats;
+    }
+
+    /**
+     * Inserts all the records, closed-loop on all threads. The puts are not retried by the client, a failed insert is
+     * attempted again a few times before the load fails.
+     */
+    Duration load() throws InterruptedException {
+        var next = new AtomicLong();
+        var failure = new AtomicReference<RuntimeException>();
+        var start = System.nanoTime();
+        var executor = executor();
+        for (int i = 0; i < options.threads; i++) {
+            executor.execute(() -> {
+                for (var record = next.getAndIncrement(); record < workload.records() && failure.get() == null; record = next.getAndIncrement()) {
+                    insert(record, failure);
+                }
+            });
+        }
+        awaitTermination(executor);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private void insert(long record, AtomicReference<RuntimeException> failure) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                workload.insert(record);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == LOAD_ATTEMPTS) {
+                    failure.compareAndSet(null, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the warmup and the measurement, the latencies of the warmup are discarded.
+     */
+    void run() throws InterruptedException {
+        var start = System.nanoTime();
+        var measureFrom = start + options.warmup.toNanos();
+        var end = measureFrom + options.duration.toNanos();
+        var reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "loadgen-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.schedule(() -> stats.values().forEach(Stats::reset), measureFrom - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (!options.reportInterval.isZero()) {
+            var interval = options.reportInterval.toNanos();
+            reporter.scheduleAtFixedRate(() -> report(start), measureFrom - System.nanoTime() + interval, interval, TimeUnit.NANOSECONDS);
+        }
+        var executor = executor();
+        try {
+            if (options.rate > 0) {
+                openLoop(executor, start, end);
+            } else {
+                closedLoop(executor, end);
+            }
+            awaitTermination(executor);
+        } finally {
+            reporter.shutdownNow();
+            reporter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        stats.values().forEach(Stats::drain);
+    }
+
+    private void openLoop(ExecutorService executor, long start, long end) {
+        var period = TimeUnit.SECONDS.toNanos(1) / options.rate;
+        for (long i = 0; ; i++) {
+            var intended = start + (long) (i * period);
+            if (intended - end >= 0) {
+                return;
+            }
+            for (var now = System.nanoTime(); now - intended < 0; now = System.nanoTime()) {
+                LockSupport.parkNanos(intended - now);
+            }
+            var operation = workload.nextOperation();
+            executor.execute(() -> measure(operation, intended));
+        }
+    }
+
+    private void closedLoop(ExecutorService executor, long end) {
+        for (int i = 0; i < options.threads; i++) {
+            executor.execute(() -> {
+                for (var now = System.nanoTime(); now - end < 0; now = System.nanoTime()) {
+                    measure(workload.nextOperation(), now);
+                }
+            });
+        }
+    }
+
+    private void measure(Workload.Operation operation, long intended) {
+        var stats = this.stats.get(operation);
+        var start = System.nanoTime();
+        try {
+            workload.execute(operation);
+        } catch (RuntimeException e) {
+            stats.errors.increment();
+            return;
+        }
+        var end = System.nanoTime();
+        stats.responseTime.recordValue(end - intended);
+        stats.serviceTime.recordValue(end - start);
+    }
+
+    private void report(long start) {
+        var line = new StringBuilder(String.format("[%6ds]", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)));
+        var seconds = options.reportInterval.toNanos() / 1e9;
+        for (var entry : stats.entrySet()) {
+            var interval = entry.getValue().drain();
+            if (interval.getTotalCount() > 0) {
+                line.append(String.format(" %s %.0f ops/s p99=%.3fms", entry.getKey(), interval.getTotalCount() / seconds,
+                        interval.getValueAtPercentile(99) / 1e6));
+            }
+        }
+        out.println(line);
+    }
+
+    private ExecutorService executor() {
+        return options.virtualThreads ? Threads.virtualPerTask() : Executors.newFixedThreadPool(options.threads, Threads.platform("loadgen"));
+    }
+
+    private static void awaitTermination(ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // the operations are bounded by the deadlines of the client
+        }
+    }
+
+    /**
+     * Latencies of one operation in nanoseconds. The recorders are written by the operations and drained into the
+     * totals by the reporter.
+     */
+    static final class Stats {
+
+        final Recorder responseTime = new Recorder(3);
+        final Recorder serviceTime = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+        final Histogram totalResponseTime = new Histogram(3);
+        final Histogram totalServiceTime = new Histogram(3);
+
+        /**
+         * Adds the latencies recorded since the last drain to the totals.
+         *
+         * @return the response times recorded since the last drain
+         */
+        synchronized Histogram drain() {
+            var interval = responseTime.getIntervalHistogram();
+            totalResponseTime.add(interval);
+            totalServiceTime.add(serviceTime.getIntervalHistogram());
+            return interval;
+        }
+
+        synchronized void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            errors.reset();
+            totalResponseTime.reset();
+            totalServiceTime.reset();
+        }
+    }
+}
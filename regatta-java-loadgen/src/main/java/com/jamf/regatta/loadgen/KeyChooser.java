@@ -0,0 +1,92 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the record an operation works on, from 0 to the number of records exclusive.
+ */
+@FunctionalInterface
+public interface KeyChooser {
+
+    long next();
+
+    /**
+     * Every record is equally likely.
+     */
+    static KeyChooser uniform(long records) {
+        return () -> ThreadLocalRandom.current().nextLong(records);
+    }
+
+    /**
+     * A few records are popular, their popularity follows Zipf's law with the given exponent. The popular records are
+     * scattered over the key space, as in YCSB, so that they do not all fall into a single range.
+     */
+    static KeyChooser zipfian(long records, double theta) {
+        var zipfian = new Zipfian(records, theta);
+        return () -> Long.remainderUnsigned(fnv(zipfian.next()), records);
+    }
+
+    /**
+     * The 64-bit FNV-1a hash of the number.
+     */
+    static long fnv(long value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= value & 0xFF;
+            hash *= 0x100000001B3L;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    /**
+     * The generator of Gray et al, "Quickly Generating Billion-Record Synthetic Databases", as used by YCSB. Record 0 is
+     * the most popular.
+     */
+    final class Zipfian {
+
+        private final long records;
+        private final double theta;
+        private final double zetan;
+        private final double alpha;
+        private final double eta;
+
+        Zipfian(long records, double theta) {
+            if (records < 1) {
+                throw new IllegalArgumentException("records must be positive");
+            }
+            if (theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("theta must be between 0 and 1 exclusive");
+            }
+            this.records = records;
+            this.theta = theta;
+            this.zetan = zeta(records, theta);
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / records, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        long next() {
+            var u = ThreadLocalRandom.current().nextDouble();
+            var uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, records - 1);
+            }
+            return Math.min((long) (records * Math.pow(eta * u - eta + 1, alpha)), records - 1);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+    }
+}
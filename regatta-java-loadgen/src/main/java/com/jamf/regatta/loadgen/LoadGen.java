@@ -0,0 +1,161 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.net.ssl.SSLException;
+
+import com.jamf.regatta.core.BatchConfig;
+import com.jamf.regatta.core.CacheConfig;
+import com.jamf.regatta.core.Client;
+import com.jamf.regatta.core.HedgeConfig;
+import com.jamf.regatta.core.LimitConfig;
+import com.jamf.regatta.core.RetryConfig;
+import com.jamf.regatta.core.encoding.SnappyCodec;
+import com.jamf.regatta.core.impl.ClientImpl;
+import com.jamf.regatta.test.memory.InMemoryCluster;
+import com.jamf.regatta.test.memory.LatencyDistribution;
+
+import io.grpc.Status;
+
+/**
+ * Generates load on a Regatta cluster, or on an in-process {@link InMemoryCluster}, and reports the throughput and the
+ * latency percentiles of every operation. Run without arguments for the defaults, {@code --help} lists the options.
+ */
+public final class LoadGen {
+
+    private LoadGen() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenOptions options;
+        try {
+            if (args.length == 1 && args[0].equals("--help")) {
+                System.out.print(LoadGenOptions.USAGE);
+                return;
+            }
+            options = LoadGenOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadGenOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        run(options, System.out);
+    }
+
+    static void run(LoadGenOptions options, PrintStream out) throws Exception {
+        InMemoryCluster cluster = null;
+        Client client;
+        if (options.isInMemory()) {
+            cluster = inMemoryCluster(options);
+            client = new ClientImpl(cluster.newChannel(), RetryConfig.DEFAULT, BatchConfig.DEFAULT, CacheConfig.DISABLED,
+                    hedgeConfig(options), LimitConfig.DISABLED);
+        } else {
+            client = client(options);
+        }
+        try {
+            if (options.createTable) {
+                client.getTablesClient().createTable(options.table);
+            }
+            var workload = new Workload(client.getKVClient(), options);
+            var driver = new Driver(workload, options, out);
+            if (options.load) {
+                var took = driver.load();
+                out.printf("loaded %d records in %.1fs%n", options.records, took.toMillis() / 1e3);
+            }
+            out.printf("running %s for %ds after %ds of warmup%n",
+                    options.rate > 0 ? "open-loop at " + options.rate + " ops/s" : "closed-loop on " + options.threads + " threads",
+                    options.duration.toSeconds(), options.warmup.toSeconds());
+            driver.run();
+            summary(driver.stats(), options, out);
+            if (options.hdrDir != null) {
+                write(driver.stats(), options);
+            }
+        } finally {
+            client.close();
+            if (cluster != null) {
+                cluster.close();
+            }
+        }
+    }
+
+    private static InMemoryCluster inMemoryCluster(LoadGenOptions options) {
+        var builder = InMemoryCluster.builder()
+                .withMembers(options.members)
+                .withTables(options.table)
+                .withCodec(SnappyCodec.INSTANCE)
+                .withReplicationLag(options.replicationLag);
+        if (!options.latency.isZero()) {
+            builder.withLatency(LatencyDistribution.logNormal(options.latency, options.latencySigma));
+        }
+        var cluster = builder.build().start();
+        if (options.errorRate > 0) {
+            cluster.members().forEach(member -> member.errors(options.errorRate, Status.Code.UNAVAILABLE));
+        }
+        return cluster;
+    }
+
+    private static Client client(LoadGenOptions options) throws SSLException {
+        return Client.builder()
+                .target(options.target)
+                .hedging(hedgeConfig(options))
+                .build();
+    }
+
+    private static HedgeConfig hedgeConfig(LoadGenOptions options) {
+        return options.hedgeDelay.isZero() ? HedgeConfig.DISABLED : new HedgeConfig(options.hedgeDelay, 0, 0.1);
+    }
+
+    private static void summary(Map<Workload.Operation, Driver.Stats> stats, LoadGenOptions options, PrintStream out) {
+        var seconds = options.duration.toNanos() / 1e9;
+        out.printf("%-5s %10s %10s %8s %9s %9s %9s %9s %9s %9s %9s %9s %9s%n", "op", "count", "ops/s", "errors",
+                "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max", "svc-p50", "svc-p99");
+        for (var entry : stats.entrySet()) {
+            var response = entry.getValue().totalResponseTime;
+            var service = entry.getValue().totalServiceTime;
+            var errors = entry.getValue().errors.sum();
+            if (response.getTotalCount() == 0 && errors == 0) {
+                continue;
+            }
+            out.printf("%-5s %10d %10.0f %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", entry.getKey(),
+                    response.getTotalCount(), response.getTotalCount() / seconds, errors,
+                    response.getMean() / 1e6,
+                    response.getValueAtPercentile(50) / 1e6,
+                    response.getValueAtPercentile(90) / 1e6,
+                    response.getValueAtPercentile(99) / 1e6,
+                    response.getValueAtPercentile(99.9) / 1e6,
+                    response.getValueAtPercentile(99.99) / 1e6,
+                    response.getMaxValue() / 1e6,
+                    service.getValueAtPercentile(50) / 1e6,
+                    service.getValueAtPercentile(99) / 1e6);
+        }
+        out.println("latencies in ms" + (options.rate > 0
+                ? ", measured from the intended start of the operations"
+                : ", closed-loop latencies do not include the queueing of a fixed arrival rate"));
+    }
+
+    /**
+     * Writes the response time distribution of every operation in the format of the HdrHistogram plotter, in ms.
+     */
+    private static void write(Map<Workload.Operation, Driver.Stats> stats, LoadGenOptions options) throws IOException {
+        Files.createDirectories(options.hdrDir);
+        for (var entry : stats.entrySet()) {
+            var histogram = entry.getValue().totalResponseTime;
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            var file = options.hdrDir.resolve(entry.getKey().name().toLowerCase(Locale.ROOT) + ".hgrm");
+            try (var out = new PrintStream(Files.newOutputStream(file))) {
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+        }
+    }
+}
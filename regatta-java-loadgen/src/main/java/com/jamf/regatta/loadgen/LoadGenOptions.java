@@ -0,0 +1,180 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Command line options of the {@link LoadGen}, given as {@code --name=value}.
+ */
+final class LoadGenOptions {
+
+    static final String IN_MEMORY = "inmemory";
+
+    static final String USAGE = """
+            Usage: loadgen [--name=value ...]
+
+            Target
+              --target=URI             regatta server target, or 'inmemory' for an in-process cluster (inmemory)
+              --table=NAME             table to work on (loadgen)
+              --create-table=BOOL      create the table before loading it (false)
+
+            Workload
+              --records=N              number of records (100000)
+              --value-size=BYTES       size of the values (100)
+              --read=P --write=P --scan=P --txn=P
+                                       proportions of the operations (0.95, 0.05, 0, 0)
+              --distribution=NAME      key distribution, zipfian or uniform (zipfian)
+              --theta=T                zipfian exponent (0.99)
+              --scan-length=N          number of records read by a scan (100)
+              --serializable=BOOL      serve the reads and scans by any member (false)
+              --load=BOOL              insert the records before running (true)
+
+            Execution
+              --rate=OPS               open-loop arrival rate per second, 0 runs closed-loop (0)
+              --threads=N              platform threads, the concurrency of a closed-loop run (64)
+              --virtual-threads=BOOL   run every operation on its own virtual thread, needs Java 21 (false)
+              --duration=TIME          length of the measured run, e.g. 2ms, 30s, 5m (60s)
+              --warmup=TIME            run before the measurement starts (10s)
+              --report-interval=TIME   interval of the progress reports, 0 disables them (10s)
+              --hedge-delay=TIME       hedge the reads after the delay, 0 disables hedging (0)
+              --hdr-dir=DIR            write the percentile distribution of every operation to DIR
+
+            In-memory cluster
+              --members=N              number of members (3)
+              --latency=TIME           median latency of the members (0)
+              --latency-sigma=S        spread of the log-normal latency (0.5)
+              --error-rate=P           fraction of calls failing with UNAVAILABLE (0)
+              --replication-lag=TIME   replication lag of the followers (0)
+            """;
+
+    String target = IN_MEMORY;
+    String table = "loadgen";
+    boolean createTable;
+    long records = 100_000;
+    int valueSize = 100;
+    double read = 0.95;
+    double write = 0.05;
+    double scan;
+    double txn;
+    String distribution = "zipfian";
+    double theta = 0.99;
+    int scanLength = 100;
+    boolean serializable;
+    boolean load = true;
+    double rate;
+    int threads = 64;
+    boolean virtualThreads;
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(10);
+    Duration reportInterval = Duration.ofSeconds(10);
+    Duration hedgeDelay = Duration.ZERO;
+    Path hdrDir;
+    int members = 3;
+    Duration latency = Duration.ZERO;
+    double latencySigma = 0.5;
+    double errorRate;
+    Duration replicationLag = Duration.ZERO;
+
+    static LoadGenOptions parse(String... args) {
+        var options = new LoadGenOptions();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("expected --name=value but got " + arg);
+            }
+            var name = arg.substring(2, separator);
+            var value = arg.substring(separator + 1);
+            switch (name) {
+                case "target" -> options.target = value;
+                case "table" -> options.table = value;
+                case "create-table" -> options.createTable = Boolean.parseBoolean(value);
+                case "records" -> options.records = Long.parseLong(value);
+                case "value-size" -> options.valueSize = Integer.parseInt(value);
+                case "read" -> options.read = Double.parseDouble(value);
+                case "write" -> options.write = Double.parseDouble(value);
+                case "scan" -> options.scan = Double.parseDouble(value);
+                case "txn" -> options.txn = Double.parseDouble(value);
+                case "distribution" -> options.distribution = value.toLowerCase(Locale.ROOT);
+                case "theta" -> options.theta = Double.parseDouble(value);
+                case "scan-length" -> options.scanLength = Integer.parseInt(value);
+                case "serializable" -> options.serializable = Boolean.parseBoolean(value);
+                case "load" -> options.load = Boolean.parseBoolean(value);
+                case "rate" -> options.rate = Double.parseDouble(value);
+                case "threads" -> options.threads = Integer.parseInt(value);
+                case "virtual-threads" -> options.virtualThreads = Boolean.parseBoolean(value);
+                case "duration" -> options.duration = duration(value);
+                case "warmup" -> options.warmup = duration(value);
+                case "report-interval" -> options.reportInterval = duration(value);
+                case "hedge-delay" -> options.hedgeDelay = duration(value);
+                case "hdr-dir" -> options.hdrDir = Path.of(value);
+                case "members" -> options.members = Integer.parseInt(value);
+                case "latency" -> options.latency = duration(value);
+                case "latency-sigma" -> options.latencySigma = Double.parseDouble(value);
+                case "error-rate" -> options.errorRate = Double.parseDouble(value);
+                case "replication-lag" -> options.replicationLag = duration(value);
+                default -> throw new IllegalArgumentException("unknown option --" + name);
+            }
+        }
+        options.validate();
+        return options;
+    }
+
+    boolean isInMemory() {
+        return IN_MEMORY.equals(target);
+    }
+
+    KeyChooser keyChooser() {
+        return switch (distribution) {
+            case "uniform" -> KeyChooser.uniform(records);
+            case "zipfian" -> KeyChooser.zipfian(records, theta);
+            default -> throw new IllegalArgumentException("unknown distribution " + distribution);
+        };
+    }
+
+    private void validate() {
+        check(records > 0, "records must be positive");
+        check(valueSize >= 0, "value-size can't be negative");
+        check(read >= 0 && write >= 0 && scan >= 0 && txn >= 0, "proportions can't be negative");
+        check(read + write + scan + txn > 0, "at least one proportion must be positive");
+        check(distribution.equals("zipfian") || distribution.equals("uniform"), "distribution must be zipfian or uniform");
+        check(scanLength > 0, "scan-length must be positive");
+        check(rate >= 0, "rate can't be negative");
+        check(threads > 0, "threads must be positive");
+        check(!duration.isZero(), "duration must be positive");
+        check(members > 0, "members must be positive");
+        check(errorRate >= 0 && errorRate <= 1, "error-rate must be between 0 and 1");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * Parses a duration such as 500us, 250ms, 30s, 5m or a plain number of seconds.
+     */
+    static Duration duration(String value) {
+        Duration duration;
+        if (value.endsWith("us")) {
+            duration = Duration.ofNanos(Long.parseLong(value.substring(0, value.length() - 2)) * 1000);
+        } else if (value.endsWith("ms")) {
+            duration = Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        } else if (value.endsWith("s")) {
+            duration = Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        } else if (value.endsWith("m")) {
+            duration = Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        } else {
+            duration = Duration.ofSeconds(Long.parseLong(value));
+        }
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("duration can't be negative: " + value);
+        }
+        return duration;
+    }
+}
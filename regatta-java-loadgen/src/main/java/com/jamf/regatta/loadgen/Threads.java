@@ -0,0 +1,40 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class Threads {
+
+    private Threads() {
+    }
+
+    static ThreadFactory platform(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The executor starting a virtual thread for every task. The module is built for Java 17, the executor is looked up
+     * when running on Java 21 or newer.
+     */
+    static ExecutorService virtualPerTask() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("virtual threads need Java 21 or newer", e);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("unable to create a virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.jamf.regatta.core.KV;
+import com.jamf.regatta.core.api.ByteSequence;
+import com.jamf.regatta.core.api.op.Cmp;
+import com.jamf.regatta.core.api.op.CmpTarget;
+import com.jamf.regatta.core.api.op.Op;
+import com.jamf.regatta.core.options.GetOption;
+import com.jamf.regatta.core.options.PutOption;
+
+/**
+ * Mix of operations on the records of a table, in the manner of the YCSB core workload. Every record is a key
+ * derived from its number and a value of a fixed size.
+ */
+final class Workload {
+
+    enum Operation {
+        READ, WRITE, SCAN, TXN
+    }
+
+    private static final ByteSequence UNBOUNDED = ByteSequence.from(new byte[]{0});
+
+    private final KV kv;
+    private final ByteSequence table;
+    private final KeyChooser keys;
+    private final long records;
+    private final int valueSize;
+    private final double[] thresholds;
+    private final GetOption read;
+    private final GetOption scan;
+
+    Workload(KV kv, LoadGenOptions options) {
+        this.kv = kv;
+        this.table = ByteSequence.fromUtf8String(options.table);
+        this.keys = options.keyChooser();
+        this.records = options.records;
+        this.valueSize = options.valueSize;
+        var total = options.read + options.write + options.scan + options.txn;
+        this.thresholds = new double[]{
+                options.read / total,
+                (options.read + options.write) / total,
+                (options.read + options.write + options.scan) / total,
+        };
+        this.read = GetOption.builder().withSerializable(options.serializable).build();
+        this.scan = GetOption.builder()
+                .withSerializable(options.serializable)
+                .withRange(UNBOUNDED)
+                .withLimit(options.scanLength)
+                .build();
+    }
+
+    /**
+     * Record keys are spread over the key space by hashing their number, so that the inserts do not all go to the
+     * end of the table.
+     */
+    static ByteSequence key(long record) {
+        return ByteSequence.fromUtf8String("user" + Long.toUnsignedString(KeyChooser.fnv(record)));
+    }
+
+    ByteSequence value() {
+        var bytes = new byte[valueSize];
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes.length; i++) {
+            // printable, compressible like most real values
+            bytes[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return ByteSequence.from(bytes);
+    }
+
+    Operation nextOperation() {
+        var draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < thresholds[0]) {
+            return Operation.READ;
+        } else if (draw < thresholds[1]) {
+            return Operation.WRITE;
+        } else if (draw < thresholds[2]) {
+            return Operation.SCAN;
+        }
+        return Operation.TXN;
+    }
+
+    void insert(long record) {
+        kv.put(table, key(record), value());
+    }
+
+    void execute(Operation operation) {
+        var key = key(keys.next());
+        switch (operation) {
+            case READ -> kv.get(table, key, read);
+            case WRITE -> kv.put(table, key, value());
+            case SCAN -> kv.get(table, key, scan);
+            case TXN -> readModifyWrite(key);
+        }
+    }
+
+    /**
+     * Reads the record and writes it back changed unless it was changed meanwhile, a lost race is not an error.
+     */
+    private void readModifyWrite(ByteSequence key) {
+        var current = kv.get(table, key).kvs();
+        var txn = kv.txn(table);
+        if (!current.isEmpty()) {
+            txn.If(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.value(current.get(0).value())));
+        }
+        txn.Then(Op.put(key, value(), PutOption.DEFAULT)).commit();
+    }
+
+    long records() {
+        return records;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.loadgen;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class LoadGenOptionsTest {
+
+	@Test
+	void parsesOptions() {
+		var options = LoadGenOptions.parse("--target=dns:///regatta:8443", "--records=1000", "--read=0.5", "--scan=0.5",
+				"--distribution=Uniform", "--rate=2500", "--duration=250ms", "--warmup=0");
+
+		assertThat(options.isInMemory()).isFalse();
+		assertThat(options.records).isEqualTo(1000);
+		assertThat(options.read).isEqualTo(0.5);
+		assertThat(options.write).isEqualTo(0.05);
+		assertThat(options.scan).isEqualTo(0.5);
+		assertThat(options.distribution).isEqualTo("uniform");
+		assertThat(options.rate).isEqualTo(2500);
+		assertThat(options.duration).isEqualTo(Duration.ofMillis(250));
+		assertThat(options.warmup).isZero();
+	}
+
+	@Test
+	void parsesDurations() {
+		assertThat(LoadGenOptions.duration("500us")).isEqualTo(Duration.ofNanos(500_000));
+		assertThat(LoadGenOptions.duration("30s")).isEqualTo(Duration.ofSeconds(30));
+		assertThat(LoadGenOptions.duration("5m")).isEqualTo(Duration.ofMinutes(5));
+		assertThat(LoadGenOptions.duration("7")).isEqualTo(Duration.ofSeconds(7));
+		assertThatThrownBy(() -> LoadGenOptions.duration("-1s")).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsInvalidOptions() {
+		assertThatThrownBy(() -> LoadGenOptions.parse("--records")).hasMessageContaining("--name=value");
+		assertThatThrownBy(() -> LoadGenOptions.parse("--unknown=1")).hasMessageContaining("unknown option");
+		assertThatThrownBy(() -> LoadGenOptions.parse("--distribution=latest")).hasMessageContaining("distribution");
+		assertThatThrownBy(() -> LoadGenOptions.parse("--read=0", "--write=0")).hasMessageContaining("proportion");
+	}
+
+	@Test
+	void zipfianKeysAreSkewedAndInRange() {
+		var records = 1000;
+		var chooser = LoadGenOptions.parse("--records=" + records).keyChooser();
+		var counts = new int[records];
+		for (int i = 0; i < 100_000; i++) {
+			var record = chooser.next();
+			assertThat(record).isBetween(0L, records - 1L);
+			counts[(int) record]++;
+		}
+
+		var hottest = Arrays.stream(counts).max().orElseThrow();
+		// the most popular of 1000 records gets about 13% of the draws with theta 0.99, 0.1% if uniform
+		assertThat(hottest).isGreaterThan(5_000);
+	}
+}
@@ -3,6 +3,7 @@ plugins {
 }
 
 val grpcVersion = "1.66.0"
+val protobufVersion = "3.25.4"
 val testContainersVersion = "1.20.1"
 val jupiterVersion = "5.10.3"
 val autoServiceVersion = "1.1.1"
@@ -12,6 +13,8 @@ group = "com.jamf.regatta"
 version = "1.4.1-SNAPSHOT"
 
 dependencies {
+    api(project(":regatta-java-grpc"))
+    api("com.google.protobuf:protobuf-java:${protobufVersion}")
     api("io.grpc:grpc-core:${grpcVersion}")
     api("io.grpc:grpc-stub:${grpcVersion}")
     api("io.grpc:grpc-inprocess:${grpcVersion}")
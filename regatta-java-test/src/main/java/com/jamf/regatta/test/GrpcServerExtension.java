@@ -4,6 +4,8 @@
 
 package com.jamf.regatta.test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -12,6 +14,11 @@ import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
 import io.grpc.BindableService;
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import io.grpc.CompressorRegistry;
+import io.grpc.Decompressor;
+import io.grpc.DecompressorRegistry;
 import io.grpc.ManagedChannel;
 import io.grpc.Server;
 import io.grpc.ServerServiceDefinition;
@@ -27,6 +34,8 @@ public class GrpcServerExtension implements BeforeEachCallback, AfterEachCallbac
     private String serverName;
     private MutableHandlerRegistry serviceRegistry;
     private boolean useDirectExecutor;
+    private final List<Compressor> compressors = new ArrayList<>();
+    private final List<Decompressor> decompressors = new ArrayList<>();
 
     /**
      * Returns {@code this} configured to use a direct executor for the {@link ManagedChannel} and
@@ -40,6 +49,21 @@ public class GrpcServerExtension implements BeforeEachCallback, AfterEachCallbac
         return this;
     }
 
+    /**
+     * Returns {@code this} configured to register the codec with the {@link ManagedChannel} and the {@link Server},
+     * so that requests and responses can be compressed with it. This can only be called at the rule instantiation.
+     *
+     * @param codec the codec to register
+     * @param <C>   type of the codec
+     * @return a {@link GrpcServerExtension}
+     */
+    public final <C extends Compressor & Decompressor> GrpcServerExtension codec(C codec) {
+        checkState(serverName == null, "codec() can only be called at the rule instantiation");
+        compressors.add(codec);
+        decompressors.add(codec);
+        return this;
+    }
+
     /**
      * Returns a {@link ManagedChannel} connected to this service.
      *
@@ -119,6 +143,11 @@ public class GrpcServerExtension implements BeforeEachCallback, AfterEachCallbac
             serverBuilder.directExecutor();
         }
 
+        if (!compressors.isEmpty()) {
+            serverBuilder.compressorRegistry(compressorRegistry());
+            serverBuilder.decompressorRegistry(decompressorRegistry());
+        }
+
         server = serverBuilder.build().start();
 
         InProcessChannelBuilder channelBuilder = InProcessChannelBuilder.forName(serverName);
@@ -127,6 +156,26 @@ public class GrpcServerExtension implements BeforeEachCallback, AfterEachCallbac
             channelBuilder.directExecutor();
         }
 
+        if (!compressors.isEmpty()) {
+            channelBuilder.compressorRegistry(compressorRegistry());
+            channelBuilder.decompressorRegistry(decompressorRegistry());
+        }
+
         channel = channelBuilder.build();
     }
+
+    private CompressorRegistry compressorRegistry() {
+        CompressorRegistry compressorRegistry = CompressorRegistry.newEmptyInstance();
+        compressorRegistry.register(Codec.Identity.NONE);
+        compressors.forEach(compressorRegistry::register);
+        return compressorRegistry;
+    }
+
+    private DecompressorRegistry decompressorRegistry() {
+        DecompressorRegistry decompressorRegistry = DecompressorRegistry.getDefaultInstance();
+        for (Decompressor decompressor : decompressors) {
+            decompressorRegistry = decompressorRegistry.with(decompressor, true);
+        }
+        return decompressorRegistry;
+    }
 }
@@ -141,7 +141,8 @@ public class RegattaClusterNameResolver extends NameResolver {
 
         @Override
         protected int priority() {
-            return 6;
+            // below the DNS resolver, so that the targets without a scheme are not resolved as clusters
+            return 4;
         }
 
         @Override
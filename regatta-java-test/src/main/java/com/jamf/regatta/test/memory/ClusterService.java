@@ -0,0 +1,75 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import com.jamf.regatta.proto.ClusterGrpc;
+import com.jamf.regatta.proto.Member;
+import com.jamf.regatta.proto.MemberListRequest;
+import com.jamf.regatta.proto.MemberListResponse;
+import com.jamf.regatta.proto.StatusRequest;
+import com.jamf.regatta.proto.StatusResponse;
+import com.jamf.regatta.proto.TableStatus;
+
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Cluster service of one member.
+ */
+final class ClusterService extends ClusterGrpc.ClusterImplBase {
+
+    static final String VERSION = "in-memory";
+
+    private final InMemoryMember member;
+
+    ClusterService(InMemoryMember member) {
+        this.member = member;
+    }
+
+    @Override
+    public void memberList(MemberListRequest request, StreamObserver<MemberListResponse> responseObserver) {
+        member.unary(responseObserver, false, () -> {
+            var cluster = member.cluster();
+            var response = MemberListResponse.newBuilder().setCluster(cluster.name());
+            for (var next : cluster.members()) {
+                // an opaque URL, the clients learn the addresses of in-process members from the responses
+                var url = "inprocess:" + next.serverName();
+                response.addMembers(Member.newBuilder()
+                        .setId(String.valueOf(next.id()))
+                        .setName(next.serverName())
+                        .addPeerURLs(url)
+                        .addClientURLs(url));
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public void status(StatusRequest request, StreamObserver<StatusResponse> responseObserver) {
+        member.unary(responseObserver, false, () -> {
+            var cluster = member.cluster();
+            var response = StatusResponse.newBuilder()
+                    .setId(String.valueOf(member.id()))
+                    .setVersion(VERSION)
+                    .setInfo(cluster.name());
+            for (var table : cluster.tables()) {
+                var replica = table.replica(member.id());
+                response.putTables(table.name(), TableStatus.newBuilder()
+                        .setLeader(String.valueOf(cluster.leader()))
+                        .setRaftTerm(cluster.term())
+                        .setRaftIndex(table.lastIndex())
+                        .setRaftAppliedIndex(replica.appliedIndex())
+                        .setDbSize(replica.bytes())
+                        .build());
+            }
+            if (request.getConfig()) {
+                response.setConfig(Struct.newBuilder()
+                        .putFields("members", Value.newBuilder().setNumberValue(cluster.members().size()).build()));
+            }
+            return response.build();
+        });
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.Struct;
+
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import io.grpc.CompressorRegistry;
+import io.grpc.Decompressor;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+/**
+ * Regatta cluster kept in memory, with the {@code KV}, {@code Cluster}, {@code Tables}, {@code Maintenance} and
+ * {@code Log} services of every member served by an in-process server. The tables are sorted maps with the
+ * range, limit, txn and revision semantics of Regatta, written through a log the followers apply after their
+ * replication lag. The latency and the errors of every member can be configured, and the leader can be changed
+ * at any time, to test the routing, hedging and retries of the client without a real cluster.
+ * <p>
+ * The channels built by {@link #channelBuilder()} balance the calls over all members. The members can be reached
+ * one by one by their {@link InMemoryMember#address()} as well.
+ */
+public final class InMemoryCluster implements AutoCloseable {
+
+    public static final String SCHEME = "inmemory";
+
+    private static final Map<String, InMemoryCluster> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final List<InMemoryMember> members = new ArrayList<>();
+    private final Map<String, MemoryTable> tables = new ConcurrentHashMap<>();
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final AtomicLong tableIds = new AtomicLong(10000);
+    private final AtomicLong term = new AtomicLong(1);
+    private final List<Compressor> compressors;
+    private final List<Decompressor> decompressors;
+    private final int logRetention;
+    private final Duration leaderChangeInterval;
+    private final ScheduledExecutorService scheduler;
+    private volatile long leader = 1;
+
+    private InMemoryCluster(Builder builder) {
+        this.name = builder.name;
+        this.compressors = List.copyOf(builder.compressors);
+        this.decompressors = List.copyOf(builder.decompressors);
+        this.logRetention = builder.logRetention;
+        this.leaderChangeInterval = builder.leaderChangeInterval;
+        var executor = new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+        for (long id = 1; id <= builder.members; id++) {
+            members.add(new InMemoryMember(id, name + "-" + id, this, builder.latency, builder.replicationLag));
+        }
+        builder.tables.forEach(table -> createTable(table, Struct.getDefaultInstance()));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the started cluster of the given name.
+     *
+     * @param name name of the cluster
+     * @return the cluster or null when no such cluster is running
+     */
+    public static InMemoryCluster cluster(String name) {
+        return CLUSTERS.get(name);
+    }
+
+    /**
+     * Starts the servers of all members.
+     *
+     * @return this cluster
+     */
+    public synchronized InMemoryCluster start() {
+        Preconditions.checkState(CLUSTERS.putIfAbsent(name, this) == null, "cluster %s is already running", name);
+        try {
+            for (var member : members) {
+                var serverBuilder = InProcessServerBuilder.forName(member.serverName())
+                        .addService(new KVService(member))
+                        .addService(new ClusterService(member))
+                        .addService(new TablesService(member))
+                        .addService(new MaintenanceService(member))
+                        .addService(new LogService(member));
+                if (!compressors.isEmpty()) {
+                    serverBuilder.compressorRegistry(compressorRegistry());
+                    serverBuilder.decompressorRegistry(decompressorRegistry());
+                }
+                member.server = serverBuilder.build().start();
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+        if (!leaderChangeInterval.isZero()) {
+            var millis = leaderChangeInterval.toMillis();
+            scheduler.scheduleAtFixedRate(this::changeLeader, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Shuts down the channels built by this cluster and the servers of all members.
+     */
+    @Override
+    public synchronized void close() {
+        CLUSTERS.remove(name, this);
+        channels.forEach(ManagedChannel::shutdownNow);
+        channels.clear();
+        members.stream().map(member -> member.server).filter(server -> server != null).forEach(Server::shutdownNow);
+        scheduler.shutdownNow();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the target resolving to the addresses of all members.
+     *
+     * @return the target
+     */
+    public String target() {
+        return SCHEME + "://" + name;
+    }
+
+    public List<InMemoryMember> members() {
+        return List.copyOf(members);
+    }
+
+    public InMemoryMember member(long id) {
+        Preconditions.checkArgument(id >= 1 && id <= members.size(), "no member %s", id);
+        return members.get((int) id - 1);
+    }
+
+    /**
+     * Returns the ID of the leader.
+     *
+     * @return leader ID
+     */
+    public long leader() {
+        return leader;
+    }
+
+    /**
+     * Returns the raft term, it is incremented on every change of the leader.
+     *
+     * @return raft term
+     */
+    public long term() {
+        return term.get();
+    }
+
+    /**
+     * Makes the given member the leader. The new leader applies all the writes before it serves the next call.
+     *
+     * @param id ID of the new leader
+     */
+    public synchronized void transferLeadership(long id) {
+        member(id);
+        if (leader != id) {
+            term.incrementAndGet();
+            leader = id;
+        }
+    }
+
+    /**
+     * Makes the member following the leader the new leader.
+     *
+     * @return ID of the new leader
+     */
+    public synchronized long changeLeader() {
+        transferLeadership(leader % members.size() + 1);
+        return leader;
+    }
+
+    /**
+     * Returns a channel builder for the target of this cluster, balancing the calls round-robin over all members and
+     * with the codecs of the cluster registered. The channels built are shut down together with the cluster.
+     *
+     * @return the channel builder
+     */
+    public InProcessChannelBuilder channelBuilder() {
+        var channelBuilder = InProcessChannelBuilder.forTarget(target()).defaultLoadBalancingPolicy("round_robin");
+        if (!compressors.isEmpty()) {
+            channelBuilder.compressorRegistry(compressorRegistry());
+            channelBuilder.decompressorRegistry(decompressorRegistry());
+        }
+        return channelBuilder;
+    }
+
+    /**
+     * Builds a channel with {@link #channelBuilder()}.
+     *
+     * @return the channel
+     */
+    public synchronized ManagedChannel newChannel() {
+        var channel = channelBuilder().build();
+        channels.add(channel);
+        return channel;
+    }
+
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    List<MemoryTable> tables() {
+        return tables.values().stream().sorted(Comparator.comparing(MemoryTable::name)).toList();
+    }
+
+    MemoryTable table(String table) {
+        var found = tables.get(table);
+        if (found == null) {
+            throw Status.NOT_FOUND.withDescription("table not found").asRuntimeException();
+        }
+        return found;
+    }
+
+    MemoryTable tableOrCreate(String table) {
+        return tables.computeIfAbsent(table, ignored -> newTable(table, Struct.getDefaultInstance()));
+    }
+
+    MemoryTable createTable(String table, Struct config) {
+        var created = newTable(table, config);
+        if (tables.putIfAbsent(table, created) != null) {
+            throw Status.ALREADY_EXISTS.withDescription("table already exists").asRuntimeException();
+        }
+        return created;
+    }
+
+    void deleteTable(String table) {
+        if (tables.remove(table) == null) {
+            throw Status.NOT_FOUND.withDescription("table not found").asRuntimeException();
+        }
+    }
+
+    private MemoryTable newTable(String table, Struct config) {
+        var ids = members.stream().map(InMemoryMember::id).toList();
+        return new MemoryTable(tableIds.incrementAndGet(), table, config, ids, logRetention);
+    }
+
+    private CompressorRegistry compressorRegistry() {
+        var compressorRegistry = CompressorRegistry.newEmptyInstance();
+        compressorRegistry.register(Codec.Identity.NONE);
+        compressors.forEach(compressorRegistry::register);
+        return compressorRegistry;
+    }
+
+    private DecompressorRegistry decompressorRegistry() {
+        var decompressorRegistry = DecompressorRegistry.getDefaultInstance();
+        for (var decompressor : decompressors) {
+            decompressorRegistry = decompressorRegistry.with(decompressor, true);
+        }
+        return decompressorRegistry;
+    }
+
+    public static final class Builder {
+        private String name = "in-memory-" + UUID.randomUUID();
+        private int members = 3;
+        private final List<String> tables = new ArrayList<>();
+        private LatencyDistribution latency = LatencyDistribution.NONE;
+        private Duration replicationLag = Duration.ZERO;
+        private Duration leaderChangeInterval = Duration.ZERO;
+        private int logRetention = 10_000;
+        private final List<Compressor> compressors = new ArrayList<>();
+        private final List<Decompressor> decompressors = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder withName(String name) {
+            Preconditions.checkArgument(name != null && !name.isEmpty(), "name can't be null or empty");
+            this.name = name;
+            return this;
+        }
+
+        public Builder withMembers(int members) {
+            Preconditions.checkArgument(members > 0, "members must be positive");
+            this.members = members;
+            return this;
+        }
+
+        /**
+         * Creates the tables when the cluster is built.
+         *
+         * @param tables names of the tables
+         * @return this builder
+         */
+        public Builder withTables(String... tables) {
+            this.tables.addAll(List.of(tables));
+            return this;
+        }
+
+        /**
+         * Sets the initial latency distribution of all members, see {@link InMemoryMember#latency}.
+         *
+         * @param latency latency distribution
+         * @return this builder
+         */
+        public Builder withLatency(LatencyDistribution latency) {
+            Preconditions.checkArgument(latency != null, "latency can't be null");
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Sets the initial replication lag of all members, see {@link InMemoryMember#replicationLag}.
+         *
+         * @param replicationLag replication lag
+         * @return this builder
+         */
+        public Builder withReplicationLag(Duration replicationLag) {
+            Preconditions.checkArgument(replicationLag != null && !replicationLag.isNegative(), "replicationLag can't be negative");
+            this.replicationLag = replicationLag;
+            return this;
+        }
+
+        /**
+         * Changes the leader periodically while the cluster is running, zero keeps the first member the leader.
+         *
+         * @param leaderChangeInterval interval of the leader changes
+         * @return this builder
+         */
+        public Builder withLeaderChangeInterval(Duration leaderChangeInterval) {
+            Preconditions.checkArgument(leaderChangeInterval != null && !leaderChangeInterval.isNegative(), "leaderChangeInterval can't be negative");
+            this.leaderChangeInterval = leaderChangeInterval;
+            return this;
+        }
+
+        /**
+         * Sets the number of commands kept in the log of each table. The followers lagging behind the retained log
+         * catch up when it is compacted, and replication from a compacted index fails with {@code USE_SNAPSHOT}.
+         *
+         * @param logRetention number of commands
+         * @return this builder
+         */
+        public Builder withLogRetention(int logRetention) {
+            Preconditions.checkArgument(logRetention > 0, "logRetention must be positive");
+            this.logRetention = logRetention;
+            return this;
+        }
+
+        /**
+         * Registers the codec with the servers and the channels of the cluster.
+         *
+         * @param codec the codec to register
+         * @param <C>   type of the codec
+         * @return this builder
+         */
+        public <C extends Compressor & Decompressor> Builder withCodec(C codec) {
+            compressors.add(codec);
+            decompressors.add(codec);
+            return this;
+        }
+
+        public InMemoryCluster build() {
+            return new InMemoryCluster(this);
+        }
+    }
+}
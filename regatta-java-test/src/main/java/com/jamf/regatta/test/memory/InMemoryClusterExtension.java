@@ -0,0 +1,42 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JUnit5 Extension starting a fresh {@link InMemoryCluster} before each test.
+ */
+public class InMemoryClusterExtension implements BeforeEachCallback, AfterEachCallback {
+
+    private final InMemoryCluster.Builder builder;
+    private InMemoryCluster cluster;
+
+    public InMemoryClusterExtension(InMemoryCluster.Builder builder) {
+        this.builder = builder;
+    }
+
+    public InMemoryCluster cluster() {
+        return cluster;
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        cluster = builder.withName("in-memory-" + UUID.randomUUID()).build().start();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        try {
+            cluster.close();
+        } finally {
+            cluster = null;
+        }
+    }
+}
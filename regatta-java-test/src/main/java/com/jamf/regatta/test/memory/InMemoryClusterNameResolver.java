@@ -0,0 +1,81 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.auto.service.AutoService;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessSocketAddress;
+
+/**
+ * Resolves the {@link InMemoryCluster#target()} of a running cluster to the in-process addresses of its members.
+ */
+public class InMemoryClusterNameResolver extends NameResolver {
+
+    private final String authority;
+
+    public InMemoryClusterNameResolver(URI targetUri) {
+        this.authority = targetUri.getAuthority();
+    }
+
+    @Override
+    public String getServiceAuthority() {
+        return authority;
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+        var cluster = InMemoryCluster.cluster(authority);
+        if (cluster == null) {
+            listener.onError(Status.UNAVAILABLE.withDescription("Unable to find cluster " + authority));
+            return;
+        }
+        var groups = cluster.members().stream().map(member -> new EquivalentAddressGroup(member.address())).toList();
+        listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @AutoService(NameResolverProvider.class)
+    public static class InMemoryClusterResolverProvider extends NameResolverProvider {
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected int priority() {
+            // below the DNS resolver, so that the targets without a scheme are not resolved as in-memory clusters
+            return 4;
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return InMemoryCluster.SCHEME;
+        }
+
+        @Override
+        public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+            return InMemoryCluster.SCHEME.equals(targetUri.getScheme())
+                    ? new InMemoryClusterNameResolver(targetUri)
+                    : null;
+        }
+
+        @Override
+        public Collection<Class<? extends SocketAddress>> getProducedSocketAddressTypes() {
+            return List.of(InProcessSocketAddress.class);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.common.base.Preconditions;
+import com.jamf.regatta.proto.ResponseHeader;
+
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessSocketAddress;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Member of an {@link InMemoryCluster} served by its own in-process server. The latency, the injected errors and the
+ * replication lag of the member can be changed while the cluster is running.
+ */
+public final class InMemoryMember {
+
+    private final long id;
+    private final String serverName;
+    private final InMemoryCluster cluster;
+    private final AtomicLong calls = new AtomicLong();
+    private volatile LatencyDistribution latency;
+    private volatile double errorRate;
+    private volatile Status.Code errorCode = Status.Code.UNAVAILABLE;
+    private volatile long replicationLagNanos;
+    Server server;
+
+    InMemoryMember(long id, String serverName, InMemoryCluster cluster, LatencyDistribution latency, Duration replicationLag) {
+        this.id = id;
+        this.serverName = serverName;
+        this.cluster = cluster;
+        this.latency = latency;
+        this.replicationLagNanos = replicationLag.toNanos();
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /**
+     * Returns the name of the in-process server of this member.
+     *
+     * @return the server name
+     */
+    public String serverName() {
+        return serverName;
+    }
+
+    public InProcessSocketAddress address() {
+        return new InProcessSocketAddress(serverName);
+    }
+
+    public boolean isLeader() {
+        return cluster.leader() == id;
+    }
+
+    /**
+     * Returns the number of calls this member received.
+     *
+     * @return number of calls
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    /**
+     * Sets the distribution of the time this member takes to answer a call. The writes and linearizable reads served
+     * by a follower take the latency of the leader on top, as they are forwarded to it.
+     *
+     * @param latency latency distribution
+     * @return this member
+     */
+    public InMemoryMember latency(LatencyDistribution latency) {
+        Preconditions.checkArgument(latency != null, "latency can't be null");
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of calls with the status code, once their latency elapsed.
+     *
+     * @param rate fraction of the calls to fail, from 0 to 1
+     * @param code status code of the failed calls
+     * @return this member
+     */
+    public InMemoryMember errors(double rate, Status.Code code) {
+        Preconditions.checkArgument(rate >= 0 && rate <= 1, "rate must be between 0 and 1");
+        Preconditions.checkArgument(code != null && code != Status.Code.OK, "code must be an error");
+        this.errorCode = code;
+        this.errorRate = rate;
+        return this;
+    }
+
+    /**
+     * Sets how long the writes take to be applied by this member while it follows. The serializable reads it serves
+     * do not see the more recent writes, the leader is never behind.
+     *
+     * @param lag replication lag
+     * @return this member
+     */
+    public InMemoryMember replicationLag(Duration lag) {
+        Preconditions.checkArgument(lag != null && !lag.isNegative(), "lag can't be negative");
+        this.replicationLagNanos = lag.toNanos();
+        return this;
+    }
+
+    InMemoryCluster cluster() {
+        return cluster;
+    }
+
+    /**
+     * Time the writes visible to a read served by this member were appended before.
+     */
+    long visibleBefore(boolean linearizable) {
+        if (linearizable || isLeader()) {
+            return MemoryTable.ALL;
+        }
+        return System.nanoTime() - replicationLagNanos;
+    }
+
+    ResponseHeader header(MemoryTable table, long revision) {
+        return ResponseHeader.newBuilder()
+                .setShardId(table.id())
+                .setReplicaId(id)
+                .setRevision(revision)
+                .setRaftTerm(cluster.term())
+                .setRaftLeaderId(cluster.leader())
+                .build();
+    }
+
+    /**
+     * Answers the call once its latency elapsed, failing it when an error is injected. Calls forwarded to the leader
+     * take the latency of both members.
+     */
+    void call(StreamObserver<?> observer, boolean forwarded, Runnable call) {
+        calls.incrementAndGet();
+        var delay = latency.sampleNanos();
+        if (forwarded && !isLeader()) {
+            delay += cluster.member(cluster.leader()).latency.sampleNanos();
+        }
+        Runnable answer = () -> {
+            try {
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    throw Status.fromCode(errorCode).withDescription("injected by member " + id).asRuntimeException();
+                }
+                call.run();
+            } catch (StatusRuntimeException e) {
+                observer.onError(e);
+            } catch (RuntimeException e) {
+                observer.onError(Status.INTERNAL.withCause(e).withDescription(e.getMessage()).asRuntimeException());
+            }
+        };
+        if (delay > 0) {
+            cluster.scheduler().schedule(answer, delay, TimeUnit.NANOSECONDS);
+        } else {
+            answer.run();
+        }
+    }
+
+    <T> void unary(StreamObserver<T> observer, boolean forwarded, Supplier<T> response) {
+        call(observer, forwarded, () -> {
+            var value = response.get();
+            observer.onNext(value);
+            observer.onCompleted();
+        });
+    }
+}
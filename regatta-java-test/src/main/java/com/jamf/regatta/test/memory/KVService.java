@@ -0,0 +1,185 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.util.ArrayList;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.Command;
+import com.jamf.regatta.proto.DeleteRangeRequest;
+import com.jamf.regatta.proto.DeleteRangeResponse;
+import com.jamf.regatta.proto.KVGrpc;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.PutRequest;
+import com.jamf.regatta.proto.PutResponse;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RangeResponse;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.Txn;
+import com.jamf.regatta.proto.TxnRequest;
+import com.jamf.regatta.proto.TxnResponse;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * KV service of one member. Writes and linearizable reads are served by the leader, serializable reads by the copy
+ * of the member.
+ */
+final class KVService extends KVGrpc.KVImplBase {
+
+    static final int ITERATE_CHUNK = 1000;
+
+    private final InMemoryMember member;
+
+    KVService(InMemoryMember member) {
+        this.member = member;
+    }
+
+    @Override
+    public void range(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+        member.unary(responseObserver, request.getLinearizable(), () -> {
+            var table = table(request.getTable());
+            checkKey(request.getKey());
+            return table.read(member.id(), member.visibleBefore(request.getLinearizable()), replica -> {
+                var range = replica.range(request);
+                return RangeResponse.newBuilder()
+                        .setHeader(member.header(table, replica.revision()))
+                        .addAllKvs(range.getKvsList())
+                        .setMore(range.getMore())
+                        .setCount(range.getCount())
+                        .build();
+            });
+        });
+    }
+
+    @Override
+    public void iterateRange(RangeRequest request, StreamObserver<RangeResponse> responseObserver) {
+        member.call(responseObserver, request.getLinearizable(), () -> {
+            var table = table(request.getTable());
+            checkKey(request.getKey());
+            var chunks = table.read(member.id(), member.visibleBefore(request.getLinearizable()), replica -> {
+                var range = replica.range(request);
+                var header = member.header(table, replica.revision());
+                var responses = new ArrayList<RangeResponse>();
+                var kvs = range.getKvsList();
+                for (int from = 0; from == 0 || from < kvs.size(); from += ITERATE_CHUNK) {
+                    var to = Math.min(from + ITERATE_CHUNK, kvs.size());
+                    responses.add(RangeResponse.newBuilder()
+                            .setHeader(header)
+                            .addAllKvs(kvs.subList(from, to))
+                            .setCount(request.getCountOnly() ? range.getCount() : to - from)
+                            .setMore(to < kvs.size() || range.getMore())
+                            .build());
+                }
+                return responses;
+            });
+            chunks.forEach(responseObserver::onNext);
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+        member.unary(responseObserver, true, () -> {
+            var table = table(request.getTable());
+            checkKey(request.getKey());
+            var result = table.write(member.cluster().leader(), Command.newBuilder()
+                    .setTable(request.getTable())
+                    .setType(Command.CommandType.PUT)
+                    .setKv(KeyValue.newBuilder().setKey(request.getKey()).setValue(request.getValue()))
+                    .setPrevKvs(request.getPrevKv())
+                    .build());
+            var response = PutResponse.newBuilder().setHeader(member.header(table, result.revision()));
+            var put = result.responses().get(0).getResponsePut();
+            if (put.hasPrevKv()) {
+                response.setPrevKv(put.getPrevKv());
+            }
+            return response.build();
+        });
+    }
+
+    @Override
+    public void deleteRange(DeleteRangeRequest request, StreamObserver<DeleteRangeResponse> responseObserver) {
+        member.unary(responseObserver, true, () -> {
+            var table = table(request.getTable());
+            checkKey(request.getKey());
+            var command = Command.newBuilder()
+                    .setTable(request.getTable())
+                    .setType(Command.CommandType.DELETE)
+                    .setKv(KeyValue.newBuilder().setKey(request.getKey()))
+                    .setPrevKvs(request.getPrevKv())
+                    .setCount(request.getCount());
+            if (!request.getRangeEnd().isEmpty()) {
+                command.setRangeEnd(request.getRangeEnd());
+            }
+            var result = table.write(member.cluster().leader(), command.build());
+            var delete = result.responses().get(0).getResponseDeleteRange();
+            return DeleteRangeResponse.newBuilder()
+                    .setHeader(member.header(table, result.revision()))
+                    .setDeleted(delete.getDeleted())
+                    .addAllPrevKvs(delete.getPrevKvsList())
+                    .build();
+        });
+    }
+
+    @Override
+    public void txn(TxnRequest request, StreamObserver<TxnResponse> responseObserver) {
+        member.unary(responseObserver, true, () -> {
+            var table = table(request.getTable());
+            request.getCompareList().forEach(compare -> checkKey(compare.getKey()));
+            request.getSuccessList().forEach(KVService::checkOp);
+            request.getFailureList().forEach(KVService::checkOp);
+            if (isReadOnly(request)) {
+                // served by the leader without going through the log, the revision does not change
+                return table.read(member.cluster().leader(), MemoryTable.ALL, replica -> {
+                    var succeeded = replica.compare(request.getCompareList());
+                    var response = TxnResponse.newBuilder()
+                            .setHeader(member.header(table, replica.revision()))
+                            .setSucceeded(succeeded);
+                    (succeeded ? request.getSuccessList() : request.getFailureList()).forEach(op -> response.addResponses(replica.apply(op)));
+                    return response.build();
+                });
+            }
+            var result = table.write(member.cluster().leader(), Command.newBuilder()
+                    .setTable(request.getTable())
+                    .setType(Command.CommandType.TXN)
+                    .setTxn(Txn.newBuilder()
+                            .addAllCompare(request.getCompareList())
+                            .addAllSuccess(request.getSuccessList())
+                            .addAllFailure(request.getFailureList()))
+                    .build());
+            return TxnResponse.newBuilder()
+                    .setHeader(member.header(table, result.revision()))
+                    .setSucceeded(result.succeeded())
+                    .addAllResponses(result.responses())
+                    .build();
+        });
+    }
+
+    private MemoryTable table(ByteString name) {
+        return member.cluster().table(name.toStringUtf8());
+    }
+
+    private static boolean isReadOnly(TxnRequest request) {
+        return request.getSuccessList().stream().allMatch(RequestOp::hasRequestRange)
+                && request.getFailureList().stream().allMatch(RequestOp::hasRequestRange);
+    }
+
+    private static void checkOp(RequestOp op) {
+        switch (op.getRequestCase()) {
+            case REQUEST_RANGE -> checkKey(op.getRequestRange().getKey());
+            case REQUEST_PUT -> checkKey(op.getRequestPut().getKey());
+            case REQUEST_DELETE_RANGE -> checkKey(op.getRequestDeleteRange().getKey());
+            case REQUEST_NOT_SET -> throw Status.INVALID_ARGUMENT.withDescription("request op not set").asRuntimeException();
+        }
+    }
+
+    private static void checkKey(ByteString key) {
+        if (key.isEmpty()) {
+            throw Status.INVALID_ARGUMENT.withDescription("key must not be empty").asRuntimeException();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Distribution of the time a member of an {@link InMemoryCluster} takes to answer a call.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = () -> 0;
+
+    /**
+     * Samples the latency of one call.
+     *
+     * @return latency in nanoseconds, zero or positive
+     */
+    long sampleNanos();
+
+    /**
+     * Every call takes the same time.
+     *
+     * @param latency latency of every call
+     * @return the distribution
+     */
+    static LatencyDistribution fixed(Duration latency) {
+        Preconditions.checkArgument(!latency.isNegative(), "latency can't be negative");
+        var nanos = latency.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * Latencies are spread evenly between min and max.
+     *
+     * @param min shortest latency
+     * @param max longest latency
+     * @return the distribution
+     */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        Preconditions.checkArgument(!min.isNegative(), "min can't be negative");
+        Preconditions.checkArgument(max.compareTo(min) >= 0, "max can't be shorter than min");
+        var from = min.toNanos();
+        var to = max.toNanos();
+        return () -> from == to ? from : ThreadLocalRandom.current().nextLong(from, to + 1);
+    }
+
+    /**
+     * Latencies are exponentially distributed around the mean, most calls are fast with a few slow ones.
+     *
+     * @param mean mean latency
+     * @return the distribution
+     */
+    static LatencyDistribution exponential(Duration mean) {
+        Preconditions.checkArgument(!mean.isNegative(), "mean can't be negative");
+        var nanos = (double) mean.toNanos();
+        return () -> (long) (-nanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Latencies are log-normally distributed, the usual shape of service latencies with a long tail.
+     *
+     * @param median median latency
+     * @param sigma  standard deviation of the logarithm of the latency, the larger the longer the tail
+     * @return the distribution
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        Preconditions.checkArgument(!median.isNegative(), "median can't be negative");
+        Preconditions.checkArgument(sigma >= 0, "sigma can't be negative");
+        var nanos = (double) median.toNanos();
+        return () -> (long) (nanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * Adds a spike to some of the calls, such as a garbage collection pause or a slow disk.
+     *
+     * @param probability probability of a call to be slowed down
+     * @param spike       time added to the slowed down calls
+     * @return the distribution
+     */
+    default LatencyDistribution withSpikes(double probability, Duration spike) {
+        Preconditions.checkArgument(probability >= 0 && probability <= 1, "probability must be between 0 and 1");
+        Preconditions.checkArgument(!spike.isNegative(), "spike can't be negative");
+        var nanos = spike.toNanos();
+        return () -> {
+            var latency = sampleNanos();
+            return ThreadLocalRandom.current().nextDouble() < probability ? latency + nanos : latency;
+        };
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import com.jamf.regatta.proto.LogGrpc;
+import com.jamf.regatta.proto.ReplicateCommandsResponse;
+import com.jamf.regatta.proto.ReplicateErrResponse;
+import com.jamf.regatta.proto.ReplicateError;
+import com.jamf.regatta.proto.ReplicateRequest;
+import com.jamf.regatta.proto.ReplicateResponse;
+
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Log service of one member, streams the commands of a table following the index the caller applied last.
+ */
+final class LogService extends LogGrpc.LogImplBase {
+
+    static final int REPLICATE_CHUNK = 1000;
+
+    private final InMemoryMember member;
+
+    LogService(InMemoryMember member) {
+        this.member = member;
+    }
+
+    @Override
+    public void replicate(ReplicateRequest request, StreamObserver<ReplicateResponse> responseObserver) {
+        member.call(responseObserver, true, () -> {
+            var table = member.cluster().table(request.getTable().toStringUtf8());
+            var lastIndex = table.lastIndex();
+            var commands = table.commandsAfter(request.getLeaderIndex());
+            if (commands == null || request.getLeaderIndex() > lastIndex) {
+                var error = commands == null ? ReplicateError.USE_SNAPSHOT : ReplicateError.LEADER_BEHIND;
+                responseObserver.onNext(ReplicateResponse.newBuilder()
+                        .setErrorResponse(ReplicateErrResponse.newBuilder().setError(error))
+                        .setLeaderIndex(lastIndex)
+                        .build());
+                responseObserver.onCompleted();
+                return;
+            }
+            for (int from = 0; from < commands.size(); from += REPLICATE_CHUNK) {
+                responseObserver.onNext(ReplicateResponse.newBuilder()
+                        .setCommandsResponse(ReplicateCommandsResponse.newBuilder()
+                                .addAllCommands(commands.subList(from, Math.min(from + REPLICATE_CHUNK, commands.size()))))
+                        .setLeaderIndex(lastIndex)
+                        .build());
+            }
+            responseObserver.onCompleted();
+        });
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.BackupRequest;
+import com.jamf.regatta.proto.Command;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.MaintenanceGrpc;
+import com.jamf.regatta.proto.ResetRequest;
+import com.jamf.regatta.proto.ResetResponse;
+import com.jamf.regatta.proto.RestoreMessage;
+import com.jamf.regatta.proto.RestoreResponse;
+import com.jamf.regatta.proto.SnapshotChunk;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Maintenance service of one member. A backup is the length-delimited key-values of the table, it can be restored
+ * into an in-memory cluster only.
+ */
+final class MaintenanceService extends MaintenanceGrpc.MaintenanceImplBase {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final InMemoryMember member;
+
+    MaintenanceService(InMemoryMember member) {
+        this.member = member;
+    }
+
+    @Override
+    public void backup(BackupRequest request, StreamObserver<SnapshotChunk> responseObserver) {
+        member.call(responseObserver, true, () -> {
+            var table = member.cluster().table(request.getTable().toStringUtf8());
+            var kvs = table.read(member.cluster().leader(), MemoryTable.ALL, TableReplica::snapshot);
+            var data = ByteString.newOutput();
+            try {
+                for (var kv : kvs) {
+                    kv.writeDelimitedTo(data);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            var backup = data.toByteString();
+            long index = 0;
+            for (int from = 0; from == 0 || from < backup.size(); from += CHUNK_SIZE) {
+                var chunk = backup.substring(from, Math.min(from + CHUNK_SIZE, backup.size()));
+                responseObserver.onNext(SnapshotChunk.newBuilder().setData(chunk).setLen(chunk.size()).setIndex(index++).build());
+            }
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public StreamObserver<RestoreMessage> restore(StreamObserver<RestoreResponse> responseObserver) {
+        return new StreamObserver<>() {
+
+            private final ByteString.Output data = ByteString.newOutput();
+            private String table;
+
+            @Override
+            public void onNext(RestoreMessage message) {
+                if (message.hasInfo()) {
+                    table = message.getInfo().getTable().toStringUtf8();
+                } else {
+                    try {
+                        message.getChunk().getData().writeTo(data);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                member.unary(responseObserver, true, () -> {
+                    if (table == null) {
+                        throw Status.INVALID_ARGUMENT.withDescription("restore info must be sent first").asRuntimeException();
+                    }
+                    var batch = new ArrayList<KeyValue>();
+                    try {
+                        var input = data.toByteString().newInput();
+                        KeyValue kv;
+                        while ((kv = KeyValue.parseDelimitedFrom(input)) != null) {
+                            batch.add(kv);
+                        }
+                    } catch (IOException e) {
+                        throw Status.INVALID_ARGUMENT.withDescription("malformed backup").withCause(e).asRuntimeException();
+                    }
+                    var restored = member.cluster().tableOrCreate(table);
+                    // replaces the content of the table in a single command, the followers restore it from the log
+                    restored.write(member.cluster().leader(), Command.newBuilder()
+                            .setTable(ByteString.copyFromUtf8(table))
+                            .setType(Command.CommandType.SEQUENCE)
+                            .addSequence(Command.newBuilder()
+                                    .setType(Command.CommandType.DELETE)
+                                    .setKv(KeyValue.newBuilder().setKey(TableReplica.ZERO))
+                                    .setRangeEnd(TableReplica.ZERO))
+                            .addSequence(Command.newBuilder()
+                                    .setType(Command.CommandType.PUT_BATCH)
+                                    .addAllBatch(batch))
+                            .build());
+                    return RestoreResponse.getDefaultInstance();
+                });
+            }
+        };
+    }
+
+    @Override
+    public void reset(ResetRequest request, StreamObserver<ResetResponse> responseObserver) {
+        member.unary(responseObserver, false, () -> {
+            var cluster = member.cluster();
+            var tables = request.getResetAll() ? cluster.tables() : List.of(cluster.table(request.getTable().toStringUtf8()));
+            tables.forEach(table -> table.reset(member.id(), cluster.leader()));
+            return ResetResponse.getDefaultInstance();
+        });
+    }
+}
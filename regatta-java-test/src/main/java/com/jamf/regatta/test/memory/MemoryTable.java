@@ -0,0 +1,186 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import com.google.protobuf.Struct;
+import com.jamf.regatta.proto.Command;
+import com.jamf.regatta.proto.ReplicateCommand;
+import com.jamf.regatta.proto.TableInfo;
+
+/**
+ * Table of an {@link InMemoryCluster}, a log of the commands written to it and the copy of each member. The leader
+ * applies a command as it is appended, the followers apply the commands once they are older than their replication
+ * lag, lazily when they serve a read.
+ */
+final class MemoryTable {
+
+    static final long ALL = Long.MAX_VALUE;
+
+    private final long id;
+    private final String name;
+    private final Struct config;
+    private final int logRetention;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Entry> log = new ArrayList<>();
+    private final Map<Long, TableReplica> replicas = new HashMap<>();
+    private long firstIndex = 1;
+
+    MemoryTable(long id, String name, Struct config, Collection<Long> members, int logRetention) {
+        this.id = id;
+        this.name = name;
+        this.config = config;
+        this.logRetention = logRetention;
+        members.forEach(member -> replicas.put(member, new TableReplica()));
+    }
+
+    long id() {
+        return id;
+    }
+
+    String name() {
+        return name;
+    }
+
+    TableInfo info() {
+        return TableInfo.newBuilder().setId(String.valueOf(id)).setName(name).setConfig(config).build();
+    }
+
+    long lastIndex() {
+        lock.readLock().lock();
+        try {
+            return firstIndex + log.size() - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    TableReplica replica(long member) {
+        return replicas.get(member);
+    }
+
+    /**
+     * Appends the command to the log and applies it on the leader.
+     */
+    TableReplica.Applied write(long leader, Command command) {
+        lock.writeLock().lock();
+        try {
+            var replica = replica(leader);
+            catchUp(replica, ALL);
+            var index = firstIndex + log.size();
+            log.add(new Entry(index, System.nanoTime(), command));
+            var result = replica.apply(index, command);
+            if (log.size() >= 2 * logRetention) {
+                compact();
+            }
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the copy of the member once it applied the commands appended before the given time, all the commands
+     * with {@link #ALL}.
+     */
+    <T> T read(long member, long appendedBefore, Function<TableReplica, T> read) {
+        var replica = replica(member);
+        lock.readLock().lock();
+        try {
+            if (!isBehind(replica, appendedBefore)) {
+                return read.apply(replica);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            catchUp(replica, appendedBefore);
+            // downgrade, so that other readers do not wait for the read
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            return read.apply(replica);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the copy of the member with the up-to-date copy of the leader.
+     */
+    void reset(long member, long leader) {
+        lock.writeLock().lock();
+        try {
+            var replica = replica(leader);
+            catchUp(replica, ALL);
+            if (member != leader) {
+                replica(member).copyFrom(replica);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Commands following the given index, null when the index was already compacted away.
+     */
+    List<ReplicateCommand> commandsAfter(long index) {
+        lock.readLock().lock();
+        try {
+            if (index < firstIndex - 1) {
+                return null;
+            }
+            var commands = new ArrayList<ReplicateCommand>();
+            for (int i = (int) (index - firstIndex + 1); i < log.size(); i++) {
+                var entry = log.get(i);
+                commands.add(ReplicateCommand.newBuilder()
+                        .setLeaderIndex(entry.index())
+                        .setCommand(entry.command().toBuilder().setLeaderIndex(entry.index()))
+                        .build());
+            }
+            return commands;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isBehind(TableReplica replica, long appendedBefore) {
+        var next = (int) (replica.appliedIndex() - firstIndex + 1);
+        return next < log.size() && (appendedBefore == ALL || log.get(next).appendedAt() - appendedBefore <= 0);
+    }
+
+    private void catchUp(TableReplica replica, long appendedBefore) {
+        while (isBehind(replica, appendedBefore)) {
+            var entry = log.get((int) (replica.appliedIndex() - firstIndex + 1));
+            replica.apply(entry.index(), entry.command());
+        }
+    }
+
+    /**
+     * Drops the oldest half of the log. The members lagging behind it catch up first, so a very long lag is capped
+     * by the retention of the log.
+     */
+    private void compact() {
+        var dropped = log.get(log.size() - logRetention - 1);
+        for (var replica : replicas.values()) {
+            catchUp(replica, dropped.appendedAt());
+        }
+        log.subList(0, log.size() - logRetention).clear();
+        firstIndex = dropped.index() + 1;
+    }
+
+    private record Entry(long index, long appendedAt, Command command) {
+    }
+}
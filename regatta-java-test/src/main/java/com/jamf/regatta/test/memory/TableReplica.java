@@ -0,0 +1,231 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.google.protobuf.ByteString;
+import com.jamf.regatta.proto.Command;
+import com.jamf.regatta.proto.Compare;
+import com.jamf.regatta.proto.KeyValue;
+import com.jamf.regatta.proto.RangeRequest;
+import com.jamf.regatta.proto.RequestOp;
+import com.jamf.regatta.proto.ResponseOp;
+
+/**
+ * Copy of a table held by one member. The copy changes only by applying the commands of the table log in order, so
+ * the copies of all members agree once they applied the same prefix of the log.
+ */
+final class TableReplica {
+
+    static final ByteString ZERO = ByteString.copyFrom(new byte[]{0});
+
+    private final NavigableMap<ByteString, KeyValue> kvs = new ConcurrentSkipListMap<>(ByteString.unsignedLexicographicalComparator());
+    private long revision;
+    private long appliedIndex;
+
+    long revision() {
+        return revision;
+    }
+
+    long appliedIndex() {
+        return appliedIndex;
+    }
+
+    int size() {
+        return kvs.size();
+    }
+
+    long bytes() {
+        return kvs.values().stream().mapToLong(KeyValue::getSerializedSize).sum();
+    }
+
+    List<KeyValue> snapshot() {
+        return List.copyOf(kvs.values());
+    }
+
+    /**
+     * Replaces the content of this copy with the content of the given one, as a member re-syncing from the leader.
+     */
+    void copyFrom(TableReplica replica) {
+        kvs.clear();
+        kvs.putAll(replica.kvs);
+        revision = replica.revision;
+        appliedIndex = replica.appliedIndex;
+    }
+
+    Applied apply(long index, Command command) {
+        appliedIndex = index;
+        revision++;
+        var responses = new ArrayList<ResponseOp>();
+        var succeeded = apply(command, responses);
+        return new Applied(revision, responses, succeeded);
+    }
+
+    /**
+     * Applies the command, returns whether the compares of a txn held.
+     */
+    private boolean apply(Command command, List<ResponseOp> responses) {
+        var succeeded = true;
+        switch (command.getType()) {
+            case PUT -> responses.add(put(command.getKv(), command.getPrevKvs()));
+            case DELETE -> responses.add(delete(command.getKv().getKey(), command.getRangeEnd(), command.getPrevKvs(), command.getCount()));
+            case PUT_BATCH -> command.getBatchList().forEach(kv -> responses.add(put(kv, false)));
+            case DELETE_BATCH -> command.getBatchList().forEach(kv -> responses.add(delete(kv.getKey(), ByteString.EMPTY, false, false)));
+            case TXN -> {
+                var txn = command.getTxn();
+                succeeded = compare(txn.getCompareList());
+                (succeeded ? txn.getSuccessList() : txn.getFailureList()).forEach(op -> responses.add(apply(op)));
+            }
+            case SEQUENCE -> command.getSequenceList().forEach(next -> apply(next, responses));
+            default -> {
+            }
+        }
+        return succeeded;
+    }
+
+    ResponseOp apply(RequestOp op) {
+        return switch (op.getRequestCase()) {
+            case REQUEST_RANGE -> ResponseOp.newBuilder().setResponseRange(range(toRangeRequest(op.getRequestRange()))).build();
+            case REQUEST_PUT -> {
+                var put = op.getRequestPut();
+                yield put(KeyValue.newBuilder().setKey(put.getKey()).setValue(put.getValue()).build(), put.getPrevKv());
+            }
+            case REQUEST_DELETE_RANGE -> {
+                var delete = op.getRequestDeleteRange();
+                yield delete(delete.getKey(), delete.getRangeEnd(), delete.getPrevKv(), delete.getCount());
+            }
+            case REQUEST_NOT_SET -> ResponseOp.getDefaultInstance();
+        };
+    }
+
+    private ResponseOp put(KeyValue kv, boolean prevKv) {
+        var previous = kvs.get(kv.getKey());
+        kvs.put(kv.getKey(), kv.toBuilder()
+                .setCreateRevision(previous == null ? revision : previous.getCreateRevision())
+                .setModRevision(revision)
+                .build());
+        var put = ResponseOp.Put.newBuilder();
+        if (prevKv && previous != null) {
+            put.setPrevKv(previous);
+        }
+        return ResponseOp.newBuilder().setResponsePut(put).build();
+    }
+
+    private ResponseOp delete(ByteString key, ByteString rangeEnd, boolean prevKv, boolean count) {
+        var delete = ResponseOp.DeleteRange.newBuilder();
+        if (rangeEnd.isEmpty()) {
+            // a single key reports whether it was there, as the real server does
+            var previous = kvs.remove(key);
+            if (previous != null) {
+                delete.setDeleted(1);
+                if (prevKv) {
+                    delete.addPrevKvs(previous);
+                }
+            }
+        } else {
+            var range = range(key, rangeEnd);
+            if (prevKv) {
+                delete.addAllPrevKvs(range.values());
+            }
+            if (count) {
+                delete.setDeleted(range.size());
+            }
+            range.clear();
+        }
+        return ResponseOp.newBuilder().setResponseDeleteRange(delete).build();
+    }
+
+    /**
+     * All the compares must hold. A compare without a value checks only that the keys exist, a compare of a missing
+     * key or an empty range fails.
+     */
+    boolean compare(List<Compare> compares) {
+        for (var compare : compares) {
+            var range = range(compare.getKey(), compare.getRangeEnd());
+            if (range.isEmpty()) {
+                return false;
+            }
+            if (compare.hasValue()) {
+                for (var kv : range.values()) {
+                    var result = ByteString.unsignedLexicographicalComparator().compare(kv.getValue(), compare.getValue());
+                    var holds = switch (compare.getResult()) {
+                        case EQUAL -> result == 0;
+                        case GREATER -> result > 0;
+                        case LESS -> result < 0;
+                        case NOT_EQUAL -> result != 0;
+                        case UNRECOGNIZED -> false;
+                    };
+                    if (!holds) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    ResponseOp.Range range(RangeRequest request) {
+        var range = ResponseOp.Range.newBuilder();
+        var limit = request.getLimit() > 0 ? request.getLimit() : Long.MAX_VALUE;
+        long count = 0;
+        for (var kv : range(request.getKey(), request.getRangeEnd()).values()) {
+            if (!matches(request, kv)) {
+                continue;
+            }
+            if (count == limit) {
+                range.setMore(true);
+                break;
+            }
+            count++;
+            if (!request.getCountOnly()) {
+                range.addKvs(request.getKeysOnly() ? kv.toBuilder().clearValue().build() : kv);
+            }
+        }
+        return range.setCount(count).build();
+    }
+
+    private static boolean matches(RangeRequest request, KeyValue kv) {
+        return (request.getMinModRevision() == 0 || kv.getModRevision() >= request.getMinModRevision())
+                && (request.getMaxModRevision() == 0 || kv.getModRevision() <= request.getMaxModRevision())
+                && (request.getMinCreateRevision() == 0 || kv.getCreateRevision() >= request.getMinCreateRevision())
+                && (request.getMaxCreateRevision() == 0 || kv.getCreateRevision() <= request.getMaxCreateRevision());
+    }
+
+    /**
+     * Keys of [key, rangeEnd), only the key when rangeEnd is empty and all the keys from key on when rangeEnd is
+     * '\0'. Both key and rangeEnd '\0' select all the keys.
+     */
+    private NavigableMap<ByteString, KeyValue> range(ByteString key, ByteString rangeEnd) {
+        if (rangeEnd.isEmpty()) {
+            var kv = kvs.get(key);
+            return kv == null ? Collections.emptyNavigableMap() : kvs.subMap(key, true, key, true);
+        }
+        if (rangeEnd.equals(ZERO)) {
+            return key.equals(ZERO) ? kvs : kvs.tailMap(key, true);
+        }
+        if (ByteString.unsignedLexicographicalComparator().compare(key, rangeEnd) >= 0) {
+            return Collections.emptyNavigableMap();
+        }
+        return kvs.subMap(key, true, rangeEnd, false);
+    }
+
+    record Applied(long revision, List<ResponseOp> responses, boolean succeeded) {
+    }
+
+    static RangeRequest toRangeRequest(RequestOp.Range range) {
+        return RangeRequest.newBuilder()
+                .setKey(range.getKey())
+                .setRangeEnd(range.getRangeEnd())
+                .setLimit(range.getLimit())
+                .setKeysOnly(range.getKeysOnly())
+                .setCountOnly(range.getCountOnly())
+                .build();
+    }
+}
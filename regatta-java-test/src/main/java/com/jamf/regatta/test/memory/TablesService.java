@@ -0,0 +1,56 @@
+/*
+ * Copyright JAMF Software, LLC
+ */
+
+package com.jamf.regatta.test.memory;
+
+import com.jamf.regatta.proto.CreateTableRequest;
+import com.jamf.regatta.proto.CreateTableResponse;
+import com.jamf.regatta.proto.DeleteTableRequest;
+import com.jamf.regatta.proto.DeleteTableResponse;
+import com.jamf.regatta.proto.ListTablesRequest;
+import com.jamf.regatta.proto.ListTablesResponse;
+import com.jamf.regatta.proto.TablesGrpc;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Tables service of one member, the tables are created and deleted by the leader.
+ */
+final class TablesService extends TablesGrpc.TablesImplBase {
+
+    private final InMemoryMember member;
+
+    TablesService(InMemoryMember member) {
+        this.member = member;
+    }
+
+    @Override
+    public void create(CreateTableRequest request, StreamObserver<CreateTableResponse> responseObserver) {
+        member.unary(responseObserver, true, () -> {
+            if (request.getName().isEmpty()) {
+                throw Status.INVALID_ARGUMENT.withDescription("name must not be empty").asRuntimeException();
+            }
+            var table = member.cluster().createTable(request.getName(), request.getConfig());
+            return CreateTableResponse.newBuilder().setId(String.valueOf(table.id())).build();
+        });
+    }
+
+    @Override
+    public void delete(DeleteTableRequest request, StreamObserver<DeleteTableResponse> responseObserver) {
+        member.unary(responseObserver, true, () -> {
+            member.cluster().deleteTable(request.getName());
+            return DeleteTableResponse.getDefaultInstance();
+        });
+    }
+
+    @Override
+    public void list(ListTablesRequest request, StreamObserver<ListTablesResponse> responseObserver) {
+        member.unary(responseObserver, false, () -> {
+            var response = ListTablesResponse.newBuilder();
+            member.cluster().tables().forEach(table -> response.addTables(table.info()));
+            return response.build();
+        });
+    }
+}
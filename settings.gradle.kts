@@ -19,3 +19,11 @@ include("regatta-java-grpc")
 include("regatta-java-core")
 include("regatta-java-spring-data")
 include("regatta-java-test")
+// The benchmarks are built on demand only: ./gradlew -Pbench :regatta-java-bench:jmh
+if (providers.gradleProperty("bench").isPresent) {
+    include("regatta-java-bench")
+}
+// The workload generator is built on demand only: ./gradlew -Ploadgen :regatta-java-loadgen:run --args="..."
+if (providers.gradleProperty("loadgen").isPresent) {
+    include("regatta-java-loadgen")
+}